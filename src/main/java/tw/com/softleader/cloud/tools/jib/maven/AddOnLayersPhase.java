@@ -0,0 +1,166 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static java.lang.String.format;
+import static java.util.Optional.ofNullable;
+import static tw.com.softleader.cloud.tools.jib.maven.JvmFlagsExtension.*;
+
+import com.google.cloud.tools.jib.api.buildplan.FileEntry;
+import com.google.cloud.tools.jib.api.buildplan.Platform;
+import com.google.cloud.tools.jib.maven.extension.MavenData;
+import com.google.cloud.tools.jib.plugins.extension.JibPluginExtensionException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.execution.MavenSession;
+
+/**
+ * Adds the layers shipping files the flags point at: java agents, the warm-up agent and the linked
+ * Java runtime, which goes last so that it includes the modules the agents need.
+ */
+@UtilityClass
+class AddOnLayersPhase {
+
+  void apply(@NonNull ExtensionContext context) throws IOException, JibPluginExtensionException {
+    addAgents(context);
+    addWarmup(context);
+    addRuntime(context);
+  }
+
+  private void addAgents(ExtensionContext context) throws IOException {
+    var agents = context.getConfig().map(JvmFlagsExtensionConfig::getAgents).orElseGet(List::of);
+    if (agents.isEmpty()) {
+      return;
+    }
+    var appRoot = context.getAppRoot();
+    var agentPlan =
+        AgentLayerPlan.builder()
+            .logger(context.getLogger())
+            .agents(agents)
+            .projectDir(
+                ofNullable(context.getProject().getBasedir())
+                    .map(File::toPath)
+                    .orElse(Paths.get("")))
+            .localRepository(getLocalRepository(context.getMavenData()))
+            .architectures(
+                context.getBuildPlan().getPlatforms().stream()
+                    .map(Platform::getArchitecture)
+                    .collect(Collectors.toList()))
+            .build();
+    context.getLayers().add(agentPlan.create(appRoot));
+    context.getJvmFlags().addAll(agentPlan.getJvmFlags(appRoot));
+    context.getReport().attribute("agents", agentPlan.getJvmFlags(appRoot));
+    context.getReport().lap("agents");
+  }
+
+  private void addWarmup(ExtensionContext context) throws IOException, JibPluginExtensionException {
+    var warmup =
+        context
+            .getConfig()
+            .map(JvmFlagsExtensionConfig::getWarmup)
+            .filter(w -> w.getEntryPoints() != null && !w.getEntryPoints().isEmpty());
+    if (warmup.isEmpty()) {
+      return;
+    }
+    var targetJdk = context.getTargetJdk();
+    if (targetJdk.isPresent() && targetJdk.getAsInt() < WarmupLayerPlan.AGENT_JDK) {
+      throw new JibPluginExtensionException(
+          JvmFlagsExtension.class,
+          format(
+              "Warm-up requires JDK %s or later, the warm-up agent can not run on the target JDK %s",
+              WarmupLayerPlan.AGENT_JDK, targetJdk.getAsInt()));
+    }
+    var appRoot = context.getAppRoot();
+    var warmupPlan =
+        WarmupLayerPlan.builder()
+            .logger(context.getLogger())
+            .buildDir(context.getBuildDir())
+            .projectId(context.getProjectId())
+            .warmup(warmup.get())
+            .build();
+    var warmupFlag = warmupPlan.getJvmFlag(appRoot);
+    context.getLayers().add(warmupPlan.create(appRoot));
+    context.getJvmFlags().add(warmupFlag);
+    context.getReport().attribute("warmup", List.of(warmupFlag));
+    context.getReport().lap("warmup");
+  }
+
+  private void addRuntime(ExtensionContext context)
+      throws IOException, JibPluginExtensionException {
+    var properties = context.getProperties();
+    if (!isRuntime(properties)) {
+      return;
+    }
+    RuntimeLayerPlan.Builder runtimePlan =
+        RuntimeLayerPlan.builder()
+            .logger(context.getLogger())
+            .buildDir(context.getBuildDir())
+            .projectId(context.getProjectId())
+            .additionalModules(getRuntimeModules(properties))
+            .jvmFlags(context.getJvmFlags())
+            .jvmFlags(
+                context.getConfig().stream()
+                    .flatMap(
+                        c ->
+                            Stream.concat(
+                                c.getFlagSets().stream().map(FlagSet::getJvmFlags),
+                                c.getArchitectures().stream().map(ArchitectureFlags::getJvmFlags)))
+                    .filter(Objects::nonNull)
+                    .flatMap(List::stream)
+                    .collect(Collectors.toList()))
+            .additionalJars(
+                context.getLayers().stream()
+                    .filter(
+                        layer ->
+                            AgentLayerPlan.LAYER_AGENTS.equals(layer.getName())
+                                || WarmupLayerPlan.LAYER_WARMUP.equals(layer.getName()))
+                    .flatMap(layer -> layer.getEntries().stream())
+                    .map(FileEntry::getSourceFile)
+                    .filter(file -> file.toString().endsWith(".jar"))
+                    .collect(Collectors.toList()));
+    getRuntimePath(properties).ifPresent(runtimePlan::runtimePath);
+    getRuntimeJavaHome(properties).ifPresent(runtimePlan::javaHome);
+    var runtime = runtimePlan.build().create(context.getBuildPlan(), context.getAppRoot());
+    context.setRuntime(Optional.of(runtime));
+    context.getLayers().add(runtime.getLayer());
+    context.getJvmFlags().addAll(RuntimeLayerPlan.getJvmFlags(runtime.getModules()));
+    context.getReport().attribute("runtime", RuntimeLayerPlan.getJvmFlags(runtime.getModules()));
+    context.getReport().lap("runtime");
+  }
+
+  private Path getLocalRepository(MavenData mavenData) {
+    return ofNullable(mavenData.getMavenSession())
+        .map(MavenSession::getLocalRepository)
+        .map(ArtifactRepository::getBasedir)
+        .map(Paths::get)
+        .orElse(null);
+  }
+}
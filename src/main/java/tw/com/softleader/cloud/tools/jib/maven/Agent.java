@@ -0,0 +1,43 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import lombok.Data;
+
+/**
+ * A JVM agent added to the image, either a Java agent jar or a native agent library such as
+ * async-profiler's {@code libasyncProfiler.so}.
+ */
+@Data
+public class Agent {
+
+  /**
+   * Maven coordinates {@code groupId:artifactId[:extension[:classifier]]:version}, resolved from
+   * the local repository
+   */
+  private String artifact;
+
+  /** Path of the agent on the build host, relative to the project directory */
+  private String file;
+
+  /** Options passed to the agent, after {@code =} of the agent flag */
+  private String options;
+}
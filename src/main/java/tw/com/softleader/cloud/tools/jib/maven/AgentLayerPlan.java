@@ -0,0 +1,259 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel.DEBUG;
+import static com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel.LIFECYCLE;
+import static java.lang.String.format;
+
+import com.google.cloud.tools.jib.api.buildplan.AbsoluteUnixPath;
+import com.google.cloud.tools.jib.api.buildplan.FileEntriesLayer;
+import com.google.cloud.tools.jib.api.buildplan.FilePermissions;
+import com.google.cloud.tools.jib.plugins.extension.ExtensionLogger;
+import com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.Set;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Singular;
+import lombok.ToString;
+import lombok.Value;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * JVM agents layer plan, adds Java agent jars and native agent libraries to the image together with
+ * the {@code -javaagent:} and {@code -agentpath:} flags loading them.
+ *
+ * <p>Native libraries are checked to be ELF files built for every architecture of the image.
+ */
+@ToString
+@Builder(builderClassName = "Builder", toBuilder = true)
+public class AgentLayerPlan {
+
+  public static final String LAYER_AGENTS = "jvm agents";
+  public static final String AGENTS_DIRECTORY = "agents";
+
+  /** ELF {@code e_machine} of the architectures Jib names the platforms after */
+  static final Map<String, Integer> ELF_MACHINES =
+      Map.of(
+          "amd64", 62, "arm64", 183, "386", 3, "arm", 40, "ppc64le", 21, "s390x", 22, "riscv64",
+          243);
+
+  @ToString.Exclude private final ExtensionLogger logger;
+
+  @Singular private final List<Agent> agents;
+
+  /** Directory {@link Agent#getFile() file} is relative to */
+  @NonNull private final Path projectDir;
+
+  /** Local Maven repository {@link Agent#getArtifact() artifacts} are resolved from */
+  private final Path localRepository;
+
+  /** Architectures of the image, such as {@code amd64} and {@code arm64} */
+  @Singular private final Set<String> architectures;
+
+  public static final class Builder {}
+
+  /**
+   * @param appRoot app root in the container
+   * @return the flags loading the agents, in configuration order
+   */
+  public List<String> getJvmFlags(@NonNull AbsoluteUnixPath appRoot) throws IOException {
+    var flags = new ArrayList<String>();
+    for (var agent : resolve()) {
+      var option = agent.isJavaAgent() ? "-javaagent:" : "-agentpath:";
+      var options = StringUtils.trimToNull(agent.getAgent().getOptions());
+      flags.add(
+          option
+              + getPathInContainer(appRoot, agent.getSource())
+              + (options == null ? "" : "=" + options));
+    }
+    return flags;
+  }
+
+  /**
+   * Create a layer containing the agents
+   *
+   * @param appRoot app root in the container, the agents go into its {@value #AGENTS_DIRECTORY}
+   *     directory
+   * @return agents layer
+   */
+  public FileEntriesLayer create(@NonNull AbsoluteUnixPath appRoot) throws IOException {
+    log(DEBUG, "Creating '%s' layer with %s", LAYER_AGENTS, this);
+    var layer = FileEntriesLayer.builder().setName(LAYER_AGENTS);
+    for (var agent : resolve()) {
+      if (!agent.isJavaAgent()) {
+        checkArchitectures(agent.getSource());
+      }
+      var pathInContainer = getPathInContainer(appRoot, agent.getSource());
+      log(LIFECYCLE, "Adding '%s' agent to the image", pathInContainer);
+      layer.addEntry(agent.getSource(), pathInContainer, FilePermissions.fromOctalString("644"));
+    }
+    return layer.build();
+  }
+
+  private List<Resolved> resolve() throws IOException {
+    var resolved = new ArrayList<Resolved>();
+    var fileNames = new HashSet<String>();
+    for (var agent : agents) {
+      var source = resolve(agent);
+      if (!Files.isRegularFile(source)) {
+        throw new IOException(
+            format(
+                "Agent %s not found at %s%s",
+                describe(agent),
+                source,
+                agent.getArtifact() != null
+                    ? ", run: mvn dependency:get -Dartifact=" + agent.getArtifact().trim()
+                    : ""));
+      }
+      if (!fileNames.add(source.getFileName().toString())) {
+        throw new IOException(
+            format(
+                "Agents must have distinct file names, '%s' is used twice", source.getFileName()));
+      }
+      resolved.add(new Resolved(agent, source));
+    }
+    return resolved;
+  }
+
+  private Path resolve(Agent agent) throws IOException {
+    var artifact = StringUtils.trimToNull(agent.getArtifact());
+    var file = StringUtils.trimToNull(agent.getFile());
+    if ((artifact == null) == (file == null)) {
+      throw new IOException("Agent must configure exactly one of <artifact> or <file>");
+    }
+    if (file != null) {
+      return projectDir.resolve(file);
+    }
+    if (localRepository == null) {
+      throw new IOException("No local repository to resolve agent " + artifact + " from");
+    }
+    return localRepository.resolve(getRepositoryPath(artifact));
+  }
+
+  /**
+   * Path of an artifact in the default repository layout
+   *
+   * @param coordinates {@code groupId:artifactId[:extension[:classifier]]:version}
+   */
+  static String getRepositoryPath(@NonNull String coordinates) throws IOException {
+    var parts = coordinates.split(":");
+    if (parts.length < 3 || parts.length > 5) {
+      throw new IOException(
+          format(
+              "Invalid artifact '%s', expecting groupId:artifactId[:extension[:classifier]]:version",
+              coordinates));
+    }
+    var groupId = parts[0];
+    var artifactId = parts[1];
+    var version = parts[parts.length - 1];
+    var extension = parts.length > 3 ? parts[2] : "jar";
+    var classifier = parts.length > 4 ? "-" + parts[3] : "";
+    return String.join(
+        "/",
+        groupId.replace('.', '/'),
+        artifactId,
+        version,
+        artifactId + "-" + version + classifier + "." + extension);
+  }
+
+  private static AbsoluteUnixPath getPathInContainer(AbsoluteUnixPath appRoot, Path source) {
+    return appRoot.resolve(AGENTS_DIRECTORY).resolve(source.getFileName().toString());
+  }
+
+  /** A native library must match every architecture of the image */
+  private void checkArchitectures(Path library) throws IOException {
+    var machine = getElfMachine(library);
+    if (machine.isEmpty()) {
+      throw new IOException(
+          format("Agent '%s' is neither a jar nor a Linux ELF library", library.getFileName()));
+    }
+    for (var architecture : architectures) {
+      var expected = ELF_MACHINES.get(architecture);
+      if (expected == null) {
+        log(DEBUG, "Unknown architecture '%s', skipping check of %s", architecture, library);
+      } else if (expected != machine.getAsInt()) {
+        throw new IOException(
+            format(
+                "Agent '%s' is built for ELF machine %s, but the image targets %s",
+                library.getFileName(), describeMachine(machine.getAsInt()), architecture));
+      }
+    }
+  }
+
+  /**
+   * @return {@code e_machine} of an ELF file, empty when the file is not ELF
+   */
+  static OptionalInt getElfMachine(@NonNull Path file) throws IOException {
+    var header = new byte[20];
+    try (InputStream in = Files.newInputStream(file)) {
+      if (in.readNBytes(header, 0, header.length) < header.length
+          || header[0] != 0x7f
+          || header[1] != 'E'
+          || header[2] != 'L'
+          || header[3] != 'F') {
+        return OptionalInt.empty();
+      }
+    }
+    var order = header[5] == 2 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+    return OptionalInt.of(
+        Short.toUnsignedInt(ByteBuffer.wrap(header, 18, 2).order(order).getShort()));
+  }
+
+  private static String describeMachine(int machine) {
+    return ELF_MACHINES.entrySet().stream()
+        .filter(entry -> entry.getValue() == machine)
+        .map(Map.Entry::getKey)
+        .findFirst()
+        .orElse(String.valueOf(machine));
+  }
+
+  private static String describe(Agent agent) {
+    return agent.getArtifact() != null ? agent.getArtifact().trim() : agent.getFile().trim();
+  }
+
+  private void log(LogLevel level, String message, Object... args) {
+    if (logger != null) {
+      logger.log(level, format(message, args));
+    }
+  }
+
+  @Value
+  private static class Resolved {
+    Agent agent;
+    Path source;
+
+    boolean isJavaAgent() {
+      return source.getFileName().toString().endsWith(".jar");
+    }
+  }
+}
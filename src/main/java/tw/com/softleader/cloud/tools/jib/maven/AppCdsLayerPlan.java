@@ -0,0 +1,184 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static com.google.cloud.tools.jib.api.buildplan.FilePermissions.DEFAULT_FILE_PERMISSIONS;
+import static com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel.DEBUG;
+import static com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel.LIFECYCLE;
+import static com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel.WARN;
+import static java.lang.String.format;
+
+import com.google.cloud.tools.jib.api.buildplan.AbsoluteUnixPath;
+import com.google.cloud.tools.jib.api.buildplan.ContainerBuildPlan;
+import com.google.cloud.tools.jib.api.buildplan.FileEntriesLayer;
+import com.google.cloud.tools.jib.plugins.extension.ExtensionLogger;
+import com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Singular;
+import lombok.ToString;
+
+/**
+ * AppCDS layer plan, dumps a dynamic AppCDS archive from a training run of the app on the build
+ * host.
+ *
+ * <p>The training run loads the app from a staged copy of the image, not from the app root, so the
+ * archive records classpath entries at a different location than the image has them. Only JDKs
+ * accepting a relocated app classpath, with the same entries relative to each other, map such an
+ * archive, older ones reject it with a shared class paths mismatch.
+ */
+@ToString
+@Builder(builderClassName = "Builder", toBuilder = true)
+public class AppCdsLayerPlan {
+
+  public static final String LAYER_APP_CDS = "app cds";
+  public static final String APP_CDS_ARCHIVE = "jib-app-cds.jsa";
+  public static final String TRAINING_LOG = "jib-app-cds-training.log";
+
+  /** First JDK mapping an archive whose app classpath was relocated after dumping */
+  public static final int MIN_FEATURE_VERSION = 19;
+
+  @ToString.Exclude private final ExtensionLogger logger;
+
+  @NonNull @lombok.Builder.Default
+  private final Path buildDir = Paths.get(System.getProperty("java.io.tmpdir"));
+
+  /** Set when the project shares its build directory, to keep its cache files apart */
+  private final String projectId;
+
+  @NonNull @lombok.Builder.Default
+  private final Path javaHome = Paths.get(System.getProperty("java.home"));
+
+  /** JVM flags the app is trained with, normally the configured `jvmFlags` */
+  @Singular private final List<String> jvmFlags;
+
+  @Singular private final List<String> trainingArgs;
+
+  /** Classpath in the container the app runs with, when it differs from the one of the plan */
+  @Singular("classpathElement")
+  private final List<String> classpath;
+
+  @NonNull @lombok.Builder.Default private final Duration trainingTimeout = Duration.ofSeconds(60);
+
+  public static final class Builder {}
+
+  /**
+   * @param appRoot app root in the container
+   * @return the flag pointing the JVM at the archive in the container
+   */
+  public static String getJvmFlag(@NonNull AbsoluteUnixPath appRoot) {
+    return "-XX:SharedArchiveFile=" + appRoot.resolve(APP_CDS_ARCHIVE);
+  }
+
+  /**
+   * Flags letting the JVM maintain a dynamic archive by itself: created at exit of the first start,
+   * validated and reused by later starts, and recreated when it no longer matches the app. {@code
+   * -Xshare:auto} keeps the JVM starting without sharing whenever the archive can not be mapped.
+   *
+   * @param archive writable path of the archive in the container
+   * @return the flags to append to the jvm flags
+   */
+  public static List<String> getAutoCreateJvmFlags(@NonNull AbsoluteUnixPath archive) {
+    return List.of(
+        "-XX:+AutoCreateSharedArchive", "-XX:SharedArchiveFile=" + archive, "-Xshare:auto");
+  }
+
+  /**
+   * Train the app of {@code buildPlan} and create a layer containing the dumped archive
+   *
+   * @param buildPlan plan providing the classpath and main class of the app
+   * @param appRoot app root in the container
+   * @return app cds layer
+   */
+  public FileEntriesLayer create(
+      @NonNull ContainerBuildPlan buildPlan, @NonNull AbsoluteUnixPath appRoot) throws IOException {
+    log(DEBUG, "Creating '%s' layer with %s", LAYER_APP_CDS, this);
+    var resolved = StagedApp.of(buildPlan, appRoot, classpath);
+    var featureVersion = RuntimeLayerPlan.getFeatureVersion(javaHome);
+    if (featureVersion < MIN_FEATURE_VERSION) {
+      throw new IOException(
+          format(
+              "Static CDS requires Java %s or newer to accept the archive at the app root,"
+                  + " but %s is Java %s, set trainingJavaHome to the JDK of the base image",
+              MIN_FEATURE_VERSION, javaHome, featureVersion));
+    }
+
+    var cacheDir = CacheFiles.directory(buildDir, projectId);
+    var app = resolved.stage(cacheDir);
+    warnDirectoriesOnClasspath(app);
+    var archive = cacheDir.resolve(APP_CDS_ARCHIVE);
+    Files.deleteIfExists(archive);
+
+    var result =
+        app.trainingRun(jvmFlags)
+            .logger(logger)
+            .javaHome(javaHome)
+            .jvmFlag("-XX:ArchiveClassesAtExit=" + archive)
+            .args(trainingArgs)
+            .timeout(trainingTimeout)
+            .logFile(cacheDir.resolve(TRAINING_LOG))
+            .build()
+            .run();
+    if (Files.notExists(archive)) {
+      throw new IOException(
+          format(
+              "Training run exited with %s but no CDS archive was dumped, see %s",
+              result.getExitCode(), cacheDir.resolve(TRAINING_LOG)));
+    }
+
+    AbsoluteUnixPath pathInContainer = appRoot.resolve(APP_CDS_ARCHIVE);
+    log(
+        LIFECYCLE,
+        "Adding layer containing '%s' CDS archive (%s KB) to the image",
+        pathInContainer,
+        Files.size(archive) / 1024);
+    return FileEntriesLayer.builder()
+        .setName(LAYER_APP_CDS)
+        .addEntry(archive, pathInContainer, DEFAULT_FILE_PERMISSIONS)
+        .build();
+  }
+
+  /** CDS only archives classes loaded from jars, classes in directories stay out of the archive */
+  private void warnDirectoriesOnClasspath(StagedApp app) {
+    app.getClasspath().stream()
+        .filter(element -> !element.endsWith("/*"))
+        .filter(element -> Files.isDirectory(app.toHostPath(element)))
+        .forEach(
+            element ->
+                log(
+                    WARN,
+                    "Classpath entry '%s' is a directory, CDS can not archive its classes,"
+                        + " consider <containerizingMode>packaged</containerizingMode>",
+                    element));
+  }
+
+  private void log(LogLevel level, String message, Object... args) {
+    if (logger != null) {
+      logger.log(level, format(message, args));
+    }
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+
+/**
+ * Formats arguments for Java {@code @argfiles}, see <a
+ * href="https://docs.oracle.com/en/java/javase/21/docs/specs/man/java.html#java-command-line-argument-files">java
+ * command-line argument files</a>.
+ */
+@UtilityClass
+class ArgFiles {
+
+  private static final Pattern NEEDS_QUOTES = Pattern.compile("[\\s\"'#]");
+
+  /**
+   * @return one argument per line, quoted where needed
+   */
+  String format(@NonNull List<String> args) {
+    return args.stream().map(ArgFiles::quote).collect(Collectors.joining("\n", "", "\n"));
+  }
+
+  /**
+   * Quote {@code arg} when it is empty or contains whitespace, quotes or a comment sign. Within
+   * quotes the backslash is an escape character, outside of quotes it is taken literally.
+   */
+  String quote(@NonNull String arg) {
+    if (!arg.isEmpty() && !NEEDS_QUOTES.matcher(arg).find()) {
+      return arg;
+    }
+    var quoted = new StringBuilder("\"");
+    for (char c : arg.toCharArray()) {
+      switch (c) {
+        case '\\':
+          quoted.append("\\\\");
+          break;
+        case '"':
+          quoted.append("\\\"");
+          break;
+        case '\n':
+          quoted.append("\\n");
+          break;
+        case '\r':
+          quoted.append("\\r");
+          break;
+        case '\t':
+          quoted.append("\\t");
+          break;
+        case '\f':
+          quoted.append("\\f");
+          break;
+        default:
+          quoted.append(c);
+      }
+    }
+    return quoted.append('"').toString();
+  }
+}
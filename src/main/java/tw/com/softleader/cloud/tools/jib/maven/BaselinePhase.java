@@ -0,0 +1,101 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel.LIFECYCLE;
+import static com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel.WARN;
+import static java.lang.String.format;
+import static tw.com.softleader.cloud.tools.jib.maven.JvmFlagsExtension.*;
+
+import com.google.cloud.tools.jib.plugins.extension.JibPluginExtensionException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Collectors;
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+
+/**
+ * Compares the default flags with the baseline file, or rewrites the baseline when {@value
+ * JvmFlagsExtension#PROPERTY_BASELINE_REGENERATE} is set. Changes of GC, heap, JIT and CDS settings
+ * are handled by the {@link BaselinePolicy}, other changes are only logged.
+ */
+@UtilityClass
+class BaselinePhase {
+
+  void apply(@NonNull ExtensionContext context) throws IOException, JibPluginExtensionException {
+    var properties = context.getProperties();
+    var baseline = getBaseline(properties, context.getProject());
+    if (baseline.isEmpty()) {
+      return;
+    }
+    compare(context, baseline.get());
+    context.getReport().lap("baseline");
+  }
+
+  private void compare(ExtensionContext context, Path baseline)
+      throws IOException, JibPluginExtensionException {
+    var properties = context.getProperties();
+    var logger = context.getLogger();
+    if (isBaselineRegenerate(properties)) {
+      if (JvmFlagsBaseline.write(baseline, context.getJvmFlags())) {
+        logger.log(LIFECYCLE, format("Regenerated JVM Flags baseline %s", baseline));
+      }
+      return;
+    }
+    var policy = getBaselinePolicy(properties);
+    if (Files.notExists(baseline)) {
+      var message =
+          format(
+              "JVM Flags baseline %s does not exist, create it with <%s>true</%s>",
+              baseline, PROPERTY_BASELINE_REGENERATE, PROPERTY_BASELINE_REGENERATE);
+      if (policy == BaselinePolicy.FAIL) {
+        throw new JibPluginExtensionException(JvmFlagsExtension.class, message);
+      }
+      logger.log(WARN, message);
+      return;
+    }
+    var changes = JvmFlagsBaseline.compare(JvmFlagsBaseline.read(baseline), context.getJvmFlags());
+    changes.stream()
+        .filter(change -> !change.getCategory().isCritical())
+        .forEach(change -> logger.log(LIFECYCLE, "JVM Flags differ from baseline, " + change));
+    var critical =
+        changes.stream()
+            .filter(change -> change.getCategory().isCritical())
+            .map(JvmFlagsBaseline.Change::toString)
+            .collect(Collectors.toList());
+    if (critical.isEmpty()) {
+      return;
+    }
+    if (policy == BaselinePolicy.FAIL) {
+      throw new JibPluginExtensionException(
+          JvmFlagsExtension.class,
+          format(
+              "Performance-critical JVM Flags differ from baseline %s, regenerate it with <%s>true</%s>"
+                  + " if intended:%n  %s",
+              baseline,
+              PROPERTY_BASELINE_REGENERATE,
+              PROPERTY_BASELINE_REGENERATE,
+              String.join("\n  ", critical)));
+    }
+    critical.forEach(change -> logger.log(WARN, "JVM Flags differ from baseline, " + change));
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static tw.com.softleader.cloud.tools.jib.maven.JvmFlagsExtension.*;
+
+import com.google.cloud.tools.jib.api.buildplan.ContainerBuildPlan;
+import com.google.cloud.tools.jib.plugins.extension.JibPluginExtensionException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+
+/** Benchmarks the startup of the final image with the default flags and every flag set. */
+@UtilityClass
+class BenchmarkPhase {
+
+  void apply(@NonNull ExtensionContext context, @NonNull ContainerBuildPlan extended)
+      throws IOException, JibPluginExtensionException {
+    if (!isBenchmark(context.getProperties())) {
+      return;
+    }
+    var candidates = new LinkedHashMap<String, List<String>>();
+    candidates.put("default", context.getJvmFlags());
+    candidates.putAll(context.getFlagSets());
+    benchmark(context, extended, context.getOrderedClasspath(), candidates, Map.of(), "benchmark");
+    context.getReport().lap("benchmark");
+  }
+
+  /**
+   * Launch the app of {@code buildPlan} with each candidate, from the same staged root as the CDS
+   * training run so that a dumped archive matches the classpath. Container paths of the flags are
+   * translated by {@link StagedApp#toHostFlags(List)}.
+   *
+   * @param classpath classpath in the container, empty for the one of the plan
+   * @param candidateClasspaths classpaths in the container replacing {@code classpath} by candidate
+   */
+  void benchmark(
+      @NonNull ExtensionContext context,
+      @NonNull ContainerBuildPlan buildPlan,
+      @NonNull List<String> classpath,
+      @NonNull Map<String, List<String>> candidates,
+      @NonNull Map<String, List<String>> candidateClasspaths,
+      @NonNull String outputDirectory)
+      throws IOException, JibPluginExtensionException {
+    var properties = context.getProperties();
+    var cacheDir = CacheFiles.directory(context.getBuildDir(), context.getProjectId());
+    var app = StagedApp.of(buildPlan, context.getAppRoot(), classpath).stage(cacheDir);
+    StartupBenchmark.Builder benchmark =
+        StartupBenchmark.builder()
+            .logger(context.getLogger())
+            .workingDirectory(Files.createDirectories(app.getHostAppRoot()))
+            .classpath(app.toHostClasspath(app.getClasspath()))
+            .mainClass(app.getMainClass())
+            .args(getTrainingArgs(properties))
+            .iterations(getBenchmarkIterations(properties))
+            .timeout(getBenchmarkTimeout(properties))
+            .outputDir(cacheDir.resolve(outputDirectory));
+    candidateClasspaths.forEach(
+        (name, candidateClasspath) ->
+            benchmark.candidateClasspath(name, app.toHostClasspath(candidateClasspath)));
+    for (var candidate : candidates.entrySet()) {
+      benchmark.candidate(candidate.getKey(), app.toHostFlags(candidate.getValue()));
+    }
+    getBenchmarkReadyLogLine(properties).ifPresent(benchmark::readyLogLine);
+    getBenchmarkReadyCommand(properties).ifPresent(benchmark::readyCommand);
+    getTrainingJavaHome(properties).ifPresent(benchmark::javaHome);
+    benchmark.build().run();
+  }
+}
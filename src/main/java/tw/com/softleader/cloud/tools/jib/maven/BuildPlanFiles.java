@@ -0,0 +1,178 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import com.google.cloud.tools.jib.api.buildplan.AbsoluteUnixPath;
+import com.google.cloud.tools.jib.api.buildplan.ContainerBuildPlan;
+import com.google.cloud.tools.jib.api.buildplan.FileEntriesLayer;
+import com.google.cloud.tools.jib.api.buildplan.FileEntry;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+/** Read-only view of the files a {@link ContainerBuildPlan} puts into the image. */
+@RequiredArgsConstructor(staticName = "of")
+public class BuildPlanFiles {
+
+  public static final String JIB_CLASSPATH_FILE = "jib-classpath-file";
+  public static final String JIB_MAIN_CLASS_FILE = "jib-main-class-file";
+
+  @NonNull private final ContainerBuildPlan buildPlan;
+
+  /**
+   * @return all file entries of the plan, in layer order
+   */
+  public List<FileEntry> getEntries() {
+    return buildPlan.getLayers().stream()
+        .filter(FileEntriesLayer.class::isInstance)
+        .map(FileEntriesLayer.class::cast)
+        .flatMap(layer -> layer.getEntries().stream())
+        .collect(Collectors.toList());
+  }
+
+  public Optional<FileEntry> getEntry(@NonNull AbsoluteUnixPath pathInContainer) {
+    return getEntries().stream()
+        .filter(entry -> entry.getExtractionPath().equals(pathInContainer))
+        .reduce((first, second) -> second);
+  }
+
+  /**
+   * Main class Jib has configured, read from {@code jib-main-class-file} or the default entrypoint.
+   */
+  public Optional<String> getMainClass(@NonNull AbsoluteUnixPath appRoot) throws IOException {
+    var file = readString(appRoot.resolve(JIB_MAIN_CLASS_FILE));
+    if (file.isPresent()) {
+      return file;
+    }
+    return getEntrypointArgument(2);
+  }
+
+  /** Classpath in the container, read from {@code jib-classpath-file} or the default entrypoint. */
+  public List<String> getClasspath(@NonNull AbsoluteUnixPath appRoot) throws IOException {
+    var classpath = readString(appRoot.resolve(JIB_CLASSPATH_FILE));
+    if (classpath.isEmpty()) {
+      classpath = getEntrypointArgument(1);
+    }
+    return classpath.stream()
+        .flatMap(value -> Arrays.stream(value.split(":")))
+        .filter(element -> !element.isBlank())
+        .collect(Collectors.toList());
+  }
+
+  private Optional<String> readString(AbsoluteUnixPath pathInContainer) throws IOException {
+    var entry = getEntry(pathInContainer);
+    if (entry.isEmpty() || !Files.isRegularFile(entry.get().getSourceFile())) {
+      return Optional.empty();
+    }
+    return Optional.of(Files.readString(entry.get().getSourceFile()).trim())
+        .filter(value -> !value.isEmpty());
+  }
+
+  private Optional<String> getEntrypointArgument(int offsetFromClasspathOption) {
+    var entrypoint = buildPlan.getEntrypoint();
+    if (entrypoint == null) {
+      return Optional.empty();
+    }
+    for (int i = 0; i < entrypoint.size(); i++) {
+      var arg = entrypoint.get(i);
+      if (("-cp".equals(arg) || "-classpath".equals(arg))
+          && i + offsetFromClasspathOption < entrypoint.size()) {
+        return Optional.of(entrypoint.get(i + offsetFromClasspathOption));
+      }
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * Mirror every file of the plan under {@code root}, keeping the modification time Jib will write
+   * into the image. Files already staged with the same content are left untouched, Jib writes the
+   * same modification time for every build so it cannot tell a changed file. Files no longer in the
+   * plan are removed.
+   *
+   * @param root host directory acting as the container root
+   * @return {@code root}
+   */
+  public Path stage(@NonNull Path root) throws IOException {
+    var staged = new LinkedHashMap<Path, FileEntry>();
+    for (FileEntry entry : getEntries()) {
+      if (Files.isRegularFile(entry.getSourceFile())) {
+        staged.put(toHostPath(root, entry.getExtractionPath().toString()), entry);
+      }
+    }
+    for (var file : staged.entrySet()) {
+      var source = file.getValue().getSourceFile();
+      var target = file.getKey();
+      var modified = FileTime.from(file.getValue().getModificationTime());
+      if (!Files.isRegularFile(target) || !sameContent(target, source)) {
+        Files.createDirectories(target.getParent());
+        Files.copy(source, target, REPLACE_EXISTING);
+      }
+      Files.setLastModifiedTime(target, modified);
+    }
+    if (Files.isDirectory(root)) {
+      List<Path> removed;
+      try (Stream<Path> walk = Files.walk(root)) {
+        removed =
+            walk.filter(file -> !Files.isDirectory(file) && !staged.containsKey(file))
+                .collect(Collectors.toList());
+      }
+      for (var file : removed) {
+        Files.delete(file);
+      }
+    }
+    return root;
+  }
+
+  private static boolean sameContent(Path file, Path other) throws IOException {
+    return Files.size(file) == Files.size(other)
+        && com.google.common.io.Files.asByteSource(file.toFile())
+            .contentEquals(com.google.common.io.Files.asByteSource(other.toFile()));
+  }
+
+  /** Translate a container classpath to the one matching a {@link #stage staged} root. */
+  public static String toHostClasspath(@NonNull Path root, @NonNull List<String> classpath) {
+    return classpath.stream()
+        .map(
+            element ->
+                element.endsWith("/*")
+                    ? toHostPath(root, element.substring(0, element.length() - 2))
+                        + File.separator
+                        + "*"
+                    : toHostPath(root, element).toString())
+        .collect(Collectors.joining(File.pathSeparator));
+  }
+
+  static Path toHostPath(Path root, String pathInContainer) {
+    return root.resolve(pathInContainer.replaceFirst("^/+", ""));
+  }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.cloud.tools.jib.api.buildplan.FileEntriesLayer;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import lombok.NonNull;
+import lombok.ToString;
+import org.yaml.snakeyaml.LoaderOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+import org.yaml.snakeyaml.error.YAMLException;
+
+/**
+ * Machine-readable report of a run of the extension: the effective flags and where each came from,
+ * the layers added and the time spent per phase. The reports of the modules built in a session are
+ * merged into a {@value #MATRIX_FILE} showing which module runs which collector and heap.
+ */
+@ToString
+public class BuildReport {
+
+  public static final String REPORT_FILE = "jib-jvm-flags-report.json";
+  public static final String MATRIX_FILE = "jib-jvm-flags-matrix.json";
+
+  /** Source of flags configured in the {@code jvmFlags} of the POM */
+  public static final String SOURCE_POM = "pom";
+
+  /** Source of flags no phase claimed, such as flags rewritten for the target JDK */
+  public static final String SOURCE_EXTENSION = "extension";
+
+  /** Modules of a parallel build update the matrix one at a time */
+  private static final Object MATRIX_LOCK = new Object();
+
+  /** Reports written by the modules of each running session */
+  private static final Map<Object, Set<Path>> SESSION_REPORTS = new WeakHashMap<>();
+
+  /**
+   * Sessions whose last module has reported, later modules of a parallel build update the matrix
+   */
+  private static final Set<Object> MATRIX_DUE = Collections.newSetFromMap(new WeakHashMap<>());
+
+  private final String module;
+
+  /** Source by flag, the first phase a flag shows up in claims it */
+  private final Map<String, String> sources = new HashMap<>();
+
+  /** Milliseconds by phase */
+  private final Map<String, Long> phases = new LinkedHashMap<>();
+
+  private final long started = System.nanoTime();
+  private long lapStarted = started;
+
+  /**
+   * @param module {@code groupId:artifactId} of the module
+   */
+  public BuildReport(@NonNull String module) {
+    this.module = module;
+  }
+
+  /** Attribute {@code jvmFlags} not attributed to an earlier source yet to {@code source} */
+  public void attribute(@NonNull String source, @NonNull Collection<String> jvmFlags) {
+    jvmFlags.forEach(flag -> sources.putIfAbsent(flag, source));
+  }
+
+  public String getSource(@NonNull String jvmFlag) {
+    return sources.getOrDefault(jvmFlag, SOURCE_EXTENSION);
+  }
+
+  /**
+   * Record the time since the previous lap, or since the report was created, under {@code phase}
+   */
+  public void lap(@NonNull String phase) {
+    var now = System.nanoTime();
+    phases.merge(phase, TimeUnit.NANOSECONDS.toMillis(now - lapStarted), Long::sum);
+    lapStarted = now;
+  }
+
+  /**
+   * @param jvmFlags effective flags of the image
+   * @param flagSets additional flags files by suffix
+   * @param layers layers added by the extension
+   */
+  public Map<String, Object> toMap(
+      @NonNull List<String> jvmFlags,
+      @NonNull Map<String, List<String>> flagSets,
+      @NonNull List<FileEntriesLayer> layers)
+      throws IOException {
+    var keyed =
+        JvmFlags.parse(jvmFlags).stream()
+            .collect(Collectors.toMap(JvmFlag::getKey, Function.identity(), (a, b) -> b));
+    var report = new LinkedHashMap<String, Object>();
+    report.put("module", module);
+    report.put("gc", ImageLabels.getGc(keyed));
+    report.put("heap", ImageLabels.getHeap(keyed));
+    var flags = new ArrayList<Map<String, Object>>();
+    for (var flag : JvmFlags.parse(jvmFlags)) {
+      var entry = new LinkedHashMap<String, Object>();
+      entry.put("flag", flag.getText());
+      entry.put("key", flag.getKey());
+      entry.put("source", getSource(flag.getText()));
+      flags.add(entry);
+    }
+    report.put("jvmFlags", flags);
+    report.put("flagSets", flagSets);
+    var layerEntries = new ArrayList<Map<String, Object>>();
+    for (var layer : layers) {
+      var files = new ArrayList<Map<String, Object>>();
+      long bytes = 0;
+      for (var entry : layer.getEntries()) {
+        var size =
+            Files.isRegularFile(entry.getSourceFile()) ? Files.size(entry.getSourceFile()) : 0;
+        bytes += size;
+        var file = new LinkedHashMap<String, Object>();
+        file.put("path", entry.getExtractionPath().toString());
+        file.put("bytes", size);
+        files.add(file);
+      }
+      var entry = new LinkedHashMap<String, Object>();
+      entry.put("name", layer.getName());
+      entry.put("bytes", bytes);
+      entry.put("files", files);
+      layerEntries.add(entry);
+    }
+    report.put("layers", layerEntries);
+    report.put("phasesMillis", phases);
+    report.put("totalMillis", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    return report;
+  }
+
+  /**
+   * Merge module reports into a matrix of modules by collector and heap, reports missing or not
+   * readable are left out
+   *
+   * @param reports {@value #REPORT_FILE} of each module
+   */
+  static Map<String, Object> aggregate(@NonNull List<Path> reports) throws IOException {
+    var modules = new TreeMap<String, Object>();
+    var byGc = new TreeMap<String, List<String>>();
+    var byHeap = new TreeMap<String, List<String>>();
+    for (var file : reports) {
+      var report = read(file);
+      if (report == null || report.get("module") == null) {
+        continue;
+      }
+      var name = String.valueOf(report.get("module"));
+      var gc = String.valueOf(report.get("gc"));
+      var heap = String.valueOf(report.get("heap"));
+      var module = new LinkedHashMap<String, Object>();
+      module.put("gc", gc);
+      module.put("heap", heap);
+      var flags = new LinkedHashMap<String, Object>();
+      var jvmFlags = report.get("jvmFlags");
+      if (jvmFlags instanceof List) {
+        for (var flag : (List<?>) jvmFlags) {
+          if (flag instanceof Map) {
+            var entry = (Map<?, ?>) flag;
+            flags.put(String.valueOf(entry.get("key")), entry.get("flag"));
+          }
+        }
+      }
+      module.put("jvmFlags", flags);
+      module.put("totalMillis", report.get("totalMillis"));
+      module.put("report", file.toString());
+      modules.put(name, module);
+      byGc.computeIfAbsent(gc, key -> new ArrayList<>()).add(name);
+      byHeap.computeIfAbsent(heap, key -> new ArrayList<>()).add(name);
+    }
+    byGc.values().forEach(names -> names.sort(null));
+    byHeap.values().forEach(names -> names.sort(null));
+    var matrix = new LinkedHashMap<String, Object>();
+    matrix.put("gc", byGc);
+    matrix.put("heap", byHeap);
+    matrix.put("modules", modules);
+    return matrix;
+  }
+
+  /**
+   * Record the report of a module built in {@code session}, and write the matrix of the reports of
+   * the session to {@code file} once its last module has reported. Reports left in other modules by
+   * earlier builds are never merged.
+   *
+   * @param last whether the module is the last one of the session to report
+   * @return number of reports merged, 0 while the matrix is not due
+   */
+  static int writeMatrix(
+      @NonNull Object session, @NonNull Path report, boolean last, @NonNull Path file)
+      throws IOException {
+    synchronized (MATRIX_LOCK) {
+      var reports = SESSION_REPORTS.computeIfAbsent(session, key -> new LinkedHashSet<>());
+      reports.add(report);
+      if (last) {
+        MATRIX_DUE.add(session);
+      }
+      if (!MATRIX_DUE.contains(session)) {
+        return 0;
+      }
+      CacheFiles.writeConservatively(file, Json.write(aggregate(new ArrayList<>(reports))));
+      return reports.size();
+    }
+  }
+
+  /** JSON is read as YAML, which it is a subset of */
+  private static Map<?, ?> read(Path file) throws IOException {
+    if (!Files.isRegularFile(file)) {
+      return null;
+    }
+    try {
+      var value =
+          new Yaml(new SafeConstructor(new LoaderOptions())).load(Files.readString(file, UTF_8));
+      return value instanceof Map ? (Map<?, ?>) value : null;
+    } catch (YAMLException ex) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import com.google.common.hash.Hashing;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+
+/**
+ * Writes the files the extension generates into {@code jib-cache}.
+ *
+ * <p>Modules of a parallel reactor build ({@code mvn -T}) run the extension concurrently, so every
+ * file is replaced by an atomic rename and readers never see a partially written file.
+ */
+@UtilityClass
+class CacheFiles {
+
+  static final String DIGEST_SUFFIX = ".sha256";
+
+  private final Map<Path, Object> locks = new ConcurrentHashMap<>();
+
+  /**
+   * @param buildDir build directory of the project
+   * @param projectId when set, the project gets its own subdirectory, for projects sharing a build
+   *     directory
+   * @return the {@code jib-cache} directory of the project
+   */
+  Path directory(@NonNull Path buildDir, String projectId) {
+    var cacheDir = buildDir.resolve(JvmFlagsLayerPlan.CACHE_DIRECTORY_NAME);
+    return projectId == null ? cacheDir : cacheDir.resolve(projectId.replaceAll("[^\\w.-]", "_"));
+  }
+
+  /**
+   * Write {@code content} to {@code file} unless it already has that content, so that the
+   * modification time only moves when the content changes.
+   *
+   * <p>The digest of the content is kept in a {@code .sha256} sidecar, an unchanged file is
+   * recognized from the sidecar without reading or writing the file itself.
+   */
+  void writeConservatively(@NonNull Path file, @NonNull String content) throws IOException {
+    writeConservatively(file, content.getBytes(UTF_8));
+  }
+
+  /** Binary variant of {@link #writeConservatively(Path, String)}, such as for generated jars */
+  void writeConservatively(@NonNull Path file, @NonNull byte[] bytes) throws IOException {
+    var digest = Hashing.sha256().hashBytes(bytes).toString();
+    var sidecar = file.resolveSibling(file.getFileName() + DIGEST_SUFFIX);
+    synchronized (locks.computeIfAbsent(file.toAbsolutePath().normalize(), key -> new Object())) {
+      if (Files.isRegularFile(file)
+          && Files.isRegularFile(sidecar)
+          && digest.equals(Files.readString(sidecar))
+          && Files.size(file) == bytes.length) {
+        return;
+      }
+      if (Files.notExists(file) || !Arrays.equals(Files.readAllBytes(file), bytes)) {
+        writeAtomically(file, bytes);
+      }
+      writeAtomically(sidecar, digest.getBytes(UTF_8));
+    }
+  }
+
+  /** Write to a temporary file next to {@code file} and rename it over {@code file} */
+  private void writeAtomically(Path file, byte[] bytes) throws IOException {
+    var directory = Files.createDirectories(file.getParent());
+    var temp = Files.createTempFile(directory, "." + file.getFileName(), ".tmp");
+    try {
+      Files.write(temp, bytes);
+      try {
+        Files.move(temp, file, ATOMIC_MOVE, REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException ex) {
+        Files.move(temp, file, REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+}
@@ -0,0 +1,291 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel.DEBUG;
+import static com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel.LIFECYCLE;
+import static java.lang.String.format;
+
+import com.google.cloud.tools.jib.api.buildplan.AbsoluteUnixPath;
+import com.google.cloud.tools.jib.api.buildplan.ContainerBuildPlan;
+import com.google.cloud.tools.jib.plugins.extension.ExtensionLogger;
+import com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarFile;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Singular;
+import lombok.ToString;
+import lombok.Value;
+
+/**
+ * Orders the classpath of the app by class loading, from a training run with {@code
+ * -Xlog:class+load}, so that the JVM finds the classes it needs at startup in the first entries it
+ * searches.
+ *
+ * <p>Entries are ordered by the number of classes loaded from them, entries no class was loaded
+ * from are kept last in their original order. Entries sharing a class or a resource, such as {@code
+ * application.properties} or {@code logback.xml}, keep their original relative order, so that
+ * reordering never changes which copy wins.
+ */
+@ToString
+@Builder(builderClassName = "Builder", toBuilder = true)
+public class ClasspathOrder {
+
+  public static final String ORDERED_CLASSPATH_FILE = "jib-ordered-classpath-file";
+  public static final String OUTPUT_DIRECTORY = "classpath-order";
+  public static final String CLASS_LOAD_LOG = "jib-class-load.log";
+  public static final String TRAINING_LOG = "jib-classpath-order-training.log";
+
+  /** Jar metadata that is never loaded as a resource of the app */
+  private static final Pattern METADATA =
+      Pattern.compile(
+          "META-INF/(MANIFEST\\.MF|INDEX\\.LIST|[^/]+\\.(SF|RSA|DSA|EC)"
+              + "|(LICENSE|NOTICE|DEPENDENCIES)[^/]*|maven/.*|versions/.*)|module-info\\.class",
+          Pattern.CASE_INSENSITIVE);
+
+  @ToString.Exclude private final ExtensionLogger logger;
+
+  @NonNull @lombok.Builder.Default
+  private final Path buildDir = Paths.get(System.getProperty("java.io.tmpdir"));
+
+  private final String projectId;
+
+  @NonNull @lombok.Builder.Default
+  private final Path javaHome = Paths.get(System.getProperty("java.home"));
+
+  @Singular private final List<String> jvmFlags;
+  @Singular private final List<String> trainingArgs;
+  @NonNull @lombok.Builder.Default private final Duration trainingTimeout = Duration.ofSeconds(60);
+
+  public static final class Builder {}
+
+  /**
+   * Train the app of {@code buildPlan} and order its classpath by the classes it loaded
+   *
+   * @param buildPlan plan providing the classpath and main class of the app
+   * @param appRoot app root in the container
+   */
+  public Result order(@NonNull ContainerBuildPlan buildPlan, @NonNull AbsoluteUnixPath appRoot)
+      throws IOException {
+    log(DEBUG, "Ordering classpath with %s", this);
+    var cacheDir = CacheFiles.directory(buildDir, projectId);
+    var resolved = StagedApp.of(buildPlan, appRoot);
+    var classpath = expand(resolved.getFiles(), resolved.getClasspath());
+    if (classpath.isEmpty()) {
+      throw new IOException("Unable to determine the classpath of the app");
+    }
+    var app = resolved.stage(cacheDir);
+
+    var outputDir = Files.createDirectories(cacheDir.resolve(OUTPUT_DIRECTORY));
+    var classLoadLog = outputDir.resolve(CLASS_LOAD_LOG);
+    Files.deleteIfExists(classLoadLog);
+    var result =
+        app.trainingRun(jvmFlags)
+            .logger(logger)
+            .javaHome(javaHome)
+            .jvmFlag("-Xlog:class+load=info:file=" + classLoadLog)
+            .classpath(app.toHostClasspath(classpath))
+            .args(trainingArgs)
+            .timeout(trainingTimeout)
+            .logFile(outputDir.resolve(TRAINING_LOG))
+            .build()
+            .run();
+    if (Files.notExists(classLoadLog)) {
+      throw new IOException(
+          format(
+              "Training run exited with %s but no class loading was logged, see %s",
+              result.getExitCode(), outputDir.resolve(TRAINING_LOG)));
+    }
+
+    var hostPaths =
+        classpath.stream()
+            .map(element -> app.toHostPath(element).toAbsolutePath().normalize())
+            .collect(Collectors.toList());
+    var loaded = countLoadedClasses(classLoadLog, hostPaths);
+    var ordered = order(classpath, loaded, getSharedResources(hostPaths));
+    var counts = new LinkedHashMap<String, Integer>();
+    ordered.forEach(element -> counts.put(element, loaded[classpath.indexOf(element)]));
+    log(
+        LIFECYCLE,
+        "Ordered classpath by class loading, %s of %s entries loaded %s classes",
+        IntStream.of(loaded).filter(count -> count > 0).count(),
+        classpath.size(),
+        IntStream.of(loaded).sum());
+    return new Result(classpath, ordered, counts);
+  }
+
+  /**
+   * Replace {@code dir/*} wildcards by the jars of the plan they match, in name order. Only files
+   * of the plan count, not whatever else lies in the staged directory.
+   */
+  static List<String> expand(BuildPlanFiles files, List<String> classpath) {
+    var expanded = new ArrayList<String>();
+    for (var element : classpath) {
+      if (!element.endsWith("/*")) {
+        expanded.add(element);
+        continue;
+      }
+      var prefix = element.substring(0, element.length() - 1);
+      files.getEntries().stream()
+          .map(entry -> entry.getExtractionPath().toString())
+          .filter(path -> path.startsWith(prefix) && path.indexOf('/', prefix.length()) < 0)
+          .filter(path -> path.toLowerCase(Locale.ROOT).endsWith(".jar"))
+          .distinct()
+          .sorted()
+          .forEach(expanded::add);
+    }
+    return expanded;
+  }
+
+  /**
+   * Count classes loaded from each entry, read from a {@code -Xlog:class+load} log where lines end
+   * with {@code source: file:/path/to/app.jar}
+   */
+  static int[] countLoadedClasses(Path classLoadLog, List<Path> hostPaths) throws IOException {
+    var loaded = new int[hostPaths.size()];
+    try (Stream<String> lines = Files.lines(classLoadLog)) {
+      lines
+          .map(line -> line.indexOf(" source: file:") < 0 ? null : toPath(line))
+          .filter(source -> source != null)
+          .forEach(
+              source -> {
+                for (int i = 0; i < hostPaths.size(); i++) {
+                  if (source.startsWith(hostPaths.get(i))) {
+                    loaded[i]++;
+                    return;
+                  }
+                }
+              });
+    }
+    return loaded;
+  }
+
+  private static Path toPath(String line) {
+    var uri = line.substring(line.indexOf(" source: ") + 9).trim();
+    try {
+      return Paths.get(URI.create(uri)).toAbsolutePath().normalize();
+    } catch (IllegalArgumentException e) {
+      return Paths.get(uri.substring("file:".length())).toAbsolutePath().normalize();
+    }
+  }
+
+  /**
+   * Pairs of entries containing the same class or resource, the earlier entry of each pair must
+   * stay before the later one
+   *
+   * @return indexes of the earlier entries by the index of the later entry
+   */
+  static Map<Integer, Set<Integer>> getSharedResources(List<Path> hostPaths) throws IOException {
+    var firstEntry = new HashMap<String, Integer>();
+    var predecessors = new HashMap<Integer, Set<Integer>>();
+    for (int i = 0; i < hostPaths.size(); i++) {
+      for (var name : listResources(hostPaths.get(i))) {
+        var first = firstEntry.putIfAbsent(name, i);
+        if (first != null && first != i) {
+          predecessors.computeIfAbsent(i, k -> new HashSet<>()).add(first);
+        }
+      }
+    }
+    return predecessors;
+  }
+
+  private static Set<String> listResources(Path entry) throws IOException {
+    if (Files.isDirectory(entry)) {
+      try (Stream<Path> walk = Files.walk(entry)) {
+        return walk.filter(Files::isRegularFile)
+            .map(path -> entry.relativize(path).toString().replace('\\', '/'))
+            .filter(name -> !METADATA.matcher(name).matches())
+            .collect(Collectors.toSet());
+      }
+    }
+    if (!Files.isRegularFile(entry)) {
+      return Set.of();
+    }
+    try (var jar = new JarFile(entry.toFile())) {
+      return jar.stream()
+          .filter(jarEntry -> !jarEntry.isDirectory())
+          .map(jarEntry -> jarEntry.getName())
+          .filter(name -> !METADATA.matcher(name).matches())
+          .collect(Collectors.toSet());
+    }
+  }
+
+  /**
+   * Most loaded entries first, never loaded entries last, each entry after the entries it shares
+   * classes with
+   */
+  static List<String> order(
+      List<String> classpath, int[] loaded, Map<Integer, Set<Integer>> predecessors) {
+    var byLoadedClasses =
+        Comparator.<Integer>comparingInt(i -> -loaded[i]).thenComparingInt(i -> i);
+    var remaining = new ArrayList<Integer>();
+    IntStream.range(0, classpath.size()).forEach(remaining::add);
+    var placed = new HashSet<Integer>();
+    var ordered = new ArrayList<String>();
+    while (!remaining.isEmpty()) {
+      var next =
+          remaining.stream()
+              .filter(i -> placed.containsAll(predecessors.getOrDefault(i, Set.of())))
+              .min(byLoadedClasses)
+              .orElseThrow();
+      remaining.remove(next);
+      placed.add(next);
+      ordered.add(classpath.get(next));
+    }
+    return ordered;
+  }
+
+  private void log(LogLevel level, String message, Object... args) {
+    if (logger != null) {
+      logger.log(level, format(message, args));
+    }
+  }
+
+  @Value
+  public static class Result {
+    /** Classpath in the container with wildcards expanded, in its original order */
+    List<String> original;
+
+    List<String> ordered;
+
+    /** Classes loaded from each entry, in {@link #ordered} order */
+    Map<String, Integer> loadedClasses;
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import java.util.List;
+import java.util.Optional;
+import lombok.NonNull;
+import lombok.Value;
+import org.apache.maven.artifact.Artifact;
+
+/**
+ * Tuning rule for a library on the runtime classpath of the project, loaded with {@link
+ * java.util.ServiceLoader}. In-house rules are registered in {@code
+ * META-INF/services/tw.com.softleader.cloud.tools.jib.maven.DependencyRule} of a jar added as a
+ * dependency of the Jib plugin, next to this extension.
+ */
+public interface DependencyRule {
+
+  /**
+   * @return name reported in the build log and used to skip the rule
+   */
+  String getName();
+
+  /**
+   * @return the tuning for the dependencies of {@code context}, empty when the rule does not apply
+   */
+  Optional<Tuning> apply(@NonNull Context context);
+
+  @Value
+  class Context {
+    /** Resolved artifacts of the runtime classpath */
+    @NonNull List<Artifact> artifacts;
+
+    /** JVM flags configured so far, which win over the flags of a rule */
+    @NonNull List<String> jvmFlags;
+
+    public Optional<Artifact> find(@NonNull String groupId, @NonNull String artifactId) {
+      return artifacts.stream()
+          .filter(a -> groupId.equals(a.getGroupId()) && artifactId.equals(a.getArtifactId()))
+          .findFirst();
+    }
+
+    public boolean contains(@NonNull String groupId, @NonNull String artifactId) {
+      return find(groupId, artifactId).isPresent();
+    }
+
+    /** Last configured flag of the setting {@code key}, see {@link JvmFlag#getKey()} */
+    public Optional<JvmFlag> getJvmFlag(@NonNull String key) {
+      return JvmFlags.parse(jvmFlags).stream()
+          .filter(flag -> flag.getKey().equals(key))
+          .reduce((first, second) -> second);
+    }
+  }
+
+  @Value
+  class Tuning {
+    /** Flags to apply, settings already configured are kept */
+    @NonNull List<String> jvmFlags;
+
+    /** Why the flags help, reported in the build log */
+    @NonNull String reason;
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static java.lang.String.format;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import lombok.NonNull;
+
+/** Built-in {@link DependencyRule}s for heavy runtime libraries. */
+public final class DependencyRules {
+
+  /** Artifacts on the runtime classpath from which the classpath counts as large */
+  static final int LARGE_CLASSPATH = 100;
+
+  private DependencyRules() {}
+
+  /**
+   * Netty manages its own pooled direct buffers. With access to {@code jdk.internal.misc.Unsafe} it
+   * frees them without the JDK cleaner, and direct memory, which defaults to the max heap, is
+   * capped to half of an explicit {@code -Xmx}.
+   */
+  public static class Netty implements DependencyRule {
+
+    @Override
+    public String getName() {
+      return "netty";
+    }
+
+    @Override
+    public Optional<Tuning> apply(@NonNull Context context) {
+      if (!context.contains("io.netty", "netty-buffer")) {
+        return Optional.empty();
+      }
+      var flags =
+          new ArrayList<>(
+              List.of(
+                  "-Dio.netty.tryReflectionSetAccessible=true",
+                  "--add-opens=java.base/java.nio=ALL-UNNAMED",
+                  "--add-opens=java.base/jdk.internal.misc=ALL-UNNAMED"));
+      var reason = "Netty frees pooled direct buffers without the JDK cleaner";
+      var heap =
+          context
+              .getJvmFlag("-Xmx")
+              .map(JvmFlag::getSize)
+              .filter(OptionalLong::isPresent)
+              .map(OptionalLong::getAsLong);
+      if (heap.isPresent()) {
+        var directMemory = Math.max(64, heap.get() / 2 / (1024 * 1024));
+        flags.add(format("-XX:MaxDirectMemorySize=%sm", directMemory));
+        reason += ", direct memory is capped to half of the heap instead of all of it";
+      }
+      return Optional.of(new Tuning(flags, reason));
+    }
+  }
+
+  /**
+   * Kafka clients write heap buffers to sockets, for which NIO caches a temporary direct buffer per
+   * thread as large as the largest batch ever sent. Capping the cached size keeps native memory
+   * bounded. Buffer memory and compression are client configs, beyond the reach of JVM flags.
+   */
+  public static class KafkaClient implements DependencyRule {
+
+    @Override
+    public String getName() {
+      return "kafka-client";
+    }
+
+    @Override
+    public Optional<Tuning> apply(@NonNull Context context) {
+      if (!context.contains("org.apache.kafka", "kafka-clients")) {
+        return Optional.empty();
+      }
+      return Optional.of(
+          new Tuning(
+              List.of("-Djdk.nio.maxCachedBufferSize=262144"),
+              "Kafka batches no longer grow the per-thread NIO buffer cache beyond 256 KiB,"
+                  + " tune buffer.memory and compression.type in the client config"));
+    }
+  }
+
+  /**
+   * Spring and Hibernate apps with large classpaths load many classes at startup and hold many
+   * duplicate strings. A higher initial metaspace threshold avoids full GCs while starting, and
+   * string deduplication shrinks the heap under G1.
+   */
+  public static class SpringHibernate implements DependencyRule {
+
+    @Override
+    public String getName() {
+      return "spring-hibernate";
+    }
+
+    @Override
+    public Optional<Tuning> apply(@NonNull Context context) {
+      var hibernate =
+          context.contains("org.hibernate.orm", "hibernate-core")
+              || context.contains("org.hibernate", "hibernate-core");
+      var spring = context.contains("org.springframework", "spring-core");
+      var large = context.getArtifacts().size() >= LARGE_CLASSPATH;
+      if (!hibernate && !(spring && large)) {
+        return Optional.empty();
+      }
+      var flags = new ArrayList<>(List.of("-XX:MetaspaceSize=128m"));
+      var reason =
+          format(
+              "%s with %s artifacts loads many classes at startup, metaspace starts at 128 MiB"
+                  + " to avoid full GCs",
+              hibernate ? "Hibernate" : "Spring", context.getArtifacts().size());
+      var gc = context.getJvmFlag(JvmFlag.KEY_GC).filter(JvmFlag::isEnabled);
+      if (gc.isEmpty() || "UseG1GC".equals(gc.get().getName())) {
+        flags.add("-XX:+UseStringDeduplication");
+        reason += ", duplicate strings are shared by G1";
+      }
+      return Optional.of(new Tuning(flags, reason));
+    }
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import com.google.cloud.tools.jib.api.buildplan.AbsoluteUnixPath;
+import com.google.cloud.tools.jib.api.buildplan.ContainerBuildPlan;
+import com.google.cloud.tools.jib.api.buildplan.FileEntriesLayer;
+import com.google.cloud.tools.jib.maven.extension.MavenData;
+import com.google.cloud.tools.jib.plugins.extension.ExtensionLogger;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Setter;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * State of one run of the {@link JvmFlagsExtension}, handed from phase to phase. The inputs are
+ * fixed when the run starts, each phase reads the flags and layers of the previous phases and
+ * replaces or adds to them.
+ */
+@Getter
+class ExtensionContext {
+
+  private final ContainerBuildPlan buildPlan;
+  private final Map<String, String> properties;
+  private final Optional<JvmFlagsExtensionConfig> config;
+  private final MavenData mavenData;
+  private final ExtensionLogger logger;
+  private final Path buildDir;
+  private final String projectId;
+  private final AbsoluteUnixPath appRoot;
+  private final OptionalInt targetJdk;
+  private final BuildReport report;
+
+  @Setter private Optional<JvmFlagsProfile> profile = Optional.empty();
+  @Setter private Optional<KubernetesResources.Resources> resources = Optional.empty();
+
+  /** Default flags of the image, phases may append to them */
+  private List<String> jvmFlags = new ArrayList<>();
+
+  @Setter @NonNull private List<String> orderedClasspath = List.of();
+  @Setter @NonNull private List<String> compileCommands = List.of();
+
+  /** Layers added by the extension, in the order they go into the image */
+  private final List<FileEntriesLayer> layers = new ArrayList<>();
+
+  @Setter private Optional<RuntimeLayerPlan.Runtime> runtime = Optional.empty();
+  @Setter @NonNull private Map<String, List<String>> flagSets = new LinkedHashMap<>();
+  @Setter @NonNull private Map<String, List<String>> architectureVariants = new LinkedHashMap<>();
+
+  @lombok.Builder(builderClassName = "Builder")
+  private ExtensionContext(
+      @NonNull ContainerBuildPlan buildPlan,
+      @NonNull Map<String, String> properties,
+      @NonNull Optional<JvmFlagsExtensionConfig> config,
+      @NonNull MavenData mavenData,
+      @NonNull ExtensionLogger logger,
+      @NonNull Path buildDir,
+      String projectId,
+      @NonNull AbsoluteUnixPath appRoot,
+      @NonNull OptionalInt targetJdk,
+      @NonNull BuildReport report) {
+    this.buildPlan = buildPlan;
+    this.properties = properties;
+    this.config = config;
+    this.mavenData = mavenData;
+    this.logger = logger;
+    this.buildDir = buildDir;
+    this.projectId = projectId;
+    this.appRoot = appRoot;
+    this.targetJdk = targetJdk;
+    this.report = report;
+  }
+
+  void setJvmFlags(@NonNull List<String> jvmFlags) {
+    this.jvmFlags = new ArrayList<>(jvmFlags);
+  }
+
+  MavenProject getProject() {
+    return mavenData.getMavenProject();
+  }
+
+  /** Flag sets followed by the architecture variants, by file suffix */
+  Map<String, List<String>> getVariants() {
+    var variants = new LinkedHashMap<>(flagSets);
+    variants.putAll(architectureVariants);
+    return variants;
+  }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel.LIFECYCLE;
+import static com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel.WARN;
+import static java.lang.String.format;
+import static java.util.Optional.ofNullable;
+import static tw.com.softleader.cloud.tools.jib.maven.JvmFlagsExtension.*;
+
+import com.google.cloud.tools.jib.plugins.extension.ExtensionLogger;
+import com.google.cloud.tools.jib.plugins.extension.JibPluginExtensionException;
+import com.google.common.annotations.VisibleForTesting;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.stream.Collectors;
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+
+/**
+ * Collects the default flags of the image: the flags of the jib plugin, then the profile,
+ * observability, Kubernetes and dependency rule flags layered over them, normalized when
+ * validating.
+ */
+@UtilityClass
+class FlagSourcesPhase {
+
+  private static final Set<String> RUNTIME_SCOPES =
+      Set.of(Artifact.SCOPE_COMPILE, Artifact.SCOPE_RUNTIME, Artifact.SCOPE_SYSTEM);
+
+  private static final PluginConfigLocation JIB_JVM_FLAGS =
+      PluginConfigLocation.builder()
+          .pluginId(JIB_MAVEN_PLUGIN_ID)
+          .domPath("container")
+          .domPath("jvmFlags")
+          .build();
+
+  void apply(@NonNull ExtensionContext context) throws IOException, JibPluginExtensionException {
+    var properties = context.getProperties();
+    var logger = context.getLogger();
+    var report = context.getReport();
+    var configured = getJvmFlags(context.getProject());
+    report.attribute(BuildReport.SOURCE_POM, configured);
+    var profile = getProfile(properties);
+    profile.ifPresent(p -> logger.log(LIFECYCLE, format("Applying '%s' JVM Flags profile", p)));
+    var merged = profile.map(p -> p.apply(configured, context.getTargetJdk())).orElse(configured);
+    if (profile.isPresent()) {
+      report.attribute("profile " + profile.get().name().toLowerCase(Locale.ROOT), merged);
+    }
+    context.setProfile(profile);
+    if (isObservability(properties)) {
+      logger.log(LIFECYCLE, "Applying observability JVM Flags");
+      merged =
+          JvmFlags.merge(
+              getObservabilityPreset(properties).getJvmFlags(context.getAppRoot()), merged);
+      report.attribute("observability", merged);
+    }
+    var manifests = getKubernetesManifests(properties, context.getProject());
+    if (manifests.isPresent()) {
+      var resources =
+          KubernetesResources.builder()
+              .logger(logger)
+              .manifests(manifests.get())
+              .container(getKubernetesContainer(properties).orElse(null))
+              .build()
+              .read();
+      var derived = resources.getJvmFlags(merged);
+      logger.log(
+          LIFECYCLE,
+          format(
+              "Applying JVM Flags %s derived from Kubernetes manifests %s",
+              derived, manifests.get()));
+      merged = JvmFlags.merge(derived, merged);
+      report.attribute("kubernetes", derived);
+      context.setResources(Optional.of(resources));
+    }
+    if (isDependencyRules(properties)) {
+      merged =
+          applyDependencyRules(
+              getRuntimeArtifacts(context.getProject()),
+              merged,
+              getDependencyRulesSkip(properties),
+              report,
+              logger);
+    }
+    if (isValidate(properties)) {
+      var normalized = JvmFlags.normalize(merged);
+      normalized
+          .getConflicts()
+          .forEach(conflict -> logger.log(WARN, "Conflicting JVM Flags, " + conflict));
+      merged = normalized.getJvmFlags();
+    }
+    context.setJvmFlags(merged);
+    report.lap("flags");
+  }
+
+  /**
+   * Apply the {@link DependencyRule}s found by {@link ServiceLoader} for {@code artifacts}.
+   * In-house rules go before the built-in {@link DependencyRules}, each by name, and configured
+   * flags and earlier rules win on conflict.
+   *
+   * @return flags of the applied rules, followed by {@code jvmFlags}
+   */
+  @VisibleForTesting
+  List<String> applyDependencyRules(
+      @NonNull List<Artifact> artifacts,
+      @NonNull List<String> jvmFlags,
+      @NonNull Set<String> skipped,
+      @NonNull BuildReport report,
+      @NonNull ExtensionLogger logger) {
+    var context = new DependencyRule.Context(artifacts, jvmFlags);
+    var applied = new ArrayList<String>();
+    var rules =
+        ServiceLoader.load(DependencyRule.class, JvmFlagsExtension.class.getClassLoader()).stream()
+            .map(ServiceLoader.Provider::get)
+            .sorted(
+                Comparator.<DependencyRule, Boolean>comparing(
+                        rule -> rule.getClass().getEnclosingClass() == DependencyRules.class)
+                    .thenComparing(DependencyRule::getName))
+            .collect(Collectors.toList());
+    for (var rule : rules) {
+      if (skipped.contains(rule.getName())) {
+        logger.log(LIFECYCLE, format("Skipping dependency rule '%s'", rule.getName()));
+        continue;
+      }
+      var tuning = rule.apply(context);
+      if (tuning.isEmpty()) {
+        continue;
+      }
+      var taken =
+          JvmFlags.parse(JvmFlags.merge(applied, jvmFlags)).stream()
+              .map(JvmFlag::getKey)
+              .collect(Collectors.toSet());
+      var flags =
+          tuning.get().getJvmFlags().stream()
+              .filter(flag -> !taken.contains(JvmFlag.parse(flag).getKey()))
+              .collect(Collectors.toList());
+      if (flags.isEmpty()) {
+        logger.log(
+            LIFECYCLE,
+            format(
+                "Dependency rule '%s' matched, its settings are configured already",
+                rule.getName()));
+        continue;
+      }
+      logger.log(
+          LIFECYCLE,
+          format(
+              "Dependency rule '%s' applied %s: %s",
+              rule.getName(), flags, tuning.get().getReason()));
+      applied.addAll(flags);
+      report.attribute("rule " + rule.getName(), flags);
+    }
+    return JvmFlags.merge(applied, jvmFlags);
+  }
+
+  /** Artifacts Jib puts on the classpath of the image */
+  private List<Artifact> getRuntimeArtifacts(MavenProject project) {
+    return ofNullable(project.getArtifacts()).orElseGet(Set::of).stream()
+        .filter(
+            artifact -> artifact.getScope() == null || RUNTIME_SCOPES.contains(artifact.getScope()))
+        .collect(Collectors.toList());
+  }
+
+  private List<String> getJvmFlags(MavenProject project) {
+    return JIB_JVM_FLAGS
+        .getDom(project)
+        .map(
+            dom ->
+                Arrays.stream(dom.getChildren())
+                    .map(Xpp3Dom::getValue)
+                    .filter(StringUtils::isNotBlank)
+                    .collect(Collectors.toList()))
+        .orElseGet(Collections::emptyList);
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.cloud.tools.jib.plugins.extension.JibPluginExtensionException;
+import com.google.common.hash.Hashing;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import lombok.Builder;
+import lombok.Singular;
+import lombok.ToString;
+
+/**
+ * OCI image labels describing the JVM tuning an image carries, so that registries and fleet tooling
+ * can query it without pulling the image.
+ *
+ * <p>Flags may carry secrets in {@code -D} system properties, and labels are readable by anyone who
+ * can pull the manifest. The flags are therefore only labeled by their digest and a summary, unless
+ * {@link Builder#includeFlags(boolean)} opts in to the full flags.
+ */
+@ToString
+@Builder(builderClassName = "Builder", toBuilder = true)
+public class ImageLabels {
+
+  public static final String LABEL_PREFIX = "tw.com.softleader.jib.jvm-flags.";
+
+  /** Longer flag strings are only labeled by their digest */
+  static final int MAX_FLAGS_LENGTH = 1024;
+
+  static final String VERSION_RESOURCE = "jib-jvm-flags-extension.properties";
+
+  /** The flags of the jvm flags file */
+  @Singular private final List<String> jvmFlags;
+
+  /** Whether to label the full flags, not only their digest */
+  private final boolean includeFlags;
+
+  private final String profile;
+  @Singular private final List<String> flagSets;
+  private final Integer targetJdk;
+  private final String cdsMode;
+
+  /** Names of the layers the extension added */
+  @Singular private final List<String> layers;
+
+  /** File names of the agents the extension added */
+  @Singular private final List<String> agents;
+
+  public static final class Builder {}
+
+  public Map<String, String> create() throws JibPluginExtensionException {
+    var labels = new LinkedHashMap<String, String>();
+    var flags = String.join(" ", jvmFlags);
+    labels.put(LABEL_PREFIX + "digest", "sha256:" + Hashing.sha256().hashString(flags, UTF_8));
+    if (includeFlags && flags.length() <= MAX_FLAGS_LENGTH) {
+      labels.put(LABEL_PREFIX + "flags", flags);
+    }
+    var parsed =
+        JvmFlags.parse(jvmFlags).stream()
+            .collect(Collectors.toMap(JvmFlag::getKey, Function.identity(), (a, b) -> b));
+    labels.put(LABEL_PREFIX + "gc", getGc(parsed));
+    labels.put(LABEL_PREFIX + "heap", getHeap(parsed));
+    putIfNotEmpty(labels, "profile", profile);
+    putIfNotEmpty(labels, "flag-sets", flagSets);
+    putIfNotEmpty(labels, "target-jdk", targetJdk == null ? null : String.valueOf(targetJdk));
+    putIfNotEmpty(labels, "cds", cdsMode);
+    putIfNotEmpty(labels, "layers", layers);
+    putIfNotEmpty(labels, "agents", agents);
+    labels.put(LABEL_PREFIX + "version", getVersion());
+    return labels;
+  }
+
+  /** Collector without the {@code Use} prefix, such as {@code G1GC} */
+  static String getGc(Map<String, JvmFlag> flags) {
+    var gc = flags.get(JvmFlag.KEY_GC);
+    if (gc == null || !gc.isEnabled()) {
+      return "default";
+    }
+    return gc.getName().replaceFirst("^Use", "");
+  }
+
+  /** Max heap as configured, such as {@code 2g} or {@code 75%} */
+  static String getHeap(Map<String, JvmFlag> flags) {
+    for (var key : List.of("-Xmx", "-XX:MaxHeapSize")) {
+      if (flags.containsKey(key)) {
+        return flags.get(key).getArgument().toLowerCase(Locale.ROOT);
+      }
+    }
+    if (flags.containsKey("-XX:MaxRAMPercentage")) {
+      return flags.get("-XX:MaxRAMPercentage").getArgument() + "%";
+    }
+    return "default";
+  }
+
+  private static void putIfNotEmpty(Map<String, String> labels, String name, String value) {
+    if (value != null && !value.isBlank()) {
+      labels.put(LABEL_PREFIX + name, value);
+    }
+  }
+
+  private static void putIfNotEmpty(
+      Map<String, String> labels, String name, Collection<String> values) {
+    putIfNotEmpty(labels, name, String.join(",", values));
+  }
+
+  /** Version of the extension, filtered into {@value #VERSION_RESOURCE} by the build */
+  static String getVersion() throws JibPluginExtensionException {
+    try (var in = ImageLabels.class.getResourceAsStream(VERSION_RESOURCE)) {
+      if (in == null) {
+        return "unknown";
+      }
+      var properties = new Properties();
+      properties.load(in);
+      return properties.getProperty("version", "unknown");
+    } catch (IOException e) {
+      throw new JibPluginExtensionException(
+          JvmFlagsExtension.class,
+          "Unable to read the extension version from " + VERSION_RESOURCE,
+          e);
+    }
+  }
+}
@@ -0,0 +1,296 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel.DEBUG;
+import static com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel.LIFECYCLE;
+import static com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel.WARN;
+import static java.lang.String.format;
+import static tw.com.softleader.cloud.tools.jib.maven.JvmFlagsExtension.*;
+
+import com.google.cloud.tools.jib.api.buildplan.ContainerBuildPlan;
+import com.google.cloud.tools.jib.api.buildplan.FileEntriesLayer;
+import com.google.cloud.tools.jib.api.buildplan.FileEntry;
+import com.google.cloud.tools.jib.api.buildplan.LayerObject;
+import com.google.cloud.tools.jib.plugins.extension.ExtensionLogger;
+import com.google.cloud.tools.jib.plugins.extension.JibPluginExtensionException;
+import com.google.common.annotations.VisibleForTesting;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Writes the flags into the jvm flags and launcher layers, and puts all layers of the extension
+ * together with the linked runtime and the labels into the plan.
+ */
+@UtilityClass
+class ImagePhase {
+
+  /** Layers holding a few small files, which may be merged into another layer */
+  private static final Set<String> MERGEABLE_LAYERS =
+      Set.of(JvmFlagsLayerPlan.LAYER_JVM_FLAGS, LauncherLayerPlan.LAYER_LAUNCHER);
+
+  /**
+   * @return the plan extended with the layers and labels
+   */
+  ContainerBuildPlan apply(@NonNull ExtensionContext context)
+      throws IOException, JibPluginExtensionException {
+    var properties = context.getProperties();
+    var logger = context.getLogger();
+    var layers = context.getLayers();
+    layers.add(0, createJvmFlagsLayer(context));
+    if (isLauncher(properties)) {
+      layers.add(
+          1,
+          LauncherLayerPlan.builder()
+              .logger(logger)
+              .buildDir(context.getBuildDir())
+              .projectId(context.getProjectId())
+              .jvmFlags(context.getJvmFlags())
+              .flagSets(context.getFlagSets())
+              .architectureVariants(context.getArchitectureVariants())
+              .classpathFilename(
+                  context.getOrderedClasspath().isEmpty()
+                      ? BuildPlanFiles.JIB_CLASSPATH_FILE
+                      : ClasspathOrder.ORDERED_CLASSPATH_FILE)
+              .jvmFlagsFilename(
+                  getFilename(properties)
+                      .map(StringUtils::trimToNull)
+                      .orElse(JvmFlagsLayerPlan.JIB_JVM_FLAGS_FILE))
+              .build()
+              .create(context.getAppRoot()));
+    }
+    context.getReport().lap("layers");
+    var extended = placeLayers(context.getBuildPlan(), layers, properties, logger);
+    if (context.getRuntime().isPresent()) {
+      extended = useRuntime(extended, context.getRuntime().get(), logger);
+    }
+    if (isLabels(properties)) {
+      extended = addLabels(context, extended);
+    }
+    return extended;
+  }
+
+  private FileEntriesLayer createJvmFlagsLayer(ExtensionContext context)
+      throws IOException, JibPluginExtensionException {
+    var properties = context.getProperties();
+    var appRoot = context.getAppRoot();
+    var orderedClasspath = context.getOrderedClasspath();
+    JvmFlagsLayerPlan.Builder plan =
+        JvmFlagsLayerPlan.builder()
+            .logger(context.getLogger())
+            .buildDir(context.getBuildDir())
+            .projectId(context.getProjectId());
+    context.getVariants().forEach(plan::variant);
+    plan.jvmFlags(context.getJvmFlags())
+        .orderedClasspath(orderedClasspath)
+        .compileCommands(context.getCompileCommands());
+    if (isLauncher(properties)) {
+      if (getSeparator(properties).isPresent()) {
+        context
+            .getLogger()
+            .log(
+                WARN,
+                format(
+                    "Ignoring %s, the launcher reads the flags file as an @argfile with one flag"
+                        + " per line",
+                    PROPERTY_SEPARATOR));
+      }
+      plan.argFile(true);
+    } else {
+      getSeparator(properties).ifPresent(plan::separator);
+    }
+    getFilename(properties).map(StringUtils::trimToNull).ifPresent(plan::filename);
+    getMode(properties).map(StringUtils::trimToNull).ifPresent(plan::mode);
+    if (isLaunchFile(properties)) {
+      var files = BuildPlanFiles.of(context.getBuildPlan());
+      plan.classpath(orderedClasspath.isEmpty() ? files.getClasspath(appRoot) : orderedClasspath)
+          .mainClass(
+              files
+                  .getMainClass(appRoot)
+                  .orElseThrow(
+                      () -> new IOException("Unable to determine the main class of the app")));
+    }
+    return plan.build().create(appRoot);
+  }
+
+  private ContainerBuildPlan addLabels(ExtensionContext context, ContainerBuildPlan plan)
+      throws JibPluginExtensionException {
+    var properties = context.getProperties();
+    var layers = context.getLayers();
+    var cdsMode = getCdsMode(properties);
+    var labels =
+        ImageLabels.builder()
+            .jvmFlags(context.getJvmFlags())
+            .includeFlags(isLabelFlags(properties))
+            .profile(context.getProfile().map(p -> p.name().toLowerCase(Locale.ROOT)).orElse(null))
+            .flagSets(context.getFlagSets().keySet())
+            .targetJdk(
+                context.getTargetJdk().isPresent() ? context.getTargetJdk().getAsInt() : null)
+            .cdsMode(cdsMode == CdsMode.NONE ? null : cdsMode.name().toLowerCase(Locale.ROOT))
+            .layers(layers.stream().map(LayerObject::getName).collect(Collectors.toList()))
+            .agents(
+                layers.stream()
+                    .filter(layer -> AgentLayerPlan.LAYER_AGENTS.equals(layer.getName()))
+                    .flatMap(layer -> layer.getEntries().stream())
+                    .map(entry -> entry.getSourceFile().getFileName().toString())
+                    .collect(Collectors.toList()))
+            .build()
+            .create();
+    context.getLogger().log(DEBUG, format("Adding labels %s", labels));
+    var labeled = plan.toBuilder();
+    labels.forEach(labeled::addLabel);
+    return labeled.build();
+  }
+
+  /**
+   * Put the layers created by the extension into the plan. The small jvm flags and launcher layers
+   * can be merged into an existing layer to save a layer, the remaining ones are inserted at the
+   * configured position, by default after all layers of the plan.
+   */
+  @VisibleForTesting
+  ContainerBuildPlan placeLayers(
+      @NonNull ContainerBuildPlan buildPlan,
+      @NonNull List<FileEntriesLayer> layers,
+      @NonNull Map<String, String> properties,
+      @NonNull ExtensionLogger logger)
+      throws JibPluginExtensionException {
+    var planLayers = new ArrayList<LayerObject>(buildPlan.getLayers());
+    var added = new ArrayList<>(layers);
+    // the Java runtime changes least of all layers, so it goes below the layers of the plan
+    var runtime =
+        added.stream()
+            .filter(layer -> RuntimeLayerPlan.LAYER_RUNTIME.equals(layer.getName()))
+            .collect(Collectors.toList());
+    added.removeAll(runtime);
+    var mergeInto = getMergeIntoLayer(properties);
+    if (mergeInto.isPresent()) {
+      var index = indexOfLayer(planLayers, mergeInto.get());
+      if (index < 0 || !(planLayers.get(index) instanceof FileEntriesLayer)) {
+        throw new JibPluginExtensionException(
+            JvmFlagsExtension.class,
+            format(
+                "Layer '%s' to merge into is not a file layer of the build plan, layers are %s",
+                mergeInto.get(), getLayerNames(planLayers)));
+      }
+      var merged =
+          added.stream()
+              .filter(layer -> MERGEABLE_LAYERS.contains(layer.getName()))
+              .collect(Collectors.toList());
+      var mergedEntries =
+          merged.stream()
+              .flatMap(layer -> layer.getEntries().stream())
+              .collect(Collectors.toList());
+      var mergedPaths =
+          mergedEntries.stream().map(FileEntry::getExtractionPath).collect(Collectors.toSet());
+      var target = (FileEntriesLayer) planLayers.get(index);
+      var entries =
+          target.getEntries().stream()
+              .filter(entry -> !mergedPaths.contains(entry.getExtractionPath()))
+              .collect(Collectors.toCollection(ArrayList::new));
+      entries.addAll(mergedEntries);
+      planLayers.set(index, target.toBuilder().setEntries(entries).build());
+      added.removeAll(merged);
+      merged.forEach(
+          layer ->
+              logger.log(
+                  LIFECYCLE,
+                  format("Merging '%s' layer into '%s' layer", layer.getName(), mergeInto.get())));
+    }
+    planLayers.addAll(getLayerIndex(getLayerPosition(properties), planLayers), added);
+    planLayers.addAll(0, runtime);
+    return buildPlan.toBuilder().setLayers(planLayers).build();
+  }
+
+  /**
+   * @return index in {@code planLayers} for {@code first}, {@code last}, {@code before:<layer>},
+   *     {@code after:<layer>} or a zero-based index
+   */
+  private int getLayerIndex(String position, List<LayerObject> planLayers)
+      throws JibPluginExtensionException {
+    if ("first".equals(position)) {
+      return 0;
+    }
+    if ("last".equals(position)) {
+      return planLayers.size();
+    }
+    if (position.matches("\\d{1,9}")) {
+      return Math.min(Integer.parseInt(position), planLayers.size());
+    }
+    var relative = position.split(":", 2);
+    if (relative.length == 2 && ("before".equals(relative[0]) || "after".equals(relative[0]))) {
+      var index = indexOfLayer(planLayers, relative[1]);
+      if (index < 0) {
+        throw new JibPluginExtensionException(
+            JvmFlagsExtension.class,
+            format(
+                "Layer '%s' of %s '%s' is not in the build plan, layers are %s",
+                relative[1], PROPERTY_LAYER_POSITION, position, getLayerNames(planLayers)));
+      }
+      return "before".equals(relative[0]) ? index : index + 1;
+    }
+    throw invalidProperty(
+        PROPERTY_LAYER_POSITION,
+        position,
+        "first, last, before:<layer>, after:<layer> or an index");
+  }
+
+  private int indexOfLayer(List<LayerObject> layers, String name) {
+    for (int i = 0; i < layers.size(); i++) {
+      if (name.equals(layers.get(i).getName())) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private List<String> getLayerNames(List<LayerObject> layers) {
+    return layers.stream().map(LayerObject::getName).collect(Collectors.toList());
+  }
+
+  /**
+   * Point {@code JAVA_HOME} and a default {@code java} entrypoint at the linked runtime, the
+   * launcher picks the runtime up through {@code JAVA_HOME}
+   */
+  @VisibleForTesting
+  ContainerBuildPlan useRuntime(
+      @NonNull ContainerBuildPlan buildPlan,
+      @NonNull RuntimeLayerPlan.Runtime runtime,
+      @NonNull ExtensionLogger logger) {
+    var builder =
+        buildPlan.toBuilder().addEnvironmentVariable("JAVA_HOME", runtime.getPath().toString());
+    var entrypoint = buildPlan.getEntrypoint();
+    if (entrypoint != null && !entrypoint.isEmpty() && "java".equals(entrypoint.get(0))) {
+      var replaced = new ArrayList<>(entrypoint);
+      replaced.set(0, runtime.getJava().toString());
+      logger.log(LIFECYCLE, format("Using '%s' in the entrypoint", replaced.get(0)));
+      builder.setEntrypoint(replaced);
+    }
+    return builder.build();
+  }
+}
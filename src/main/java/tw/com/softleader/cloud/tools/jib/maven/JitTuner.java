@@ -0,0 +1,386 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel.DEBUG;
+import static com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel.LIFECYCLE;
+import static com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel.WARN;
+import static java.lang.String.format;
+
+import com.google.cloud.tools.jib.api.buildplan.AbsoluteUnixPath;
+import com.google.cloud.tools.jib.api.buildplan.ContainerBuildPlan;
+import com.google.cloud.tools.jib.plugins.extension.ExtensionLogger;
+import com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Singular;
+import lombok.ToString;
+import lombok.Value;
+
+/**
+ * Tunes the JIT compiler from a training run with compilation logging and {@code
+ * -XX:+PrintCodeCache}: sizes the code cache from what the compiled code used, and writes a {@value
+ * #COMPILE_COMMAND_FILE} inlining hot methods of the app and reporting methods which thrashed
+ * between compilation and deoptimization.
+ */
+@ToString
+@Builder(builderClassName = "Builder", toBuilder = true)
+public class JitTuner {
+
+  public static final String OUTPUT_DIRECTORY = "jit";
+  public static final String COMPILE_COMMAND_FILE = "jib-compile-commands";
+  public static final String COMPILATION_LOG = "jib-compilation.log";
+  public static final String TRAINING_LOG = "jib-jit-training.log";
+
+  /** Code cache sized as a multiple of the peak usage, a training run compiles less than prod */
+  static final int HEADROOM = 2;
+
+  /**
+   * Times the optimized code of a method may be thrown away before the method is reported as
+   * thrashing, well below the {@code PerMethodRecompilationCutoff} of 400 where the JVM stops
+   * compiling it
+   */
+  static final int THRASH_THRESHOLD = 5;
+
+  /** Comment prefix of the methods reported as thrashing in the {@value #COMPILE_COMMAND_FILE} */
+  static final String THRASHING = "# thrashing: ";
+
+  /** Hot methods inlined at most */
+  static final int MAX_INLINE = 50;
+
+  /**
+   * C2 inlines methods up to {@code MaxInlineSize} bytes anyway, and hot ones up to {@code
+   * FreqInlineSize}
+   */
+  static final int MAX_INLINE_SIZE = 35;
+
+  static final int FREQ_INLINE_SIZE = 325;
+
+  static final Set<String> CODE_CACHE_KEYS =
+      Set.of(
+          "-XX:ReservedCodeCacheSize",
+          "-XX:NonNMethodCodeHeapSize",
+          "-XX:ProfiledCodeHeapSize",
+          "-XX:NonProfiledCodeHeapSize",
+          "-XX:SegmentedCodeCache");
+
+  /** Minimum sizes in MiB by code heap, summing up to 64 MiB */
+  private static final Map<String, Long> MINIMUM_SIZES =
+      Map.of("non-nmethods", 8L, "profiled nmethods", 24L, "non-profiled nmethods", 32L);
+
+  private static final Map<String, String> CODE_HEAP_FLAGS =
+      Map.of(
+          "non-nmethods", "-XX:NonNMethodCodeHeapSize",
+          "profiled nmethods", "-XX:ProfiledCodeHeapSize",
+          "non-profiled nmethods", "-XX:NonProfiledCodeHeapSize");
+
+  private static final Pattern CODE_HEAP =
+      Pattern.compile(
+          "^(?:CodeHeap '([^']+)'|CodeCache): size=(\\d+)Kb used=(\\d+)Kb max_used=(\\d+)Kb.*");
+  private static final Pattern FULL_COUNT = Pattern.compile("^\\s*full_count=(\\d+).*");
+
+  /**
+   * {@code -Xlog:jit+compilation=debug} line, such as {@code 30 % 4 com.example.App::run @ 5 (100
+   * bytes)}
+   */
+  private static final Pattern COMPILATION =
+      Pattern.compile(
+          "\\s+(\\d+)\\s+([%sbn! ]*?)\\s*(\\d)\\s+(\\S+)::(\\S+)( @ \\d+)?\\s+\\((\\d+) bytes\\)(.*)$");
+
+  /** Classes of the JDK, which is tuned by the JDK already */
+  private static final Pattern JDK_CLASS = Pattern.compile("^(java|javax|jdk|sun|com\\.sun)\\..*");
+
+  @ToString.Exclude private final ExtensionLogger logger;
+
+  @NonNull @lombok.Builder.Default
+  private final Path buildDir = Paths.get(System.getProperty("java.io.tmpdir"));
+
+  private final String projectId;
+
+  @NonNull @lombok.Builder.Default
+  private final Path javaHome = Paths.get(System.getProperty("java.home"));
+
+  /** JVM flags the app is trained with, code cache flags among them are kept */
+  @Singular private final List<String> jvmFlags;
+
+  @Singular private final List<String> trainingArgs;
+  @NonNull @lombok.Builder.Default private final Duration trainingTimeout = Duration.ofSeconds(60);
+
+  /** Shell command exercising the app during the training run */
+  private final String workload;
+
+  public static final class Builder {}
+
+  /**
+   * @param appRoot app root in the container
+   * @return the flag pointing the JVM at the compile commands in the container
+   */
+  public static String getJvmFlag(@NonNull AbsoluteUnixPath appRoot) {
+    return "-XX:CompileCommandFile=" + appRoot.resolve(COMPILE_COMMAND_FILE);
+  }
+
+  /**
+   * Train the app of {@code buildPlan} and tune the JIT from what it compiled
+   *
+   * @param buildPlan plan providing the classpath and main class of the app
+   * @param appRoot app root in the container
+   */
+  public Result tune(@NonNull ContainerBuildPlan buildPlan, @NonNull AbsoluteUnixPath appRoot)
+      throws IOException {
+    log(DEBUG, "Tuning JIT with %s", this);
+    var cacheDir = CacheFiles.directory(buildDir, projectId);
+    var app = StagedApp.of(buildPlan, appRoot).stage(cacheDir);
+    var outputDir = Files.createDirectories(cacheDir.resolve(OUTPUT_DIRECTORY));
+    var compilationLog = outputDir.resolve(COMPILATION_LOG);
+    var trainingLog = outputDir.resolve(TRAINING_LOG);
+    Files.deleteIfExists(compilationLog);
+
+    var result =
+        app.trainingRun(
+                jvmFlags.stream()
+                    .filter(flag -> !flag.startsWith("-XX:CompileCommandFile="))
+                    .collect(Collectors.toList()))
+            .logger(logger)
+            .javaHome(javaHome)
+            .jvmFlag("-Xlog:jit+compilation=debug:file=" + compilationLog)
+            .jvmFlag("-XX:+PrintCodeCache")
+            .args(trainingArgs)
+            .timeout(trainingTimeout)
+            .workload(workload)
+            .logFile(trainingLog)
+            .build()
+            .run();
+    var codeCache = readCodeCache(trainingLog);
+    if (codeCache.getHeaps().isEmpty() || Files.notExists(compilationLog)) {
+      throw new IOException(
+          format(
+              "Training run exited with %s but printed no code cache statistics, see %s",
+              result.getExitCode(), trainingLog));
+    }
+    if (codeCache.getFullCount() > 0) {
+      log(
+          WARN,
+          "Code cache was full %s times during the training run, compilation stopped meanwhile",
+          codeCache.getFullCount());
+    }
+    log(LIFECYCLE, "Peak code cache usage in KB by code heap: %s", codeCache.getHeaps());
+
+    var flags = getCodeCacheFlags(codeCache, jvmFlags);
+    var compilations = readCompilations(compilationLog);
+    var commands = getCompileCommands(compilations);
+    log(
+        LIFECYCLE,
+        "JIT tuned with %s, %s methods to inline and %s methods thrashing",
+        flags,
+        commands.stream().filter(command -> command.startsWith("inline ")).count(),
+        commands.stream().filter(command -> command.startsWith(THRASHING)).count());
+    return new Result(flags, commands);
+  }
+
+  /** Peak usage of each code heap, as printed by {@code -XX:+PrintCodeCache} at exit */
+  static CodeCache readCodeCache(Path trainingLog) throws IOException {
+    var heaps = new LinkedHashMap<String, Long>();
+    long fullCount = 0;
+    if (Files.notExists(trainingLog)) {
+      return new CodeCache(heaps, fullCount);
+    }
+    try (Stream<String> lines = Files.lines(trainingLog)) {
+      for (var line : (Iterable<String>) lines::iterator) {
+        var heap = CODE_HEAP.matcher(line);
+        if (heap.matches()) {
+          heaps.put(heap.group(1) == null ? "" : heap.group(1), Long.parseLong(heap.group(4)));
+        }
+        var full = FULL_COUNT.matcher(line);
+        if (full.matches()) {
+          fullCount = Long.parseLong(full.group(1));
+        }
+      }
+    }
+    return new CodeCache(heaps, fullCount);
+  }
+
+  /**
+   * Size each code heap to {@link #HEADROOM} times its peak usage, and the reserved code cache to
+   * their sum. A code cache configured in {@code configured} is kept, with a warning when it is
+   * smaller than the peak usage with headroom.
+   */
+  static List<String> getCodeCacheFlags(CodeCache codeCache, List<String> configured) {
+    var keys = JvmFlags.parse(configured).stream().map(JvmFlag::getKey).collect(Collectors.toSet());
+    if (keys.stream().anyMatch(CODE_CACHE_KEYS::contains)) {
+      return List.of();
+    }
+    var flags = new ArrayList<String>();
+    if (codeCache.getHeaps().containsKey("")) {
+      var size = Math.max(toMiB(codeCache.getHeaps().get("") * HEADROOM), 64);
+      flags.add(format("-XX:ReservedCodeCacheSize=%sm", size));
+      return flags;
+    }
+    // below 240m the JVM only segments the code cache when asked to
+    flags.add("-XX:+SegmentedCodeCache");
+    long reserved = 0;
+    for (var heap : CODE_HEAP_FLAGS.keySet().stream().sorted().collect(Collectors.toList())) {
+      var size =
+          Math.max(
+              toMiB(codeCache.getHeaps().getOrDefault(heap, 0L) * HEADROOM),
+              MINIMUM_SIZES.get(heap));
+      reserved += size;
+      flags.add(format("%s=%sm", CODE_HEAP_FLAGS.get(heap), size));
+    }
+    flags.add(1, format("-XX:ReservedCodeCacheSize=%sm", reserved));
+    return flags;
+  }
+
+  /** KB rounded up to MiB */
+  private static long toMiB(long kb) {
+    return (kb + 1023) / 1024;
+  }
+
+  /** Compilations of each method, from a {@code -Xlog:jit+compilation=debug} log */
+  static Map<String, Compilation> readCompilations(Path compilationLog) throws IOException {
+    var compilations = new LinkedHashMap<String, Compilation>();
+    try (Stream<String> lines = Files.lines(compilationLog)) {
+      for (var line : (Iterable<String>) lines::iterator) {
+        var matcher = COMPILATION.matcher(line);
+        if (!matcher.find() || matcher.group(6) != null || matcher.group(2).contains("n")) {
+          continue;
+        }
+        var tier = Integer.parseInt(matcher.group(3));
+        var method = matcher.group(4) + "::" + matcher.group(5);
+        var compilation =
+            compilations.computeIfAbsent(
+                method,
+                m ->
+                    new Compilation(
+                        matcher.group(4), matcher.group(5), Integer.parseInt(matcher.group(7))));
+        if (tier == 4 && matcher.group(8).contains("made not entrant")) {
+          compilation.deoptimized++;
+        } else if (tier == 4 && compilation.optimizedAt < 0) {
+          compilation.optimizedAt = Integer.parseInt(matcher.group(1));
+        }
+      }
+    }
+    return compilations;
+  }
+
+  /**
+   * Commands for {@code -XX:CompileCommandFile}: inline the first methods of the app optimized by
+   * C2 which are too large to be inlined by default, and note methods of the app whose optimized
+   * code was thrown away {@link #THRASH_THRESHOLD} times or more. Those are only reported, the
+   * deoptimizations of a training run may well settle in production, and excluding a method would
+   * leave it interpreted for good.
+   */
+  static List<String> getCompileCommands(Map<String, Compilation> compilations) {
+    var commands = new ArrayList<String>();
+    commands.add("# Generated from a training run by the JVM flags extension");
+    commands.add("quiet");
+    var app =
+        compilations.values().stream()
+            .filter(c -> !JDK_CLASS.matcher(c.getClassName()).matches())
+            .filter(c -> !c.getClassName().contains("$$Lambda") && !c.getClassName().contains("/"))
+            .collect(Collectors.toList());
+    app.stream()
+        .filter(c -> c.deoptimized >= THRASH_THRESHOLD)
+        .forEach(
+            c ->
+                commands.add(
+                    format(
+                        "%s%s, optimized code thrown away %s times",
+                        THRASHING, c.getMethod(), c.deoptimized)));
+    app.stream()
+        .filter(c -> c.deoptimized < THRASH_THRESHOLD && c.optimizedAt >= 0)
+        .filter(c -> c.getSize() > MAX_INLINE_SIZE && c.getSize() <= FREQ_INLINE_SIZE)
+        .sorted(Comparator.comparingInt(c -> c.optimizedAt))
+        .limit(MAX_INLINE)
+        .forEach(c -> commands.add("inline " + c.getMethod()));
+    return commands;
+  }
+
+  private void log(LogLevel level, String message, Object... args) {
+    if (logger != null) {
+      logger.log(level, format(message, args));
+    }
+  }
+
+  @Value
+  static class CodeCache {
+    /** Peak usage in KB by code heap name, a single unnamed heap without segmented code cache */
+    Map<String, Long> heaps;
+
+    /** Times the code cache was full */
+    long fullCount;
+  }
+
+  @ToString
+  static class Compilation {
+    final String className;
+    final String methodName;
+
+    /** Bytecode size */
+    final int size;
+
+    /** Compile id of the first C2 compilation, -1 when never optimized */
+    int optimizedAt = -1;
+
+    /** Times the C2 code was made not entrant */
+    int deoptimized;
+
+    Compilation(String className, String methodName, int size) {
+      this.className = className;
+      this.methodName = methodName;
+      this.size = size;
+    }
+
+    String getClassName() {
+      return className;
+    }
+
+    int getSize() {
+      return size;
+    }
+
+    String getMethod() {
+      return className + "::" + methodName;
+    }
+  }
+
+  @Value
+  public static class Result {
+    /** Code cache flags, empty when the code cache is configured already */
+    List<String> jvmFlags;
+
+    /** Content of the {@value #COMPILE_COMMAND_FILE} */
+    List<String> compileCommands;
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import lombok.experimental.UtilityClass;
+
+/**
+ * Minimal JSON writer for the reports the extension generates, supporting maps, collections,
+ * strings, numbers, booleans and {@code null}.
+ */
+@UtilityClass
+class Json {
+
+  /**
+   * @return {@code value} as pretty printed JSON, maps keep their iteration order
+   */
+  String write(Object value) {
+    var json = new StringBuilder();
+    write(json, value, "");
+    return json.append('\n').toString();
+  }
+
+  private void write(StringBuilder json, Object value, String indent) {
+    if (value == null) {
+      json.append("null");
+    } else if (value instanceof Map) {
+      writeMap(json, (Map<?, ?>) value, indent);
+    } else if (value instanceof Collection) {
+      writeCollection(json, (Collection<?>) value, indent);
+    } else if (value instanceof Number || value instanceof Boolean) {
+      json.append(value);
+    } else {
+      writeString(json, value.toString());
+    }
+  }
+
+  private void writeMap(StringBuilder json, Map<?, ?> map, String indent) {
+    if (map.isEmpty()) {
+      json.append("{}");
+      return;
+    }
+    var inner = indent + "  ";
+    json.append("{\n");
+    for (Iterator<? extends Map.Entry<?, ?>> it = map.entrySet().iterator(); it.hasNext(); ) {
+      var entry = it.next();
+      json.append(inner);
+      writeString(json, String.valueOf(entry.getKey()));
+      json.append(": ");
+      write(json, entry.getValue(), inner);
+      json.append(it.hasNext() ? ",\n" : "\n");
+    }
+    json.append(indent).append('}');
+  }
+
+  private void writeCollection(StringBuilder json, Collection<?> values, String indent) {
+    if (values.isEmpty()) {
+      json.append("[]");
+      return;
+    }
+    var inner = indent + "  ";
+    json.append("[\n");
+    for (Iterator<?> it = values.iterator(); it.hasNext(); ) {
+      json.append(inner);
+      write(json, it.next(), inner);
+      json.append(it.hasNext() ? ",\n" : "\n");
+    }
+    json.append(indent).append(']');
+  }
+
+  private void writeString(StringBuilder json, String value) {
+    json.append('"');
+    for (char c : value.toCharArray()) {
+      switch (c) {
+        case '"':
+          json.append("\\\"");
+          break;
+        case '\\':
+          json.append("\\\\");
+          break;
+        case '\n':
+          json.append("\\n");
+          break;
+        case '\r':
+          json.append("\\r");
+          break;
+        case '\t':
+          json.append("\\t");
+          break;
+        default:
+          if (c < 0x20) {
+            json.append(String.format("\\u%04x", (int) c));
+          } else {
+            json.append(c);
+          }
+      }
+    }
+    json.append('"');
+  }
+}
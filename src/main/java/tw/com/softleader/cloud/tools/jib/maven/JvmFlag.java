@@ -0,0 +1,187 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import java.util.Locale;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.regex.Pattern;
+import lombok.NonNull;
+import lombok.Value;
+
+/**
+ * A single JVM flag, parsed into the setting it controls so that flags overriding each other can be
+ * told apart from flags that merely look different.
+ */
+@Value
+public class JvmFlag {
+
+  /** Key shared by all garbage collector selectors, a JVM runs with exactly one of them */
+  public static final String KEY_GC = "-XX:+Use*GC";
+
+  static final Set<String> GC_SELECTORS =
+      Set.of(
+          "UseSerialGC",
+          "UseParallelGC",
+          "UseG1GC",
+          "UseZGC",
+          "UseShenandoahGC",
+          "UseEpsilonGC",
+          "UseConcMarkSweepGC");
+
+  /** Standard options whose value may follow as a separate flag, e.g. {@code --add-opens A} */
+  private static final Set<String> SEPARATE_VALUE_OPTIONS =
+      Set.of(
+          "--add-opens",
+          "--add-exports",
+          "--add-reads",
+          "--add-modules",
+          "--limit-modules",
+          "--module-path",
+          "-p",
+          "--upgrade-module-path",
+          "--patch-module");
+
+  private static final Set<String> SIZE_OPTIONS = Set.of("-Xmx", "-Xms", "-Xmn", "-Xss");
+  private static final Pattern SIZE = Pattern.compile("(\\d+)([kmgt]?)");
+
+  public enum Type {
+    /** Standard options such as {@code -ea}, {@code -javaagent:} or {@code --add-opens} */
+    STANDARD,
+    /** Extra options such as {@code -Xmx512m} or {@code -Xlog:gc} */
+    EXTRA,
+    /** {@code -XX:+Name} or {@code -XX:-Name} */
+    ADVANCED_BOOLEAN,
+    /** {@code -XX:Name=value} */
+    ADVANCED_VALUE,
+    /** {@code -Dname=value} */
+    SYSTEM_PROPERTY
+  }
+
+  /** The flag as configured */
+  @NonNull String text;
+
+  @NonNull Type type;
+
+  /**
+   * Option name, without {@code -XX:} and sign for advanced options, without {@code -D} for system
+   * properties
+   */
+  @NonNull String name;
+
+  /**
+   * Argument of the option: {@code true} or {@code false} for boolean options, the value after
+   * {@code =} or {@code :} otherwise, {@code null} when the flag has none
+   */
+  String argument;
+
+  /** Flags with the same key configure the same setting, the last one wins on the JVM */
+  @NonNull String key;
+
+  public static JvmFlag parse(@NonNull String value) {
+    var flag = value.trim();
+    if (flag.startsWith("-XX:+") || flag.startsWith("-XX:-")) {
+      var name = flag.substring(5);
+      return new JvmFlag(
+          flag,
+          Type.ADVANCED_BOOLEAN,
+          name,
+          String.valueOf(flag.charAt(4) == '+'),
+          GC_SELECTORS.contains(name) ? KEY_GC : "-XX:" + name);
+    }
+    if (flag.startsWith("-XX:")) {
+      var name = substringBefore(flag.substring(4), '=');
+      return new JvmFlag(flag, Type.ADVANCED_VALUE, name, substringAfter(flag, '='), "-XX:" + name);
+    }
+    if (flag.startsWith("-D")) {
+      var name = substringBefore(flag.substring(2), '=');
+      var argument = substringAfter(flag, '=');
+      return new JvmFlag(
+          flag, Type.SYSTEM_PROPERTY, name, argument == null ? "" : argument, "-D" + name);
+    }
+    if (flag.length() > 4 && SIZE_OPTIONS.contains(flag.substring(0, 4))) {
+      var name = flag.substring(0, 4);
+      return new JvmFlag(flag, Type.EXTRA, name, flag.substring(4), name);
+    }
+    if (flag.startsWith("-Xshare:")) {
+      return new JvmFlag(flag, Type.EXTRA, "-Xshare", flag.substring(8), "-Xshare");
+    }
+    if (flag.startsWith("-X")) {
+      return new JvmFlag(flag, Type.EXTRA, flag, null, flag);
+    }
+    var separator = flag.startsWith("--") ? '=' : ':';
+    return new JvmFlag(
+        flag,
+        Type.STANDARD,
+        substringBefore(flag, separator),
+        substringAfter(flag, separator),
+        flag);
+  }
+
+  /**
+   * @return whether this flag sets a single keyed value, such as {@code -XX:}, {@code -D}, heap and
+   *     stack sizes or {@code -Xshare:}, so a later flag of the same key overrides it
+   */
+  public boolean isSetting() {
+    return type != Type.STANDARD && (type != Type.EXTRA || argument != null);
+  }
+
+  /**
+   * @return whether the value of this option is the next flag, as in {@code --add-opens A}
+   */
+  public boolean takesSeparateValue() {
+    return type == Type.STANDARD && argument == null && SEPARATE_VALUE_OPTIONS.contains(text);
+  }
+
+  /**
+   * @return whether this is a boolean option switched on
+   */
+  public boolean isEnabled() {
+    return type == Type.ADVANCED_BOOLEAN && Boolean.parseBoolean(argument);
+  }
+
+  /**
+   * @return the argument as a number of bytes, for sizes like {@code 512m}
+   */
+  public OptionalLong getSize() {
+    return argument == null ? OptionalLong.empty() : parseSize(argument);
+  }
+
+  /** Parse a JVM memory size such as {@code 1g}, {@code 512M} or {@code 1048576} into bytes */
+  public static OptionalLong parseSize(@NonNull String size) {
+    var matcher = SIZE.matcher(size.trim().toLowerCase(Locale.ROOT));
+    if (!matcher.matches()) {
+      return OptionalLong.empty();
+    }
+    var unit = matcher.group(2).isEmpty() ? 0 : "kmgt".indexOf(matcher.group(2)) + 1;
+    return OptionalLong.of(Long.parseLong(matcher.group(1)) << (10 * unit));
+  }
+
+  private static String substringBefore(String text, char separator) {
+    var index = text.indexOf(separator);
+    return index < 0 ? text : text.substring(0, index);
+  }
+
+  private static String substringAfter(String text, char separator) {
+    var index = text.indexOf(separator);
+    return index < 0 ? null : text.substring(index + 1);
+  }
+}
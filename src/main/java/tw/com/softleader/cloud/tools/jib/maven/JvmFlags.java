@@ -0,0 +1,233 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static java.lang.String.format;
+
+import com.google.cloud.tools.jib.plugins.extension.JibPluginExtensionException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import lombok.NonNull;
+import lombok.Value;
+import lombok.experimental.UtilityClass;
+
+/** Operations on lists of JVM flags, in the order they are passed to the JVM. */
+@UtilityClass
+public class JvmFlags {
+
+  private static final Map<Pattern, String> GC_SPECIFIC_OPTIONS =
+      Map.of(
+          Pattern.compile("G1.+"), "UseG1GC",
+          Pattern.compile("Z[A-Z].+"), "UseZGC",
+          Pattern.compile("Shenandoah.+"), "UseShenandoahGC");
+
+  private static final Pattern PERCENTAGE = Pattern.compile("\\d+\\.?\\d*|\\.\\d+");
+
+  /**
+   * Drop settings overridden by a later flag of the same key, the way the JVM applies them. Only
+   * keyed settings are deduplicated, other flags such as repeated {@code --add-opens} are kept
+   * together with their separate value. Of the garbage collector selectors, only the last one
+   * enabled is kept.
+   */
+  public Normalized normalize(@NonNull List<String> jvmFlags) {
+    var kept = new LinkedHashMap<String, List<JvmFlag>>();
+    var selectors = new LinkedHashMap<String, JvmFlag>();
+    var conflicts = new ArrayList<String>();
+    var units = units(parse(jvmFlags));
+    for (var i = 0; i < units.size(); i++) {
+      var unit = units.get(i);
+      var flag = unit.get(0);
+      if (unit.size() > 1 || !flag.isSetting()) {
+        kept.put("#" + i, unit);
+      } else if (flag.getKey().equals(JvmFlag.KEY_GC)) {
+        addConflict(conflicts, selectors.remove(flag.getName()), flag);
+        selectors.put(flag.getName(), flag);
+        kept.remove(JvmFlag.KEY_GC);
+        kept.put(JvmFlag.KEY_GC, List.of());
+      } else {
+        var previous = kept.remove(flag.getKey());
+        addConflict(conflicts, previous == null ? null : previous.get(0), flag);
+        kept.put(flag.getKey(), unit);
+      }
+    }
+    kept.computeIfPresent(JvmFlag.KEY_GC, (key, none) -> selectGc(selectors, conflicts));
+    return new Normalized(
+        kept.values().stream()
+            .flatMap(List::stream)
+            .map(JvmFlag::getText)
+            .collect(Collectors.toList()),
+        conflicts);
+  }
+
+  /**
+   * Group options with their separate value, such as {@code --add-opens A}, every other flag alone
+   */
+  private List<List<JvmFlag>> units(List<JvmFlag> flags) {
+    var units = new ArrayList<List<JvmFlag>>();
+    for (var i = 0; i < flags.size(); i++) {
+      var flag = flags.get(i);
+      units.add(
+          flag.takesSeparateValue() && i + 1 < flags.size()
+              ? List.of(flag, flags.get(++i))
+              : List.of(flag));
+    }
+    return units;
+  }
+
+  private void addConflict(List<String> conflicts, JvmFlag previous, JvmFlag flag) {
+    if (previous != null && !previous.getText().equals(flag.getText())) {
+      conflicts.add(format("'%s' is overridden by '%s'", previous.getText(), flag.getText()));
+    }
+  }
+
+  /**
+   * The last enabled collector wins, collectors switched off besides it are redundant. Without any
+   * enabled collector, the switched off ones are kept as they are.
+   */
+  private List<JvmFlag> selectGc(Map<String, JvmFlag> selectors, List<String> conflicts) {
+    var enabled =
+        selectors.values().stream().filter(JvmFlag::isEnabled).collect(Collectors.toList());
+    if (enabled.isEmpty()) {
+      return new ArrayList<>(selectors.values());
+    }
+    var selected = enabled.get(enabled.size() - 1);
+    enabled.stream()
+        .filter(gc -> gc != selected)
+        .forEach(gc -> addConflict(conflicts, gc, selected));
+    return List.of(selected);
+  }
+
+  /**
+   * @param flag flag taking a percentage, such as {@code -XX:MaxRAMPercentage=75}
+   * @return the percentage, between 0 and 100
+   */
+  public double getPercentage(@NonNull JvmFlag flag) throws JibPluginExtensionException {
+    var argument = flag.getArgument();
+    if (argument != null && PERCENTAGE.matcher(argument).matches()) {
+      var percentage = Double.parseDouble(argument);
+      if (percentage <= 100) {
+        return percentage;
+      }
+    }
+    throw new JibPluginExtensionException(
+        JvmFlagsExtension.class,
+        format("Invalid '%s', expecting a percentage between 0 and 100", flag.getText()));
+  }
+
+  /**
+   * Settings contradicting each other within normalized flags, which the JVM either refuses or
+   * silently ignores
+   */
+  public List<String> contradictions(@NonNull List<String> jvmFlags)
+      throws JibPluginExtensionException {
+    var flags =
+        parse(jvmFlags).stream()
+            .collect(Collectors.toMap(JvmFlag::getKey, Function.identity(), (a, b) -> b));
+    var contradictions = new ArrayList<String>();
+    compareSizes(flags.get("-Xms"), flags.get("-Xmx")).ifPresent(contradictions::add);
+    compareSizes(flags.get("-XX:InitialHeapSize"), flags.get("-XX:MaxHeapSize"))
+        .ifPresent(contradictions::add);
+    var initialRam = flags.get("-XX:InitialRAMPercentage");
+    var maxRam = flags.get("-XX:MaxRAMPercentage");
+    if (initialRam != null && maxRam != null && getPercentage(initialRam) > getPercentage(maxRam)) {
+      contradictions.add(
+          format("'%s' is larger than '%s'", initialRam.getText(), maxRam.getText()));
+    }
+    Optional.ofNullable(flags.get(JvmFlag.KEY_GC))
+        .filter(JvmFlag::isEnabled)
+        .ifPresent(
+            gc ->
+                flags.values().stream()
+                    .filter(
+                        flag ->
+                            flag.getType() == JvmFlag.Type.ADVANCED_BOOLEAN
+                                || flag.getType() == JvmFlag.Type.ADVANCED_VALUE)
+                    .forEach(
+                        flag ->
+                            GC_SPECIFIC_OPTIONS.forEach(
+                                (pattern, selector) -> {
+                                  if (pattern.matcher(flag.getName()).matches()
+                                      && !selector.equals(gc.getName())) {
+                                    contradictions.add(
+                                        format(
+                                            "'%s' has no effect with '%s'",
+                                            flag.getText(), gc.getText()));
+                                  }
+                                })));
+    return contradictions;
+  }
+
+  private Optional<String> compareSizes(JvmFlag initial, JvmFlag max) {
+    if (initial == null || max == null) {
+      return Optional.empty();
+    }
+    var initialSize = initial.getSize();
+    var maxSize = max.getSize();
+    if (initialSize.isPresent()
+        && maxSize.isPresent()
+        && initialSize.getAsLong() > maxSize.getAsLong()) {
+      return Optional.of(format("'%s' is larger than '%s'", initial.getText(), max.getText()));
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * Merge defaults with explicitly configured flags, explicit flags win on conflict
+   *
+   * @return defaults not overridden by {@code explicit}, followed by {@code explicit}
+   */
+  public List<String> merge(@NonNull List<String> defaults, @NonNull List<String> explicit) {
+    var overridden =
+        units(parse(explicit)).stream()
+            .filter(unit -> unit.size() == 1)
+            .map(unit -> unit.get(0).getKey())
+            .collect(Collectors.toSet());
+    var merged = new ArrayList<String>();
+    units(parse(defaults)).stream()
+        .filter(unit -> unit.size() > 1 || !overridden.contains(unit.get(0).getKey()))
+        .flatMap(List::stream)
+        .map(JvmFlag::getText)
+        .forEach(merged::add);
+    merged.addAll(explicit);
+    return merged;
+  }
+
+  public List<JvmFlag> parse(@NonNull List<String> jvmFlags) {
+    return jvmFlags.stream()
+        .filter(flag -> !flag.isBlank())
+        .map(JvmFlag::parse)
+        .collect(Collectors.toList());
+  }
+
+  @Value
+  public static class Normalized {
+    List<String> jvmFlags;
+
+    /** Flags dropped because a later flag configures the same setting differently */
+    List<String> conflicts;
+  }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import lombok.NonNull;
+import lombok.Value;
+import lombok.experimental.UtilityClass;
+
+/**
+ * Baseline of the effective JVM flags, a file checked into the module holding one flag per line.
+ * Flags are compared by setting and value rather than by text, so {@code -Xmx1g} matches {@code
+ * -Xmx1024m} and reordered flags are no change.
+ */
+@UtilityClass
+public class JvmFlagsBaseline {
+
+  static final String HEADER =
+      "# Effective JVM flags, compared on every build. Regenerate with baselineRegenerate=true";
+
+  /** Settings whose change usually shows in latency or throughput */
+  public enum Category {
+    GC(
+        "-XX:(\\w*GC\\w*|G1\\w+|Z[A-Z]\\w+|Shenandoah\\w+|"
+            + "ParallelRefProcEnabled|UseStringDeduplication)"),
+    CDS("-Xshare|-XX:(SharedArchiveFile|ArchiveClassesAtExit|AutoCreateSharedArchive|\\w*CDS\\w*)"),
+    JIT(
+        "-Xint|-Xcomp|-XX:(\\w*Code(Cache|Heap)\\w*|CompileCommand\\w*|\\w*Compil\\w*|Tiered\\w*|"
+            + "\\w*Inline\\w*|CICompilerCount|UseJVMCI\\w*|OnStackReplace\\w*)"),
+    HEAP(
+        "-Xm[xsn]|-Xss|-XX:(\\w*RAM\\w*|(Max|Initial|Min)HeapSize|\\w*Metaspace\\w*|"
+            + "(Max)?NewSize|NewRatio|SurvivorRatio|MaxDirectMemorySize|AlwaysPreTouch|"
+            + "UseCompressedOops|ThreadStackSize|UseLargePages|UseTransparentHugePages)"),
+    OTHER(".*");
+
+    private final Pattern keys;
+
+    Category(String keys) {
+      this.keys = Pattern.compile(keys);
+    }
+
+    public boolean isCritical() {
+      return this != OTHER;
+    }
+
+    static Category of(@NonNull String key) {
+      if (key.equals(JvmFlag.KEY_GC)) {
+        return GC;
+      }
+      for (var category : values()) {
+        if (category.keys.matcher(key).matches()) {
+          return category;
+        }
+      }
+      return OTHER;
+    }
+  }
+
+  /**
+   * @return flags of {@code file}, without blank and {@code #} comment lines
+   */
+  public List<String> read(@NonNull Path file) throws IOException {
+    return Files.readAllLines(file, UTF_8).stream()
+        .map(String::trim)
+        .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Write {@code jvmFlags} to {@code file}, leaving it untouched when the content is the same
+   *
+   * @return whether the file was written
+   */
+  public boolean write(@NonNull Path file, @NonNull List<String> jvmFlags) throws IOException {
+    var content =
+        HEADER
+            + "\n"
+            + JvmFlags.normalize(jvmFlags).getJvmFlags().stream()
+                .map(flag -> flag + "\n")
+                .collect(Collectors.joining());
+    if (Files.isRegularFile(file) && Files.readString(file, UTF_8).equals(content)) {
+      return false;
+    }
+    if (file.getParent() != null) {
+      Files.createDirectories(file.getParent());
+    }
+    Files.writeString(file, content, UTF_8);
+    return true;
+  }
+
+  /**
+   * @return settings whose value differs between {@code baseline} and {@code jvmFlags}, in baseline
+   *     order followed by settings new in {@code jvmFlags}
+   */
+  public List<Change> compare(@NonNull List<String> baseline, @NonNull List<String> jvmFlags) {
+    var before = byKey(baseline);
+    var after = byKey(jvmFlags);
+    Set<String> keys = new LinkedHashSet<>(before.keySet());
+    keys.addAll(after.keySet());
+    var changes = new ArrayList<Change>();
+    for (var key : keys) {
+      var previous = before.get(key);
+      var current = after.get(key);
+      if (previous != null && current != null && valueOf(previous).equals(valueOf(current))) {
+        continue;
+      }
+      changes.add(
+          new Change(
+              key,
+              Category.of(key),
+              previous == null ? null : previous.getText(),
+              current == null ? null : current.getText()));
+    }
+    return changes;
+  }
+
+  private Map<String, JvmFlag> byKey(List<String> jvmFlags) {
+    var flags = new LinkedHashMap<String, JvmFlag>();
+    JvmFlags.parse(JvmFlags.normalize(jvmFlags).getJvmFlags())
+        .forEach(flag -> flags.put(flag.getKey(), flag));
+    return flags;
+  }
+
+  /** Value of a flag for comparison: sizes in bytes, numbers without trailing zeros */
+  private String valueOf(JvmFlag flag) {
+    if (flag.getKey().equals(JvmFlag.KEY_GC)) {
+      return flag.getText();
+    }
+    var argument = flag.getArgument();
+    if (argument == null) {
+      return "";
+    }
+    var size = flag.getSize();
+    if (size.isPresent()) {
+      return String.valueOf(size.getAsLong());
+    }
+    try {
+      return new BigDecimal(argument).stripTrailingZeros().toPlainString();
+    } catch (NumberFormatException ex) {
+      return argument;
+    }
+  }
+
+  @Value
+  public static class Change {
+    /** Setting that changed, see {@link JvmFlag#getKey()} */
+    String key;
+
+    Category category;
+
+    /** Flag in the baseline, {@code null} when added */
+    String baseline;
+
+    /** Effective flag, {@code null} when removed */
+    String effective;
+
+    @Override
+    public String toString() {
+      if (baseline == null) {
+        return format("%s '%s' added", category, effective);
+      }
+      if (effective == null) {
+        return format("%s '%s' removed", category, baseline);
+      }
+      return format("%s '%s' changed to '%s'", category, baseline, effective);
+    }
+  }
+}
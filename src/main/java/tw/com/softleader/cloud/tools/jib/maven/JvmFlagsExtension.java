@@ -23,38 +23,117 @@ package tw.com.softleader.cloud.tools.jib.maven;
 import static com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel.LIFECYCLE;
 import static com.google.common.base.Verify.verifyNotNull;
 import static java.lang.Boolean.FALSE;
+import static java.lang.Boolean.TRUE;
+import static java.lang.String.format;
 import static java.util.Optional.ofNullable;
 
 import com.google.cloud.tools.jib.api.buildplan.AbsoluteUnixPath;
 import com.google.cloud.tools.jib.api.buildplan.ContainerBuildPlan;
-import com.google.cloud.tools.jib.api.buildplan.FileEntriesLayer;
 import com.google.cloud.tools.jib.maven.extension.JibMavenPluginExtension;
 import com.google.cloud.tools.jib.maven.extension.MavenData;
 import com.google.cloud.tools.jib.plugins.extension.ExtensionLogger;
 import com.google.cloud.tools.jib.plugins.extension.JibPluginExtensionException;
 import com.google.common.annotations.VisibleForTesting;
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.*;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import lombok.NonNull;
 import org.apache.commons.lang3.BooleanUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.project.MavenProject;
-import org.codehaus.plexus.util.xml.Xpp3Dom;
 
 /**
  * JVM flags extension for Jib.
  *
  * @author Matt Ho
  */
-public class JvmFlagsExtension implements JibMavenPluginExtension<Void> {
+public class JvmFlagsExtension implements JibMavenPluginExtension<JvmFlagsExtensionConfig> {
 
   public static final String PROPERTY_SKIP_IF_EMPTY = "skipIfEmpty";
   public static final boolean DEFAULT_SKIP_IF_EMPTY = FALSE;
   public static final String PROPERTY_SEPARATOR = "separator";
   public static final String PROPERTY_FILENAME = "filename";
   public static final String PROPERTY_MODE = "mode";
+  public static final String PROPERTY_LAUNCH_FILE = "launchFile";
+  public static final boolean DEFAULT_LAUNCH_FILE = FALSE;
+  public static final String PROPERTY_LAUNCHER = "launcher";
+  public static final boolean DEFAULT_LAUNCHER = FALSE;
+  public static final String PROPERTY_PROFILE = "profile";
+  public static final String PROPERTY_VALIDATE = "validate";
+  public static final boolean DEFAULT_VALIDATE = FALSE;
+  public static final String PROPERTY_VALIDATION_JAVA_HOME = "validationJavaHome";
+  public static final String PROPERTY_CDS_MODE = "cdsMode";
+  public static final CdsMode DEFAULT_CDS_MODE = CdsMode.NONE;
+  public static final String PROPERTY_CDS_ARCHIVE = "cdsArchive";
+  public static final String DEFAULT_CDS_ARCHIVE = "/tmp/" + AppCdsLayerPlan.APP_CDS_ARCHIVE;
+  public static final String PROPERTY_TRAINING_JAVA_HOME = "trainingJavaHome";
+  public static final String PROPERTY_TRAINING_TIMEOUT = "trainingTimeout";
+  public static final Duration DEFAULT_TRAINING_TIMEOUT = Duration.ofSeconds(60);
+  public static final String PROPERTY_TRAINING_ARGS = "trainingArgs";
+  public static final String PROPERTY_OBSERVABILITY = "observability";
+  public static final boolean DEFAULT_OBSERVABILITY = FALSE;
+  public static final String PROPERTY_JFR_MAX_AGE = "jfrMaxAge";
+  public static final String PROPERTY_JFR_MAX_SIZE = "jfrMaxSize";
+  public static final String PROPERTY_JFR_DUMP_PATH = "jfrDumpPath";
+  public static final String PROPERTY_GC_LOG_PATH = "gcLogPath";
+  public static final String PROPERTY_GC_LOG_FILE_COUNT = "gcLogFileCount";
+  public static final String PROPERTY_GC_LOG_FILE_SIZE = "gcLogFileSize";
+  public static final String PROPERTY_LAYER_POSITION = "layerPosition";
+  public static final String DEFAULT_LAYER_POSITION = "last";
+  public static final String PROPERTY_MERGE_INTO_LAYER = "mergeIntoLayer";
+  public static final String PROPERTY_BENCHMARK = "benchmark";
+  public static final boolean DEFAULT_BENCHMARK = FALSE;
+  public static final String PROPERTY_BENCHMARK_ITERATIONS = "benchmarkIterations";
+  public static final int DEFAULT_BENCHMARK_ITERATIONS = 5;
+  public static final String PROPERTY_BENCHMARK_READY_LOG_LINE = "benchmarkReadyLogLine";
+  public static final String PROPERTY_BENCHMARK_READY_COMMAND = "benchmarkReadyCommand";
+  public static final String PROPERTY_BENCHMARK_TIMEOUT = "benchmarkTimeout";
+  public static final Duration DEFAULT_BENCHMARK_TIMEOUT = Duration.ofSeconds(60);
+  public static final String PROPERTY_RECOMMEND = "recommend";
+  public static final RecommendMode DEFAULT_RECOMMEND = RecommendMode.OFF;
+  public static final String PROPERTY_RECOMMEND_WORKLOAD = "recommendWorkload";
+  public static final String PROPERTY_TARGET_JDK = "targetJdk";
+  public static final String PROPERTY_CLASSPATH_ORDER = "classpathOrder";
+  public static final boolean DEFAULT_CLASSPATH_ORDER = FALSE;
+  public static final String PROPERTY_JIT = "jit";
+  public static final boolean DEFAULT_JIT = FALSE;
+  public static final String PROPERTY_JIT_WORKLOAD = "jitWorkload";
+  public static final String PROPERTY_RUNTIME = "runtime";
+  public static final boolean DEFAULT_RUNTIME = FALSE;
+  public static final String PROPERTY_RUNTIME_MODULES = "runtimeModules";
+  public static final String PROPERTY_RUNTIME_PATH = "runtimePath";
+  public static final String PROPERTY_RUNTIME_JAVA_HOME = "runtimeJavaHome";
+  public static final String PROPERTY_KUBERNETES_MANIFESTS = "kubernetesManifests";
+  public static final String PROPERTY_KUBERNETES_CONTAINER = "kubernetesContainer";
+  public static final String PROPERTY_DEPENDENCY_RULES = "dependencyRules";
+  public static final boolean DEFAULT_DEPENDENCY_RULES = FALSE;
+  public static final String PROPERTY_DEPENDENCY_RULES_SKIP = "dependencyRulesSkip";
+  public static final String PROPERTY_BASELINE = "baseline";
+  public static final String PROPERTY_BASELINE_POLICY = "baselinePolicy";
+  public static final BaselinePolicy DEFAULT_BASELINE_POLICY = BaselinePolicy.WARN;
+  public static final String PROPERTY_BASELINE_REGENERATE = "baselineRegenerate";
+  public static final boolean DEFAULT_BASELINE_REGENERATE = FALSE;
+  public static final String PROPERTY_REPORT = "report";
+  public static final boolean DEFAULT_REPORT = TRUE;
+  public static final String PROPERTY_LABELS = "labels";
+  public static final boolean DEFAULT_LABELS = TRUE;
+  public static final String PROPERTY_LABEL_FLAGS = "labelFlags";
+  public static final boolean DEFAULT_LABEL_FLAGS = FALSE;
+  public static final String PROPERTY_MEMORY_LIMIT = "memoryLimit";
+  public static final String PROPERTY_MEMORY_THREADS = "memoryThreads";
+  public static final int DEFAULT_MEMORY_THREADS = 200;
+  public static final String PROPERTY_MEMORY_BUDGET_PERCENTAGE = "memoryBudgetPercentage";
+  public static final int DEFAULT_MEMORY_BUDGET_PERCENTAGE = 90;
+  public static final String PROPERTY_MEMORY_BUDGET_POLICY = "memoryBudgetPolicy";
+  public static final MemoryBudgetPolicy DEFAULT_MEMORY_BUDGET_POLICY = MemoryBudgetPolicy.WARN;
 
   static final String JIB_MAVEN_PLUGIN_ID = "com.google.cloud.tools:jib-maven-plugin";
   private static final PluginConfigLocation JIB_APP_ROOT =
@@ -63,53 +142,513 @@ public class JvmFlagsExtension implements JibMavenPluginExtension<Void> {
           .domPath("container")
           .domPath("appRoot")
           .build();
-  private static final PluginConfigLocation JIB_JVM_FLAGS =
+  private static final PluginConfigLocation JIB_FROM_IMAGE =
       PluginConfigLocation.builder()
           .pluginId(JIB_MAVEN_PLUGIN_ID)
-          .domPath("container")
-          .domPath("jvmFlags")
+          .domPath("from")
+          .domPath("image")
           .build();
 
   @Override
-  public Optional<Class<Void>> getExtraConfigType() {
-    return Optional.empty();
+  public Optional<Class<JvmFlagsExtensionConfig>> getExtraConfigType() {
+    return Optional.of(JvmFlagsExtensionConfig.class);
   }
 
   @Override
   public ContainerBuildPlan extendContainerBuildPlan(
       ContainerBuildPlan buildPlan,
       Map<String, String> properties,
-      Optional<Void> config,
+      Optional<JvmFlagsExtensionConfig> config,
       MavenData mavenData,
       ExtensionLogger logger)
       throws JibPluginExtensionException {
     logger.log(LIFECYCLE, "Running JVM Flags Jib extension");
     try {
       MavenProject project = mavenData.getMavenProject();
-      var jvmFlags = getJvmFlags(project);
-      if (jvmFlags.isEmpty() && isSkipIfEmpty(properties)) {
+      var context =
+          ExtensionContext.builder()
+              .buildPlan(buildPlan)
+              .properties(properties)
+              .config(config)
+              .mavenData(mavenData)
+              .logger(logger)
+              .buildDir(Paths.get(project.getBuild().getDirectory()))
+              .projectId(getProjectId(mavenData))
+              .appRoot(getAppRootPath(project))
+              .targetJdk(getTargetJdk(properties, project, logger))
+              .report(new BuildReport(project.getGroupId() + ":" + project.getArtifactId()))
+              .build();
+      FlagSourcesPhase.apply(context);
+      TrainingPhase.apply(context);
+      AddOnLayersPhase.apply(context);
+      VariantsPhase.translate(context);
+      if (context.getJvmFlags().isEmpty() && isSkipIfEmpty(properties)) {
         logger.log(LIFECYCLE, "No JVM Flags are configured, skipping");
         return buildPlan;
       }
-      JvmFlagsLayerPlan.Builder plan =
-          JvmFlagsLayerPlan.builder()
-              .logger(logger)
-              .buildDir(Paths.get(project.getBuild().getDirectory()))
-              .jvmFlags(jvmFlags);
-      getSeparator(properties).ifPresent(plan::separator);
-      getFilename(properties).map(StringUtils::trimToNull).ifPresent(plan::filename);
-      getMode(properties).map(StringUtils::trimToNull).ifPresent(plan::mode);
-      FileEntriesLayer layer = plan.build().create(getAppRootPath(project));
-      return buildPlan.toBuilder().addLayer(layer).build();
+      VariantsPhase.apply(context);
+      MemoryBudgetPhase.apply(context);
+      BaselinePhase.apply(context);
+      var extended = ImagePhase.apply(context);
+      BenchmarkPhase.apply(context, extended);
+      ReportPhase.apply(context);
+      return extended;
     } catch (IOException ex) {
       throw new JibPluginExtensionException(getClass(), verifyNotNull(ex.getMessage()), ex);
     }
   }
 
+  /** JDK the flags target, from the {@code targetJdk} property or else the tag of the base image */
+  @VisibleForTesting
+  static OptionalInt getTargetJdk(
+      @NonNull Map<String, String> properties,
+      @NonNull MavenProject project,
+      @NonNull ExtensionLogger logger)
+      throws JibPluginExtensionException {
+    var property = getInteger(properties, PROPERTY_TARGET_JDK, "a Java version such as 21");
+    if (property.isPresent()) {
+      return OptionalInt.of(property.get());
+    }
+    var image =
+        ofNullable(project.getProperties())
+            .map(p -> p.getProperty("jib.from.image"))
+            .filter(StringUtils::isNotBlank)
+            .or(() -> JIB_FROM_IMAGE.getValue(project).filter(StringUtils::isNotBlank));
+    var detected = image.map(String::trim).map(JvmFlagsTranslator::detectJdk);
+    detected
+        .filter(OptionalInt::isPresent)
+        .ifPresent(
+            jdk ->
+                logger.log(
+                    LIFECYCLE,
+                    format(
+                        "Targeting JDK %s, detected from base image '%s'",
+                        jdk.getAsInt(), image.get())));
+    return detected.orElseGet(OptionalInt::empty);
+  }
+
+  /** How class data sharing is wired into the image */
+  public enum CdsMode {
+    /** No class data sharing configured by the extension */
+    NONE,
+    /** Dump an AppCDS archive from a training run at build time and ship it as a layer */
+    STATIC,
+    /** Let the JVM create the archive on first start and reuse it on later starts */
+    AUTO
+  }
+
+  /** What happens when the estimated memory exceeds the budget */
+  public enum MemoryBudgetPolicy {
+    WARN,
+    FAIL
+  }
+
+  /** What happens when a GC, heap, JIT or CDS flag differs from the baseline */
+  public enum BaselinePolicy {
+    WARN,
+    FAIL
+  }
+
+  /** What the extension does with the flags recommended from a training run */
+  public enum RecommendMode {
+    /** No recommendation */
+    OFF,
+    /** Write the recommendation report, the image keeps the configured flags */
+    REPORT,
+    /** Write the report and let the recommended flags replace the configured ones */
+    APPLY
+  }
+
+  /**
+   * Projects of a reactor normally have a build directory of their own. When another project of the
+   * session shares it, the cache files go into a subdirectory named after the project so that
+   * modules built in parallel do not overwrite each other's files.
+   *
+   * @return the id of the project when its build directory is shared, otherwise {@code null}
+   */
+  @VisibleForTesting
+  static String getProjectId(@NonNull MavenData mavenData) {
+    return getProjectId(mavenData.getMavenProject(), mavenData.getMavenSession());
+  }
+
+  private static String getProjectId(MavenProject project, MavenSession session) {
+    if (session == null || session.getProjects() == null) {
+      return null;
+    }
+    var buildDir = project.getBuild().getDirectory();
+    var shared =
+        session.getProjects().stream()
+            .filter(other -> other != project)
+            .filter(other -> other.getBuild() != null)
+            .anyMatch(other -> buildDir.equals(other.getBuild().getDirectory()));
+    return shared ? project.getGroupId() + "_" + project.getArtifactId() : null;
+  }
+
   private AbsoluteUnixPath getAppRootPath(MavenProject project) {
     return AbsoluteUnixPath.get(JIB_APP_ROOT.getValue(project).orElse("/app"));
   }
 
+  @VisibleForTesting
+  static Optional<JvmFlagsProfile> getProfile(@NonNull Map<String, String> properties)
+      throws JibPluginExtensionException {
+    return getEnum(properties, PROPERTY_PROFILE, JvmFlagsProfile.class);
+  }
+
+  @VisibleForTesting
+  static boolean isClasspathOrder(@NonNull Map<String, String> properties) {
+    return ofNullable(properties.get(PROPERTY_CLASSPATH_ORDER))
+        .map(BooleanUtils::toBoolean)
+        .orElse(DEFAULT_CLASSPATH_ORDER);
+  }
+
+  @VisibleForTesting
+  static Optional<Path> getBaseline(
+      @NonNull Map<String, String> properties, @NonNull MavenProject project) {
+    return getTrimmed(properties, PROPERTY_BASELINE)
+        .map(
+            baseline ->
+                ofNullable(project.getBasedir())
+                    .map(File::toPath)
+                    .orElse(Paths.get(""))
+                    .resolve(baseline));
+  }
+
+  @VisibleForTesting
+  static BaselinePolicy getBaselinePolicy(@NonNull Map<String, String> properties)
+      throws JibPluginExtensionException {
+    return getEnum(properties, PROPERTY_BASELINE_POLICY, BaselinePolicy.class)
+        .orElse(DEFAULT_BASELINE_POLICY);
+  }
+
+  @VisibleForTesting
+  static boolean isBaselineRegenerate(@NonNull Map<String, String> properties) {
+    return ofNullable(properties.get(PROPERTY_BASELINE_REGENERATE))
+        .map(BooleanUtils::toBoolean)
+        .orElse(DEFAULT_BASELINE_REGENERATE);
+  }
+
+  @VisibleForTesting
+  static boolean isReport(@NonNull Map<String, String> properties) {
+    return ofNullable(properties.get(PROPERTY_REPORT))
+        .map(BooleanUtils::toBoolean)
+        .orElse(DEFAULT_REPORT);
+  }
+
+  @VisibleForTesting
+  static boolean isJit(@NonNull Map<String, String> properties) {
+    return ofNullable(properties.get(PROPERTY_JIT))
+        .map(BooleanUtils::toBoolean)
+        .orElse(DEFAULT_JIT);
+  }
+
+  @VisibleForTesting
+  static boolean isRuntime(@NonNull Map<String, String> properties) {
+    return ofNullable(properties.get(PROPERTY_RUNTIME))
+        .map(BooleanUtils::toBoolean)
+        .orElse(DEFAULT_RUNTIME);
+  }
+
+  /** Modules separated by commas or whitespace */
+  @VisibleForTesting
+  static List<String> getRuntimeModules(@NonNull Map<String, String> properties) {
+    return ofNullable(properties.get(PROPERTY_RUNTIME_MODULES))
+        .map(value -> StringUtils.split(value, ", \t\r\n"))
+        .map(Arrays::asList)
+        .orElseGet(Collections::emptyList);
+  }
+
+  /** JDK linking the runtime, falls back to {@code trainingJavaHome} */
+  @VisibleForTesting
+  static Optional<Path> getRuntimeJavaHome(@NonNull Map<String, String> properties) {
+    return getTrimmed(properties, PROPERTY_RUNTIME_JAVA_HOME)
+        .map(Paths::get)
+        .or(() -> getTrainingJavaHome(properties));
+  }
+
+  /** Manifest file or directory, relative to the project directory */
+  @VisibleForTesting
+  static Optional<Path> getKubernetesManifests(
+      @NonNull Map<String, String> properties, @NonNull MavenProject project) {
+    return getTrimmed(properties, PROPERTY_KUBERNETES_MANIFESTS)
+        .map(
+            manifests ->
+                ofNullable(project.getBasedir())
+                    .map(File::toPath)
+                    .orElse(Paths.get(""))
+                    .resolve(manifests));
+  }
+
+  @VisibleForTesting
+  static boolean isDependencyRules(@NonNull Map<String, String> properties) {
+    return ofNullable(properties.get(PROPERTY_DEPENDENCY_RULES))
+        .map(BooleanUtils::toBoolean)
+        .orElse(DEFAULT_DEPENDENCY_RULES);
+  }
+
+  /** Names of the rules to skip, separated by commas or whitespace */
+  @VisibleForTesting
+  static Set<String> getDependencyRulesSkip(@NonNull Map<String, String> properties) {
+    return ofNullable(properties.get(PROPERTY_DEPENDENCY_RULES_SKIP))
+        .map(value -> StringUtils.split(value, ", \t\r\n"))
+        .map(names -> Arrays.stream(names).collect(Collectors.toSet()))
+        .orElseGet(Set::of);
+  }
+
+  @VisibleForTesting
+  static boolean isLabels(@NonNull Map<String, String> properties) {
+    return ofNullable(properties.get(PROPERTY_LABELS))
+        .filter(StringUtils::isNotBlank)
+        .map(BooleanUtils::toBoolean)
+        .orElse(DEFAULT_LABELS);
+  }
+
+  @VisibleForTesting
+  static boolean isLabelFlags(@NonNull Map<String, String> properties) {
+    return ofNullable(properties.get(PROPERTY_LABEL_FLAGS))
+        .filter(StringUtils::isNotBlank)
+        .map(BooleanUtils::toBoolean)
+        .orElse(DEFAULT_LABEL_FLAGS);
+  }
+
+  @VisibleForTesting
+  static boolean isValidate(@NonNull Map<String, String> properties) {
+    return ofNullable(properties.get(PROPERTY_VALIDATE))
+        .map(BooleanUtils::toBoolean)
+        .orElse(DEFAULT_VALIDATE);
+  }
+
+  /** The JDK flags are validated against, falls back to the JDK of the training runs */
+  @VisibleForTesting
+  static Optional<Path> getValidationJavaHome(@NonNull Map<String, String> properties) {
+    return ofNullable(properties.get(PROPERTY_VALIDATION_JAVA_HOME))
+        .filter(StringUtils::isNotBlank)
+        .map(String::trim)
+        .map(Paths::get)
+        .or(() -> getTrainingJavaHome(properties));
+  }
+
+  @VisibleForTesting
+  static CdsMode getCdsMode(@NonNull Map<String, String> properties)
+      throws JibPluginExtensionException {
+    return getEnum(properties, PROPERTY_CDS_MODE, CdsMode.class).orElse(DEFAULT_CDS_MODE);
+  }
+
+  @VisibleForTesting
+  static RecommendMode getRecommendMode(@NonNull Map<String, String> properties)
+      throws JibPluginExtensionException {
+    return getEnum(properties, PROPERTY_RECOMMEND, RecommendMode.class).orElse(DEFAULT_RECOMMEND);
+  }
+
+  /**
+   * Container memory limit in bytes, in JVM notation such as {@code 1g} or Kubernetes binary
+   * notation such as {@code 1Gi}
+   */
+  @VisibleForTesting
+  static OptionalLong getMemoryLimit(@NonNull Map<String, String> properties)
+      throws JibPluginExtensionException {
+    var limit = getTrimmed(properties, PROPERTY_MEMORY_LIMIT);
+    if (limit.isEmpty()) {
+      return OptionalLong.empty();
+    }
+    var size = JvmFlag.parseSize(StringUtils.removeEndIgnoreCase(limit.get(), "i"));
+    if (size.isEmpty()) {
+      throw invalidProperty(PROPERTY_MEMORY_LIMIT, limit.get(), "a size such as 1g or 1Gi");
+    }
+    return size;
+  }
+
+  @VisibleForTesting
+  static int getMemoryThreads(@NonNull Map<String, String> properties)
+      throws JibPluginExtensionException {
+    return getInteger(properties, PROPERTY_MEMORY_THREADS, "a number of threads")
+        .orElse(DEFAULT_MEMORY_THREADS);
+  }
+
+  @VisibleForTesting
+  static int getMemoryBudgetPercentage(@NonNull Map<String, String> properties)
+      throws JibPluginExtensionException {
+    return getInteger(properties, PROPERTY_MEMORY_BUDGET_PERCENTAGE, "a percentage such as 90")
+        .orElse(DEFAULT_MEMORY_BUDGET_PERCENTAGE);
+  }
+
+  @VisibleForTesting
+  static MemoryBudgetPolicy getMemoryBudgetPolicy(@NonNull Map<String, String> properties)
+      throws JibPluginExtensionException {
+    return getEnum(properties, PROPERTY_MEMORY_BUDGET_POLICY, MemoryBudgetPolicy.class)
+        .orElse(DEFAULT_MEMORY_BUDGET_POLICY);
+  }
+
+  @VisibleForTesting
+  static AbsoluteUnixPath getCdsArchive(@NonNull Map<String, String> properties)
+      throws JibPluginExtensionException {
+    return getAbsolutePath(properties, PROPERTY_CDS_ARCHIVE)
+        .orElseGet(() -> AbsoluteUnixPath.get(DEFAULT_CDS_ARCHIVE));
+  }
+
+  @VisibleForTesting
+  static Optional<Path> getTrainingJavaHome(@NonNull Map<String, String> properties) {
+    return ofNullable(properties.get(PROPERTY_TRAINING_JAVA_HOME))
+        .filter(StringUtils::isNotBlank)
+        .map(String::trim)
+        .map(Paths::get);
+  }
+
+  @VisibleForTesting
+  static Duration getTrainingTimeout(@NonNull Map<String, String> properties)
+      throws JibPluginExtensionException {
+    return getInteger(properties, PROPERTY_TRAINING_TIMEOUT, "a number of seconds")
+        .map(Duration::ofSeconds)
+        .orElse(DEFAULT_TRAINING_TIMEOUT);
+  }
+
+  @VisibleForTesting
+  static List<String> getTrainingArgs(@NonNull Map<String, String> properties) {
+    return ofNullable(properties.get(PROPERTY_TRAINING_ARGS))
+        .map(StringUtils::split)
+        .map(Arrays::asList)
+        .orElseGet(Collections::emptyList);
+  }
+
+  @VisibleForTesting
+  static boolean isObservability(@NonNull Map<String, String> properties) {
+    return ofNullable(properties.get(PROPERTY_OBSERVABILITY))
+        .map(BooleanUtils::toBoolean)
+        .orElse(DEFAULT_OBSERVABILITY);
+  }
+
+  @VisibleForTesting
+  static ObservabilityPreset getObservabilityPreset(@NonNull Map<String, String> properties)
+      throws JibPluginExtensionException {
+    ObservabilityPreset.Builder preset = ObservabilityPreset.builder();
+    getTrimmed(properties, PROPERTY_JFR_MAX_AGE).ifPresent(preset::jfrMaxAge);
+    getTrimmed(properties, PROPERTY_JFR_MAX_SIZE).ifPresent(preset::jfrMaxSize);
+    getAbsolutePath(properties, PROPERTY_JFR_DUMP_PATH).ifPresent(preset::jfrDumpPath);
+    getAbsolutePath(properties, PROPERTY_GC_LOG_PATH).ifPresent(preset::gcLogPath);
+    getInteger(properties, PROPERTY_GC_LOG_FILE_COUNT, "a number of files")
+        .ifPresent(preset::gcLogFileCount);
+    getTrimmed(properties, PROPERTY_GC_LOG_FILE_SIZE).ifPresent(preset::gcLogFileSize);
+    return preset.build();
+  }
+
+  private static Optional<String> getTrimmed(Map<String, String> properties, String key) {
+    return ofNullable(properties.get(key)).filter(StringUtils::isNotBlank).map(String::trim);
+  }
+
+  private static Optional<Integer> getInteger(
+      Map<String, String> properties, String key, String expected)
+      throws JibPluginExtensionException {
+    var value = getTrimmed(properties, key);
+    try {
+      return value.map(Integer::parseInt);
+    } catch (NumberFormatException ex) {
+      throw invalidProperty(key, value.get(), expected);
+    }
+  }
+
+  private static Optional<AbsoluteUnixPath> getAbsolutePath(
+      Map<String, String> properties, String key) throws JibPluginExtensionException {
+    var value = getTrimmed(properties, key);
+    try {
+      return value.map(AbsoluteUnixPath::get);
+    } catch (IllegalArgumentException ex) {
+      throw invalidProperty(key, value.get(), "an absolute path in the container");
+    }
+  }
+
+  private static <E extends Enum<E>> Optional<E> getEnum(
+      Map<String, String> properties, String key, Class<E> type)
+      throws JibPluginExtensionException {
+    var value = getTrimmed(properties, key);
+    try {
+      return value.map(v -> Enum.valueOf(type, v.toUpperCase(Locale.ROOT)));
+    } catch (IllegalArgumentException ex) {
+      throw invalidProperty(
+          key,
+          value.get(),
+          "one of "
+              + Stream.of(type.getEnumConstants())
+                  .map(constant -> constant.name().toLowerCase(Locale.ROOT))
+                  .collect(Collectors.joining(", ")));
+    }
+  }
+
+  static JibPluginExtensionException invalidProperty(String key, String value, String expected) {
+    return new JibPluginExtensionException(
+        JvmFlagsExtension.class, format("Invalid %s '%s', expecting %s", key, value, expected));
+  }
+
+  @VisibleForTesting
+  static Optional<String> getMergeIntoLayer(@NonNull Map<String, String> properties) {
+    return ofNullable(properties.get(PROPERTY_MERGE_INTO_LAYER))
+        .filter(StringUtils::isNotBlank)
+        .map(String::trim);
+  }
+
+  /** {@code first}, {@code last}, {@code before:<layer>}, {@code after:<layer>} or an index */
+  static String getLayerPosition(@NonNull Map<String, String> properties) {
+    return getTrimmed(properties, PROPERTY_LAYER_POSITION).orElse(DEFAULT_LAYER_POSITION);
+  }
+
+  static Optional<String> getKubernetesContainer(@NonNull Map<String, String> properties) {
+    return getTrimmed(properties, PROPERTY_KUBERNETES_CONTAINER);
+  }
+
+  static Optional<String> getRecommendWorkload(@NonNull Map<String, String> properties) {
+    return getTrimmed(properties, PROPERTY_RECOMMEND_WORKLOAD);
+  }
+
+  static Optional<String> getJitWorkload(@NonNull Map<String, String> properties) {
+    return getTrimmed(properties, PROPERTY_JIT_WORKLOAD);
+  }
+
+  static Optional<AbsoluteUnixPath> getRuntimePath(@NonNull Map<String, String> properties)
+      throws JibPluginExtensionException {
+    return getAbsolutePath(properties, PROPERTY_RUNTIME_PATH);
+  }
+
+  @VisibleForTesting
+  static boolean isBenchmark(@NonNull Map<String, String> properties) {
+    return ofNullable(properties.get(PROPERTY_BENCHMARK))
+        .map(BooleanUtils::toBoolean)
+        .orElse(DEFAULT_BENCHMARK);
+  }
+
+  @VisibleForTesting
+  static int getBenchmarkIterations(@NonNull Map<String, String> properties)
+      throws JibPluginExtensionException {
+    return getInteger(properties, PROPERTY_BENCHMARK_ITERATIONS, "a number of iterations")
+        .orElse(DEFAULT_BENCHMARK_ITERATIONS);
+  }
+
+  @VisibleForTesting
+  static Optional<Pattern> getBenchmarkReadyLogLine(@NonNull Map<String, String> properties)
+      throws JibPluginExtensionException {
+    var value = ofNullable(properties.get(PROPERTY_BENCHMARK_READY_LOG_LINE));
+    try {
+      return value.filter(StringUtils::isNotBlank).map(Pattern::compile);
+    } catch (PatternSyntaxException ex) {
+      throw invalidProperty(
+          PROPERTY_BENCHMARK_READY_LOG_LINE,
+          value.get(),
+          "a regular expression, " + ex.getDescription());
+    }
+  }
+
+  @VisibleForTesting
+  static Optional<String> getBenchmarkReadyCommand(@NonNull Map<String, String> properties) {
+    return ofNullable(properties.get(PROPERTY_BENCHMARK_READY_COMMAND))
+        .filter(StringUtils::isNotBlank)
+        .map(String::trim);
+  }
+
+  @VisibleForTesting
+  static Duration getBenchmarkTimeout(@NonNull Map<String, String> properties)
+      throws JibPluginExtensionException {
+    return getInteger(properties, PROPERTY_BENCHMARK_TIMEOUT, "a number of seconds")
+        .map(Duration::ofSeconds)
+        .orElse(DEFAULT_BENCHMARK_TIMEOUT);
+  }
+
   @VisibleForTesting
   static Optional<String> getMode(@NonNull Map<String, String> properties) {
     return ofNullable(properties.get(PROPERTY_MODE)).filter(StringUtils::isNotBlank);
@@ -125,22 +664,24 @@ public class JvmFlagsExtension implements JibMavenPluginExtension<Void> {
     return ofNullable(properties.get(PROPERTY_SEPARATOR));
   }
 
+  @VisibleForTesting
+  static boolean isLaunchFile(@NonNull Map<String, String> properties) {
+    return ofNullable(properties.get(PROPERTY_LAUNCH_FILE))
+        .map(BooleanUtils::toBoolean)
+        .orElse(DEFAULT_LAUNCH_FILE);
+  }
+
+  @VisibleForTesting
+  static boolean isLauncher(@NonNull Map<String, String> properties) {
+    return ofNullable(properties.get(PROPERTY_LAUNCHER))
+        .map(BooleanUtils::toBoolean)
+        .orElse(DEFAULT_LAUNCHER);
+  }
+
   @VisibleForTesting
   static boolean isSkipIfEmpty(@NonNull Map<String, String> properties) {
     return ofNullable(properties.get(PROPERTY_SKIP_IF_EMPTY))
         .map(BooleanUtils::toBoolean)
         .orElse(DEFAULT_SKIP_IF_EMPTY);
   }
-
-  private List<String> getJvmFlags(MavenProject project) {
-    return JIB_JVM_FLAGS
-        .getDom(project)
-        .map(
-            dom ->
-                Arrays.stream(dom.getChildren())
-                    .map(Xpp3Dom::getValue)
-                    .filter(StringUtils::isNotBlank)
-                    .collect(Collectors.toList()))
-        .orElseGet(Collections::emptyList);
-  }
 }
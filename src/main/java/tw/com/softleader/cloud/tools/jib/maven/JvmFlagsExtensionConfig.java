@@ -0,0 +1,81 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Data;
+
+/**
+ * Extension configuration, for settings that do not fit in flat properties.
+ *
+ * <pre>{@code
+ * <configuration implementation="tw.com.softleader.cloud.tools.jib.maven.JvmFlagsExtensionConfig">
+ *   <flagSets>
+ *     <flagSet>
+ *       <name>worker</name>
+ *       <jvmFlags>
+ *         <jvmFlag>-XX:+UseParallelGC</jvmFlag>
+ *       </jvmFlags>
+ *     </flagSet>
+ *   </flagSets>
+ *   <architectures>
+ *     <architecture>
+ *       <name>arm64</name>
+ *       <jvmFlags>
+ *         <jvmFlag>-XX:-UseTransparentHugePages</jvmFlag>
+ *       </jvmFlags>
+ *     </architecture>
+ *   </architectures>
+ *   <agents>
+ *     <agent>
+ *       <file>agents/libasyncProfiler.so</file>
+ *       <options>start,event=cpu,file=/tmp/profile.jfr</options>
+ *     </agent>
+ *   </agents>
+ *   <warmup>
+ *     <entryPoints>
+ *       <entryPoint>com.example.Warmup#run</entryPoint>
+ *     </entryPoints>
+ *     <iterations>10000</iterations>
+ *     <timeout>30</timeout>
+ *   </warmup>
+ * </configuration>
+ * }</pre>
+ */
+@Data
+public class JvmFlagsExtensionConfig {
+
+  /** Named flag sets, each written to its own jvm flags file */
+  private List<FlagSet> flagSets = new ArrayList<>();
+
+  /** Name of the flag set also written to the jvm flags file without suffix */
+  private String defaultFlagSet;
+
+  /** Flags overridden per architecture of a multi-platform image */
+  private List<ArchitectureFlags> architectures = new ArrayList<>();
+
+  /** JVM agents added to the image together with their agent flags */
+  private List<Agent> agents = new ArrayList<>();
+
+  /** JIT warm-up run by an agent before the main class starts */
+  private Warmup warmup;
+}
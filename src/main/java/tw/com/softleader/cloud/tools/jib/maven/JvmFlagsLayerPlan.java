@@ -35,10 +35,13 @@ import com.google.cloud.tools.jib.plugins.extension.ExtensionLogger;
 import com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel;
 import com.google.common.annotations.VisibleForTesting;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 import lombok.Builder;
 import lombok.NonNull;
 import lombok.Singular;
@@ -55,6 +58,7 @@ public class JvmFlagsLayerPlan {
 
   public static final String LAYER_JVM_FLAGS = "jvm flags";
   public static final String JIB_JVM_FLAGS_FILE = "jib-jvm-flags-file";
+  public static final String JIB_LAUNCH_FILE = "jib-launch-file";
   public static final String CACHE_DIRECTORY_NAME = "jib-cache";
 
   @ToString.Exclude private final ExtensionLogger logger;
@@ -62,13 +66,49 @@ public class JvmFlagsLayerPlan {
   @NonNull @lombok.Builder.Default
   private final Path buildDir = Paths.get(getProperty("java.io.tmpdir"));
 
-  @Singular private final Set<String> jvmFlags;
+  /** Set when the project shares its build directory, to keep its cache files apart */
+  private final String projectId;
+
+  /** Flags in the order they are passed to the JVM, repeated options such as --add-opens kept */
+  @Singular private final List<String> jvmFlags;
+
   @NonNull @lombok.Builder.Default private final String separator = " ";
+
+  /**
+   * Write the flags files as Java {@code @argfiles}, one quoted flag per line instead of joined by
+   * {@link #separator}, for the launcher passing them as {@code @file}
+   */
+  private final boolean argFile;
+
   @NonNull @lombok.Builder.Default private final String filename = JIB_JVM_FLAGS_FILE;
 
   @NonNull @lombok.Builder.Default
   private final String mode = DEFAULT_FILE_PERMISSIONS.toOctalString();
 
+  /**
+   * Additional flags files by suffix, each written next to the jvm flags file as {@code
+   * <filename>.<suffix>}
+   */
+  @Singular private final Map<String, List<String>> variants;
+
+  /** Classpath in the container, written to the launch file together with {@link #mainClass} */
+  @Singular("classpathElement")
+  private final List<String> classpath;
+
+  /** When set, a launch file holding flags, classpath and main class is added to the layer */
+  private final String mainClass;
+
+  @NonNull @lombok.Builder.Default private final String launchFilename = JIB_LAUNCH_FILE;
+
+  /** When set, written to {@value ClasspathOrder#ORDERED_CLASSPATH_FILE} for {@code -cp @file} */
+  @Singular("orderedClasspathElement")
+  private final List<String> orderedClasspath;
+
+  /**
+   * When set, written to {@value JitTuner#COMPILE_COMMAND_FILE} for {@code -XX:CompileCommandFile}
+   */
+  @Singular private final List<String> compileCommands;
+
   public static final class Builder {}
 
   /**
@@ -83,26 +123,108 @@ public class JvmFlagsLayerPlan {
     Path sourcePath = createJvmFlagsFile();
     AbsoluteUnixPath pathInContainer = directoryInContainer.resolve(filename);
     log(LIFECYCLE, "Adding layer containing '%s' file to the image", pathInContainer.toString());
-    return FileEntriesLayer.builder()
-        .setName(LAYER_JVM_FLAGS)
-        .addEntry(sourcePath, pathInContainer, fromOctalString(mode))
-        .build();
+    FileEntriesLayer.Builder layer =
+        FileEntriesLayer.builder()
+            .setName(LAYER_JVM_FLAGS)
+            .addEntry(sourcePath, pathInContainer, fromOctalString(mode));
+    for (var variant : variants.entrySet()) {
+      var variantFilename = filename + "." + variant.getKey();
+      AbsoluteUnixPath variantInContainer = directoryInContainer.resolve(variantFilename);
+      log(LIFECYCLE, "Adding '%s' file to the image", variantInContainer.toString());
+      layer.addEntry(
+          createJvmFlagsFile(variantFilename, variant.getValue()),
+          variantInContainer,
+          fromOctalString(mode));
+    }
+    var jfrSettings = ObservabilityPreset.getSettingsPath(directoryInContainer);
+    if (isReferenced(jfrSettings)) {
+      log(LIFECYCLE, "Adding '%s' JFR settings to the image", jfrSettings.toString());
+      layer.addEntry(createJfrSettings(), jfrSettings, fromOctalString(mode));
+    }
+    if (!orderedClasspath.isEmpty()) {
+      AbsoluteUnixPath orderedInContainer =
+          directoryInContainer.resolve(ClasspathOrder.ORDERED_CLASSPATH_FILE);
+      log(LIFECYCLE, "Adding '%s' ordered classpath to the image", orderedInContainer.toString());
+      var path =
+          CacheFiles.directory(buildDir, projectId).resolve(ClasspathOrder.ORDERED_CLASSPATH_FILE);
+      writeFileConservatively(path, join(":", orderedClasspath));
+      layer.addEntry(path, orderedInContainer, fromOctalString(mode));
+    }
+    if (!compileCommands.isEmpty()) {
+      AbsoluteUnixPath commandsInContainer =
+          directoryInContainer.resolve(JitTuner.COMPILE_COMMAND_FILE);
+      log(LIFECYCLE, "Adding '%s' compile commands to the image", commandsInContainer.toString());
+      var path = CacheFiles.directory(buildDir, projectId).resolve(JitTuner.COMPILE_COMMAND_FILE);
+      writeFileConservatively(path, join("\n", compileCommands) + "\n");
+      layer.addEntry(path, commandsInContainer, fromOctalString(mode));
+    }
+    if (mainClass != null) {
+      AbsoluteUnixPath launchFileInContainer = directoryInContainer.resolve(launchFilename);
+      log(LIFECYCLE, "Adding '%s' launch file to the image", launchFileInContainer.toString());
+      layer.addEntry(createLaunchFile(), launchFileInContainer, fromOctalString(mode));
+    }
+    return layer.build();
+  }
+
+  /** Whether a flag of any flags file refers to {@code pathInContainer} */
+  private boolean isReferenced(AbsoluteUnixPath pathInContainer) {
+    var reference =
+        Pattern.compile("[=,:]" + Pattern.quote(pathInContainer.toString()) + "([,:]|$)");
+    return Stream.concat(jvmFlags.stream(), variants.values().stream().flatMap(List::stream))
+        .anyMatch(flag -> reference.matcher(flag).find());
+  }
+
+  private Path createJfrSettings() throws IOException {
+    try (var settings = getClass().getResourceAsStream(ObservabilityPreset.JFR_SETTINGS)) {
+      if (settings == null) {
+        throw new IOException("Missing JFR settings " + ObservabilityPreset.JFR_SETTINGS);
+      }
+      var path =
+          CacheFiles.directory(buildDir, projectId).resolve(ObservabilityPreset.JFR_SETTINGS);
+      writeFileConservatively(path, new String(settings.readAllBytes(), UTF_8));
+      return path;
+    }
+  }
+
+  /** A single argfile, so the app starts with {@code java @/app/jib-launch-file} */
+  private Path createLaunchFile() throws IOException {
+    var args = new ArrayList<>(jvmFlags);
+    if (!classpath.isEmpty()) {
+      args.add("-cp");
+      args.add(join(":", classpath));
+    }
+    args.add(mainClass);
+    var path = CacheFiles.directory(buildDir, projectId).resolve(launchFilename);
+    writeFileConservatively(path, ArgFiles.format(args));
+    return path;
   }
 
   private Path createJvmFlagsFile() throws IOException {
-    var content = join(separator, jvmFlags);
-    log(LIFECYCLE, "JVM Flags configured: [%s]", content);
-    var path = buildDir.resolve(CACHE_DIRECTORY_NAME).resolve(filename);
-    writeFileConservatively(path, content);
+    log(LIFECYCLE, "JVM Flags configured: [%s]", join(separator, jvmFlags));
+    var path = CacheFiles.directory(buildDir, projectId).resolve(filename);
+    writeFileConservatively(path, toContent(jvmFlags));
     return path;
   }
 
+  private Path createJvmFlagsFile(String variantFilename, List<String> variantFlags)
+      throws IOException {
+    log(
+        LIFECYCLE,
+        "JVM Flags configured for '%s': [%s]",
+        variantFilename,
+        join(separator, variantFlags));
+    var path = CacheFiles.directory(buildDir, projectId).resolve(variantFilename);
+    writeFileConservatively(path, toContent(variantFlags));
+    return path;
+  }
+
+  private String toContent(List<String> flags) {
+    return argFile ? ArgFiles.format(flags) : join(separator, flags);
+  }
+
   @VisibleForTesting
   void writeFileConservatively(@NonNull Path file, @NonNull String content) throws IOException {
-    if (Files.notExists(file) || !Files.readString(file).equals(content)) {
-      Files.createDirectories(file.getParent());
-      Files.write(file, content.getBytes(UTF_8));
-    }
+    CacheFiles.writeConservatively(file, content);
   }
 
   private void log(LogLevel level, String message, Object... args) {
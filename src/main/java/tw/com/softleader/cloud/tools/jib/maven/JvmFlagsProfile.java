@@ -0,0 +1,119 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.stream.Collectors;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+/** Curated JVM flags for common kinds of workload. */
+@Getter
+@RequiredArgsConstructor
+public enum JvmFlagsProfile {
+
+  /**
+   * Short GC pauses for request serving, heap committed up front. ZGC is missing before JDK 11,
+   * experimental before JDK 15 and deduplicates strings from JDK 18 on, see {@link
+   * #getJvmFlags(OptionalInt)}.
+   */
+  LATENCY(
+      List.of(
+          "-XX:+UseZGC",
+          "-XX:+AlwaysPreTouch",
+          "-XX:MaxRAMPercentage=75",
+          "-XX:+UseStringDeduplication")),
+
+  /** Highest throughput for CPU bound processing */
+  THROUGHPUT(List.of("-XX:+UseParallelGC", "-XX:MaxRAMPercentage=80")),
+
+  /** Smallest memory footprint for small containers */
+  FOOTPRINT(
+      List.of(
+          "-XX:+UseSerialGC",
+          "-XX:ReservedCodeCacheSize=64m",
+          "-XX:MaxRAMPercentage=70",
+          "-Xss512k")),
+
+  /** Fast startup of short-lived jobs, C1 only */
+  BATCH(List.of("-XX:TieredStopAtLevel=1", "-XX:+UseParallelGC", "-XX:MaxRAMPercentage=80"));
+
+  /** First JDK shipping ZGC, older ones fall back to G1 */
+  static final int ZGC_JDK = 11;
+
+  /** First JDK running ZGC without {@code -XX:+UnlockExperimentalVMOptions} */
+  static final int ZGC_PRODUCTION_JDK = 15;
+
+  /** First JDK deduplicating strings with ZGC, older ones ignore the flag */
+  static final int ZGC_STRING_DEDUPLICATION_JDK = 18;
+
+  /** Flags of the profile for the latest JDK */
+  private final List<String> jvmFlags;
+
+  /**
+   * @param targetJdk feature version of the JDK in the image, the latest JDK when empty
+   * @return flags of the profile that take effect on {@code targetJdk}
+   */
+  public List<String> getJvmFlags(@NonNull OptionalInt targetJdk) {
+    if (this != LATENCY || targetJdk.isEmpty()) {
+      return jvmFlags;
+    }
+    var jdk = targetJdk.getAsInt();
+    if (jdk < ZGC_JDK) {
+      return jvmFlags.stream()
+          .map(flag -> "-XX:+UseZGC".equals(flag) ? "-XX:+UseG1GC" : flag)
+          .collect(Collectors.toList());
+    }
+    var flags = new ArrayList<String>();
+    if (jdk < ZGC_PRODUCTION_JDK) {
+      flags.add("-XX:+UnlockExperimentalVMOptions");
+    }
+    jvmFlags.stream()
+        .filter(
+            flag ->
+                jdk >= ZGC_STRING_DEDUPLICATION_JDK || !"-XX:+UseStringDeduplication".equals(flag))
+        .forEach(flags::add);
+    return flags;
+  }
+
+  /**
+   * Merge the flags of this profile with explicitly configured ones, explicit flags win on conflict
+   *
+   * @param explicit flags configured by the user
+   * @return profile flags not overridden by {@code explicit}, followed by {@code explicit}
+   */
+  public List<String> apply(@NonNull List<String> explicit) {
+    return apply(explicit, OptionalInt.empty());
+  }
+
+  /**
+   * @param explicit flags configured by the user
+   * @param targetJdk feature version of the JDK in the image, the latest JDK when empty
+   * @return profile flags for {@code targetJdk} not overridden by {@code explicit}, followed by
+   *     {@code explicit}
+   */
+  public List<String> apply(@NonNull List<String> explicit, @NonNull OptionalInt targetJdk) {
+    return JvmFlags.merge(getJvmFlags(targetJdk), explicit);
+  }
+}
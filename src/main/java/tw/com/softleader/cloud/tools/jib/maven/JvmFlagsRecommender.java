@@ -0,0 +1,357 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel.DEBUG;
+import static com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel.LIFECYCLE;
+import static java.lang.String.format;
+
+import com.google.cloud.tools.jib.api.buildplan.AbsoluteUnixPath;
+import com.google.cloud.tools.jib.api.buildplan.ContainerBuildPlan;
+import com.google.cloud.tools.jib.plugins.extension.ExtensionLogger;
+import com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Singular;
+import lombok.ToString;
+import lombok.Value;
+
+/**
+ * Recommends heap, young generation, GC and metaspace flags from a training run of the app.
+ *
+ * <p>The app runs with the configured flags plus a JFR recording and GC logging while an optional
+ * workload exercises it. The recording is then analyzed for the live set after GC, allocation rate,
+ * GC pauses and metaspace usage, and the recommendations are written to {@value #REPORT}.
+ */
+@ToString
+@Builder(builderClassName = "Builder", toBuilder = true)
+public class JvmFlagsRecommender {
+
+  public static final String RECOMMENDATION_DIRECTORY = "recommendation";
+  public static final String REPORT = "jib-recommendation.json";
+  public static final String RECORDING = "jib-training.jfr";
+  public static final String GC_LOG = "jib-training-gc.log";
+  public static final String TRAINING_LOG = "jib-training.log";
+
+  static final long MB = 1024 * 1024;
+  static final long MIN_HEAP = 256 * MB;
+  static final long SERIAL_GC_MAX_HEAP = 512 * MB;
+  static final long ZGC_MIN_HEAP = 2048 * MB;
+  static final Duration MAX_PAUSE = Duration.ofMillis(200);
+  static final int LIVE_SET_FACTOR = 3;
+
+  @ToString.Exclude private final ExtensionLogger logger;
+
+  @NonNull @lombok.Builder.Default
+  private final Path buildDir = Paths.get(System.getProperty("java.io.tmpdir"));
+
+  private final String projectId;
+
+  @NonNull @lombok.Builder.Default
+  private final Path javaHome = Paths.get(System.getProperty("java.home"));
+
+  /** Flags the app is trained with, normally the configured `jvmFlags` */
+  @Singular private final List<String> jvmFlags;
+
+  @Singular private final List<String> trainingArgs;
+  @NonNull @lombok.Builder.Default private final Duration trainingTimeout = Duration.ofSeconds(60);
+
+  /** Shell command exercising the app during the training run */
+  private final String workload;
+
+  public static final class Builder {}
+
+  /**
+   * Train the app of {@code buildPlan} and recommend flags from what it did
+   *
+   * @param buildPlan plan providing the classpath and main class of the app
+   * @param appRoot app root in the container
+   */
+  public Report recommend(@NonNull ContainerBuildPlan buildPlan, @NonNull AbsoluteUnixPath appRoot)
+      throws IOException {
+    log(DEBUG, "Recommending JVM Flags with %s", this);
+    var cacheDir = CacheFiles.directory(buildDir, projectId);
+    var app = StagedApp.of(buildPlan, appRoot).stage(cacheDir);
+    var outputDir = Files.createDirectories(cacheDir.resolve(RECOMMENDATION_DIRECTORY));
+    var recording = outputDir.resolve(RECORDING);
+    app.trainingRun(jvmFlags)
+        .logger(logger)
+        .javaHome(javaHome)
+        .jvmFlag(format("-Xlog:gc*:file=%s:time,uptime,level,tags", outputDir.resolve(GC_LOG)))
+        .args(trainingArgs)
+        .timeout(trainingTimeout)
+        .workload(workload)
+        .recording(recording)
+        .logFile(outputDir.resolve(TRAINING_LOG))
+        .build()
+        .run();
+
+    var observed = Observed.read(recording);
+    var report = recommend(observed);
+    CacheFiles.writeConservatively(outputDir.resolve(REPORT), toJson(report, recording, outputDir));
+    report
+        .getRecommendations()
+        .forEach(
+            recommendation ->
+                log(
+                    LIFECYCLE,
+                    "Recommended JVM Flag '%s': %s",
+                    recommendation.getJvmFlag(),
+                    recommendation.getReason()));
+    report.getNotes().forEach(note -> log(LIFECYCLE, "JVM Flags recommendation note: %s", note));
+    log(LIFECYCLE, "JVM Flags recommendation written to %s", outputDir.resolve(REPORT));
+    return report;
+  }
+
+  /** Derive recommendations from what the training run observed */
+  static Report recommend(@NonNull Observed observed) {
+    var recommendations = new ArrayList<Recommendation>();
+    var notes = new ArrayList<String>();
+    if (observed.getGcCount() == 0 || observed.getLiveSetBytes() <= 0) {
+      notes.add(
+          "No GC happened during the training run, heap, GC and young generation need a longer"
+              + " or heavier workload to be recommended");
+    } else {
+      var heap = roundUp(Math.max(observed.getLiveSetBytes() * LIVE_SET_FACTOR, MIN_HEAP), 64 * MB);
+      recommendations.add(
+          new Recommendation(
+              "-Xmx" + heap / MB + "m",
+              format(
+                  "live set after GC peaked at %s MiB, the heap is %sx the live set",
+                  observed.getLiveSetBytes() / MB, LIVE_SET_FACTOR)));
+      var gc = recommendGc(heap, observed, recommendations);
+      if ("UseSerialGC".equals(gc) || "UseParallelGC".equals(gc)) {
+        if (observed.getAllocationRate() > 0) {
+          var young =
+              Math.min(
+                  Math.max(roundUp(observed.getAllocationRate(), 16 * MB), heap / 4), heap / 2);
+          recommendations.add(
+              new Recommendation(
+                  "-Xmn" + young / MB + "m",
+                  format(
+                      "allocating %s MiB/s, the young generation holds about a second of"
+                          + " allocations within a quarter to half of the heap",
+                      observed.getAllocationRate() / MB)));
+        }
+      } else {
+        notes.add(
+            "The young generation is left to "
+                + gc
+                + ", which sizes it adaptively to meet its pause goals");
+      }
+    }
+    if (observed.getMetaspaceUsedBytes() > 0) {
+      var used = observed.getMetaspaceUsedBytes();
+      recommendations.add(
+          new Recommendation(
+              "-XX:MetaspaceSize=" + roundUp(used, 16 * MB) / MB + "m",
+              format(
+                  "metaspace used %s MiB, starting at that size avoids GCs while classes load",
+                  used / MB)));
+      recommendations.add(
+          new Recommendation(
+              "-XX:MaxMetaspaceSize=" + roundUp(Math.max(used * 2, 128 * MB), 64 * MB) / MB + "m",
+              "twice the metaspace used, to bound class metadata leaks"));
+    }
+    return new Report(observed, recommendations, notes);
+  }
+
+  private static String recommendGc(
+      long heap, Observed observed, List<Recommendation> recommendations) {
+    String gc;
+    String reason;
+    if (heap >= ZGC_MIN_HEAP && observed.getMaxPause().compareTo(MAX_PAUSE) > 0) {
+      gc = "UseZGC";
+      reason =
+          format(
+              "longest pause of %s ms exceeds %s ms with a heap of %s MiB, ZGC pauses stay below a"
+                  + " millisecond",
+              observed.getMaxPause().toMillis(), MAX_PAUSE.toMillis(), heap / MB);
+    } else if (heap <= SERIAL_GC_MAX_HEAP) {
+      gc = "UseSerialGC";
+      reason = format("a heap of %s MiB is collected fastest by a single thread", heap / MB);
+    } else {
+      gc = "UseG1GC";
+      reason =
+          format(
+              "longest pause of %s ms is within %s ms, G1 balances throughput and pauses",
+              observed.getMaxPause().toMillis(), MAX_PAUSE.toMillis());
+    }
+    recommendations.add(new Recommendation("-XX:+" + gc, reason));
+    return gc;
+  }
+
+  private static long roundUp(long bytes, long unit) {
+    return (bytes + unit - 1) / unit * unit;
+  }
+
+  private String toJson(Report report, Path recording, Path outputDir) {
+    var json = new LinkedHashMap<String, Object>();
+    json.put("recording", recording.toString());
+    json.put("gcLog", outputDir.resolve(GC_LOG).toString());
+    json.put("trainingLog", outputDir.resolve(TRAINING_LOG).toString());
+    json.put("jvmFlags", jvmFlags);
+    json.put("observed", report.getObserved().toMap());
+    json.put(
+        "recommendations",
+        report.getRecommendations().stream()
+            .map(
+                recommendation -> {
+                  var map = new LinkedHashMap<String, Object>();
+                  map.put("jvmFlag", recommendation.getJvmFlag());
+                  map.put("reason", recommendation.getReason());
+                  return map;
+                })
+            .collect(Collectors.toList()));
+    json.put("notes", report.getNotes());
+    return Json.write(json);
+  }
+
+  private void log(LogLevel level, String message, Object... args) {
+    if (logger != null) {
+      logger.log(level, format(message, args));
+    }
+  }
+
+  /** What the app did during the training run, sizes in bytes */
+  @Value
+  public static class Observed {
+    Duration elapsed;
+    int gcCount;
+    Duration maxPause;
+    Duration totalPause;
+
+    /** Highest heap usage right after a GC, {@code 0} without GC */
+    long liveSetBytes;
+
+    /** Bytes allocated per second */
+    long allocationRate;
+
+    long metaspaceUsedBytes;
+
+    /** Young and old collector names as reported by JFR, such as {@code G1New/G1Old} */
+    String collectors;
+
+    static Observed read(@NonNull Path recording) throws IOException {
+      var events = RecordingFile.readAllEvents(recording);
+      Instant start = null;
+      Instant end = null;
+      var gcCount = 0;
+      var maxPause = Duration.ZERO;
+      var totalPause = Duration.ZERO;
+      var liveSet = 0L;
+      var metaspace = 0L;
+      var collectors = "";
+      var allocatedByThread = new HashMap<Long, Long>();
+      for (RecordedEvent event : events) {
+        start =
+            start == null || event.getStartTime().isBefore(start) ? event.getStartTime() : start;
+        end = end == null || event.getEndTime().isAfter(end) ? event.getEndTime() : end;
+        switch (event.getEventType().getName()) {
+          case "jdk.GarbageCollection":
+            gcCount++;
+            var pause = event.getDuration("longestPause");
+            maxPause = pause.compareTo(maxPause) > 0 ? pause : maxPause;
+            totalPause = totalPause.plus(event.getDuration("sumOfPauses"));
+            break;
+          case "jdk.GCHeapSummary":
+            if ("After GC".equals(event.getString("when"))) {
+              liveSet = Math.max(liveSet, event.getLong("heapUsed"));
+            }
+            break;
+          case "jdk.MetaspaceSummary":
+            metaspace = Math.max(metaspace, event.getLong("metaspace.used"));
+            break;
+          case "jdk.GCConfiguration":
+            collectors = event.getString("youngCollector") + "/" + event.getString("oldCollector");
+            break;
+          case "jdk.ThreadAllocationStatistics":
+            var thread = event.getThread("thread");
+            if (thread != null) {
+              allocatedByThread.merge(
+                  thread.getJavaThreadId(), event.getLong("allocated"), Math::max);
+            }
+            break;
+          default:
+            break;
+        }
+      }
+      var elapsed = start == null ? Duration.ZERO : Duration.between(start, end);
+      var allocated = allocatedByThread.values().stream().mapToLong(Long::longValue).sum();
+      var seconds = elapsed.toMillis() / 1000.0;
+      return new Observed(
+          elapsed,
+          gcCount,
+          maxPause,
+          totalPause,
+          liveSet,
+          seconds > 0 ? (long) (allocated / seconds) : 0,
+          metaspace,
+          collectors);
+    }
+
+    Map<String, Object> toMap() {
+      var map = new LinkedHashMap<String, Object>();
+      map.put("elapsedMillis", elapsed.toMillis());
+      map.put("collectors", collectors);
+      map.put("gcCount", gcCount);
+      map.put("maxPauseMillis", maxPause.toMillis());
+      map.put("totalPauseMillis", totalPause.toMillis());
+      map.put("liveSetBytes", liveSetBytes);
+      map.put("allocationRateBytesPerSecond", allocationRate);
+      map.put("metaspaceUsedBytes", metaspaceUsedBytes);
+      return map;
+    }
+  }
+
+  @Value
+  public static class Recommendation {
+    String jvmFlag;
+    String reason;
+  }
+
+  @Value
+  public static class Report {
+    Observed observed;
+    List<Recommendation> recommendations;
+
+    /** Findings without a flag to recommend */
+    List<String> notes;
+
+    public List<String> getJvmFlags() {
+      return recommendations.stream().map(Recommendation::getJvmFlag).collect(Collectors.toList());
+    }
+  }
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static java.lang.String.format;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import lombok.NonNull;
+import lombok.Value;
+import lombok.experimental.UtilityClass;
+
+/**
+ * Drops or translates flags the target JDK no longer knows, or does not know yet, so that flags
+ * written for one JDK do not stop the JVM from starting on another.
+ */
+@UtilityClass
+public class JvmFlagsTranslator {
+
+  private static final List<Rule> RULES =
+      List.of(
+          Rule.translated(
+              "-XX:MaxPermSize=(.+)",
+              8,
+              m -> "-XX:MaxMetaspaceSize=" + m.group(1),
+              "the permanent generation was replaced by metaspace in JDK 8"),
+          Rule.translated(
+              "-XX:PermSize=(.+)",
+              8,
+              m -> "-XX:MetaspaceSize=" + m.group(1),
+              "the permanent generation was replaced by metaspace in JDK 8"),
+          Rule.translated(
+              "-XX:\\+PrintGCDetails",
+              9,
+              m -> "-Xlog:gc*",
+              "GC logging moved to unified logging in JDK 9"),
+          Rule.translated(
+              "-Xloggc:(.+)",
+              9,
+              m -> "-Xlog:gc:file=" + m.group(1),
+              "GC logging moved to unified logging in JDK 9"),
+          Rule.removed(
+              "-XX:[+-](PrintGCTimeStamps|PrintGCDateStamps|PrintGCCause|PrintGCApplicationStoppedTime"
+                  + "|PrintTenuringDistribution|UseGCLogFileRotation)",
+              9,
+              "GC logging moved to unified logging in JDK 9, use -Xlog:gc* decorators instead"),
+          Rule.removed(
+              "-XX:(NumberOfGCLogFiles|GCLogFileSize)=.*",
+              9,
+              "GC logging moved to unified logging in JDK 9, use -Xlog:gc*:file=...:filecount="),
+          Rule.removed("-XX:[+-]UseParNewGC", 10, "ParNew was removed in JDK 10"),
+          Rule.translated(
+              "-XX:MaxRAMFraction=(\\d+)",
+              10,
+              m -> "-XX:MaxRAMPercentage=" + toPercentage(m.group(1)),
+              "RAM fractions were replaced by percentages in JDK 10"),
+          Rule.translated(
+              "-XX:MinRAMFraction=(\\d+)",
+              10,
+              m -> "-XX:MinRAMPercentage=" + toPercentage(m.group(1)),
+              "RAM fractions were replaced by percentages in JDK 10"),
+          Rule.translated(
+              "-XX:InitialRAMFraction=(\\d+)",
+              10,
+              m -> "-XX:InitialRAMPercentage=" + toPercentage(m.group(1)),
+              "RAM fractions were replaced by percentages in JDK 10"),
+          Rule.removed(
+              "-XX:[+-]UseCGroupMemoryLimitForHeap",
+              11,
+              "container limits are detected since JDK 10, size the heap with"
+                  + " -XX:MaxRAMPercentage"),
+          Rule.removed("-XX:[+-]AggressiveOpts", 12, "AggressiveOpts was removed in JDK 12"),
+          Rule.translated(
+              "-XX:\\+UseConcMarkSweepGC",
+              14,
+              m -> "-XX:+UseG1GC",
+              "CMS was removed in JDK 14, G1 is its successor"),
+          Rule.removed("-XX:-UseConcMarkSweepGC", 14, "CMS was removed in JDK 14"),
+          Rule.removed("-XX:([+-](Use)?CMS\\w+|CMS\\w+=.*)", 14, "CMS was removed in JDK 14"),
+          Rule.removed(
+              "-XX:([+-]UseBiasedLocking|BiasedLocking\\w+=.*)",
+              18,
+              "biased locking is obsolete since JDK 18"),
+          Rule.introduced(
+              "-XX:[+-]AutoCreateSharedArchive",
+              19,
+              "dynamic CDS auto-archiving arrived in JDK 19"),
+          Rule.introduced("-XX:[+-]ZGenerational", 21, "generational ZGC arrived in JDK 21"),
+          Rule.removed(
+              "-XX:[+-]ZGenerational",
+              24,
+              "ZGC is generational only since JDK 24, the switch is obsolete"),
+          Rule.introduced(
+              "-XX:[+-]UseCompactObjectHeaders", 24, "compact object headers arrived in JDK 24"));
+
+  /**
+   * JDK versions in image references, such as {@code 21-jre}, {@code 17.0.9_9} or {@code java17}
+   */
+  private static final Pattern TAG_VERSION = Pattern.compile("^(?:[a-z]+-?)?(\\d{1,2})(?![0-9])");
+
+  /** Images distributing a JDK, whose tags start with the JDK version */
+  private static final Pattern JDK_IMAGE =
+      Pattern.compile(
+          "java|jdk|jre|temurin|corretto|zulu|semeru|liberica|graalvm|sapmachine|dragonwell");
+
+  private static final Pattern NAME_VERSION =
+      Pattern.compile("(?:java|jdk|jre|openjdk)-?(\\d{1,2})(?![0-9])");
+
+  /**
+   * Drop or translate the flags not matching {@code targetJdk}, translated flags are normalized
+   * against the others
+   */
+  public Translated translate(@NonNull List<String> jvmFlags, int targetJdk) {
+    var translated = new ArrayList<String>();
+    var changes = new ArrayList<String>();
+    for (var flag : jvmFlags) {
+      var rule = RULES.stream().filter(r -> r.appliesTo(flag, targetJdk)).findFirst();
+      if (rule.isEmpty()) {
+        translated.add(flag);
+        continue;
+      }
+      var replacement = rule.get().replace(flag);
+      if (replacement.isPresent()) {
+        translated.add(replacement.get());
+        changes.add(
+            format(
+                "'%s' translated to '%s' for JDK %s, %s",
+                flag, replacement.get(), targetJdk, rule.get().getReason()));
+      } else {
+        changes.add(format("'%s' dropped for JDK %s, %s", flag, targetJdk, rule.get().getReason()));
+      }
+    }
+    return new Translated(
+        changes.isEmpty() ? translated : JvmFlags.normalize(translated).getJvmFlags(), changes);
+  }
+
+  /**
+   * Guess the JDK version of a base image from its name, such as {@code
+   * gcr.io/distroless/java17-debian12}, or from the tag of a known JDK image, such as {@code
+   * eclipse-temurin:21-jre}
+   */
+  public OptionalInt detectJdk(@NonNull String image) {
+    var reference = image.contains("@") ? image.substring(0, image.indexOf('@')) : image;
+    var name = reference.substring(reference.lastIndexOf('/') + 1);
+    var tag = "";
+    if (name.contains(":")) {
+      tag = name.substring(name.indexOf(':') + 1);
+      name = name.substring(0, name.indexOf(':'));
+    }
+    var matcher = NAME_VERSION.matcher(name);
+    if (matcher.find()) {
+      return toJdk(matcher.group(1));
+    }
+    matcher = TAG_VERSION.matcher(tag);
+    if (JDK_IMAGE.matcher(name).find() && matcher.find()) {
+      return toJdk(matcher.group(1));
+    }
+    return OptionalInt.empty();
+  }
+
+  private static OptionalInt toJdk(String version) {
+    var jdk = Integer.parseInt(version);
+    return jdk >= 8 ? OptionalInt.of(jdk) : OptionalInt.empty();
+  }
+
+  private static String toPercentage(String fraction) {
+    var percentage = 100.0 / Math.max(1, Integer.parseInt(fraction));
+    return percentage == Math.rint(percentage)
+        ? String.valueOf((long) percentage)
+        : format(Locale.ROOT, "%.1f", percentage);
+  }
+
+  /** A flag pattern and what to do with matching flags for JDKs in {@code [since, until)} */
+  @Value
+  static class Rule {
+    Pattern pattern;
+    int since;
+    int until;
+
+    /** Translation of a matching flag, {@code null} to drop it */
+    Function<Matcher, String> replacement;
+
+    String reason;
+
+    static Rule removed(String regex, int version, String reason) {
+      return new Rule(Pattern.compile(regex), version, Integer.MAX_VALUE, null, reason);
+    }
+
+    static Rule introduced(String regex, int version, String reason) {
+      return new Rule(Pattern.compile(regex), 0, version, null, reason);
+    }
+
+    static Rule translated(
+        String regex, int version, Function<Matcher, String> replacement, String reason) {
+      return new Rule(Pattern.compile(regex), version, Integer.MAX_VALUE, replacement, reason);
+    }
+
+    boolean appliesTo(String flag, int targetJdk) {
+      return since <= targetJdk && targetJdk < until && pattern.matcher(flag.trim()).matches();
+    }
+
+    Optional<String> replace(String flag) {
+      if (replacement == null) {
+        return Optional.empty();
+      }
+      var matcher = pattern.matcher(flag.trim());
+      matcher.matches();
+      return Optional.of(replacement.apply(matcher));
+    }
+  }
+
+  @Value
+  public static class Translated {
+    List<String> jvmFlags;
+
+    /** Each dropped or translated flag and why */
+    List<String> changes;
+  }
+}
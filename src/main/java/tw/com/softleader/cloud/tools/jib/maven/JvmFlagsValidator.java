@@ -0,0 +1,193 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel.DEBUG;
+import static com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel.LIFECYCLE;
+import static java.lang.String.format;
+import static java.lang.System.getProperty;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.cloud.tools.jib.plugins.extension.ExtensionLogger;
+import com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel;
+import com.google.cloud.tools.jib.plugins.extension.JibPluginExtensionException;
+import com.google.common.annotations.VisibleForTesting;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.ToString;
+import lombok.Value;
+
+/**
+ * Validates JVM flags against the options a local JDK actually knows, as reported by {@code java
+ * -XX:+PrintFlagsFinal}.
+ */
+@ToString
+@Builder(builderClassName = "Builder", toBuilder = true)
+public class JvmFlagsValidator {
+
+  private static final Pattern FLAG_LINE =
+      Pattern.compile("^\\s*(\\w+)\\s+(\\w+)\\s+:?=.*?\\{([^}]*)}.*$");
+
+  @ToString.Exclude private final ExtensionLogger logger;
+
+  @NonNull @lombok.Builder.Default
+  private final Path javaHome = Paths.get(getProperty("java.home"));
+
+  public static final class Builder {}
+
+  /**
+   * @param jvmFlags flags in the order they are passed to the JVM
+   * @return problems found, empty when the flags are valid
+   */
+  public List<String> validate(@NonNull List<String> jvmFlags)
+      throws IOException, JibPluginExtensionException {
+    log(LIFECYCLE, "Validating JVM Flags against %s", javaHome);
+    return validate(jvmFlags, printFlagsFinal());
+  }
+
+  /**
+   * Validate several variants of flags against a single listing of the JDK options
+   *
+   * @param variants flags by the name of their variant, such as a flag set or an architecture
+   * @return problems found prefixed by the name of their variant, empty when all flags are valid
+   */
+  public List<String> validate(@NonNull Map<String, List<String>> variants)
+      throws IOException, JibPluginExtensionException {
+    log(LIFECYCLE, "Validating %s variants of JVM Flags against %s", variants.size(), javaHome);
+    var known = printFlagsFinal();
+    var problems = new ArrayList<String>();
+    for (var variant : variants.entrySet()) {
+      validate(variant.getValue(), known)
+          .forEach(problem -> problems.add(format("'%s' %s", variant.getKey(), problem)));
+    }
+    return problems;
+  }
+
+  private List<String> validate(List<String> jvmFlags, Map<String, Option> known)
+      throws JibPluginExtensionException {
+    var normalized = JvmFlags.normalize(jvmFlags);
+    var problems = new ArrayList<>(normalized.getConflicts());
+    problems.addAll(JvmFlags.contradictions(normalized.getJvmFlags()));
+    problems.addAll(checkOptions(normalized.getJvmFlags(), known));
+    return problems;
+  }
+
+  @VisibleForTesting
+  static List<String> checkOptions(List<String> jvmFlags, Map<String, Option> known) {
+    var problems = new ArrayList<String>();
+    var unlocked = new ArrayList<String>();
+    for (var flag : JvmFlags.parse(jvmFlags)) {
+      if (flag.getType() != JvmFlag.Type.ADVANCED_BOOLEAN
+          && flag.getType() != JvmFlag.Type.ADVANCED_VALUE) {
+        continue;
+      }
+      var option = known.get(flag.getName());
+      if (option == null) {
+        problems.add(format("'%s' is not a known option of the JDK", flag.getText()));
+        continue;
+      }
+      if (option.isBoolean() != (flag.getType() == JvmFlag.Type.ADVANCED_BOOLEAN)) {
+        problems.add(
+            format(
+                "'%s' does not match the %s type of '%s'",
+                flag.getText(), option.getType(), flag.getName()));
+      }
+      if (option.getKind().contains("diagnostic")
+          && !unlocked.contains("UnlockDiagnosticVMOptions")) {
+        problems.add(
+            format("'%s' requires -XX:+UnlockDiagnosticVMOptions before it", flag.getText()));
+      }
+      if (option.getKind().contains("experimental")
+          && !unlocked.contains("UnlockExperimentalVMOptions")) {
+        problems.add(
+            format("'%s' requires -XX:+UnlockExperimentalVMOptions before it", flag.getText()));
+      }
+      if (flag.isEnabled()) {
+        unlocked.add(flag.getName());
+      }
+    }
+    return problems;
+  }
+
+  /** Options known by the JDK, by name */
+  @VisibleForTesting
+  static Map<String, Option> parsePrintFlagsFinal(String output) {
+    var options = new HashMap<String, Option>();
+    for (String line : output.split("\\R")) {
+      var matcher = FLAG_LINE.matcher(line);
+      if (matcher.matches()) {
+        options.put(matcher.group(2), new Option(matcher.group(1), matcher.group(3).trim()));
+      }
+    }
+    return options;
+  }
+
+  private Map<String, Option> printFlagsFinal() throws IOException {
+    var command =
+        List.of(
+            javaHome.resolve("bin").resolve("java").toString(),
+            "-XX:+UnlockDiagnosticVMOptions",
+            "-XX:+UnlockExperimentalVMOptions",
+            "-XX:+PrintFlagsFinal",
+            "-version");
+    log(DEBUG, "Listing JDK options with %s", command);
+    var process = new ProcessBuilder(command).redirectErrorStream(true).start();
+    var output = new String(process.getInputStream().readAllBytes(), UTF_8);
+    try {
+      if (process.waitFor() != 0) {
+        throw new IOException("Unable to list JDK options with " + command + ":\n" + output);
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw (IOException)
+          new InterruptedIOException("Listing JDK options interrupted").initCause(ex);
+    }
+    return parsePrintFlagsFinal(output);
+  }
+
+  private void log(LogLevel level, String message, Object... args) {
+    if (logger != null) {
+      logger.log(level, format(message, args));
+    }
+  }
+
+  @Value
+  static class Option {
+    /** Type as printed by the JDK, e.g. {@code bool}, {@code size_t} or {@code ccstr} */
+    String type;
+
+    /** Kind as printed by the JDK, e.g. {@code product}, {@code diagnostic} */
+    String kind;
+
+    boolean isBoolean() {
+      return "bool".equals(type);
+    }
+  }
+}
@@ -0,0 +1,332 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel.DEBUG;
+import static com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel.WARN;
+import static java.lang.String.format;
+
+import com.google.cloud.tools.jib.plugins.extension.ExtensionLogger;
+import com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.ToString;
+import lombok.Value;
+import org.yaml.snakeyaml.LoaderOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+import org.yaml.snakeyaml.error.YAMLException;
+
+/**
+ * Reads the {@code resources} of a container from rendered Kubernetes manifests, such as the output
+ * of {@code helm template} or {@code kustomize build}, and derives CPU and memory flags from them.
+ *
+ * <p>Containers are looked up in every document of every {@code .yaml} or {@code .yml} file, at any
+ * depth, so Deployments, StatefulSets, CronJobs and bare Pods all work.
+ */
+@ToString
+@Builder(builderClassName = "Builder", toBuilder = true)
+public class KubernetesResources {
+
+  private static final Pattern QUANTITY =
+      Pattern.compile("([+-]?[0-9.]+(?:[eE][+-]?[0-9]+)?)([A-Za-z]*)");
+  private static final Map<String, BigDecimal> SUFFIXES =
+      Map.ofEntries(
+          Map.entry("", BigDecimal.ONE),
+          Map.entry("m", new BigDecimal("0.001")),
+          Map.entry("k", BigDecimal.TEN.pow(3)),
+          Map.entry("M", BigDecimal.TEN.pow(6)),
+          Map.entry("G", BigDecimal.TEN.pow(9)),
+          Map.entry("T", BigDecimal.TEN.pow(12)),
+          Map.entry("P", BigDecimal.TEN.pow(15)),
+          Map.entry("E", BigDecimal.TEN.pow(18)),
+          Map.entry("Ki", BigDecimal.valueOf(2).pow(10)),
+          Map.entry("Mi", BigDecimal.valueOf(2).pow(20)),
+          Map.entry("Gi", BigDecimal.valueOf(2).pow(30)),
+          Map.entry("Ti", BigDecimal.valueOf(2).pow(40)),
+          Map.entry("Pi", BigDecimal.valueOf(2).pow(50)),
+          Map.entry("Ei", BigDecimal.valueOf(2).pow(60)));
+
+  /** Collectors which run without GC worker threads */
+  private static final Set<String> SINGLE_THREADED_GCS = Set.of("UseSerialGC", "UseEpsilonGC");
+
+  @ToString.Exclude private final ExtensionLogger logger;
+
+  /** Manifest file, or directory searched for manifest files */
+  @NonNull private final Path manifests;
+
+  /** Name of the container, may be omitted when the manifests contain a single container */
+  private final String container;
+
+  public static final class Builder {}
+
+  /**
+   * @return the resources of the container
+   * @throws IOException when the manifests can not be read or contain no matching container
+   */
+  public Resources read() throws IOException {
+    log(DEBUG, "Reading Kubernetes resources with %s", this);
+    var found = new ArrayList<Map<?, ?>>();
+    for (var file : listManifests()) {
+      found.addAll(findContainers(file));
+    }
+    var names =
+        found.stream()
+            .map(c -> String.valueOf(c.get("name")))
+            .collect(Collectors.toCollection(TreeSet::new));
+    var matching =
+        found.stream()
+            .filter(c -> container == null || container.equals(c.get("name")))
+            .collect(Collectors.toList());
+    if (container == null && names.size() > 1) {
+      throw new IOException(
+          format(
+              "Manifests in %s contain containers %s, set the name of the container of the app",
+              manifests, names));
+    }
+    if (matching.isEmpty()) {
+      throw new IOException(
+          format(
+              "No container '%s' found in manifests in %s, containers are %s",
+              container, manifests, names));
+    }
+    List<Resources> resources;
+    try {
+      resources =
+          matching.stream()
+              .map(KubernetesResources::toResources)
+              .distinct()
+              .collect(Collectors.toList());
+    } catch (IllegalArgumentException ex) {
+      throw new IOException(
+          format(
+              "Invalid resources of container '%s' in %s: %s",
+              matching.get(0).get("name"), manifests, ex.getMessage()),
+          ex);
+    }
+    if (resources.size() > 1) {
+      log(
+          WARN,
+          "Container '%s' has different resources in manifests in %s, using the first of %s",
+          matching.get(0).get("name"),
+          manifests,
+          resources);
+    }
+    return resources.get(0);
+  }
+
+  private List<Path> listManifests() throws IOException {
+    if (!Files.isDirectory(manifests)) {
+      if (!Files.isRegularFile(manifests)) {
+        throw new IOException("Kubernetes manifests " + manifests + " do not exist");
+      }
+      return List.of(manifests);
+    }
+    try (Stream<Path> walk = Files.walk(manifests)) {
+      return walk.filter(Files::isRegularFile)
+          .filter(
+              file -> {
+                var name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+                return name.endsWith(".yaml") || name.endsWith(".yml");
+              })
+          .sorted()
+          .collect(Collectors.toList());
+    }
+  }
+
+  private static List<Map<?, ?>> findContainers(Path file) throws IOException {
+    var containers = new ArrayList<Map<?, ?>>();
+    try (var reader = Files.newBufferedReader(file)) {
+      for (var document : new Yaml(new SafeConstructor(new LoaderOptions())).loadAll(reader)) {
+        collectContainers(document, containers);
+      }
+    } catch (YAMLException ex) {
+      throw new IOException(
+          format("Unable to parse %s, expecting rendered manifests: %s", file, ex.getMessage()),
+          ex);
+    }
+    return containers;
+  }
+
+  /** Containers of pod specs and pod templates, init containers are skipped */
+  private static void collectContainers(Object node, List<Map<?, ?>> containers) {
+    if (node instanceof Map) {
+      for (var entry : ((Map<?, ?>) node).entrySet()) {
+        if ("initContainers".equals(entry.getKey())) {
+          continue;
+        }
+        if ("containers".equals(entry.getKey()) && entry.getValue() instanceof List) {
+          ((List<?>) entry.getValue())
+              .stream()
+                  .filter(Map.class::isInstance)
+                  .map(c -> (Map<?, ?>) c)
+                  .filter(c -> c.get("name") != null)
+                  .forEach(containers::add);
+          continue;
+        }
+        collectContainers(entry.getValue(), containers);
+      }
+    } else if (node instanceof List) {
+      ((List<?>) node).forEach(element -> collectContainers(element, containers));
+    }
+  }
+
+  private static Resources toResources(Map<?, ?> container) {
+    var resources = asMap(container.get("resources"));
+    var limits = asMap(resources.get("limits"));
+    var requests = asMap(resources.get("requests"));
+    return new Resources(
+        parseMemory(limits.get("memory")),
+        parseMemory(requests.get("memory")),
+        parseCpu(limits.get("cpu")),
+        parseCpu(requests.get("cpu")));
+  }
+
+  private static Map<?, ?> asMap(Object node) {
+    return node instanceof Map ? (Map<?, ?>) node : Map.of();
+  }
+
+  /**
+   * @param quantity Kubernetes quantity such as {@code 512Mi}, {@code 1G} or {@code 1073741824}
+   * @return bytes, or {@code null} without quantity
+   */
+  static Long parseMemory(Object quantity) {
+    return quantity == null
+        ? null
+        : parseQuantity(quantity).setScale(0, RoundingMode.CEILING).longValueExact();
+  }
+
+  /**
+   * @param quantity Kubernetes quantity such as {@code 500m}, {@code 2} or {@code 1.5}
+   * @return millicores, or {@code null} without quantity
+   */
+  static Long parseCpu(Object quantity) {
+    return quantity == null
+        ? null
+        : parseQuantity(quantity)
+            .movePointRight(3)
+            .setScale(0, RoundingMode.CEILING)
+            .longValueExact();
+  }
+
+  private static BigDecimal parseQuantity(Object quantity) {
+    var text = String.valueOf(quantity).trim();
+    var matcher = QUANTITY.matcher(text);
+    if (!matcher.matches() || !SUFFIXES.containsKey(matcher.group(2))) {
+      throw new IllegalArgumentException(format("Invalid Kubernetes quantity '%s'", text));
+    }
+    return new BigDecimal(matcher.group(1)).multiply(SUFFIXES.get(matcher.group(2)));
+  }
+
+  private void log(LogLevel level, String message, Object... args) {
+    if (logger != null) {
+      logger.log(level, format(message, args));
+    }
+  }
+
+  /** Resources of a container, {@code null} when not set */
+  @Value
+  public static class Resources {
+    /** Bytes */
+    Long memoryLimit;
+
+    /** Bytes */
+    Long memoryRequest;
+
+    /** Millicores */
+    Long cpuLimit;
+
+    /** Millicores */
+    Long cpuRequest;
+
+    /**
+     * @return bytes the JVM may use, the limit or else the request
+     */
+    public Long getMemory() {
+      return memoryLimit != null ? memoryLimit : memoryRequest;
+    }
+
+    /**
+     * @return whole CPUs the JVM may use, the limit or else the request rounded up
+     */
+    public Integer getCpus() {
+      var millicores = cpuLimit != null ? cpuLimit : cpuRequest;
+      return millicores == null ? null : (int) Math.max(1, (millicores + 999) / 1000);
+    }
+
+    /**
+     * Flags for the settings {@code configured} leaves to the JVM. The heap follows the percentages
+     * of the launcher, of the limit or else the request, which the JVM is told as {@code
+     * -XX:MaxRAM} since it can not see a request. CPUs size {@code ActiveProcessorCount} and the GC
+     * threads.
+     *
+     * @param configured flags configured so far, which always win
+     */
+    public List<String> getJvmFlags(@NonNull List<String> configured) {
+      var keys =
+          JvmFlags.parse(configured).stream().map(JvmFlag::getKey).collect(Collectors.toSet());
+      var flags = new ArrayList<String>();
+      var memory = getMemory();
+      if (memory != null && keys.stream().noneMatch(LauncherLayerPlan.HEAP_KEYS::contains)) {
+        if (memoryLimit == null) {
+          flags.add(format("-XX:MaxRAM=%sm", memory / (1024 * 1024)));
+        }
+        var mb = memory / (1024 * 1024);
+        flags.add("-XX:MaxRAMPercentage=" + (mb <= 512 ? 50 : mb <= 2048 ? 65 : 75));
+      }
+      var cpus = getCpus();
+      if (cpus != null) {
+        if (!keys.contains("-XX:ActiveProcessorCount")) {
+          flags.add("-XX:ActiveProcessorCount=" + cpus);
+        }
+        var gc =
+            JvmFlags.parse(configured).stream()
+                .filter(flag -> flag.getKey().equals(JvmFlag.KEY_GC) && flag.isEnabled())
+                .map(JvmFlag::getName)
+                .reduce((first, second) -> second);
+        if (gc.filter(SINGLE_THREADED_GCS::contains).isEmpty()) {
+          if (!keys.contains("-XX:ParallelGCThreads")) {
+            flags.add("-XX:ParallelGCThreads=" + cpus);
+          }
+          if (!keys.contains("-XX:ConcGCThreads")) {
+            // the default of G1, derived from the parallel threads
+            flags.add("-XX:ConcGCThreads=" + Math.max(1, (cpus + 2) / 4));
+          }
+        }
+      }
+      return flags;
+    }
+  }
+}
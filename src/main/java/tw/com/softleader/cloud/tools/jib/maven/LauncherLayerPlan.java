@@ -0,0 +1,190 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static com.google.cloud.tools.jib.api.buildplan.FilePermissions.fromOctalString;
+import static com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel.DEBUG;
+import static com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel.LIFECYCLE;
+import static java.lang.String.format;
+import static java.lang.System.getProperty;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static tw.com.softleader.cloud.tools.jib.maven.JvmFlagsLayerPlan.JIB_JVM_FLAGS_FILE;
+
+import com.google.cloud.tools.jib.api.buildplan.AbsoluteUnixPath;
+import com.google.cloud.tools.jib.api.buildplan.FileEntriesLayer;
+import com.google.cloud.tools.jib.plugins.extension.ExtensionLogger;
+import com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Singular;
+import lombok.ToString;
+
+/**
+ * Launcher layer plan, a shell script computing heap, CPU and GC flags from the cgroup limits of
+ * the container before starting the app.
+ *
+ * <p>Settings already present in the static `jvmFlags` are left out of the computation, the static
+ * flags are the source of truth.
+ */
+@ToString
+@Builder(builderClassName = "Builder", toBuilder = true)
+public class LauncherLayerPlan {
+
+  public static final String LAYER_LAUNCHER = "jvm launcher";
+  public static final String JIB_LAUNCHER = "jib-launcher";
+  static final String TEMPLATE = "jib-launcher.sh";
+
+  static final Set<String> HEAP_KEYS =
+      Set.of("-Xmx", "-XX:MaxHeapSize", "-XX:MaxRAM", "-XX:MaxRAMPercentage", "-XX:MaxRAMFraction");
+  private static final Set<String> CPU_KEYS = Set.of("-XX:ActiveProcessorCount");
+  private static final Set<String> LARGE_PAGES_KEYS =
+      Set.of("-XX:UseLargePages", "-XX:UseTransparentHugePages");
+
+  @ToString.Exclude private final ExtensionLogger logger;
+
+  @NonNull @lombok.Builder.Default
+  private final Path buildDir = Paths.get(getProperty("java.io.tmpdir"));
+
+  /** Set when the project shares its build directory, to keep its cache files apart */
+  private final String projectId;
+
+  /** The static flags the launcher passes to the JVM after the computed ones */
+  @Singular private final Set<String> jvmFlags;
+
+  /** Flags of each flag set, selectable at start through the {@code JIB_FLAG_SET} variable */
+  @Singular private final Map<String, List<String>> flagSets;
+
+  /**
+   * Flags by architecture, keyed by the file suffix such as {@code arm64} or {@code worker.arm64},
+   * picked up when the container runs on that architecture
+   */
+  @Singular private final Map<String, List<String>> architectureVariants;
+
+  /** Name of the jvm flags file the launcher reads */
+  @NonNull @lombok.Builder.Default private final String jvmFlagsFilename = JIB_JVM_FLAGS_FILE;
+
+  /** Name of the argfile holding the classpath the launcher starts the app with */
+  @NonNull @lombok.Builder.Default
+  private final String classpathFilename = BuildPlanFiles.JIB_CLASSPATH_FILE;
+
+  @NonNull @lombok.Builder.Default private final String mode = "755";
+
+  public static final class Builder {}
+
+  /**
+   * Create a layer containing the launcher script
+   *
+   * @param directoryInContainer directory will be contained the launcher in the container
+   * @return launcher layer
+   */
+  public FileEntriesLayer create(@NonNull AbsoluteUnixPath directoryInContainer)
+      throws IOException {
+    log(DEBUG, "Creating '%s' layer with %s", LAYER_LAUNCHER, this);
+    var sourcePath = CacheFiles.directory(buildDir, projectId).resolve(JIB_LAUNCHER);
+    CacheFiles.writeConservatively(sourcePath, render(directoryInContainer));
+    AbsoluteUnixPath pathInContainer = directoryInContainer.resolve(JIB_LAUNCHER);
+    log(LIFECYCLE, "Adding layer containing '%s' launcher to the image", pathInContainer);
+    return FileEntriesLayer.builder()
+        .setName(LAYER_LAUNCHER)
+        .addEntry(sourcePath, pathInContainer, fromOctalString(mode))
+        .build();
+  }
+
+  String render(AbsoluteUnixPath directoryInContainer) throws IOException {
+    try (var template = getClass().getResourceAsStream(TEMPLATE)) {
+      if (template == null) {
+        throw new IOException("Missing launcher template " + TEMPLATE);
+      }
+      var script =
+          new String(template.readAllBytes(), UTF_8)
+              .replace("@APP_ROOT@", directoryInContainer.toString())
+              .replace("@JVM_FLAGS_FILE@", jvmFlagsFilename)
+              .replace("@CLASSPATH_FILE@", classpathFilename)
+              .replace("@FLAG_SETS@", renderFlagSets())
+              .replace("@DETECT_ARCH@", String.valueOf(!architectureVariants.isEmpty()))
+              .replace("@ARCHITECTURES@", renderArchitectureVariants());
+      for (var toggle : computeToggles(jvmFlags).entrySet()) {
+        script = script.replace("@" + toggle.getKey() + "@", String.valueOf(toggle.getValue()));
+      }
+      return script;
+    }
+  }
+
+  private String renderFlagSets() {
+    return flagSets.entrySet().stream()
+        .map(
+            flagSet ->
+                format("    %s)\n", flagSet.getKey())
+                    + renderToggles(flagSet.getValue())
+                    + "      ;;")
+        .collect(Collectors.joining("\n"));
+  }
+
+  private String renderArchitectureVariants() {
+    return architectureVariants.entrySet().stream()
+        .map(
+            variant ->
+                format("    %s)\n", variant.getKey())
+                    + renderToggles(variant.getValue())
+                    + format(
+                        "      flags_file=\"$flags_file.%s\"\n",
+                        variant.getKey().substring(variant.getKey().lastIndexOf('.') + 1))
+                    + "      ;;")
+        .collect(Collectors.joining("\n"));
+  }
+
+  private static String renderToggles(Collection<String> staticFlags) {
+    return computeToggles(staticFlags).entrySet().stream()
+        .map(
+            toggle ->
+                format(
+                    "      %s=%s\n", toggle.getKey().toLowerCase(Locale.ROOT), toggle.getValue()))
+        .collect(Collectors.joining());
+  }
+
+  /** Which settings the launcher computes, by template placeholder */
+  private static Map<String, Boolean> computeToggles(Collection<String> staticFlags) {
+    var keys =
+        staticFlags.stream().map(JvmFlag::parse).map(JvmFlag::getKey).collect(Collectors.toSet());
+    var toggles = new LinkedHashMap<String, Boolean>();
+    toggles.put("COMPUTE_HEAP", keys.stream().noneMatch(HEAP_KEYS::contains));
+    toggles.put("COMPUTE_CPU", keys.stream().noneMatch(CPU_KEYS::contains));
+    toggles.put("COMPUTE_GC", !keys.contains(JvmFlag.KEY_GC));
+    toggles.put("COMPUTE_LARGE_PAGES", keys.stream().noneMatch(LARGE_PAGES_KEYS::contains));
+    return toggles;
+  }
+
+  private void log(LogLevel level, String message, Object... args) {
+    if (logger != null) {
+      logger.log(level, format(message, args));
+    }
+  }
+}
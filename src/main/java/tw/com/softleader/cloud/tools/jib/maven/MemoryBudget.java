@@ -0,0 +1,290 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static java.lang.String.format;
+
+import com.google.cloud.tools.jib.plugins.extension.JibPluginExtensionException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.ToString;
+import lombok.Value;
+
+/**
+ * Estimates the memory a JVM started with the given flags may take, to catch flags that add up to
+ * more than the container limit before the container gets OOM-killed.
+ *
+ * <p>Besides the heap, the estimate adds metaspace, code cache, thread stacks, direct buffers, GC
+ * data structures and a fixed amount for the remaining JVM internals. The estimate is of committed
+ * memory: settings left to their default count with the size a typical app commits rather than the
+ * address space the JVM reserves, see {@link Estimate#getItems()} for the source of each number.
+ * Direct memory without {@code -XX:MaxDirectMemorySize} is only bounded by the max heap, it is
+ * reported in {@link Estimate#getUncounted()} instead of doubling the heap.
+ */
+@ToString
+@Builder(builderClassName = "Builder", toBuilder = true)
+public class MemoryBudget {
+
+  public static final String ESTIMATE = "jib-memory-budget.json";
+
+  static final long MB = 1024 * 1024;
+  static final long GB = 1024 * MB;
+  static final double DEFAULT_MAX_RAM_PERCENTAGE = 25;
+  static final long DEFAULT_METASPACE = 96 * MB;
+  static final long DEFAULT_CODE_CACHE = 64 * MB;
+  static final long DEFAULT_CODE_CACHE_WITHOUT_TIERED = 48 * MB;
+  static final long DEFAULT_THREAD_STACK = MB;
+
+  /** Stacks are committed as deep as threads get, rarely beyond this */
+  static final long COMMITTED_THREAD_STACK = 256 * 1024;
+
+  static final long JVM_INTERNALS = 64 * MB;
+
+  /** Heaps from here on run without compressed oops, so references take twice the space */
+  static final long COMPRESSED_OOPS_MAX_HEAP = 32 * GB;
+
+  /** Heaps below this hold about as many objects as a heap just below 32 GiB */
+  static final long COMPRESSED_OOPS_BREAK_EVEN = 48 * GB;
+
+  /** Memory limit of the container in bytes */
+  private final long containerLimit;
+
+  /** Threads the app is expected to run, each of them reserves a stack */
+  @lombok.Builder.Default private final int threads = 200;
+
+  /** Share of the container limit the estimate may take */
+  @lombok.Builder.Default private final int maxPercentage = 90;
+
+  public static final class Builder {}
+
+  public Estimate estimate(@NonNull List<String> jvmFlags) throws JibPluginExtensionException {
+    var flags =
+        JvmFlags.parse(jvmFlags).stream()
+            .collect(Collectors.toMap(JvmFlag::getKey, Function.identity(), (a, b) -> b));
+    var items = new ArrayList<Item>();
+    var warnings = new ArrayList<String>();
+
+    var heap = estimateHeap(flags);
+    items.add(heap);
+    items.add(
+        size(flags, "-XX:MaxMetaspaceSize")
+            .map(bytes -> new Item("metaspace", bytes, "-XX:MaxMetaspaceSize"))
+            .orElseGet(
+                () ->
+                    new Item(
+                        "metaspace",
+                        DEFAULT_METASPACE,
+                        "typically committed, assumed, set -XX:MaxMetaspaceSize to bound it")));
+    items.add(estimateCodeCache(flags));
+    items.add(estimateThreadStacks(flags));
+    var uncounted = new ArrayList<Item>();
+    size(flags, "-XX:MaxDirectMemorySize")
+        .map(bytes -> new Item("direct memory", bytes, "-XX:MaxDirectMemorySize"))
+        .ifPresentOrElse(
+            items::add,
+            () ->
+                uncounted.add(
+                    new Item(
+                        "direct memory",
+                        heap.getBytes(),
+                        "up to the max heap by default, set -XX:MaxDirectMemorySize to count it")));
+    items.add(estimateGc(flags, heap.getBytes()));
+    items.add(new Item("jvm internals", JVM_INTERNALS, "symbols, class loaders, runtime, assumed"));
+
+    var total = items.stream().mapToLong(Item::getBytes).sum();
+    var percentage = total * 100.0 / containerLimit;
+    if (percentage > maxPercentage) {
+      warnings.add(
+          format(
+              "estimated %s MiB is %.0f%% of the %s MiB container limit, above %s%%",
+              total / MB, percentage, containerLimit / MB, maxPercentage));
+    }
+    var compressedOops = flags.get("-XX:UseCompressedOops");
+    if (heap.getBytes() >= COMPRESSED_OOPS_MAX_HEAP
+        && heap.getBytes() < COMPRESSED_OOPS_BREAK_EVEN
+        && (compressedOops == null || compressedOops.isEnabled())) {
+      warnings.add(
+          format(
+              "a heap of %s MiB disables compressed oops and holds fewer objects than a heap"
+                  + " just below %s GiB, consider -Xmx31g",
+              heap.getBytes() / MB, COMPRESSED_OOPS_MAX_HEAP / GB));
+    }
+    return new Estimate(items, uncounted, total, containerLimit, percentage, warnings);
+  }
+
+  private Item estimateHeap(Map<String, JvmFlag> flags) throws JibPluginExtensionException {
+    var heap =
+        size(flags, "-Xmx")
+            .map(bytes -> new Item("heap", bytes, "-Xmx"))
+            .or(
+                () ->
+                    size(flags, "-XX:MaxHeapSize")
+                        .map(bytes -> new Item("heap", bytes, "-XX:MaxHeapSize")));
+    if (heap.isPresent()) {
+      return heap.get();
+    }
+    var maxRam = flags.get("-XX:MaxRAMPercentage");
+    var percentage = maxRam != null ? JvmFlags.getPercentage(maxRam) : DEFAULT_MAX_RAM_PERCENTAGE;
+    return new Item(
+        "heap",
+        (long) (containerLimit * percentage / 100),
+        maxRam != null
+            ? "-XX:MaxRAMPercentage of the container limit"
+            : "default MaxRAMPercentage of 25% of the container limit");
+  }
+
+  /** The code cache commits as methods get compiled, rarely up to the reserved size */
+  private Item estimateCodeCache(Map<String, JvmFlag> flags) {
+    var tiered = flags.get("-XX:TieredCompilation");
+    var withoutTiered = tiered != null && !tiered.isEnabled();
+    var committed = withoutTiered ? DEFAULT_CODE_CACHE_WITHOUT_TIERED : DEFAULT_CODE_CACHE;
+    var reserved = size(flags, "-XX:ReservedCodeCacheSize");
+    if (reserved.isPresent()) {
+      return new Item(
+          "code cache",
+          Math.min(reserved.get(), committed),
+          "typically committed, at most -XX:ReservedCodeCacheSize");
+    }
+    return new Item(
+        "code cache",
+        committed,
+        withoutTiered
+            ? "default without tiered compilation"
+            : "typically committed of the 240 MiB reserved with tiered compilation");
+  }
+
+  private Item estimateThreadStacks(Map<String, JvmFlag> flags) {
+    var stack =
+        size(flags, "-Xss")
+            .map(bytes -> Map.entry(bytes, "-Xss"))
+            .or(
+                () ->
+                    size(flags, "-XX:ThreadStackSize")
+                        .map(kb -> Map.entry(kb * 1024, "-XX:ThreadStackSize")))
+            .orElse(Map.entry(DEFAULT_THREAD_STACK, "the default 1 MiB stack"));
+    var committed = Math.min(stack.getKey(), COMMITTED_THREAD_STACK);
+    return new Item(
+        "thread stacks",
+        committed * threads,
+        format(
+            "%s threads of %s KiB committed of %s", threads, committed / 1024, stack.getValue()));
+  }
+
+  /** Remembered sets, card tables and marking bitmaps, as a rough share of the heap */
+  private Item estimateGc(Map<String, JvmFlag> flags, long heap) {
+    var gc =
+        Optional.ofNullable(flags.get(JvmFlag.KEY_GC))
+            .filter(JvmFlag::isEnabled)
+            .map(JvmFlag::getName)
+            .orElse("UseG1GC");
+    var percentage =
+        "UseSerialGC".equals(gc) || "UseEpsilonGC".equals(gc)
+            ? 1
+            : "UseParallelGC".equals(gc) ? 2 : 4;
+    return new Item(
+        "gc", heap * percentage / 100, format("about %s%% of the heap for %s", percentage, gc));
+  }
+
+  private static Optional<Long> size(Map<String, JvmFlag> flags, String key) {
+    return Optional.ofNullable(flags.get(key))
+        .map(JvmFlag::getSize)
+        .filter(OptionalLong::isPresent)
+        .map(OptionalLong::getAsLong);
+  }
+
+  @Value
+  public static class Item {
+    String name;
+    long bytes;
+
+    /** Flag or default the number comes from */
+    String source;
+  }
+
+  @Value
+  public static class Estimate {
+    List<Item> items;
+
+    /** Memory that may come on top of the total, but has no bound to count */
+    List<Item> uncounted;
+
+    long totalBytes;
+    long containerLimitBytes;
+    double percentage;
+
+    /** Findings the build should be warned about, or fail on */
+    List<String> warnings;
+
+    Map<String, Object> toMap() {
+      var map = new LinkedHashMap<String, Object>();
+      map.put("totalBytes", totalBytes);
+      map.put("percentageOfLimit", Math.round(percentage * 10) / 10.0);
+      map.put("items", toMaps(items));
+      map.put("uncounted", toMaps(uncounted));
+      map.put("warnings", warnings);
+      return map;
+    }
+
+    private static List<Map<String, Object>> toMaps(List<Item> items) {
+      return items.stream()
+          .map(
+              item -> {
+                var entry = new LinkedHashMap<String, Object>();
+                entry.put("name", item.getName());
+                entry.put("bytes", item.getBytes());
+                entry.put("source", item.getSource());
+                return (Map<String, Object>) entry;
+              })
+          .collect(Collectors.toList());
+    }
+
+    /**
+     * One line summary, such as {@code 900 MiB (88% of 1024 MiB): heap 256 MiB, ...; not counted:
+     * direct memory up to 256 MiB}
+     */
+    public String getSummary() {
+      var summary =
+          format(
+              "%s MiB (%.0f%% of %s MiB): %s",
+              totalBytes / MB,
+              percentage,
+              containerLimitBytes / MB,
+              items.stream()
+                  .map(item -> item.getName() + " " + item.getBytes() / MB + " MiB")
+                  .collect(Collectors.joining(", ")));
+      if (uncounted.isEmpty()) {
+        return summary;
+      }
+      return summary
+          + uncounted.stream()
+              .map(item -> item.getName() + " up to " + item.getBytes() / MB + " MiB")
+              .collect(Collectors.joining(", ", "; not counted: ", ""));
+    }
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel.LIFECYCLE;
+import static com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel.WARN;
+import static java.lang.String.format;
+import static tw.com.softleader.cloud.tools.jib.maven.JvmFlagsExtension.*;
+
+import com.google.cloud.tools.jib.plugins.extension.JibPluginExtensionException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.OptionalLong;
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+
+/**
+ * Estimates the memory of the default flags and every variant against the container limit, and
+ * writes the estimates to {@value MemoryBudget#ESTIMATE}.
+ */
+@UtilityClass
+class MemoryBudgetPhase {
+
+  void apply(@NonNull ExtensionContext context) throws IOException, JibPluginExtensionException {
+    var properties = context.getProperties();
+    var memoryLimit = getMemoryLimit(properties);
+    if (memoryLimit.isEmpty()) {
+      memoryLimit =
+          context
+              .getResources()
+              .map(KubernetesResources.Resources::getMemoryLimit)
+              .map(OptionalLong::of)
+              .orElseGet(OptionalLong::empty);
+    }
+    if (memoryLimit.isEmpty()) {
+      return;
+    }
+    var budget =
+        MemoryBudget.builder()
+            .containerLimit(memoryLimit.getAsLong())
+            .threads(getMemoryThreads(properties))
+            .maxPercentage(getMemoryBudgetPercentage(properties))
+            .build();
+    var estimates = new LinkedHashMap<String, MemoryBudget.Estimate>();
+    estimates.put("default", budget.estimate(context.getJvmFlags()));
+    for (var variant : context.getVariants().entrySet()) {
+      estimates.put(variant.getKey(), budget.estimate(variant.getValue()));
+    }
+
+    var json = new LinkedHashMap<String, Object>();
+    json.put("containerLimitBytes", memoryLimit.getAsLong());
+    json.put("threads", getMemoryThreads(properties));
+    json.put("maxPercentage", getMemoryBudgetPercentage(properties));
+    var entries = new LinkedHashMap<String, Object>();
+    estimates.forEach((name, estimate) -> entries.put(name, estimate.toMap()));
+    json.put("estimates", entries);
+    var file =
+        CacheFiles.directory(context.getBuildDir(), context.getProjectId())
+            .resolve(MemoryBudget.ESTIMATE);
+    Files.createDirectories(file.getParent());
+    CacheFiles.writeConservatively(file, Json.write(json));
+
+    var logger = context.getLogger();
+    var problems = new ArrayList<String>();
+    estimates.forEach(
+        (name, estimate) -> {
+          logger.log(
+              LIFECYCLE,
+              format("Estimated memory of '%s' JVM Flags %s", name, estimate.getSummary()));
+          estimate.getWarnings().forEach(warning -> problems.add(format("'%s' %s", name, warning)));
+        });
+    context.getReport().lap("memoryBudget");
+    if (problems.isEmpty()) {
+      return;
+    }
+    if (getMemoryBudgetPolicy(properties) == MemoryBudgetPolicy.FAIL) {
+      throw new JibPluginExtensionException(
+          JvmFlagsExtension.class,
+          format(
+              "JVM memory exceeds the budget, see %s:%n  %s", file, String.join("\n  ", problems)));
+    }
+    problems.forEach(problem -> logger.log(WARN, "JVM memory budget, " + problem));
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static java.lang.String.format;
+
+import com.google.cloud.tools.jib.api.buildplan.AbsoluteUnixPath;
+import java.util.List;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.ToString;
+
+/**
+ * Low overhead production observability: a continuous JFR recording kept in a ring buffer and
+ * dumped at exit, plus rotated GC logs.
+ *
+ * <p>The recording uses the {@value #JFR_SETTINGS} settings shipped by the extension, which {@link
+ * JvmFlagsLayerPlan} adds to its layer whenever a flag refers to it.
+ */
+@ToString
+@Builder(builderClassName = "Builder", toBuilder = true)
+public class ObservabilityPreset {
+
+  public static final String JFR_SETTINGS = "jib-observability.jfc";
+  public static final String RECORDING_NAME = "jib";
+
+  /** How long events are kept in the ring buffer */
+  @NonNull @lombok.Builder.Default private final String jfrMaxAge = "6h";
+
+  /** How much event data is kept in the ring buffer */
+  @NonNull @lombok.Builder.Default private final String jfrMaxSize = "250m";
+
+  /** Where the recording is dumped when the JVM exits, should be on a writable volume */
+  @NonNull @lombok.Builder.Default
+  private final AbsoluteUnixPath jfrDumpPath = AbsoluteUnixPath.get("/tmp/jib-recording.jfr");
+
+  @NonNull @lombok.Builder.Default
+  private final AbsoluteUnixPath gcLogPath = AbsoluteUnixPath.get("/tmp/jib-gc.log");
+
+  @lombok.Builder.Default private final int gcLogFileCount = 5;
+  @NonNull @lombok.Builder.Default private final String gcLogFileSize = "20m";
+
+  public static final class Builder {}
+
+  /**
+   * @param appRoot app root in the container
+   * @return path of the JFR settings in the container
+   */
+  public static AbsoluteUnixPath getSettingsPath(@NonNull AbsoluteUnixPath appRoot) {
+    return appRoot.resolve(JFR_SETTINGS);
+  }
+
+  /**
+   * @param appRoot app root in the container, holding the JFR settings
+   * @return the recording and GC logging flags
+   */
+  public List<String> getJvmFlags(@NonNull AbsoluteUnixPath appRoot) {
+    return List.of(
+        format(
+            "-XX:StartFlightRecording=name=%s,settings=%s,maxage=%s,maxsize=%s,dumponexit=true,filename=%s",
+            RECORDING_NAME, getSettingsPath(appRoot), jfrMaxAge, jfrMaxSize, jfrDumpPath),
+        format(
+            "-Xlog:gc*,safepoint:file=%s:time,uptime,level,tags:filecount=%s,filesize=%s",
+            gcLogPath, gcLogFileCount, gcLogFileSize));
+  }
+}
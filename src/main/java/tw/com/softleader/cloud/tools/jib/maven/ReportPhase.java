@@ -0,0 +1,83 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel.DEBUG;
+import static com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel.LIFECYCLE;
+import static java.lang.String.format;
+import static tw.com.softleader.cloud.tools.jib.maven.JvmFlagsExtension.JIB_MAVEN_PLUGIN_ID;
+import static tw.com.softleader.cloud.tools.jib.maven.JvmFlagsExtension.isReport;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.stream.Collectors;
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+
+/**
+ * Writes the {@value BuildReport#REPORT_FILE} of the module, and merges the reports of all modules
+ * of the session into the {@value BuildReport#MATRIX_FILE} of the top level project. Each module
+ * rewrites the matrix, so that it is complete once the last module is built.
+ */
+@UtilityClass
+class ReportPhase {
+
+  void apply(@NonNull ExtensionContext context) throws IOException {
+    if (!isReport(context.getProperties())) {
+      return;
+    }
+    var logger = context.getLogger();
+    var report =
+        context
+            .getReport()
+            .toMap(context.getJvmFlags(), context.getVariants(), context.getLayers());
+    var file =
+        CacheFiles.directory(context.getBuildDir(), context.getProjectId())
+            .resolve(BuildReport.REPORT_FILE);
+    Files.createDirectories(file.getParent());
+    CacheFiles.writeConservatively(file, Json.write(report));
+    logger.log(LIFECYCLE, format("Writing JVM Flags report to %s", file));
+    var session = context.getMavenData().getMavenSession();
+    if (session == null
+        || session.getProjects() == null
+        || session.getTopLevelProject() == null
+        || session.getTopLevelProject().getBuild() == null
+        || session.getTopLevelProject().getBuild().getDirectory() == null) {
+      return;
+    }
+    var project = context.getProject();
+    var jibProjects =
+        session.getProjects().stream()
+            .filter(other -> other == project || other.getPlugin(JIB_MAVEN_PLUGIN_ID) != null)
+            .collect(Collectors.toList());
+    var last = jibProjects.get(jibProjects.size() - 1) == project;
+    var matrix =
+        CacheFiles.directory(
+                Paths.get(session.getTopLevelProject().getBuild().getDirectory()), null)
+            .resolve(BuildReport.MATRIX_FILE);
+    Files.createDirectories(matrix.getParent());
+    var merged = BuildReport.writeMatrix(session, file, last, matrix);
+    if (merged > 0) {
+      logger.log(DEBUG, format("Merged %s JVM Flags reports into %s", merged, matrix));
+    }
+  }
+}
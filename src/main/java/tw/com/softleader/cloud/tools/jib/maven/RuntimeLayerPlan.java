@@ -0,0 +1,343 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel.DEBUG;
+import static com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel.LIFECYCLE;
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.cloud.tools.jib.api.buildplan.AbsoluteUnixPath;
+import com.google.cloud.tools.jib.api.buildplan.ContainerBuildPlan;
+import com.google.cloud.tools.jib.api.buildplan.FileEntriesLayer;
+import com.google.cloud.tools.jib.api.buildplan.FilePermissions;
+import com.google.cloud.tools.jib.api.buildplan.Platform;
+import com.google.cloud.tools.jib.plugins.extension.ExtensionLogger;
+import com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel;
+import com.google.common.annotations.VisibleForTesting;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Singular;
+import lombok.ToString;
+import lombok.Value;
+
+/**
+ * Minimal Java runtime layer plan, finds the modules the app requires with {@code jdeps} and links
+ * a runtime of only those modules with {@code jlink} of a local JDK.
+ */
+@ToString
+@Builder(builderClassName = "Builder", toBuilder = true)
+public class RuntimeLayerPlan {
+
+  public static final String LAYER_RUNTIME = "java runtime";
+  public static final String OUTPUT_DIRECTORY = "runtime";
+  public static final String IMAGE_DIRECTORY = "image";
+  public static final String MODULES_FILE = "jib-runtime-modules";
+  public static final String DEFAULT_RUNTIME_DIRECTORY = "jre";
+
+  /** Modules loaded reflectively by the JVM for some flags, which jdeps can not see in the app */
+  static final Map<Pattern, String> FLAG_MODULES =
+      Map.of(
+          Pattern.compile("-javaagent:.*"), "java.instrument",
+          Pattern.compile("-XX:(StartFlightRecording|FlightRecorderOptions|\\+FlightRecorder).*"),
+              "jdk.jfr",
+          Pattern.compile("-Dcom\\.sun\\.management\\.jmxremote.*"), "jdk.management.agent");
+
+  private static final Pattern JAVA_VERSION = Pattern.compile("JAVA_VERSION=\"(1\\.)?(\\d+).*\"");
+
+  /** OCI architectures by the {@code os.arch} of the JVM */
+  private static final Map<String, String> ARCHITECTURES =
+      Map.of("amd64", "amd64", "x86_64", "amd64", "aarch64", "arm64", "arm64", "arm64");
+
+  @ToString.Exclude private final ExtensionLogger logger;
+
+  @NonNull @lombok.Builder.Default
+  private final Path buildDir = Paths.get(System.getProperty("java.io.tmpdir"));
+
+  private final String projectId;
+
+  /** JDK providing jdeps, jlink and the modules, must match the OS and architecture of the image */
+  @NonNull @lombok.Builder.Default
+  private final Path javaHome = Paths.get(System.getProperty("java.home"));
+
+  /** Modules to add besides the ones found by jdeps, such as {@code jdk.crypto.ec} */
+  @Singular private final List<String> additionalModules;
+
+  /** JVM flags of the image, some of which require modules of their own */
+  @Singular private final List<String> jvmFlags;
+
+  /** Jars outside of the classpath of the app to analyze as well, such as Java agents */
+  @Singular private final List<Path> additionalJars;
+
+  /** Path of the runtime in the container, Default: {@code <appRoot>/jre} */
+  private final AbsoluteUnixPath runtimePath;
+
+  public static final class Builder {}
+
+  /**
+   * @param modules modules of the runtime
+   * @return the flags making a full JDK resolve the same modules as the runtime
+   */
+  public static List<String> getJvmFlags(@NonNull List<String> modules) {
+    var joined = String.join(",", modules);
+    return List.of("--add-modules=" + joined, "--limit-modules=" + joined);
+  }
+
+  /**
+   * Analyze the app of {@code buildPlan} and create a layer containing the linked runtime
+   *
+   * @param buildPlan plan providing the classpath of the app
+   * @param appRoot app root in the container
+   */
+  public Runtime create(@NonNull ContainerBuildPlan buildPlan, @NonNull AbsoluteUnixPath appRoot)
+      throws IOException {
+    log(DEBUG, "Creating '%s' layer with %s", LAYER_RUNTIME, this);
+    checkPlatforms(buildPlan.getPlatforms());
+    var files = BuildPlanFiles.of(buildPlan);
+    var cacheDir = CacheFiles.directory(buildDir, projectId);
+    var root = files.stage(cacheDir.resolve(StagedApp.STAGING_DIRECTORY_NAME));
+    var classpath = ClasspathOrder.expand(files, files.getClasspath(appRoot));
+    if (classpath.isEmpty()) {
+      throw new IOException("Unable to determine the classpath of the app");
+    }
+    var entries =
+        classpath.stream()
+            .map(element -> BuildPlanFiles.toHostPath(root, element))
+            .filter(Files::exists)
+            .collect(Collectors.toCollection(ArrayList::new));
+    entries.addAll(additionalJars);
+
+    var feature = getFeatureVersion(javaHome);
+    var modules = new TreeSet<>(findModules(entries, feature));
+    modules.addAll(getFlagModules(jvmFlags));
+    modules.addAll(additionalModules);
+    var outputDir = Files.createDirectories(cacheDir.resolve(OUTPUT_DIRECTORY));
+    var image = link(outputDir, List.copyOf(modules), feature);
+
+    var path = runtimePath != null ? runtimePath : appRoot.resolve(DEFAULT_RUNTIME_DIRECTORY);
+    var layer = FileEntriesLayer.builder().setName(LAYER_RUNTIME);
+    long size = 0;
+    try (Stream<Path> walk = Files.walk(image)) {
+      for (var file : walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList())) {
+        layer.addEntry(
+            file,
+            path.resolve(image.relativize(file).toString().replace(File.separatorChar, '/')),
+            getPermissions(file));
+        size += Files.size(file);
+      }
+    }
+    log(
+        LIFECYCLE,
+        "Adding layer containing '%s' Java runtime (%s KB) of modules %s to the image",
+        path,
+        size / 1024,
+        modules);
+    return new Runtime(layer.build(), List.copyOf(modules), path);
+  }
+
+  /** The runtime only runs on the OS and architecture of the JDK that linked it */
+  private void checkPlatforms(Set<Platform> platforms) throws IOException {
+    var os = System.getProperty("os.name").toLowerCase(Locale.ROOT);
+    var architecture = getHostArchitecture();
+    var targets =
+        platforms.stream()
+            .map(platform -> platform.getOs() + "/" + platform.getArchitecture())
+            .collect(Collectors.toCollection(TreeSet::new));
+    if (!os.startsWith("linux") || !targets.equals(Set.of("linux/" + architecture))) {
+      throw new IOException(
+          format(
+              "The Java runtime is linked for %s/%s and can not run on image platforms %s,"
+                  + " build the image on a host matching its only platform",
+              os, architecture, targets));
+    }
+  }
+
+  /**
+   * @return OCI architecture of the build host, such as {@code amd64} or {@code arm64}
+   */
+  static String getHostArchitecture() {
+    var arch = System.getProperty("os.arch").toLowerCase(Locale.ROOT);
+    return ARCHITECTURES.getOrDefault(arch, arch);
+  }
+
+  /**
+   * @return modules required by {@code entries}, as printed by {@code jdeps --print-module-deps}
+   */
+  private List<String> findModules(List<Path> entries, int feature) throws IOException {
+    var command = new ArrayList<String>();
+    command.add(javaHome.resolve("bin").resolve("jdeps").toString());
+    command.addAll(
+        List.of(
+            "--ignore-missing-deps",
+            "--print-module-deps",
+            "--multi-release",
+            String.valueOf(feature),
+            "--class-path",
+            entries.stream().map(Path::toString).collect(Collectors.joining(File.pathSeparator))));
+    entries.forEach(entry -> command.add(entry.toString()));
+    var output = run("Finding required modules", command);
+    var lines = output.strip().split("\\R");
+    var modules =
+        Arrays.stream(lines[lines.length - 1].split(","))
+            .map(String::trim)
+            .filter(module -> !module.isEmpty())
+            .collect(Collectors.toList());
+    log(LIFECYCLE, "jdeps found modules %s required by the app", modules);
+    return modules;
+  }
+
+  @VisibleForTesting
+  static Set<String> getFlagModules(List<String> jvmFlags) {
+    return jvmFlags.stream()
+        .flatMap(
+            flag ->
+                FLAG_MODULES.entrySet().stream()
+                    .filter(entry -> entry.getKey().matcher(flag).matches())
+                    .map(Map.Entry::getValue))
+        .collect(Collectors.toCollection(TreeSet::new));
+  }
+
+  /**
+   * Link a runtime of {@code modules}, reusing the one linked by a previous build with the same JDK
+   * and modules
+   *
+   * @return directory of the runtime
+   */
+  private Path link(Path outputDir, List<String> modules, int feature) throws IOException {
+    var image = outputDir.resolve(IMAGE_DIRECTORY);
+    var command = new ArrayList<String>();
+    command.add(javaHome.resolve("bin").resolve("jlink").toString());
+    command.addAll(
+        List.of(
+            "--add-modules",
+            String.join(",", modules),
+            "--strip-debug",
+            "--no-header-files",
+            "--no-man-pages",
+            // numbered levels are deprecated since 21
+            feature >= 21 ? "--compress=zip-6" : "--compress=2"));
+    if (feature >= 19) {
+      // keep the default CDS archive of the JDK, which jlink does not copy
+      command.add("--generate-cds-archive");
+    }
+    command.addAll(List.of("--output", image.toString()));
+    var modulesFile = outputDir.resolve(MODULES_FILE);
+    var linked = String.join("\n", readRelease(javaHome), String.join(" ", command));
+    if (Files.isDirectory(image)
+        && Files.isRegularFile(modulesFile)
+        && Files.readString(modulesFile).equals(linked)) {
+      log(LIFECYCLE, "Java runtime of modules %s is up to date", modules);
+      return image;
+    }
+    Files.deleteIfExists(modulesFile);
+    if (Files.exists(image)) {
+      try (Stream<Path> walk = Files.walk(image)) {
+        for (var path : walk.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+          Files.delete(path);
+        }
+      }
+    }
+    run("Linking Java runtime", command);
+    Files.writeString(modulesFile, linked);
+    return image;
+  }
+
+  private String run(String description, List<String> command) throws IOException {
+    log(DEBUG, "%s with %s", description, command);
+    var process = new ProcessBuilder(command).redirectErrorStream(true).start();
+    var output = new String(process.getInputStream().readAllBytes(), UTF_8);
+    try {
+      if (process.waitFor() != 0) {
+        throw new IOException(format("%s failed with %s:\n%s", description, command, output));
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw (IOException) new InterruptedIOException(description + " interrupted").initCause(ex);
+    }
+    return output;
+  }
+
+  private static String readRelease(Path javaHome) throws IOException {
+    var release = javaHome.resolve("release");
+    return Files.isRegularFile(release) ? Files.readString(release) : "";
+  }
+
+  /**
+   * @return feature version of the JDK, read from its {@code release} file
+   */
+  static int getFeatureVersion(Path javaHome) throws IOException {
+    return readRelease(javaHome)
+        .lines()
+        .map(JAVA_VERSION::matcher)
+        .filter(Matcher::matches)
+        .map(matcher -> Integer.parseInt(matcher.group(2)))
+        .findFirst()
+        .orElseThrow(() -> new IOException("Unable to determine the Java version of " + javaHome));
+  }
+
+  /** Keep executables such as {@code bin/java} executable in the image */
+  private static FilePermissions getPermissions(Path file) throws IOException {
+    try {
+      return FilePermissions.fromPosixFilePermissions(Files.getPosixFilePermissions(file));
+    } catch (UnsupportedOperationException ex) {
+      return file.getParent().getFileName().toString().equals("bin")
+          ? FilePermissions.fromOctalString("755")
+          : FilePermissions.DEFAULT_FILE_PERMISSIONS;
+    }
+  }
+
+  private void log(LogLevel level, String message, Object... args) {
+    if (logger != null) {
+      logger.log(level, format(message, args));
+    }
+  }
+
+  @Value
+  public static class Runtime {
+    FileEntriesLayer layer;
+    List<String> modules;
+
+    /** Path of the runtime in the container, to be used as {@code JAVA_HOME} */
+    AbsoluteUnixPath path;
+
+    public AbsoluteUnixPath getJava() {
+      return path.resolve("bin/java");
+    }
+  }
+}
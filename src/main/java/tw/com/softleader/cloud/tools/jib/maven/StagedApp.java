@@ -0,0 +1,167 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import com.google.cloud.tools.jib.api.buildplan.AbsoluteUnixPath;
+import com.google.cloud.tools.jib.api.buildplan.ContainerBuildPlan;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import lombok.NonNull;
+import lombok.Value;
+
+/**
+ * App of a build plan staged on the build host, for features that launch the real app at build
+ * time. All of them stage into the same directory, so the files are copied once and an archive
+ * dumped by one run matches the classpath of the others.
+ */
+@Value
+public class StagedApp {
+
+  public static final String STAGING_DIRECTORY_NAME = "app-cds-root";
+
+  /** Files JFR and unified logging open by themselves, such as {@code -Xlog:gc:file=/tmp/gc.log} */
+  private static final Pattern FILE_OPTION =
+      Pattern.compile("((?:file|filename|settings)=)(/[^,:]*)");
+
+  /** Host directory acting as the container root */
+  Path root;
+
+  AbsoluteUnixPath appRoot;
+  String mainClass;
+
+  /** Classpath in the container */
+  List<String> classpath;
+
+  /**
+   * Resolve the main class and classpath of {@code buildPlan} without copying any file yet
+   *
+   * @param appRoot app root in the container
+   * @param classpath classpath in the container replacing the one of the plan, empty for the plan's
+   */
+  public static Resolved of(
+      @NonNull ContainerBuildPlan buildPlan,
+      @NonNull AbsoluteUnixPath appRoot,
+      @NonNull List<String> classpath)
+      throws IOException {
+    var files = BuildPlanFiles.of(buildPlan);
+    var mainClass =
+        files
+            .getMainClass(appRoot)
+            .orElseThrow(() -> new IOException("Unable to determine the main class of the app"));
+    var effective = classpath.isEmpty() ? files.getClasspath(appRoot) : classpath;
+    if (effective.isEmpty()) {
+      throw new IOException("Unable to determine the classpath of the app");
+    }
+    return new Resolved(files, appRoot, mainClass, List.copyOf(effective));
+  }
+
+  public static Resolved of(
+      @NonNull ContainerBuildPlan buildPlan, @NonNull AbsoluteUnixPath appRoot) throws IOException {
+    return of(buildPlan, appRoot, List.of());
+  }
+
+  public Path toHostPath(@NonNull String pathInContainer) {
+    return BuildPlanFiles.toHostPath(root, pathInContainer);
+  }
+
+  public String toHostClasspath(@NonNull List<String> classpath) {
+    return BuildPlanFiles.toHostClasspath(root, classpath);
+  }
+
+  /** App root on the host, the working directory of the app */
+  public Path getHostAppRoot() {
+    return toHostPath(appRoot.toString());
+  }
+
+  /**
+   * Translate the container paths of {@code jvmFlags} for a launch on the host. Paths into the app
+   * root point to the staged app, and the files of JFR and unified logging, such as those of the
+   * observability preset, go below the staged root instead of the same path on the host. The JFR
+   * settings shipped by the extension are added to the staged app when a flag refers to them.
+   */
+  public List<String> toHostFlags(@NonNull List<String> jvmFlags) throws IOException {
+    var hostFlags = new ArrayList<String>();
+    for (var flag : jvmFlags) {
+      if (!flag.startsWith("-XX:StartFlightRecording") && !flag.startsWith("-Xlog")) {
+        hostFlags.add(flag.replace(appRoot + "/", getHostAppRoot() + File.separator));
+        continue;
+      }
+      var matcher = FILE_OPTION.matcher(flag);
+      var hostFlag = new StringBuilder();
+      while (matcher.find()) {
+        var hostPath = toHostPath(matcher.group(2));
+        Files.createDirectories(hostPath.getParent());
+        if (matcher.group(2).equals(ObservabilityPreset.getSettingsPath(appRoot).toString())) {
+          stageJfrSettings(hostPath);
+        }
+        matcher.appendReplacement(hostFlag, Matcher.quoteReplacement(matcher.group(1) + hostPath));
+      }
+      hostFlags.add(matcher.appendTail(hostFlag).toString());
+    }
+    return hostFlags;
+  }
+
+  private static void stageJfrSettings(Path hostPath) throws IOException {
+    try (var settings = StagedApp.class.getResourceAsStream(ObservabilityPreset.JFR_SETTINGS)) {
+      if (settings == null) {
+        throw new IOException("Missing JFR settings " + ObservabilityPreset.JFR_SETTINGS);
+      }
+      Files.copy(settings, hostPath, REPLACE_EXISTING);
+    }
+  }
+
+  /**
+   * @param jvmFlags flags in the container, see {@link #toHostFlags(List)}
+   * @return training run launching the main class with the classpath from the app root, left to
+   *     complete with the args and log file of the feature
+   */
+  public TrainingRun.Builder trainingRun(@NonNull List<String> jvmFlags) throws IOException {
+    return TrainingRun.builder()
+        .workingDirectory(Files.createDirectories(getHostAppRoot()))
+        .jvmFlags(toHostFlags(jvmFlags))
+        .classpath(toHostClasspath(classpath))
+        .mainClass(mainClass);
+  }
+
+  /** App whose main class and classpath are known, not staged yet */
+  @Value
+  public static class Resolved {
+
+    BuildPlanFiles files;
+    AbsoluteUnixPath appRoot;
+    String mainClass;
+    List<String> classpath;
+
+    /** Stage the files of the plan into {@code cacheDir} of the project */
+    public StagedApp stage(@NonNull Path cacheDir) throws IOException {
+      var root = files.stage(cacheDir.resolve(STAGING_DIRECTORY_NAME));
+      return new StagedApp(root, appRoot, mainClass, classpath);
+    }
+  }
+}
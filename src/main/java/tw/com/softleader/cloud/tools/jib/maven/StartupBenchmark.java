@@ -0,0 +1,385 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel.DEBUG;
+import static com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel.LIFECYCLE;
+import static com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel.WARN;
+import static java.lang.String.format;
+import static java.lang.System.getProperty;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import com.google.cloud.tools.jib.plugins.extension.ExtensionLogger;
+import com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Singular;
+import lombok.ToString;
+import lombok.Value;
+
+/**
+ * Compares the startup of the app under several candidate flag sets, by launching it on the build
+ * host a number of times with each set.
+ *
+ * <p>Each run measures the time until the main method of the app is entered, the time until the app
+ * is ready, and at exit the GC counts and peak RSS of the process. The app is ready once its output
+ * matches {@code readyLogLine} or {@code readyCommand} succeeds, and is then asked to exit. Without
+ * either, the app runs until it exits by itself or {@code timeout} elapses.
+ */
+@ToString
+@Builder(builderClassName = "Builder", toBuilder = true)
+public class StartupBenchmark {
+
+  public static final String REPORT_JSON = "jib-startup-benchmark.json";
+  public static final String REPORT_TABLE = "jib-startup-benchmark.txt";
+  static final Duration GRACEFUL_EXIT_TIMEOUT = Duration.ofSeconds(30);
+  static final Duration POLL_INTERVAL = Duration.ofMillis(100);
+
+  @ToString.Exclude private final ExtensionLogger logger;
+
+  @NonNull @lombok.Builder.Default
+  private final Path javaHome = Paths.get(getProperty("java.home"));
+
+  @NonNull private final Path workingDirectory;
+
+  /** Candidate flag sets by name, each a list of flags as written to a jvm flags file */
+  @Singular private final Map<String, List<String>> candidates;
+
+  @NonNull private final String classpath;
+
+  /** Classpath of the candidates running with a classpath other than {@code classpath} */
+  @Singular private final Map<String, String> candidateClasspaths;
+
+  @NonNull private final String mainClass;
+  @Singular private final List<String> args;
+  @lombok.Builder.Default private final int iterations = 5;
+
+  /** Output line signaling the app is ready, such as {@code Started .* in} */
+  private final Pattern readyLogLine;
+
+  /** Shell command exiting with 0 once the app is ready, such as {@code curl -sf localhost:8080} */
+  private final String readyCommand;
+
+  @NonNull @lombok.Builder.Default private final Duration timeout = Duration.ofSeconds(60);
+
+  /** Directory receiving the reports and the output of each run */
+  @NonNull private final Path outputDir;
+
+  public static final class Builder {}
+
+  /**
+   * Run every candidate {@code iterations} times and write {@value #REPORT_JSON} and {@value
+   * #REPORT_TABLE} into {@code outputDir}
+   *
+   * @return the runs of each candidate
+   */
+  public Map<String, List<Sample>> run() throws IOException {
+    Files.createDirectories(outputDir);
+    var results = new LinkedHashMap<String, List<Sample>>();
+    for (var candidate : candidates.entrySet()) {
+      var samples = new ArrayList<Sample>();
+      for (int i = 1; i <= iterations; i++) {
+        log(
+            LIFECYCLE,
+            "Benchmarking '%s' JVM Flags, run %s of %s",
+            candidate.getKey(),
+            i,
+            iterations);
+        samples.add(
+            runOnce(
+                candidate.getKey() + "-" + i,
+                candidate.getValue(),
+                candidateClasspaths.getOrDefault(candidate.getKey(), classpath)));
+      }
+      results.put(candidate.getKey(), samples);
+    }
+    Files.writeString(outputDir.resolve(REPORT_JSON), toJson(results));
+    var table = toTable(results);
+    Files.writeString(outputDir.resolve(REPORT_TABLE), table);
+    log(LIFECYCLE, "Startup benchmark results, see %s:%n%s", outputDir.resolve(REPORT_JSON), table);
+    return results;
+  }
+
+  private Sample runOnce(String name, List<String> jvmFlags, String classpath) throws IOException {
+    var probeFile = outputDir.resolve(name + ".probe");
+    Files.deleteIfExists(probeFile);
+    var command = new ArrayList<String>();
+    command.add(javaHome.resolve("bin").resolve("java").toString());
+    command.addAll(jvmFlags);
+    command.add("-D" + StartupProbe.PROPERTY_FILE + "=" + probeFile);
+    command.add("-D" + StartupProbe.PROPERTY_MAIN_CLASS + "=" + mainClass);
+    command.add("-cp");
+    command.add(classpath + File.pathSeparator + getProbeLocation());
+    command.add(StartupProbe.class.getName());
+    command.addAll(args);
+    log(DEBUG, "Benchmark run command: %s", command);
+
+    var launchedAt = System.currentTimeMillis();
+    var started = System.nanoTime();
+    var process =
+        new ProcessBuilder(command)
+            .directory(workingDirectory.toFile())
+            .redirectErrorStream(true)
+            .start();
+    var readyAt = new AtomicLong(-1);
+    var output =
+        new Thread(() -> pump(process, outputDir.resolve(name + ".log"), readyAt, started));
+    output.start();
+    try {
+      var deadline = started + timeout.toNanos();
+      while (process.isAlive() && System.nanoTime() < deadline && readyAt.get() < 0) {
+        if (readyCommand != null && isReady()) {
+          readyAt.compareAndSet(-1, System.nanoTime() - started);
+        } else {
+          process.waitFor(POLL_INTERVAL.toMillis(), MILLISECONDS);
+        }
+      }
+      var timedOut = process.isAlive() && readyAt.get() < 0;
+      if (timedOut && isReadinessConfigured()) {
+        log(WARN, "Benchmark run '%s' not ready within %ss", name, timeout.toSeconds());
+      }
+      if (process.isAlive()) {
+        process.destroy();
+        if (!process.waitFor(GRACEFUL_EXIT_TIMEOUT.toMillis(), MILLISECONDS)) {
+          process.destroyForcibly().waitFor();
+        }
+      }
+      output.join();
+    } catch (InterruptedException ex) {
+      process.destroyForcibly();
+      Thread.currentThread().interrupt();
+      throw (IOException) new InterruptedIOException("Benchmark run interrupted").initCause(ex);
+    }
+
+    var probe = new Properties();
+    if (Files.exists(probeFile)) {
+      try (var in = Files.newInputStream(probeFile)) {
+        probe.load(in);
+      }
+    } else {
+      log(
+          WARN,
+          "Benchmark run '%s' exited with %s before the app started",
+          name,
+          process.exitValue());
+    }
+    var mainEnteredAt = getLong(probe, StartupProbe.MAIN_ENTERED_AT);
+    var ready = readyAt.get();
+    return new Sample(
+        process.exitValue(),
+        mainEnteredAt < 0 ? -1 : mainEnteredAt - launchedAt,
+        ready < 0 ? -1 : Duration.ofNanos(ready).toMillis(),
+        getLong(probe, StartupProbe.PEAK_RSS),
+        getLong(probe, StartupProbe.GC_COUNT),
+        getLong(probe, StartupProbe.GC_TIME));
+  }
+
+  /** Copy the output of the app into its log file, watching for the ready line */
+  private void pump(Process process, Path logFile, AtomicLong readyAt, long started) {
+    try (var reader = new BufferedReader(new InputStreamReader(process.getInputStream(), UTF_8));
+        var log = Files.newBufferedWriter(logFile)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        log.write(line);
+        log.newLine();
+        if (readyLogLine != null && readyAt.get() < 0 && readyLogLine.matcher(line).find()) {
+          readyAt.compareAndSet(-1, System.nanoTime() - started);
+        }
+      }
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  private boolean isReady() throws IOException, InterruptedException {
+    var probe =
+        new ProcessBuilder("sh", "-c", readyCommand)
+            .redirectErrorStream(true)
+            .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+            .start();
+    if (!probe.waitFor(timeout.toMillis(), MILLISECONDS)) {
+      probe.destroyForcibly();
+      return false;
+    }
+    if (probe.exitValue() == 0) {
+      return true;
+    }
+    Thread.sleep(POLL_INTERVAL.toMillis());
+    return false;
+  }
+
+  private boolean isReadinessConfigured() {
+    return readyLogLine != null || readyCommand != null;
+  }
+
+  private static long getLong(Properties properties, String key) {
+    var value = properties.getProperty(key);
+    return value == null ? -1 : Long.parseLong(value);
+  }
+
+  /** The jar, or directory, {@link StartupProbe} is loaded from */
+  private static Path getProbeLocation() throws IOException {
+    try {
+      return Paths.get(
+          StartupProbe.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+    } catch (URISyntaxException ex) {
+      throw new IOException("Unable to locate " + StartupProbe.class.getName(), ex);
+    }
+  }
+
+  private String toJson(Map<String, List<Sample>> results) {
+    var report = new LinkedHashMap<String, Object>();
+    report.put("mainClass", mainClass);
+    report.put("iterations", iterations);
+    var candidatesReport = new ArrayList<Object>();
+    for (var result : results.entrySet()) {
+      var candidate = new LinkedHashMap<String, Object>();
+      candidate.put("name", result.getKey());
+      candidate.put("jvmFlags", candidates.get(result.getKey()));
+      var median = Sample.median(result.getValue()).toMap();
+      median.remove("exitCode");
+      candidate.put("median", median);
+      candidate.put(
+          "runs", result.getValue().stream().map(Sample::toMap).collect(Collectors.toList()));
+      candidatesReport.add(candidate);
+    }
+    report.put("candidates", candidatesReport);
+    return Json.write(report);
+  }
+
+  static String toTable(Map<String, List<Sample>> results) {
+    var rows = new ArrayList<List<String>>();
+    rows.add(
+        List.of(
+            "Flag set",
+            "Runs",
+            "Time to main (ms)",
+            "Time to ready (ms)",
+            "Peak RSS (MiB)",
+            "GC count",
+            "GC time (ms)"));
+    for (var result : results.entrySet()) {
+      var median = Sample.median(result.getValue());
+      rows.add(
+          List.of(
+              result.getKey(),
+              String.valueOf(result.getValue().size()),
+              cell(median.getTimeToMainMillis()),
+              cell(median.getTimeToReadyMillis()),
+              cell(median.getPeakRssKb() < 0 ? -1 : median.getPeakRssKb() / 1024),
+              cell(median.getGcCount()),
+              cell(median.getGcTimeMillis())));
+    }
+    var widths = new int[rows.get(0).size()];
+    for (var row : rows) {
+      for (int i = 0; i < widths.length; i++) {
+        widths[i] = Math.max(widths[i], row.get(i).length());
+      }
+    }
+    var table = new StringBuilder();
+    for (var row : rows) {
+      for (int i = 0; i < widths.length; i++) {
+        var cell = row.get(i);
+        table.append(
+            i == 0 ? format("%-" + widths[i] + "s", cell) : format("  %" + widths[i] + "s", cell));
+      }
+      table.append('\n');
+    }
+    return table.toString();
+  }
+
+  private static String cell(long value) {
+    return value < 0 ? "-" : String.valueOf(value);
+  }
+
+  private void log(LogLevel level, String message, Object... args) {
+    if (logger != null) {
+      logger.log(level, format(message, args));
+    }
+  }
+
+  /** Measurements of one run, {@code -1} when a value is not available */
+  @Value
+  public static class Sample {
+    int exitCode;
+    long timeToMainMillis;
+    long timeToReadyMillis;
+    long peakRssKb;
+    long gcCount;
+    long gcTimeMillis;
+
+    /** Median of each measurement, ignoring runs where it is not available */
+    static Sample median(List<Sample> samples) {
+      return new Sample(
+          0,
+          median(samples, Sample::getTimeToMainMillis),
+          median(samples, Sample::getTimeToReadyMillis),
+          median(samples, Sample::getPeakRssKb),
+          median(samples, Sample::getGcCount),
+          median(samples, Sample::getGcTimeMillis));
+    }
+
+    private static long median(List<Sample> samples, ToLongFunction<Sample> value) {
+      var values = samples.stream().mapToLong(value).filter(v -> v >= 0).sorted().toArray();
+      if (values.length == 0) {
+        return -1;
+      }
+      var middle = values.length / 2;
+      return values.length % 2 == 1 ? values[middle] : (values[middle - 1] + values[middle]) / 2;
+    }
+
+    Map<String, Object> toMap() {
+      var map = new LinkedHashMap<String, Object>();
+      map.put("exitCode", exitCode);
+      map.put("timeToMainMillis", nullIfAbsent(timeToMainMillis));
+      map.put("timeToReadyMillis", nullIfAbsent(timeToReadyMillis));
+      map.put("peakRssKb", nullIfAbsent(peakRssKb));
+      map.put("gcCount", nullIfAbsent(gcCount));
+      map.put("gcTimeMillis", nullIfAbsent(gcTimeMillis));
+      return map;
+    }
+
+    private static Long nullIfAbsent(long value) {
+      return value < 0 ? null : value;
+    }
+  }
+}
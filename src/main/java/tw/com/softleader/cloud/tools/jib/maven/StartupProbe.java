@@ -0,0 +1,99 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Optional;
+import java.util.Properties;
+
+/**
+ * Main class wrapping the app of a {@link StartupBenchmark} run. It records when the app's main
+ * method is entered and, at exit, the GC counts and the peak RSS of the process into the file named
+ * by the {@value #PROPERTY_FILE} system property.
+ *
+ * <p>Runs inside the app's JVM, so it must only depend on the JDK.
+ */
+public final class StartupProbe {
+
+  public static final String PROPERTY_FILE = "jib.startup-probe.file";
+  public static final String PROPERTY_MAIN_CLASS = "jib.startup-probe.main-class";
+
+  static final String MAIN_ENTERED_AT = "mainEnteredAt";
+  static final String GC_COUNT = "gcCount";
+  static final String GC_TIME = "gcTimeMillis";
+  static final String PEAK_RSS = "peakRssKb";
+
+  private StartupProbe() {}
+
+  public static void main(String[] args) throws Throwable {
+    var mainEnteredAt = System.currentTimeMillis();
+    var file = Paths.get(System.getProperty(PROPERTY_FILE));
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> report(file, mainEnteredAt)));
+    var mainClass =
+        Class.forName(
+            System.getProperty(PROPERTY_MAIN_CLASS),
+            false,
+            Thread.currentThread().getContextClassLoader());
+    // resolves main alone, reflection would link the types of every method of the class
+    MethodHandles.publicLookup()
+        .findStatic(mainClass, "main", MethodType.methodType(void.class, String[].class))
+        .invoke(args);
+  }
+
+  private static void report(Path file, long mainEnteredAt) {
+    var report = new Properties();
+    report.setProperty(MAIN_ENTERED_AT, String.valueOf(mainEnteredAt));
+    long count = 0;
+    long time = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      count += Math.max(gc.getCollectionCount(), 0);
+      time += Math.max(gc.getCollectionTime(), 0);
+    }
+    report.setProperty(GC_COUNT, String.valueOf(count));
+    report.setProperty(GC_TIME, String.valueOf(time));
+    peakRssKb().ifPresent(value -> report.setProperty(PEAK_RSS, value));
+    try (OutputStream out = Files.newOutputStream(file)) {
+      report.store(out, null);
+    } catch (IOException ex) {
+      System.err.println("Unable to write startup probe report: " + ex);
+    }
+  }
+
+  /** {@code VmHWM} of {@code /proc/self/status}, only available on Linux */
+  private static Optional<String> peakRssKb() {
+    try {
+      return Files.readAllLines(Paths.get("/proc/self/status")).stream()
+          .filter(line -> line.startsWith("VmHWM:"))
+          .map(line -> line.replaceAll("\\D", ""))
+          .findFirst();
+    } catch (IOException | RuntimeException ex) {
+      return Optional.empty();
+    }
+  }
+}
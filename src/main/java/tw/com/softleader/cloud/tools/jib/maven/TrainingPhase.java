@@ -0,0 +1,172 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel.LIFECYCLE;
+import static com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel.WARN;
+import static java.lang.String.format;
+import static tw.com.softleader.cloud.tools.jib.maven.JvmFlagsExtension.*;
+
+import com.google.cloud.tools.jib.plugins.extension.JibPluginExtensionException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+
+/**
+ * Runs the features learning from a training run of the app: flag recommendation, classpath
+ * ordering, JIT tuning and the static CDS archive, in that order so that each one trains with the
+ * flags and classpath of the ones before it.
+ */
+@UtilityClass
+class TrainingPhase {
+
+  void apply(@NonNull ExtensionContext context) throws IOException, JibPluginExtensionException {
+    recommend(context);
+    orderClasspath(context);
+    tuneJit(context);
+    shareClassData(context);
+  }
+
+  private void recommend(ExtensionContext context) throws IOException, JibPluginExtensionException {
+    var properties = context.getProperties();
+    var mode = getRecommendMode(properties);
+    if (mode == RecommendMode.OFF) {
+      return;
+    }
+    JvmFlagsRecommender.Builder recommender =
+        JvmFlagsRecommender.builder()
+            .logger(context.getLogger())
+            .buildDir(context.getBuildDir())
+            .projectId(context.getProjectId())
+            .jvmFlags(context.getJvmFlags())
+            .trainingArgs(getTrainingArgs(properties))
+            .trainingTimeout(getTrainingTimeout(properties))
+            .workload(getRecommendWorkload(properties).orElse(null));
+    getTrainingJavaHome(properties).ifPresent(recommender::javaHome);
+    var report = recommender.build().recommend(context.getBuildPlan(), context.getAppRoot());
+    if (mode == RecommendMode.APPLY) {
+      context
+          .getLogger()
+          .log(LIFECYCLE, format("Applying recommended JVM Flags %s", report.getJvmFlags()));
+      context.setJvmFlags(JvmFlags.merge(context.getJvmFlags(), report.getJvmFlags()));
+      context.getReport().attribute("recommend", report.getJvmFlags());
+    }
+    context.getReport().lap("recommend");
+  }
+
+  private void orderClasspath(ExtensionContext context)
+      throws IOException, JibPluginExtensionException {
+    var properties = context.getProperties();
+    if (!isClasspathOrder(properties)) {
+      return;
+    }
+    ClasspathOrder.Builder order =
+        ClasspathOrder.builder()
+            .logger(context.getLogger())
+            .buildDir(context.getBuildDir())
+            .projectId(context.getProjectId())
+            .jvmFlags(context.getJvmFlags())
+            .trainingArgs(getTrainingArgs(properties))
+            .trainingTimeout(getTrainingTimeout(properties));
+    getTrainingJavaHome(properties).ifPresent(order::javaHome);
+    var ordered = order.build().order(context.getBuildPlan(), context.getAppRoot());
+    context.setOrderedClasspath(ordered.getOrdered());
+    var candidates = new LinkedHashMap<String, List<String>>();
+    candidates.put("original", context.getJvmFlags());
+    candidates.put("ordered", context.getJvmFlags());
+    BenchmarkPhase.benchmark(
+        context,
+        context.getBuildPlan(),
+        ordered.getOriginal(),
+        candidates,
+        Map.of("ordered", ordered.getOrdered()),
+        ClasspathOrder.OUTPUT_DIRECTORY);
+    context.getReport().lap("classpathOrder");
+  }
+
+  private void tuneJit(ExtensionContext context) throws IOException, JibPluginExtensionException {
+    var properties = context.getProperties();
+    if (!isJit(properties)) {
+      return;
+    }
+    var appRoot = context.getAppRoot();
+    JitTuner.Builder tuner =
+        JitTuner.builder()
+            .logger(context.getLogger())
+            .buildDir(context.getBuildDir())
+            .projectId(context.getProjectId())
+            .jvmFlags(context.getJvmFlags())
+            .trainingArgs(getTrainingArgs(properties))
+            .trainingTimeout(getTrainingTimeout(properties))
+            .workload(
+                getJitWorkload(properties).or(() -> getRecommendWorkload(properties)).orElse(null));
+    getTrainingJavaHome(properties).ifPresent(tuner::javaHome);
+    var tuned = tuner.build().tune(context.getBuildPlan(), appRoot);
+    context.setJvmFlags(JvmFlags.merge(tuned.getJvmFlags(), context.getJvmFlags()));
+    context.setCompileCommands(tuned.getCompileCommands());
+    context.getJvmFlags().add(JitTuner.getJvmFlag(appRoot));
+    var jit = new ArrayList<>(tuned.getJvmFlags());
+    jit.add(JitTuner.getJvmFlag(appRoot));
+    context.getReport().attribute("jit", jit);
+    context.getReport().lap("jit");
+  }
+
+  private void shareClassData(ExtensionContext context)
+      throws IOException, JibPluginExtensionException {
+    var properties = context.getProperties();
+    var appRoot = context.getAppRoot();
+    var mode = getCdsMode(properties);
+    if (mode == CdsMode.STATIC) {
+      AppCdsLayerPlan.Builder cds =
+          AppCdsLayerPlan.builder()
+              .logger(context.getLogger())
+              .buildDir(context.getBuildDir())
+              .projectId(context.getProjectId())
+              .jvmFlags(context.getJvmFlags())
+              .trainingArgs(getTrainingArgs(properties))
+              .trainingTimeout(getTrainingTimeout(properties))
+              .classpath(context.getOrderedClasspath());
+      getTrainingJavaHome(properties).ifPresent(cds::javaHome);
+      context.getLayers().add(cds.build().create(context.getBuildPlan(), appRoot));
+      context.getJvmFlags().add(AppCdsLayerPlan.getJvmFlag(appRoot));
+      context.getReport().attribute("cds", List.of(AppCdsLayerPlan.getJvmFlag(appRoot)));
+      context.getReport().lap("cds");
+    } else if (mode == CdsMode.AUTO) {
+      var archive = getCdsArchive(properties);
+      if (archive.toString().startsWith(appRoot + "/")) {
+        context
+            .getLogger()
+            .log(
+                WARN,
+                format(
+                    "CDS archive '%s' is inside the app root '%s', which is usually read-only at"
+                        + " runtime, mount a writable volume outside of it instead",
+                    archive, appRoot));
+      }
+      context.getJvmFlags().addAll(AppCdsLayerPlan.getAutoCreateJvmFlags(archive));
+      context.getReport().attribute("cds", AppCdsLayerPlan.getAutoCreateJvmFlags(archive));
+    }
+  }
+}
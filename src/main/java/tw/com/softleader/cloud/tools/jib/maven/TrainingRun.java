@@ -0,0 +1,217 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel.DEBUG;
+import static com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel.LIFECYCLE;
+import static com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel.WARN;
+import static java.lang.String.format;
+import static java.lang.System.getProperty;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import com.google.cloud.tools.jib.plugins.extension.ExtensionLogger;
+import com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Singular;
+import lombok.ToString;
+import lombok.Value;
+
+/**
+ * Launches the application on the build host, for features that learn from a short run of the real
+ * app.
+ *
+ * <p>The app runs until it exits by itself or {@code timeout} elapses, in which case it is asked to
+ * terminate gracefully so that exit-time dumps (CDS archives, JFR recordings, ...) are still
+ * written. With a {@code workload}, the app is asked to terminate as soon as the workload finishes.
+ */
+@ToString
+@Builder(builderClassName = "Builder", toBuilder = true)
+public class TrainingRun {
+
+  static final Duration GRACEFUL_EXIT_TIMEOUT = Duration.ofSeconds(30);
+
+  @ToString.Exclude private final ExtensionLogger logger;
+
+  @NonNull @lombok.Builder.Default
+  private final Path javaHome = Paths.get(getProperty("java.home"));
+
+  @NonNull private final Path workingDirectory;
+  @Singular private final List<String> jvmFlags;
+  @NonNull private final String classpath;
+  @NonNull private final String mainClass;
+  @Singular private final List<String> args;
+  @NonNull @lombok.Builder.Default private final Duration timeout = Duration.ofSeconds(60);
+
+  /** File receiving stdout and stderr of the app */
+  @NonNull private final Path logFile;
+
+  /**
+   * Shell command exercising the app once started, such as a load test against its port. Its output
+   * goes to {@code logFile} with a {@code .workload} suffix.
+   */
+  private final String workload;
+
+  /**
+   * When set, the app is recorded with JFR using the {@value ObservabilityPreset#JFR_SETTINGS}
+   * settings shipped by the extension, written next to the recording, and the recording is dumped
+   * to this file at exit. Recordings started by {@code jvmFlags} are left out.
+   */
+  private final Path recording;
+
+  public static final class Builder {}
+
+  /**
+   * @return the command line the app is launched with
+   */
+  public List<String> getCommand() {
+    var command = new ArrayList<String>();
+    command.add(javaHome.resolve("bin").resolve("java").toString());
+    if (recording == null) {
+      command.addAll(jvmFlags);
+    } else {
+      jvmFlags.stream()
+          .filter(flag -> !flag.startsWith("-XX:StartFlightRecording"))
+          .forEach(command::add);
+      command.add(
+          format(
+              "-XX:StartFlightRecording=settings=%s,dumponexit=true,filename=%s",
+              recording.resolveSibling(ObservabilityPreset.JFR_SETTINGS), recording));
+    }
+    command.add("-cp");
+    command.add(classpath);
+    command.add(mainClass);
+    command.addAll(args);
+    return command;
+  }
+
+  public Result run() throws IOException {
+    var command = getCommand();
+    log(LIFECYCLE, "Starting training run of '%s', output goes to %s", mainClass, logFile);
+    log(DEBUG, "Training run command: %s", command);
+    Files.createDirectories(logFile.getParent());
+    if (recording != null) {
+      writeJfrSettings(recording.resolveSibling(ObservabilityPreset.JFR_SETTINGS));
+      Files.deleteIfExists(recording);
+    }
+    var started = System.nanoTime();
+    var process =
+        new ProcessBuilder(command)
+            .directory(workingDirectory.toFile())
+            .redirectErrorStream(true)
+            .redirectOutput(logFile.toFile())
+            .start();
+    try {
+      var timedOut =
+          workload != null
+              ? !runWorkload(process, started)
+              : !process.waitFor(timeout.toMillis(), MILLISECONDS);
+      if (timedOut) {
+        log(LIFECYCLE, "Training run reached %ss, asking the app to exit", timeout.toSeconds());
+      }
+      if (process.isAlive()) {
+        process.destroy();
+        if (!process.waitFor(GRACEFUL_EXIT_TIMEOUT.toMillis(), MILLISECONDS)) {
+          process.destroyForcibly().waitFor();
+        }
+      }
+      var result =
+          new Result(process.exitValue(), Duration.ofNanos(System.nanoTime() - started), timedOut);
+      log(LIFECYCLE, "Training run finished in %sms", result.getElapsed().toMillis());
+      if (recording != null && Files.notExists(recording)) {
+        throw new IOException(
+            format(
+                "Training run exited with %s but no JFR recording was dumped, see %s",
+                result.getExitCode(), logFile));
+      }
+      return result;
+    } catch (InterruptedException ex) {
+      process.destroyForcibly();
+      Thread.currentThread().interrupt();
+      throw (IOException) new InterruptedIOException("Training run interrupted").initCause(ex);
+    }
+  }
+
+  private void writeJfrSettings(Path settings) throws IOException {
+    try (var in = getClass().getResourceAsStream(ObservabilityPreset.JFR_SETTINGS)) {
+      if (in == null) {
+        throw new IOException("Missing JFR settings " + ObservabilityPreset.JFR_SETTINGS);
+      }
+      CacheFiles.writeConservatively(settings, in.readAllBytes());
+    }
+  }
+
+  /**
+   * Run the workload while the app is alive
+   *
+   * @return {@code false} when {@code timeout} elapsed first
+   */
+  private boolean runWorkload(Process app, long started) throws IOException, InterruptedException {
+    var workloadLog = logFile.resolveSibling(logFile.getFileName() + ".workload");
+    log(LIFECYCLE, "Running training workload, output goes to %s", workloadLog);
+    var process =
+        new ProcessBuilder("sh", "-c", workload)
+            .directory(workingDirectory.toFile())
+            .redirectErrorStream(true)
+            .redirectOutput(workloadLog.toFile())
+            .start();
+    try {
+      var deadline = started + timeout.toNanos();
+      while (process.isAlive() && app.isAlive() && System.nanoTime() < deadline) {
+        process.waitFor(100, MILLISECONDS);
+      }
+      if (!process.isAlive()) {
+        log(LIFECYCLE, "Training workload exited with %s", process.exitValue());
+        return true;
+      }
+      if (!app.isAlive()) {
+        log(WARN, "App exited during the training workload, see %s", logFile);
+        return true;
+      }
+      return false;
+    } finally {
+      process.destroyForcibly();
+    }
+  }
+
+  private void log(LogLevel level, String message, Object... args) {
+    if (logger != null) {
+      logger.log(level, format(message, args));
+    }
+  }
+
+  @Value
+  public static class Result {
+    int exitCode;
+    Duration elapsed;
+
+    /** Whether the app had to be stopped because the run reached its timeout */
+    boolean timedOut;
+  }
+}
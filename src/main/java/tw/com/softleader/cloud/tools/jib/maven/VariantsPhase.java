@@ -0,0 +1,213 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel.LIFECYCLE;
+import static com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel.WARN;
+import static java.lang.String.format;
+import static tw.com.softleader.cloud.tools.jib.maven.JvmFlagsExtension.*;
+
+import com.google.cloud.tools.jib.api.buildplan.Platform;
+import com.google.cloud.tools.jib.plugins.extension.ExtensionLogger;
+import com.google.cloud.tools.jib.plugins.extension.JibPluginExtensionException;
+import com.google.common.annotations.VisibleForTesting;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Derives the flag sets and architecture variants from the default flags, translates all of them to
+ * the target JDK and validates them against a real JVM.
+ */
+@UtilityClass
+class VariantsPhase {
+
+  private static final Pattern FLAG_SET_NAME = Pattern.compile("[A-Za-z0-9_-]+");
+
+  /** Drop or translate the default flags unknown to the target JDK */
+  void translate(@NonNull ExtensionContext context) {
+    var targetJdk = context.getTargetJdk();
+    if (targetJdk.isPresent()) {
+      context.setJvmFlags(
+          translate(context.getJvmFlags(), targetJdk.getAsInt(), "", context.getLogger()));
+    }
+  }
+
+  void apply(@NonNull ExtensionContext context) throws IOException, JibPluginExtensionException {
+    var logger = context.getLogger();
+    var targetJdk = context.getTargetJdk();
+    var flagSets = getFlagSets(context.getConfig(), context.getJvmFlags());
+    if (targetJdk.isPresent()) {
+      for (var flagSet : flagSets.entrySet()) {
+        flagSet.setValue(
+            translate(flagSet.getValue(), targetJdk.getAsInt(), flagSet.getKey(), logger));
+      }
+    }
+    context.setFlagSets(flagSets);
+    var defaultFlagSet = context.getConfig().map(JvmFlagsExtensionConfig::getDefaultFlagSet);
+    if (defaultFlagSet.isPresent()) {
+      logger.log(LIFECYCLE, format("Using '%s' as the default JVM Flags", defaultFlagSet.get()));
+      context.setJvmFlags(flagSets.get(defaultFlagSet.get()));
+      context.getReport().attribute("flag set " + defaultFlagSet.get(), context.getJvmFlags());
+    }
+    var architectureVariants =
+        getArchitectureVariants(
+            context.getConfig(),
+            context.getJvmFlags(),
+            flagSets,
+            context.getBuildPlan().getPlatforms().stream()
+                .map(Platform::getArchitecture)
+                .collect(Collectors.toSet()),
+            logger);
+    if (targetJdk.isPresent()) {
+      for (var variant : architectureVariants.entrySet()) {
+        variant.setValue(
+            translate(variant.getValue(), targetJdk.getAsInt(), variant.getKey(), logger));
+      }
+    }
+    context.setArchitectureVariants(architectureVariants);
+    if (isValidate(context.getProperties())) {
+      validate(context);
+    }
+  }
+
+  /** Validate the default flags and every variant with a single JVM launch */
+  private void validate(ExtensionContext context) throws IOException, JibPluginExtensionException {
+    var variants = new LinkedHashMap<String, List<String>>();
+    variants.put("default", context.getJvmFlags());
+    variants.putAll(context.getVariants());
+    JvmFlagsValidator.Builder validator = JvmFlagsValidator.builder().logger(context.getLogger());
+    getValidationJavaHome(context.getProperties()).ifPresent(validator::javaHome);
+    var problems = validator.build().validate(variants);
+    if (!problems.isEmpty()) {
+      throw new JibPluginExtensionException(
+          JvmFlagsExtension.class, "Invalid JVM Flags:\n  " + String.join("\n  ", problems));
+    }
+    context.getReport().lap("validate");
+  }
+
+  /**
+   * Flags of each configured flag set, applied on top of {@code jvmFlags}
+   *
+   * @return flag sets by name, in configured order
+   */
+  @VisibleForTesting
+  Map<String, List<String>> getFlagSets(
+      @NonNull Optional<JvmFlagsExtensionConfig> config, @NonNull List<String> jvmFlags)
+      throws JibPluginExtensionException {
+    var flagSets = new LinkedHashMap<String, List<String>>();
+    for (var flagSet : config.map(JvmFlagsExtensionConfig::getFlagSets).orElseGet(List::of)) {
+      var name = StringUtils.trimToEmpty(flagSet.getName());
+      if (!FLAG_SET_NAME.matcher(name).matches()) {
+        throw new JibPluginExtensionException(
+            JvmFlagsExtension.class,
+            format("Flag set name '%s' must match %s", name, FLAG_SET_NAME.pattern()));
+      }
+      if (flagSets.put(name, JvmFlags.merge(jvmFlags, flagSet.getJvmFlags())) != null) {
+        throw new JibPluginExtensionException(
+            JvmFlagsExtension.class, format("Flag set '%s' is configured twice", name));
+      }
+    }
+    var defaultFlagSet = config.map(JvmFlagsExtensionConfig::getDefaultFlagSet);
+    if (defaultFlagSet.isPresent() && !flagSets.containsKey(defaultFlagSet.get())) {
+      throw new JibPluginExtensionException(
+          JvmFlagsExtension.class,
+          format("Default flag set '%s' is not configured", defaultFlagSet.get()));
+    }
+    return flagSets;
+  }
+
+  /**
+   * Flags of each architecture of the image merged over the default flags and over every flag set
+   *
+   * @return flags by file suffix, such as {@code arm64} or {@code worker.arm64}
+   */
+  @VisibleForTesting
+  Map<String, List<String>> getArchitectureVariants(
+      @NonNull Optional<JvmFlagsExtensionConfig> config,
+      @NonNull List<String> jvmFlags,
+      @NonNull Map<String, List<String>> flagSets,
+      @NonNull Set<String> platforms,
+      @NonNull ExtensionLogger logger)
+      throws JibPluginExtensionException {
+    var variants = new LinkedHashMap<String, List<String>>();
+    var configured = new HashSet<String>();
+    for (var architecture :
+        config.map(JvmFlagsExtensionConfig::getArchitectures).orElseGet(List::of)) {
+      var name = StringUtils.trimToEmpty(architecture.getName());
+      if (!FLAG_SET_NAME.matcher(name).matches()) {
+        throw new JibPluginExtensionException(
+            JvmFlagsExtension.class,
+            format("Architecture name '%s' must match %s", name, FLAG_SET_NAME.pattern()));
+      }
+      if (!configured.add(name)) {
+        throw new JibPluginExtensionException(
+            JvmFlagsExtension.class, format("Architecture '%s' is configured twice", name));
+      }
+      if (flagSets.containsKey(name)) {
+        throw new JibPluginExtensionException(
+            JvmFlagsExtension.class,
+            format("Flag set '%s' has the name of an architecture, rename the flag set", name));
+      }
+      if (!platforms.contains(name)) {
+        logger.log(
+            WARN,
+            format(
+                "Skipping JVM Flags of architecture '%s', the image is built for %s",
+                name, new TreeSet<>(platforms)));
+        continue;
+      }
+      variants.put(name, JvmFlags.merge(jvmFlags, architecture.getJvmFlags()));
+      for (var flagSet : flagSets.entrySet()) {
+        variants.put(
+            flagSet.getKey() + "." + name,
+            JvmFlags.merge(flagSet.getValue(), architecture.getJvmFlags()));
+      }
+    }
+    return variants;
+  }
+
+  /** Drop or translate flags unknown to the target JDK, logging each change */
+  private List<String> translate(
+      List<String> jvmFlags, int targetJdk, String variant, ExtensionLogger logger) {
+    var translated = JvmFlagsTranslator.translate(jvmFlags, targetJdk);
+    translated
+        .getChanges()
+        .forEach(
+            change ->
+                logger.log(
+                    WARN,
+                    variant.isEmpty()
+                        ? "JVM Flag " + change
+                        : format("JVM Flag of '%s' %s", variant, change)));
+    return translated.getJvmFlags();
+  }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Data;
+
+/**
+ * JIT warm-up before the main class starts, run by the {@link WarmupAgent} shipped in a layer of
+ * its own.
+ */
+@Data
+public class Warmup {
+
+  /**
+   * Methods called repeatedly, as {@code com.example.Warmup#run}. A method without parameters,
+   * either static or of a class with a constructor without parameters.
+   */
+  private List<String> entryPoints = new ArrayList<>();
+
+  /** Times each entry point is called at most */
+  private int iterations = WarmupAgent.DEFAULT_ITERATIONS;
+
+  /** Seconds the warm-up takes at most, ending before {@link #iterations} are reached */
+  private int timeout = WarmupAgent.DEFAULT_TIMEOUT_SECONDS;
+}
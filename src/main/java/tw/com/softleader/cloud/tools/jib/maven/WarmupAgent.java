@@ -0,0 +1,177 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import java.io.PrintStream;
+import java.lang.instrument.Instrumentation;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import javax.management.ObjectName;
+
+/**
+ * Java agent calling warm-up entry points of the app before its main class starts, so that the
+ * first requests do not run interpreted. It reports how long the warm-up took and how many methods
+ * the JIT compiled.
+ *
+ * <p>Options are {@code key=value} pairs separated by {@code ;}, such as {@code
+ * entryPoint=com.example.Warmup#run;iterations=1000;timeout=30}. The agent is copied into a jar of
+ * its own by {@link WarmupLayerPlan}, so it must only use the JDK and must not have nested classes.
+ * A failing warm-up never keeps the app from starting.
+ */
+public final class WarmupAgent {
+
+  static final String OPTION_ENTRY_POINT = "entryPoint";
+  static final String OPTION_ITERATIONS = "iterations";
+  static final String OPTION_TIMEOUT = "timeout";
+  static final String OPTION_SEPARATOR = ";";
+  static final int DEFAULT_ITERATIONS = 10_000;
+  static final int DEFAULT_TIMEOUT_SECONDS = 30;
+
+  private static final String PREFIX = "[jib-warmup] ";
+
+  private WarmupAgent() {}
+
+  public static void premain(String options, Instrumentation instrumentation) {
+    premain(options);
+  }
+
+  public static void premain(String options) {
+    try {
+      var entryPoints = new ArrayList<String>();
+      var iterations = DEFAULT_ITERATIONS;
+      var timeout = DEFAULT_TIMEOUT_SECONDS;
+      for (var option : (options == null ? "" : options).split(OPTION_SEPARATOR)) {
+        var separator = option.indexOf('=');
+        if (separator < 0) {
+          continue;
+        }
+        var key = option.substring(0, separator).trim();
+        var value = option.substring(separator + 1).trim();
+        if (OPTION_ENTRY_POINT.equals(key)) {
+          entryPoints.add(value);
+        } else if (OPTION_ITERATIONS.equals(key)) {
+          iterations = Integer.parseInt(value);
+        } else if (OPTION_TIMEOUT.equals(key)) {
+          timeout = Integer.parseInt(value);
+        }
+      }
+      warmUp(entryPoints, iterations, timeout * 1000L, System.err);
+    } catch (Throwable ex) {
+      System.err.println(PREFIX + "Warm-up failed, starting the app anyway: " + ex);
+    }
+  }
+
+  /**
+   * Call each entry point {@code iterations} times, or until {@code timeoutMillis} elapses
+   *
+   * @return the iterations completed
+   */
+  static int warmUp(List<String> entryPoints, int iterations, long timeoutMillis, PrintStream out) {
+    var started = System.nanoTime();
+    var deadline = started + timeoutMillis * 1_000_000;
+    var compiledBefore = getCompiledMethods();
+    var compilingBefore = getCompilationMillis();
+    var methods = new ArrayList<Method>();
+    var targets = new ArrayList<Object>();
+    for (var entryPoint : entryPoints) {
+      try {
+        var separator = entryPoint.indexOf('#');
+        if (separator < 0) {
+          throw new IllegalArgumentException("expected 'class#method'");
+        }
+        var type =
+            Class.forName(
+                entryPoint.substring(0, separator), true, ClassLoader.getSystemClassLoader());
+        var method = type.getDeclaredMethod(entryPoint.substring(separator + 1));
+        method.setAccessible(true);
+        Object target = null;
+        if (!Modifier.isStatic(method.getModifiers())) {
+          var constructor = type.getDeclaredConstructor();
+          constructor.setAccessible(true);
+          target = constructor.newInstance();
+        }
+        methods.add(method);
+        targets.add(target);
+      } catch (Exception | LinkageError ex) {
+        out.println(PREFIX + "Skipping entry point '" + entryPoint + "': " + ex);
+      }
+    }
+    var completed = 0;
+    while (completed < iterations && !methods.isEmpty() && System.nanoTime() < deadline) {
+      for (int i = 0; i < methods.size(); ) {
+        try {
+          methods.get(i).invoke(targets.get(i));
+          i++;
+        } catch (InvocationTargetException | IllegalAccessException ex) {
+          var cause = ex instanceof InvocationTargetException ? ex.getCause() : ex;
+          out.println(PREFIX + "Dropping entry point " + methods.get(i) + ", it failed: " + cause);
+          methods.remove(i);
+          targets.remove(i);
+        }
+      }
+      completed++;
+    }
+    var compiledAfter = getCompiledMethods();
+    out.println(
+        PREFIX
+            + String.format(
+                "Warmed up %s entry points with %s iterations in %s ms, %s methods compiled,"
+                    + " %s ms compiling",
+                methods.size(),
+                completed,
+                (System.nanoTime() - started) / 1_000_000,
+                compiledBefore < 0 || compiledAfter < 0
+                    ? "unknown"
+                    : String.valueOf(compiledAfter - compiledBefore),
+                getCompilationMillis() - compilingBefore));
+    return completed;
+  }
+
+  /**
+   * @return methods with compiled code, as listed by the {@code Compiler.codelist} diagnostic
+   *     command of HotSpot, -1 when not available
+   */
+  static long getCompiledMethods() {
+    try {
+      var codelist =
+          ManagementFactory.getPlatformMBeanServer()
+              .invoke(
+                  new ObjectName("com.sun.management:type=DiagnosticCommand"),
+                  "compilerCodelist",
+                  new Object[] {new String[0]},
+                  new String[] {String[].class.getName()});
+      return String.valueOf(codelist).lines().filter(line -> !line.isBlank()).count();
+    } catch (Exception ex) {
+      return -1;
+    }
+  }
+
+  private static long getCompilationMillis() {
+    var compilation = ManagementFactory.getCompilationMXBean();
+    return compilation != null && compilation.isCompilationTimeMonitoringSupported()
+        ? compilation.getTotalCompilationTime()
+        : 0;
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel.DEBUG;
+import static com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel.LIFECYCLE;
+import static java.lang.String.format;
+
+import com.google.cloud.tools.jib.api.buildplan.AbsoluteUnixPath;
+import com.google.cloud.tools.jib.api.buildplan.FileEntriesLayer;
+import com.google.cloud.tools.jib.api.buildplan.FilePermissions;
+import com.google.cloud.tools.jib.plugins.extension.ExtensionLogger;
+import com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.ToString;
+
+/**
+ * JIT warm-up layer plan, adds a jar holding the {@link WarmupAgent} together with the {@code
+ * -javaagent:} flag running the configured {@link Warmup} before the main class starts.
+ */
+@ToString
+@Builder(builderClassName = "Builder", toBuilder = true)
+public class WarmupLayerPlan {
+
+  public static final String LAYER_WARMUP = "jvm warmup";
+  public static final String WARMUP_AGENT_JAR = "jib-warmup-agent.jar";
+
+  /** JDK the {@link WarmupAgent} classes are compiled for, the release of the extension */
+  public static final int AGENT_JDK = 11;
+
+  /** Entries of the jar get a fixed time, so that the jar is the same on every build */
+  private static final LocalDateTime ENTRY_TIME = LocalDateTime.of(2000, 1, 1, 0, 0);
+
+  private static final Pattern ENTRY_POINT = Pattern.compile("[\\w.$]+#[\\w$]+");
+
+  @ToString.Exclude private final ExtensionLogger logger;
+
+  @NonNull @lombok.Builder.Default
+  private final Path buildDir = Paths.get(System.getProperty("java.io.tmpdir"));
+
+  private final String projectId;
+
+  @NonNull private final Warmup warmup;
+
+  public static final class Builder {}
+
+  /**
+   * @param appRoot app root in the container
+   * @return the flag running the warm-up agent with the configured entry points
+   */
+  public String getJvmFlag(@NonNull AbsoluteUnixPath appRoot) throws IOException {
+    var invalid =
+        warmup.getEntryPoints().stream()
+            .filter(entryPoint -> !ENTRY_POINT.matcher(entryPoint.trim()).matches())
+            .collect(Collectors.toList());
+    if (warmup.getEntryPoints().isEmpty() || !invalid.isEmpty()) {
+      throw new IOException(
+          format("Warm-up entry points must be given as 'class#method', found %s", invalid));
+    }
+    if (warmup.getIterations() <= 0 || warmup.getTimeout() <= 0) {
+      throw new IOException("Warm-up iterations and timeout must be positive");
+    }
+    var options =
+        warmup.getEntryPoints().stream()
+            .map(entryPoint -> WarmupAgent.OPTION_ENTRY_POINT + "=" + entryPoint.trim())
+            .collect(Collectors.joining(WarmupAgent.OPTION_SEPARATOR));
+    return format(
+        "-javaagent:%s=%s%s%s=%s%s%s=%s",
+        getPathInContainer(appRoot),
+        options,
+        WarmupAgent.OPTION_SEPARATOR,
+        WarmupAgent.OPTION_ITERATIONS,
+        warmup.getIterations(),
+        WarmupAgent.OPTION_SEPARATOR,
+        WarmupAgent.OPTION_TIMEOUT,
+        warmup.getTimeout());
+  }
+
+  /**
+   * Create a layer containing the warm-up agent
+   *
+   * @param appRoot app root in the container, the agent goes into its {@value
+   *     AgentLayerPlan#AGENTS_DIRECTORY} directory
+   * @return warm-up layer
+   */
+  public FileEntriesLayer create(@NonNull AbsoluteUnixPath appRoot) throws IOException {
+    log(DEBUG, "Creating '%s' layer with %s", LAYER_WARMUP, this);
+    var jar = CacheFiles.directory(buildDir, projectId).resolve(WARMUP_AGENT_JAR);
+    CacheFiles.writeConservatively(jar, createAgentJar());
+    var pathInContainer = getPathInContainer(appRoot);
+    log(
+        LIFECYCLE,
+        "Adding '%s' warm-up agent for %s to the image",
+        pathInContainer,
+        warmup.getEntryPoints());
+    return FileEntriesLayer.builder()
+        .setName(LAYER_WARMUP)
+        .addEntry(jar, pathInContainer, FilePermissions.fromOctalString("644"))
+        .build();
+  }
+
+  /** Jar holding the agent class only, with the same bytes on every build */
+  static byte[] createAgentJar() throws IOException {
+    var manifest = new Manifest();
+    manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+    manifest.getMainAttributes().putValue("Premain-Class", WarmupAgent.class.getName());
+    var className = WarmupAgent.class.getName().replace('.', '/') + ".class";
+    var bytes = new ByteArrayOutputStream();
+    try (var jar = new JarOutputStream(bytes);
+        var agent = WarmupAgent.class.getResourceAsStream("/" + className)) {
+      if (agent == null) {
+        throw new IOException("Unable to read " + className);
+      }
+      var manifestEntry = new JarEntry(JarFile.MANIFEST_NAME);
+      manifestEntry.setTimeLocal(ENTRY_TIME);
+      jar.putNextEntry(manifestEntry);
+      manifest.write(jar);
+      jar.closeEntry();
+      var classEntry = new JarEntry(className);
+      classEntry.setTimeLocal(ENTRY_TIME);
+      jar.putNextEntry(classEntry);
+      agent.transferTo(jar);
+      jar.closeEntry();
+    }
+    return bytes.toByteArray();
+  }
+
+  private AbsoluteUnixPath getPathInContainer(AbsoluteUnixPath appRoot) {
+    return appRoot.resolve(AgentLayerPlan.AGENTS_DIRECTORY).resolve(WARMUP_AGENT_JAR);
+  }
+
+  private void log(LogLevel level, String message, Object... args) {
+    if (logger != null) {
+      logger.log(level, format(message, args));
+    }
+  }
+}
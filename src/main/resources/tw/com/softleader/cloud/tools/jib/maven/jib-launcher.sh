@@ -0,0 +1,120 @@
+#!/bin/sh
+# Generated by the JVM Flags Extension for Jib.
+#
+# Derives heap, CPU and GC flags from the cgroup v2 limits of the container, then starts the app
+# with them followed by the static flags of @JVM_FLAGS_FILE@, so configured flags always win.
+# Only shell builtins are used, no process is forked before the JVM, except for `uname -m` on
+# kernels older than 6.1 when flags are configured per architecture.
+#
+# Environment:
+#   JIB_FLAG_SET           name of the flag set to start with, instead of the default flags
+#   JIB_ARCH               architecture of the container, such as amd64 or arm64, detected if unset
+#   JIB_LAUNCHER_SYS_ROOT  prefix of /sys, for testing against fake cgroup trees
+#   JIB_LAUNCHER_DRY_RUN   print the java command instead of running it
+set -e
+
+app_root='@APP_ROOT@'
+flags_file="$app_root/@JVM_FLAGS_FILE@"
+classpath_file="$app_root/@CLASSPATH_FILE@"
+compute_heap=@COMPUTE_HEAP@
+compute_cpu=@COMPUTE_CPU@
+compute_gc=@COMPUTE_GC@
+compute_large_pages=@COMPUTE_LARGE_PAGES@
+detect_arch=@DETECT_ARCH@
+if [ -n "${JIB_FLAG_SET:-}" ]; then
+  case "$JIB_FLAG_SET" in
+@FLAG_SETS@
+    *)
+      echo "jib-launcher: unknown flag set '$JIB_FLAG_SET'" >&2
+      exit 1
+      ;;
+  esac
+  flags_file="$flags_file.$JIB_FLAG_SET"
+fi
+if [ "$detect_arch" = true ]; then
+  arch="${JIB_ARCH:-}"
+  if [ -z "$arch" ]; then
+    machine=
+    if [ -r /proc/sys/kernel/arch ]; then
+      read -r machine < /proc/sys/kernel/arch || true
+    fi
+    if [ -z "$machine" ]; then
+      machine=$(uname -m)
+    fi
+    case "$machine" in
+      x86_64) arch=amd64 ;;
+      aarch64 | armv8*) arch=arm64 ;;
+      armv7* | armv6*) arch=arm ;;
+      i?86) arch=386 ;;
+      *) arch="$machine" ;;
+    esac
+  fi
+  case "${JIB_FLAG_SET:+$JIB_FLAG_SET.}$arch" in
+@ARCHITECTURES@
+  esac
+fi
+sys="${JIB_LAUNCHER_SYS_ROOT:-}/sys"
+java="${JAVA_HOME:+$JAVA_HOME/bin/}java"
+
+memory_mb=
+if [ -r "$sys/fs/cgroup/memory.max" ]; then
+  read -r memory_max < "$sys/fs/cgroup/memory.max" || true
+  case "$memory_max" in
+    '' | max) ;;
+    *) memory_mb=$((memory_max / 1048576)) ;;
+  esac
+fi
+
+cpus=
+if [ -r "$sys/fs/cgroup/cpu.max" ]; then
+  read -r cpu_quota cpu_period < "$sys/fs/cgroup/cpu.max" || true
+  case "$cpu_quota" in
+    '' | max) ;;
+    *) cpus=$(((cpu_quota + cpu_period - 1) / cpu_period)) ;;
+  esac
+fi
+
+flags=
+if [ "$compute_heap" = true ] && [ -n "$memory_mb" ]; then
+  if [ "$memory_mb" -le 512 ]; then
+    flags="$flags -XX:MaxRAMPercentage=50"
+  elif [ "$memory_mb" -le 2048 ]; then
+    flags="$flags -XX:MaxRAMPercentage=65"
+  else
+    flags="$flags -XX:MaxRAMPercentage=75"
+  fi
+fi
+if [ "$compute_cpu" = true ] && [ -n "$cpus" ]; then
+  flags="$flags -XX:ActiveProcessorCount=$cpus"
+fi
+if [ "$compute_gc" = true ]; then
+  if { [ -n "$memory_mb" ] && [ "$memory_mb" -lt 1792 ]; } || { [ -n "$cpus" ] && [ "$cpus" -lt 2 ]; }; then
+    flags="$flags -XX:+UseSerialGC"
+  else
+    flags="$flags -XX:+UseG1GC"
+  fi
+fi
+if [ "$compute_large_pages" = true ]; then
+  huge_pages=0
+  if [ -r "$sys/kernel/mm/hugepages/hugepages-2048kB/nr_hugepages" ]; then
+    read -r huge_pages < "$sys/kernel/mm/hugepages/hugepages-2048kB/nr_hugepages" || true
+  fi
+  transparent_huge_pages=
+  if [ -r "$sys/kernel/mm/transparent_hugepage/enabled" ]; then
+    read -r transparent_huge_pages < "$sys/kernel/mm/transparent_hugepage/enabled" || true
+  fi
+  if [ "${huge_pages:-0}" -gt 0 ]; then
+    flags="$flags -XX:+UseLargePages"
+  else
+    case "$transparent_huge_pages" in
+      *'[always]'* | *'[madvise]'*) flags="$flags -XX:+UseTransparentHugePages" ;;
+    esac
+  fi
+fi
+
+if [ -n "${JIB_LAUNCHER_DRY_RUN:-}" ]; then
+  echo "$java" $flags "@$flags_file" -cp "@$classpath_file" "@$app_root/jib-main-class-file" "$@"
+  exit 0
+fi
+# shellcheck disable=SC2086
+exec "$java" $flags "@$flags_file" -cp "@$classpath_file" "@$app_root/jib-main-class-file" "$@"
@@ -0,0 +1,135 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.google.cloud.tools.jib.api.buildplan.AbsoluteUnixPath;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class AgentLayerPlanTest {
+
+  private static final AbsoluteUnixPath APP_ROOT = AbsoluteUnixPath.get("/app");
+
+  @Test
+  void testJavaAgentFromFile(@TempDir Path tempDir) throws IOException {
+    Files.writeString(tempDir.resolve("agent.jar"), "jar");
+    var plan =
+        AgentLayerPlan.builder()
+            .projectDir(tempDir)
+            .agent(agent(null, "agent.jar", " debug=true "))
+            .architecture("arm64")
+            .build();
+
+    assertThat(plan.getJvmFlags(APP_ROOT))
+        .containsExactly("-javaagent:/app/agents/agent.jar=debug=true");
+    var layer = plan.create(APP_ROOT);
+    assertThat(layer.getName()).isEqualTo(AgentLayerPlan.LAYER_AGENTS);
+    assertThat(layer.getEntries())
+        .extracting(entry -> entry.getExtractionPath().toString())
+        .containsExactly("/app/agents/agent.jar");
+  }
+
+  @Test
+  void testNativeAgentFromLocalRepository(@TempDir Path tempDir) throws IOException {
+    var library =
+        tempDir.resolve("repo/tools/profiler/async-profiler/3.0/async-profiler-3.0-linux-x64.so");
+    Files.createDirectories(library.getParent());
+    Files.write(library, elf(62));
+    var plan =
+        AgentLayerPlan.builder()
+            .projectDir(tempDir)
+            .localRepository(tempDir.resolve("repo"))
+            .agent(agent("tools.profiler:async-profiler:so:linux-x64:3.0", null, "start,event=cpu"))
+            .architecture("amd64")
+            .build();
+
+    assertThat(plan.getJvmFlags(APP_ROOT))
+        .containsExactly("-agentpath:/app/agents/async-profiler-3.0-linux-x64.so=start,event=cpu");
+    assertThat(plan.create(APP_ROOT).getEntries()).hasSize(1);
+
+    var arm =
+        plan.toBuilder().clearArchitectures().architecture("amd64").architecture("arm64").build();
+    assertThatThrownBy(() -> arm.create(APP_ROOT))
+        .hasMessageContaining("built for ELF machine amd64, but the image targets arm64");
+  }
+
+  @Test
+  void testInvalidAgents(@TempDir Path tempDir) throws IOException {
+    Files.writeString(tempDir.resolve("libagent.dylib"), "not elf");
+    var plan = AgentLayerPlan.builder().projectDir(tempDir).localRepository(tempDir);
+
+    assertThatThrownBy(
+            () -> plan.agent(agent(null, "libagent.dylib", null)).build().create(APP_ROOT))
+        .hasMessageContaining("neither a jar nor a Linux ELF library");
+    assertThatThrownBy(
+            () -> plan.clearAgents().agent(agent("a:b:1", "x.jar", null)).build().create(APP_ROOT))
+        .hasMessageContaining("exactly one of");
+    assertThatThrownBy(
+            () -> plan.clearAgents().agent(agent("a:b:1", null, null)).build().create(APP_ROOT))
+        .hasMessageContaining("mvn dependency:get -Dartifact=a:b:1");
+  }
+
+  @Test
+  void testRepositoryPath() throws IOException {
+    assertThat(
+            AgentLayerPlan.getRepositoryPath(
+                "io.opentelemetry.javaagent:opentelemetry-javaagent:2.1.0"))
+        .isEqualTo(
+            "io/opentelemetry/javaagent/opentelemetry-javaagent/2.1.0/opentelemetry-javaagent-2.1.0.jar");
+    assertThat(AgentLayerPlan.getRepositoryPath("g:a:so:v")).isEqualTo("g/a/v/a-v.so");
+    assertThatThrownBy(() -> AgentLayerPlan.getRepositoryPath("g:a"))
+        .hasMessageContaining("Invalid artifact 'g:a'");
+  }
+
+  @Test
+  void testElfMachine(@TempDir Path tempDir) throws IOException {
+    assertThat(AgentLayerPlan.getElfMachine(Files.write(tempDir.resolve("x64.so"), elf(62))))
+        .hasValue(62);
+    assertThat(
+            AgentLayerPlan.getElfMachine(Files.writeString(tempDir.resolve("short"), "\u007fEL")))
+        .isEmpty();
+  }
+
+  /** A little endian ELF header for {@code machine} */
+  private static byte[] elf(int machine) {
+    var header = ByteBuffer.allocate(64).order(ByteOrder.LITTLE_ENDIAN);
+    header.put(new byte[] {0x7f, 'E', 'L', 'F', 2, 1, 1});
+    header.putShort(16, (short) 3);
+    header.putShort(18, (short) machine);
+    return header.array();
+  }
+
+  private static Agent agent(String artifact, String file, String options) {
+    var agent = new Agent();
+    agent.setArtifact(artifact);
+    agent.setFile(file);
+    agent.setOptions(options);
+    return agent;
+  }
+}
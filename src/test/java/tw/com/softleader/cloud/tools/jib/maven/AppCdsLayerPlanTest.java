@@ -0,0 +1,95 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.google.cloud.tools.jib.api.buildplan.AbsoluteUnixPath;
+import com.google.cloud.tools.jib.api.buildplan.ContainerBuildPlan;
+import com.google.cloud.tools.jib.plugins.extension.ExtensionLogger;
+import java.io.IOException;
+import java.nio.file.Path;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+class AppCdsLayerPlanTest {
+
+  @Mock private ExtensionLogger logger;
+
+  @BeforeEach
+  void setUp() {
+    MockitoAnnotations.openMocks(this);
+  }
+
+  @Test
+  @EnabledForJreRange(min = JRE.JAVA_19)
+  void testCreateLayerWithArchive(@TempDir Path tempDir) throws IOException {
+    var plan = AppCdsLayerPlan.builder().logger(logger).buildDir(tempDir).build();
+
+    var layer = plan.create(TrainingApp.buildPlan(tempDir), AbsoluteUnixPath.get("/app"));
+
+    assertThat(layer.getName()).isEqualTo(AppCdsLayerPlan.LAYER_APP_CDS);
+    assertThat(layer.getEntries()).hasSize(1);
+    assertThat(layer.getEntries().get(0).getExtractionPath())
+        .isEqualTo(AbsoluteUnixPath.get("/app/" + AppCdsLayerPlan.APP_CDS_ARCHIVE));
+    assertThat(layer.getEntries().get(0).getSourceFile()).exists().isNotEmptyFile();
+  }
+
+  @Test
+  @EnabledForJreRange(max = JRE.JAVA_18)
+  void testCreateRequiresRelocatableArchives(@TempDir Path tempDir) {
+    var plan = AppCdsLayerPlan.builder().logger(logger).buildDir(tempDir).build();
+
+    assertThatThrownBy(
+            () -> plan.create(TrainingApp.buildPlan(tempDir), AbsoluteUnixPath.get("/app")))
+        .isInstanceOf(IOException.class)
+        .hasMessageContaining("requires Java " + AppCdsLayerPlan.MIN_FEATURE_VERSION);
+  }
+
+  @Test
+  void testCreateWithoutMainClass(@TempDir Path tempDir) {
+    var plan = AppCdsLayerPlan.builder().logger(logger).buildDir(tempDir).build();
+
+    assertThatThrownBy(
+            () -> plan.create(ContainerBuildPlan.builder().build(), AbsoluteUnixPath.get("/app")))
+        .isInstanceOf(IOException.class)
+        .hasMessageContaining("main class");
+  }
+
+  @Test
+  void testJvmFlag() {
+    assertThat(AppCdsLayerPlan.getJvmFlag(AbsoluteUnixPath.get("/app")))
+        .isEqualTo("-XX:SharedArchiveFile=/app/" + AppCdsLayerPlan.APP_CDS_ARCHIVE);
+  }
+
+  @Test
+  void testAutoCreateJvmFlags() {
+    assertThat(AppCdsLayerPlan.getAutoCreateJvmFlags(AbsoluteUnixPath.get("/cds/app.jsa")))
+        .containsExactly(
+            "-XX:+AutoCreateSharedArchive", "-XX:SharedArchiveFile=/cds/app.jsa", "-Xshare:auto");
+  }
+}
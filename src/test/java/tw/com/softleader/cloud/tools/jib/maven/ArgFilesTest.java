@@ -0,0 +1,54 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class ArgFilesTest {
+
+  @Test
+  void testPlainArgumentsAreNotQuoted() {
+    assertThat(ArgFiles.quote("-Xmx512m")).isEqualTo("-Xmx512m");
+    assertThat(ArgFiles.quote("C:\\app\\libs")).isEqualTo("C:\\app\\libs");
+  }
+
+  @Test
+  void testArgumentsWithWhitespaceAreQuoted() {
+    assertThat(ArgFiles.quote("-Dgreeting=hello world")).isEqualTo("\"-Dgreeting=hello world\"");
+    assertThat(ArgFiles.quote("-Dpath=C:\\my app")).isEqualTo("\"-Dpath=C:\\\\my app\"");
+  }
+
+  @Test
+  void testQuotesAndCommentSignsAreEscaped() {
+    assertThat(ArgFiles.quote("-Dq=\"x\"")).isEqualTo("\"-Dq=\\\"x\\\"\"");
+    assertThat(ArgFiles.quote("#not-a-comment")).isEqualTo("\"#not-a-comment\"");
+    assertThat(ArgFiles.quote("")).isEqualTo("\"\"");
+  }
+
+  @Test
+  void testFormatOneArgumentPerLine() {
+    assertThat(ArgFiles.format(List.of("-Xmx1g", "-Da=b c", "Main")))
+        .isEqualTo("-Xmx1g\n\"-Da=b c\"\nMain\n");
+  }
+}
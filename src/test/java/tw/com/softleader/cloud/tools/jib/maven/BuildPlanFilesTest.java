@@ -0,0 +1,110 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.cloud.tools.jib.api.buildplan.AbsoluteUnixPath;
+import com.google.cloud.tools.jib.api.buildplan.ContainerBuildPlan;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BuildPlanFilesTest {
+
+  private static final AbsoluteUnixPath APP_ROOT = AbsoluteUnixPath.get("/app");
+
+  @Test
+  void testMainClassAndClasspathFromJvmArgFiles(@TempDir Path tempDir) throws IOException {
+    var files = BuildPlanFiles.of(TrainingApp.buildPlan(tempDir));
+
+    assertThat(files.getMainClass(APP_ROOT)).hasValue(TrainingApp.class.getName());
+    assertThat(files.getClasspath(APP_ROOT)).containsExactly("/app/libs/*");
+  }
+
+  @Test
+  void testMainClassAndClasspathFromEntrypoint() throws IOException {
+    var files =
+        BuildPlanFiles.of(
+            ContainerBuildPlan.builder()
+                .setEntrypoint(
+                    List.of(
+                        "java", "-Xmx1g", "-cp", "/app/resources:/app/classes", "com.example.Main"))
+                .build());
+
+    assertThat(files.getMainClass(APP_ROOT)).hasValue("com.example.Main");
+    assertThat(files.getClasspath(APP_ROOT)).containsExactly("/app/resources", "/app/classes");
+  }
+
+  @Test
+  void testNothingConfigured() throws IOException {
+    var files = BuildPlanFiles.of(ContainerBuildPlan.builder().build());
+
+    assertThat(files.getMainClass(APP_ROOT)).isEmpty();
+    assertThat(files.getClasspath(APP_ROOT)).isEmpty();
+  }
+
+  @Test
+  void testStageKeepsModificationTime(@TempDir Path tempDir) throws IOException {
+    var files = BuildPlanFiles.of(TrainingApp.buildPlan(tempDir));
+    var root = files.stage(tempDir.resolve("root"));
+
+    var jar = root.resolve("app/libs/training-app.jar");
+    assertThat(jar).exists();
+    assertThat(Files.getLastModifiedTime(jar))
+        .isEqualTo(FileTime.from(files.getEntries().get(0).getModificationTime()));
+    assertThat(root.resolve("app/jib-main-class-file")).hasContent(TrainingApp.class.getName());
+  }
+
+  @Test
+  void testStageReplacesChangedFilesAndRemovesOthers(@TempDir Path tempDir) throws IOException {
+    var buildPlan = TrainingApp.buildPlan(tempDir);
+    var root = BuildPlanFiles.of(buildPlan).stage(tempDir.resolve("root"));
+
+    // Jib gives every entry the same modification time, and this change keeps the size
+    var renamed = TrainingApp.class.getName().replace('T', 'X');
+    Files.writeString(tempDir.resolve("jib-main-class-file"), renamed);
+    BuildPlanFiles.of(buildPlan).stage(root);
+    assertThat(root.resolve("app/jib-main-class-file")).hasContent(renamed);
+
+    var withoutArgFiles =
+        ContainerBuildPlan.builder().addLayer(buildPlan.getLayers().get(0)).build();
+    BuildPlanFiles.of(withoutArgFiles).stage(root);
+    assertThat(root.resolve("app/libs/training-app.jar")).exists();
+    assertThat(root.resolve("app/jib-main-class-file")).doesNotExist();
+  }
+
+  @Test
+  void testToHostClasspath(@TempDir Path tempDir) {
+    assertThat(BuildPlanFiles.toHostClasspath(tempDir, List.of("/app/classes", "/app/libs/*")))
+        .isEqualTo(
+            tempDir.resolve("app/classes")
+                + File.pathSeparator
+                + tempDir.resolve("app/libs")
+                + File.separator
+                + "*");
+  }
+}
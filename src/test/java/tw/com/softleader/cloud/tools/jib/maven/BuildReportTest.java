@@ -0,0 +1,108 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.InstanceOfAssertFactories.MAP;
+
+import com.google.cloud.tools.jib.api.buildplan.AbsoluteUnixPath;
+import com.google.cloud.tools.jib.api.buildplan.FileEntriesLayer;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BuildReportTest {
+
+  @Test
+  void testFirstSourceWins() {
+    var report = new BuildReport("tw.com.softleader:api");
+    report.attribute(BuildReport.SOURCE_POM, List.of("-Xmx1g"));
+    report.attribute("profile latency", List.of("-Xmx1g", "-XX:+UseZGC"));
+
+    assertThat(report.getSource("-Xmx1g")).isEqualTo(BuildReport.SOURCE_POM);
+    assertThat(report.getSource("-XX:+UseZGC")).isEqualTo("profile latency");
+    assertThat(report.getSource("-Xss512k")).isEqualTo(BuildReport.SOURCE_EXTENSION);
+  }
+
+  @Test
+  void testToMap(@TempDir Path tempDir) throws IOException {
+    var file = Files.writeString(tempDir.resolve("jib-jvm-flags-file"), "-Xmx1g -XX:+UseZGC");
+    var report = new BuildReport("tw.com.softleader:api");
+    report.attribute(BuildReport.SOURCE_POM, List.of("-Xmx1g"));
+    report.lap("flags");
+    report.lap("layers");
+
+    var map =
+        report.toMap(
+            List.of("-Xmx1g", "-XX:+UseZGC"),
+            Map.of(),
+            List.of(
+                FileEntriesLayer.builder()
+                    .setName(JvmFlagsLayerPlan.LAYER_JVM_FLAGS)
+                    .addEntry(file, AbsoluteUnixPath.get("/app/jib-jvm-flags-file"))
+                    .build()));
+
+    assertThat(map)
+        .containsEntry("module", "tw.com.softleader:api")
+        .containsEntry("gc", "ZGC")
+        .containsEntry("heap", "1g");
+    assertThat(map.get("phasesMillis")).asInstanceOf(MAP).containsOnlyKeys("flags", "layers");
+    assertThat(Json.write(map))
+        .contains(
+            "\"flag\": \"-XX:+UseZGC\",\n      \"key\": \"-XX:+Use*GC\",\n      \"source\": \"extension\"",
+            "\"bytes\": 18");
+  }
+
+  @Test
+  void testAggregate(@TempDir Path tempDir) throws IOException {
+    var api = write(tempDir.resolve("api.json"), "tw.com.softleader:api", "-Xmx1g", "-XX:+UseZGC");
+    var batch =
+        write(tempDir.resolve("batch.json"), "tw.com.softleader:batch", "-Xmx1g", "-XX:+UseG1GC");
+    var worker =
+        write(tempDir.resolve("worker.json"), "tw.com.softleader:worker", "-Xmx2g", "-XX:+UseZGC");
+
+    var matrix =
+        BuildReport.aggregate(List.of(worker, api, batch, tempDir.resolve("missing.json")));
+
+    assertThat(matrix.get("gc"))
+        .asInstanceOf(MAP)
+        .containsEntry("G1GC", List.of("tw.com.softleader:batch"))
+        .containsEntry("ZGC", List.of("tw.com.softleader:api", "tw.com.softleader:worker"));
+    assertThat(matrix.get("heap"))
+        .asInstanceOf(MAP)
+        .containsEntry("1g", List.of("tw.com.softleader:api", "tw.com.softleader:batch"))
+        .containsEntry("2g", List.of("tw.com.softleader:worker"));
+    assertThat(matrix.get("modules"))
+        .asInstanceOf(MAP)
+        .containsOnlyKeys(
+            "tw.com.softleader:api", "tw.com.softleader:batch", "tw.com.softleader:worker");
+    assertThat(Json.write(matrix)).contains("\"-Xmx\": \"-Xmx2g\"");
+  }
+
+  private static Path write(Path file, String module, String... jvmFlags) throws IOException {
+    var report = new BuildReport(module).toMap(List.of(jvmFlags), Map.of(), List.of());
+    return Files.writeString(file, Json.write(report));
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CacheFilesTest {
+
+  @Test
+  void testWriteConservativelyKeepsUnchangedFile(@TempDir Path tempDir) throws IOException {
+    var file = tempDir.resolve("jib-jvm-flags-file");
+    CacheFiles.writeConservatively(file, "-Xmx1g");
+    var old = FileTime.from(Instant.parse("2024-01-01T00:00:00Z"));
+    Files.setLastModifiedTime(file, old);
+
+    CacheFiles.writeConservatively(file, "-Xmx1g");
+
+    assertThat(Files.getLastModifiedTime(file)).isEqualTo(old);
+    assertThat(tempDir.resolve("jib-jvm-flags-file.sha256")).exists();
+
+    CacheFiles.writeConservatively(file, "-Xmx2g");
+
+    assertThat(file).hasContent("-Xmx2g");
+    assertThat(Files.getLastModifiedTime(file)).isNotEqualTo(old);
+    assertThat(tempDir).isDirectoryNotContaining("glob:**.tmp");
+  }
+
+  @Test
+  void testWriteConservativelyBytes(@TempDir Path tempDir) throws IOException {
+    var file = tempDir.resolve("agent.jar");
+    CacheFiles.writeConservatively(file, new byte[] {1, 2, 3});
+    var old = FileTime.from(Instant.parse("2024-01-01T00:00:00Z"));
+    Files.setLastModifiedTime(file, old);
+
+    CacheFiles.writeConservatively(file, new byte[] {1, 2, 3});
+
+    assertThat(Files.getLastModifiedTime(file)).isEqualTo(old);
+
+    CacheFiles.writeConservatively(file, new byte[] {4});
+
+    assertThat(file).hasBinaryContent(new byte[] {4});
+  }
+
+  @Test
+  void testWriteConservativelyRepairsStaleDigest(@TempDir Path tempDir) throws IOException {
+    var file = tempDir.resolve("jib-jvm-flags-file");
+    CacheFiles.writeConservatively(file, "-Xmx1g");
+    Files.writeString(file, "-Xmx16g");
+
+    CacheFiles.writeConservatively(file, "-Xmx1g");
+    assertThat(file).hasContent("-Xmx1g");
+
+    Files.delete(tempDir.resolve("jib-jvm-flags-file.sha256"));
+    CacheFiles.writeConservatively(file, "-Xmx1g");
+    assertThat(tempDir.resolve("jib-jvm-flags-file.sha256")).exists();
+  }
+
+  @Test
+  void testDirectory() {
+    var buildDir = Path.of("target");
+    assertThat(CacheFiles.directory(buildDir, null)).isEqualTo(Path.of("target", "jib-cache"));
+    assertThat(CacheFiles.directory(buildDir, "tw.com.softleader_api"))
+        .isEqualTo(Path.of("target", "jib-cache", "tw.com.softleader_api"));
+  }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.cloud.tools.jib.api.buildplan.AbsoluteUnixPath;
+import com.google.cloud.tools.jib.api.buildplan.FileEntriesLayer;
+import com.google.cloud.tools.jib.plugins.extension.ExtensionLogger;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+class ClasspathOrderTest {
+
+  @Mock private ExtensionLogger logger;
+
+  @BeforeEach
+  void setUp() {
+    MockitoAnnotations.openMocks(this);
+  }
+
+  @Test
+  void testOrderByLoadedClasses() {
+    assertThat(
+            ClasspathOrder.order(List.of("a.jar", "b.jar", "c.jar"), new int[] {0, 5, 9}, Map.of()))
+        .containsExactly("c.jar", "b.jar", "a.jar");
+  }
+
+  @Test
+  void testOrderKeepsUnloadedEntriesInOriginalOrder() {
+    assertThat(
+            ClasspathOrder.order(
+                List.of("a.jar", "b.jar", "c.jar", "d.jar"), new int[] {0, 0, 3, 0}, Map.of()))
+        .containsExactly("c.jar", "a.jar", "b.jar", "d.jar");
+  }
+
+  @Test
+  void testOrderKeepsSharedClassesShadowed() {
+    // c.jar shadows classes of a.jar, so a.jar must stay in front of it
+    assertThat(
+            ClasspathOrder.order(
+                List.of("a.jar", "b.jar", "c.jar"), new int[] {1, 2, 9}, Map.of(2, Set.of(0))))
+        .containsExactly("b.jar", "a.jar", "c.jar");
+  }
+
+  @Test
+  void testCountLoadedClasses(@TempDir Path tempDir) throws IOException {
+    var a = tempDir.resolve("a.jar");
+    var b = tempDir.resolve("classes");
+    var log =
+        Files.write(
+            tempDir.resolve("class-load.log"),
+            List.of(
+                "[0.010s][info][class,load] java.lang.Object source: shared objects file",
+                "[0.100s][info][class,load] foo.A source: file:" + a,
+                "[0.101s][info][class,load] foo.B source: file:" + b + "/",
+                "[0.102s][info][class,load] foo.C source: file:" + b + "/",
+                "[0.103s][info][class,load] foo.D source: jrt:/java.sql"));
+
+    assertThat(ClasspathOrder.countLoadedClasses(log, List.of(a, b))).containsExactly(1, 2);
+  }
+
+  @Test
+  void testSharedResources(@TempDir Path tempDir) throws IOException {
+    var a = jar(tempDir.resolve("a.jar"), "foo/A.class", "META-INF/MANIFEST.MF");
+    var b = jar(tempDir.resolve("b.jar"), "foo/B.class", "META-INF/MANIFEST.MF");
+    var c = jar(tempDir.resolve("c.jar"), "foo/A.class", "foo/C.class");
+    var resources = Files.createDirectories(tempDir.resolve("resources"));
+    Files.writeString(resources.resolve("logback.xml"), "<configuration/>");
+    var d = jar(tempDir.resolve("d.jar"), "logback.xml");
+
+    assertThat(ClasspathOrder.getSharedResources(List.of(a, b, c, resources, d)))
+        .containsOnly(Map.entry(2, Set.of(0)), Map.entry(4, Set.of(3)));
+  }
+
+  @Test
+  void testOrderFromTrainingRun(@TempDir Path tempDir) throws IOException {
+    var unused = jar(tempDir.resolve("a-unused.jar"), "unused/Unused.class");
+    var buildPlan =
+        TrainingApp.buildPlan(tempDir).toBuilder()
+            .addLayer(
+                FileEntriesLayer.builder()
+                    .setName("snapshot dependencies")
+                    .addEntry(unused, AbsoluteUnixPath.get("/app/libs/a-unused.jar"))
+                    .build())
+            .build();
+
+    var result =
+        ClasspathOrder.builder()
+            .logger(logger)
+            .buildDir(tempDir)
+            .build()
+            .order(buildPlan, AbsoluteUnixPath.get("/app"));
+
+    assertThat(result.getOriginal())
+        .containsExactly("/app/libs/a-unused.jar", "/app/libs/training-app.jar");
+    assertThat(result.getOrdered())
+        .containsExactly("/app/libs/training-app.jar", "/app/libs/a-unused.jar");
+    assertThat(result.getLoadedClasses())
+        .containsEntry("/app/libs/training-app.jar", 1)
+        .containsEntry("/app/libs/a-unused.jar", 0);
+
+    // the jar removed from the plan is not picked up from the previous staging
+    var again =
+        ClasspathOrder.builder()
+            .logger(logger)
+            .buildDir(tempDir)
+            .build()
+            .order(TrainingApp.buildPlan(tempDir), AbsoluteUnixPath.get("/app"));
+    assertThat(again.getOriginal()).containsExactly("/app/libs/training-app.jar");
+  }
+
+  @Test
+  void testOrderWithObservabilityFlags(@TempDir Path tempDir) throws IOException {
+    var appRoot = AbsoluteUnixPath.get("/app");
+
+    var result =
+        ClasspathOrder.builder()
+            .logger(logger)
+            .buildDir(tempDir)
+            .jvmFlags(ObservabilityPreset.builder().build().getJvmFlags(appRoot))
+            .build()
+            .order(TrainingApp.buildPlan(tempDir), appRoot);
+
+    assertThat(result.getLoadedClasses()).containsEntry("/app/libs/training-app.jar", 1);
+    // the container paths of the preset were translated to the staged root
+    var root =
+        tempDir
+            .resolve(JvmFlagsLayerPlan.CACHE_DIRECTORY_NAME)
+            .resolve(StagedApp.STAGING_DIRECTORY_NAME);
+    assertThat(root.resolve("app").resolve(ObservabilityPreset.JFR_SETTINGS)).exists();
+    assertThat(root.resolve("tmp/jib-gc.log")).exists();
+    assertThat(root.resolve("tmp/jib-recording.jfr")).exists();
+  }
+
+  private static Path jar(Path jar, String... classes) throws IOException {
+    try (var out = new JarOutputStream(Files.newOutputStream(jar))) {
+      for (var name : classes) {
+        out.putNextEntry(new JarEntry(name));
+        out.closeEntry();
+      }
+    }
+    return jar;
+  }
+}
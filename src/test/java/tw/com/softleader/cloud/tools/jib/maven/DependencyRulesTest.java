@@ -0,0 +1,99 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.junit.jupiter.api.Test;
+
+class DependencyRulesTest {
+
+  static Artifact artifact(String groupId, String artifactId) {
+    return new DefaultArtifact(
+        groupId,
+        artifactId,
+        "1.0.0",
+        Artifact.SCOPE_COMPILE,
+        "jar",
+        null,
+        new DefaultArtifactHandler("jar"));
+  }
+
+  private static DependencyRule.Context context(List<String> jvmFlags, Artifact... artifacts) {
+    return new DependencyRule.Context(List.of(artifacts), jvmFlags);
+  }
+
+  @Test
+  void testNetty() {
+    var rule = new DependencyRules.Netty();
+
+    assertThat(rule.apply(context(List.of(), artifact("org.slf4j", "slf4j-api")))).isEmpty();
+    assertThat(rule.apply(context(List.of(), artifact("io.netty", "netty-buffer"))))
+        .hasValueSatisfying(
+            tuning ->
+                assertThat(tuning.getJvmFlags())
+                    .contains("-Dio.netty.tryReflectionSetAccessible=true")
+                    .noneMatch(flag -> flag.startsWith("-XX:MaxDirectMemorySize")));
+    assertThat(rule.apply(context(List.of("-Xmx1g"), artifact("io.netty", "netty-buffer"))))
+        .hasValueSatisfying(
+            tuning -> assertThat(tuning.getJvmFlags()).contains("-XX:MaxDirectMemorySize=512m"));
+  }
+
+  @Test
+  void testKafkaClient() {
+    assertThat(
+            new DependencyRules.KafkaClient()
+                .apply(context(List.of(), artifact("org.apache.kafka", "kafka-clients"))))
+        .hasValueSatisfying(
+            tuning ->
+                assertThat(tuning.getJvmFlags())
+                    .containsExactly("-Djdk.nio.maxCachedBufferSize=262144"));
+  }
+
+  @Test
+  void testSpringHibernate() {
+    var rule = new DependencyRules.SpringHibernate();
+    var spring = artifact("org.springframework", "spring-core");
+
+    assertThat(rule.apply(context(List.of(), spring))).isEmpty();
+    assertThat(rule.apply(context(List.of(), artifact("org.hibernate.orm", "hibernate-core"))))
+        .hasValueSatisfying(
+            tuning ->
+                assertThat(tuning.getJvmFlags())
+                    .containsExactly("-XX:MetaspaceSize=128m", "-XX:+UseStringDeduplication"));
+
+    var large =
+        IntStream.range(0, DependencyRules.LARGE_CLASSPATH)
+            .mapToObj(i -> artifact("com.example", "lib-" + i))
+            .collect(Collectors.toCollection(ArrayList::new));
+    large.add(spring);
+    assertThat(rule.apply(new DependencyRule.Context(large, List.of("-XX:+UseParallelGC"))))
+        .hasValueSatisfying(
+            tuning -> assertThat(tuning.getJvmFlags()).containsExactly("-XX:MetaspaceSize=128m"));
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static tw.com.softleader.cloud.tools.jib.maven.ImageLabels.LABEL_PREFIX;
+
+import com.google.cloud.tools.jib.plugins.extension.JibPluginExtensionException;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class ImageLabelsTest {
+
+  @Test
+  void testLabels() throws JibPluginExtensionException {
+    var labels =
+        ImageLabels.builder()
+            .jvmFlags(List.of("-Xmx2G", "-XX:+UseZGC", "-XX:SharedArchiveFile=/app/a.jsa"))
+            .includeFlags(true)
+            .profile("latency")
+            .flagSet("api")
+            .flagSet("worker")
+            .targetJdk(21)
+            .cdsMode("static")
+            .layer("jvm flags")
+            .layer("app cds")
+            .build()
+            .create();
+
+    assertThat(labels)
+        .contains(
+            entry(LABEL_PREFIX + "flags", "-Xmx2G -XX:+UseZGC -XX:SharedArchiveFile=/app/a.jsa"),
+            entry(LABEL_PREFIX + "gc", "ZGC"),
+            entry(LABEL_PREFIX + "heap", "2g"),
+            entry(LABEL_PREFIX + "profile", "latency"),
+            entry(LABEL_PREFIX + "flag-sets", "api,worker"),
+            entry(LABEL_PREFIX + "target-jdk", "21"),
+            entry(LABEL_PREFIX + "cds", "static"),
+            entry(LABEL_PREFIX + "layers", "jvm flags,app cds"))
+        .doesNotContainKey(LABEL_PREFIX + "agents");
+    assertThat(labels.get(LABEL_PREFIX + "digest")).matches("sha256:[0-9a-f]{64}");
+    assertThat(labels.get(LABEL_PREFIX + "version")).isNotBlank().doesNotContain("${");
+  }
+
+  @Test
+  void testDefaults() throws JibPluginExtensionException {
+    var labels =
+        ImageLabels.builder()
+            .jvmFlag("-XX:MaxRAMPercentage=75")
+            .jvmFlag("-Ddb.password=secret")
+            .build()
+            .create();
+
+    assertThat(labels)
+        .contains(entry(LABEL_PREFIX + "gc", "default"), entry(LABEL_PREFIX + "heap", "75%"))
+        .containsKey(LABEL_PREFIX + "digest")
+        .doesNotContainKeys(
+            LABEL_PREFIX + "flags", LABEL_PREFIX + "profile", LABEL_PREFIX + "flag-sets");
+    assertThat(labels.values()).noneMatch(value -> value.contains("secret"));
+  }
+
+  @Test
+  void testLongFlagsOnlyLabeledByDigest() throws JibPluginExtensionException {
+    var flags = Collections.nCopies(200, "-Dlong.property=value");
+    var labels = ImageLabels.builder().jvmFlags(flags).includeFlags(true).build().create();
+
+    assertThat(labels).doesNotContainKey(LABEL_PREFIX + "flags");
+    assertThat(labels.get(LABEL_PREFIX + "digest"))
+        .isEqualTo(
+            ImageLabels.builder().jvmFlags(flags).build().create().get(LABEL_PREFIX + "digest"));
+  }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import java.util.List;
+import java.util.Optional;
+import lombok.NonNull;
+
+/** Rule registered by the tests the way a platform team ships its own rules */
+public class InHouseDependencyRule implements DependencyRule {
+
+  @Override
+  public String getName() {
+    return "in-house";
+  }
+
+  @Override
+  public Optional<Tuning> apply(@NonNull Context context) {
+    return context
+        .find("com.example", "in-house-cache")
+        .map(
+            artifact ->
+                new Tuning(
+                    List.of("-Dcom.example.cache.offHeap=true", "-XX:MaxDirectMemorySize=1g"),
+                    "in-house cache " + artifact.getVersion() + " keeps its entries off heap"));
+  }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.cloud.tools.jib.api.buildplan.AbsoluteUnixPath;
+import com.google.cloud.tools.jib.plugins.extension.ExtensionLogger;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+class JitTunerTest {
+
+  @Mock private ExtensionLogger logger;
+
+  @BeforeEach
+  void setUp() {
+    MockitoAnnotations.openMocks(this);
+  }
+
+  @Test
+  void testReadSegmentedCodeCache(@TempDir Path tempDir) throws IOException {
+    var log = tempDir.resolve("training.log");
+    Files.writeString(
+        log,
+        "started\n"
+            + "CodeHeap 'non-profiled nmethods': size=120032Kb used=3000Kb max_used=5120Kb free=117032Kb\n"
+            + " bounds [0x00007f, 0x00007f, 0x00007f]\n"
+            + "CodeHeap 'profiled nmethods': size=120028Kb used=9000Kb max_used=15000Kb free=111028Kb\n"
+            + "CodeHeap 'non-nmethods': size=5700Kb used=1400Kb max_used=1500Kb free=4300Kb\n"
+            + " total_blobs=1000 nmethods=700 adapters=200\n"
+            + " compilation: enabled\n"
+            + "              stopped_count=0, restarted_count=0\n"
+            + " full_count=1\n");
+
+    var codeCache = JitTuner.readCodeCache(log);
+
+    assertThat(codeCache.getHeaps())
+        .containsExactlyInAnyOrderEntriesOf(
+            Map.of(
+                "non-profiled nmethods",
+                5120L,
+                "profiled nmethods",
+                15000L,
+                "non-nmethods",
+                1500L));
+    assertThat(codeCache.getFullCount()).isEqualTo(1);
+    assertThat(JitTuner.getCodeCacheFlags(codeCache, List.of()))
+        .containsExactly(
+            "-XX:+SegmentedCodeCache",
+            "-XX:ReservedCodeCacheSize=70m",
+            "-XX:NonNMethodCodeHeapSize=8m",
+            "-XX:NonProfiledCodeHeapSize=32m",
+            "-XX:ProfiledCodeHeapSize=30m");
+  }
+
+  @Test
+  void testSizeUnsegmentedCodeCache() {
+    var codeCache = new JitTuner.CodeCache(Map.of("", 50000L), 0);
+
+    assertThat(JitTuner.getCodeCacheFlags(codeCache, List.of()))
+        .containsExactly("-XX:ReservedCodeCacheSize=98m");
+  }
+
+  @Test
+  void testKeepConfiguredCodeCache() {
+    var codeCache = new JitTuner.CodeCache(Map.of("", 50000L), 0);
+
+    assertThat(JitTuner.getCodeCacheFlags(codeCache, List.of("-XX:ReservedCodeCacheSize=256m")))
+        .isEmpty();
+  }
+
+  @Test
+  void testCompileCommands(@TempDir Path tempDir) throws IOException {
+    var log = tempDir.resolve("compilation.log");
+    Files.writeString(
+        log,
+        "[0.030s][debug][jit,compilation]    4       3       java.lang.String::hashCode (60 bytes)\n"
+            + "[0.031s][debug][jit,compilation]   10       4       com.example.Small::get (5 bytes)\n"
+            + "[0.032s][debug][jit,compilation]   12       4       com.example.Hot::run (120 bytes)\n"
+            + "[0.033s][debug][jit,compilation]   11       4       com.example.Warm::run (80 bytes)\n"
+            + "[0.034s][debug][jit,compilation]   13 %     4       com.example.Loop::run @ 5 (200 bytes)\n"
+            + "[0.035s][debug][jit,compilation]   14     n 0       com.example.Native::call (native)\n"
+            + "[0.036s][debug][jit,compilation]   15       4       java.lang.Math::floorMod (10 bytes)\n"
+            + thrash("com.example.Thrash::parse (90 bytes)", JitTuner.THRASH_THRESHOLD)
+            + thrash("com.example.Once::parse (90 bytes)", 1));
+
+    var commands = JitTuner.getCompileCommands(JitTuner.readCompilations(log));
+
+    assertThat(commands)
+        .containsExactly(
+            "# Generated from a training run by the JVM flags extension",
+            "quiet",
+            "# thrashing: com.example.Thrash::parse, optimized code thrown away 5 times",
+            "inline com.example.Warm::run",
+            "inline com.example.Hot::run",
+            "inline com.example.Once::parse");
+  }
+
+  @Test
+  void testTuneFromTrainingRun(@TempDir Path tempDir) throws IOException {
+    var dir = CacheFiles.directory(tempDir, null).resolve(JitTuner.OUTPUT_DIRECTORY);
+    var tuner =
+        JitTuner.builder()
+            .logger(logger)
+            .buildDir(tempDir)
+            .jvmFlag("-Xmx128m")
+            .trainingArg("allocate")
+            .workload(
+                "until grep -q allocated '"
+                    + dir.resolve(JitTuner.TRAINING_LOG)
+                    + "'; do sleep 0.1; done")
+            .trainingTimeout(Duration.ofSeconds(30))
+            .build();
+
+    var result = tuner.tune(TrainingApp.buildPlan(tempDir), AbsoluteUnixPath.get("/app"));
+
+    assertThat(result.getJvmFlags())
+        .anyMatch(flag -> flag.startsWith("-XX:ReservedCodeCacheSize="));
+    assertThat(result.getCompileCommands()).contains("quiet");
+    assertThat(dir.resolve(JitTuner.COMPILATION_LOG)).isNotEmptyFile();
+  }
+
+  private static String thrash(String method, int times) {
+    var lines = new StringBuilder();
+    for (int i = 0; i < times; i++) {
+      var id = 100 + i;
+      lines.append(
+          String.format("[1.0s][debug][jit,compilation] %4d       4       %s\n", id, method));
+      lines.append(
+          String.format(
+              "[1.1s][debug][jit,compilation] %4d       4       %s   made not entrant\n",
+              id, method));
+    }
+    return lines.toString();
+  }
+}
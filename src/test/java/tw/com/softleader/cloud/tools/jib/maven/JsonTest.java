@@ -0,0 +1,71 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class JsonTest {
+
+  @Test
+  void testWrite() {
+    var report = new LinkedHashMap<String, Object>();
+    report.put("name", "say \"hi\"\n");
+    report.put("count", 3);
+    report.put("enabled", true);
+    report.put("missing", null);
+    report.put("flags", List.of("-Xmx1g", "-Dpath=C:\\tmp"));
+    report.put("empty", Map.of());
+    report.put("nested", List.of(Map.of("values", Arrays.asList(1L, null))));
+
+    assertThat(Json.write(report))
+        .isEqualTo(
+            "{\n"
+                + "  \"name\": \"say \\\"hi\\\"\\n\",\n"
+                + "  \"count\": 3,\n"
+                + "  \"enabled\": true,\n"
+                + "  \"missing\": null,\n"
+                + "  \"flags\": [\n"
+                + "    \"-Xmx1g\",\n"
+                + "    \"-Dpath=C:\\\\tmp\"\n"
+                + "  ],\n"
+                + "  \"empty\": {},\n"
+                + "  \"nested\": [\n"
+                + "    {\n"
+                + "      \"values\": [\n"
+                + "        1,\n"
+                + "        null\n"
+                + "      ]\n"
+                + "    }\n"
+                + "  ]\n"
+                + "}\n");
+  }
+
+  @Test
+  void testWriteControlCharacters() {
+    assertThat(Json.write("\u0001\t")).isEqualTo("\"\\u0001\\t\"\n");
+  }
+}
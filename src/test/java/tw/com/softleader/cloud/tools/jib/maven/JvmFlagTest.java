@@ -0,0 +1,90 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class JvmFlagTest {
+
+  @Test
+  void testKeyOfBooleanAndValueOptions() {
+    assertThat(JvmFlag.parse("-XX:+AlwaysPreTouch").getKey())
+        .isEqualTo(JvmFlag.parse("-XX:-AlwaysPreTouch").getKey());
+    assertThat(JvmFlag.parse("-XX:MaxRAMPercentage=75").getKey()).isEqualTo("-XX:MaxRAMPercentage");
+  }
+
+  @Test
+  void testKeyOfGcSelectors() {
+    assertThat(JvmFlag.parse("-XX:+UseZGC").getKey())
+        .isEqualTo(JvmFlag.parse("-XX:+UseParallelGC").getKey())
+        .isEqualTo(JvmFlag.KEY_GC);
+  }
+
+  @Test
+  void testKeyOfSizesAndProperties() {
+    assertThat(JvmFlag.parse("-Xmx512m").getKey()).isEqualTo("-Xmx");
+    assertThat(JvmFlag.parse("-Xss1m").getKey()).isEqualTo("-Xss");
+    assertThat(JvmFlag.parse("-Dfile.encoding=UTF-8").getKey()).isEqualTo("-Dfile.encoding");
+    assertThat(JvmFlag.parse("-Xshare:off").getKey()).isEqualTo("-Xshare");
+  }
+
+  @Test
+  void testKeyOfOtherFlags() {
+    assertThat(JvmFlag.parse(" -Xlog:gc ").getKey()).isEqualTo("-Xlog:gc");
+    assertThat(JvmFlag.parse("-XshowSettings:vm").getText()).isEqualTo("-XshowSettings:vm");
+  }
+
+  @Test
+  void testTypes() {
+    assertThat(JvmFlag.parse("-XX:+UseG1GC"))
+        .extracting(JvmFlag::getType, JvmFlag::getName, JvmFlag::getArgument)
+        .containsExactly(JvmFlag.Type.ADVANCED_BOOLEAN, "UseG1GC", "true");
+    assertThat(JvmFlag.parse("-XX:MaxRAMPercentage=75"))
+        .extracting(JvmFlag::getType, JvmFlag::getName, JvmFlag::getArgument)
+        .containsExactly(JvmFlag.Type.ADVANCED_VALUE, "MaxRAMPercentage", "75");
+    assertThat(JvmFlag.parse("-Dkey=a=b"))
+        .extracting(JvmFlag::getType, JvmFlag::getName, JvmFlag::getArgument)
+        .containsExactly(JvmFlag.Type.SYSTEM_PROPERTY, "key", "a=b");
+    assertThat(JvmFlag.parse("-Xmx2g"))
+        .extracting(JvmFlag::getType, JvmFlag::getName, JvmFlag::getArgument)
+        .containsExactly(JvmFlag.Type.EXTRA, "-Xmx", "2g");
+    assertThat(JvmFlag.parse("-javaagent:/app/agent.jar=debug"))
+        .extracting(JvmFlag::getType, JvmFlag::getName, JvmFlag::getArgument)
+        .containsExactly(JvmFlag.Type.STANDARD, "-javaagent", "/app/agent.jar=debug");
+  }
+
+  @Test
+  void testEnabled() {
+    assertThat(JvmFlag.parse("-XX:+UseG1GC").isEnabled()).isTrue();
+    assertThat(JvmFlag.parse("-XX:-UseG1GC").isEnabled()).isFalse();
+    assertThat(JvmFlag.parse("-XX:MaxRAMPercentage=75").isEnabled()).isFalse();
+  }
+
+  @Test
+  void testSizes() {
+    assertThat(JvmFlag.parse("-Xmx512m").getSize()).hasValue(512L << 20);
+    assertThat(JvmFlag.parse("-XX:MaxMetaspaceSize=1G").getSize()).hasValue(1L << 30);
+    assertThat(JvmFlag.parseSize("4096")).hasValue(4096);
+    assertThat(JvmFlag.parseSize("lots")).isEmpty();
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class JvmFlagsBaselineTest {
+
+  @Test
+  void testSameSettingsWithDifferentText() {
+    assertThat(
+            JvmFlagsBaseline.compare(
+                List.of("-Xmx1g", "-XX:MaxRAMPercentage=75", "-XX:+UseG1GC"),
+                List.of("-XX:+UseG1GC", "-XX:MaxRAMPercentage=75.0", "-Xmx1024m")))
+        .isEmpty();
+  }
+
+  @Test
+  void testCompareByCategory() {
+    var changes =
+        JvmFlagsBaseline.compare(
+            List.of("-Xmx1g", "-XX:+UseG1GC", "-Dspring.profiles.active=prod", "-Xshare:auto"),
+            List.of(
+                "-Xmx2g",
+                "-XX:+UseZGC",
+                "-Dspring.profiles.active=prod",
+                "-Duser.timezone=UTC",
+                "-XX:ReservedCodeCacheSize=64m"));
+
+    assertThat(changes)
+        .extracting(JvmFlagsBaseline.Change::toString)
+        .containsExactly(
+            "HEAP '-Xmx1g' changed to '-Xmx2g'",
+            "GC '-XX:+UseG1GC' changed to '-XX:+UseZGC'",
+            "CDS '-Xshare:auto' removed",
+            "OTHER '-Duser.timezone=UTC' added",
+            "JIT '-XX:ReservedCodeCacheSize=64m' added");
+  }
+
+  @Test
+  void testCompareNormalizedFlags() {
+    assertThat(JvmFlagsBaseline.compare(List.of("-Xmx1g"), List.of("-Xmx2g", "-Xmx1g"))).isEmpty();
+  }
+
+  @Test
+  void testCategories() {
+    assertThat(JvmFlagsBaseline.Category.of("-XX:MaxGCPauseMillis"))
+        .isSameAs(JvmFlagsBaseline.Category.GC);
+    assertThat(JvmFlagsBaseline.Category.of("-XX:NonProfiledCodeHeapSize"))
+        .isSameAs(JvmFlagsBaseline.Category.JIT);
+    assertThat(JvmFlagsBaseline.Category.of("-XX:TieredStopAtLevel"))
+        .isSameAs(JvmFlagsBaseline.Category.JIT);
+    assertThat(JvmFlagsBaseline.Category.of("-XX:SharedArchiveFile"))
+        .isSameAs(JvmFlagsBaseline.Category.CDS);
+    assertThat(JvmFlagsBaseline.Category.of("-XX:MaxMetaspaceSize"))
+        .isSameAs(JvmFlagsBaseline.Category.HEAP);
+    assertThat(JvmFlagsBaseline.Category.of("-Xlog:gc:stdout"))
+        .isSameAs(JvmFlagsBaseline.Category.OTHER);
+    assertThat(JvmFlagsBaseline.Category.of("-XX:+HeapDumpOnOutOfMemoryError"))
+        .isSameAs(JvmFlagsBaseline.Category.OTHER);
+  }
+
+  @Test
+  void testWriteAndRead(@TempDir Path tempDir) throws IOException {
+    var file = tempDir.resolve("jvm-flags.baseline");
+
+    assertThat(JvmFlagsBaseline.write(file, List.of("-Xmx1g", "-XX:+UseG1GC", "-Xmx2g"))).isTrue();
+    assertThat(JvmFlagsBaseline.write(file, List.of("-XX:+UseG1GC", "-Xmx2g"))).isFalse();
+
+    assertThat(file).content().startsWith("# ");
+    assertThat(JvmFlagsBaseline.read(file)).containsExactly("-XX:+UseG1GC", "-Xmx2g");
+  }
+}
@@ -20,28 +20,46 @@
  */
 package tw.com.softleader.cloud.tools.jib.maven;
 
+import static com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel.LIFECYCLE;
+import static com.google.cloud.tools.jib.plugins.extension.ExtensionLogger.LogLevel.WARN;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static tw.com.softleader.cloud.tools.jib.maven.JvmFlagsExtension.*;
 
+import com.google.cloud.tools.jib.api.buildplan.AbsoluteUnixPath;
 import com.google.cloud.tools.jib.api.buildplan.ContainerBuildPlan;
 import com.google.cloud.tools.jib.api.buildplan.FileEntriesLayer;
 import com.google.cloud.tools.jib.api.buildplan.LayerObject;
 import com.google.cloud.tools.jib.maven.extension.MavenData;
 import com.google.cloud.tools.jib.plugins.extension.ExtensionLogger;
 import com.google.cloud.tools.jib.plugins.extension.JibPluginExtensionException;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.model.Build;
 import org.apache.maven.model.Plugin;
 import org.apache.maven.project.MavenProject;
 import org.codehaus.plexus.util.xml.Xpp3Dom;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
 import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
@@ -167,4 +185,1081 @@ class JvmFlagsExtensionTest {
     properties.put(PROPERTY_SEPARATOR, null);
     assertThat(getSeparator(properties)).isEmpty();
   }
+
+  @Test
+  void testCdsModeWithEmptyProperties() throws JibPluginExtensionException {
+    assertThat(getCdsMode(Map.of())).isSameAs(DEFAULT_CDS_MODE);
+  }
+
+  @Test
+  void testCdsModeIgnoresCase() throws JibPluginExtensionException {
+    assertThat(getCdsMode(Map.of(PROPERTY_CDS_MODE, " Static "))).isSameAs(CdsMode.STATIC);
+  }
+
+  @Test
+  void testInvalidPropertiesNameAllowedValues() {
+    assertThatThrownBy(() -> getCdsMode(Map.of(PROPERTY_CDS_MODE, "dynamic")))
+        .isInstanceOf(JibPluginExtensionException.class)
+        .hasMessage("Invalid cdsMode 'dynamic', expecting one of none, static, auto");
+    assertThatThrownBy(() -> getTrainingTimeout(Map.of(PROPERTY_TRAINING_TIMEOUT, "1m")))
+        .isInstanceOf(JibPluginExtensionException.class)
+        .hasMessage("Invalid trainingTimeout '1m', expecting a number of seconds");
+    assertThatThrownBy(() -> getRuntimePath(Map.of(PROPERTY_RUNTIME_PATH, "jre")))
+        .isInstanceOf(JibPluginExtensionException.class)
+        .hasMessage("Invalid runtimePath 'jre', expecting an absolute path in the container");
+  }
+
+  @Test
+  void testRecommendMode() throws JibPluginExtensionException {
+    assertThat(JvmFlagsExtension.getRecommendMode(Map.of()))
+        .isSameAs(JvmFlagsExtension.DEFAULT_RECOMMEND);
+    assertThat(
+            JvmFlagsExtension.getRecommendMode(
+                Map.of(JvmFlagsExtension.PROPERTY_RECOMMEND, "apply")))
+        .isSameAs(JvmFlagsExtension.RecommendMode.APPLY);
+  }
+
+  @Test
+  void testBaselinePolicy() throws JibPluginExtensionException {
+    assertThat(JvmFlagsExtension.getBaselinePolicy(Map.of()))
+        .isSameAs(JvmFlagsExtension.DEFAULT_BASELINE_POLICY);
+    assertThat(
+            JvmFlagsExtension.getBaselinePolicy(
+                Map.of(JvmFlagsExtension.PROPERTY_BASELINE_POLICY, " Fail ")))
+        .isSameAs(JvmFlagsExtension.BaselinePolicy.FAIL);
+  }
+
+  @Test
+  void testReport() {
+    assertThat(JvmFlagsExtension.isReport(Map.of())).isEqualTo(JvmFlagsExtension.DEFAULT_REPORT);
+    assertThat(JvmFlagsExtension.isReport(Map.of(JvmFlagsExtension.PROPERTY_REPORT, "false")))
+        .isFalse();
+  }
+
+  @Test
+  void testJit() {
+    assertThat(JvmFlagsExtension.isJit(Map.of())).isEqualTo(JvmFlagsExtension.DEFAULT_JIT);
+    assertThat(JvmFlagsExtension.isJit(Map.of(JvmFlagsExtension.PROPERTY_JIT, "true"))).isTrue();
+  }
+
+  @Test
+  void testMemoryLimit() throws JibPluginExtensionException {
+    assertThat(JvmFlagsExtension.getMemoryLimit(Map.of())).isEmpty();
+    assertThat(
+            JvmFlagsExtension.getMemoryLimit(
+                Map.of(JvmFlagsExtension.PROPERTY_MEMORY_LIMIT, "512m")))
+        .hasValue(512L * 1024 * 1024);
+    assertThat(
+            JvmFlagsExtension.getMemoryLimit(
+                Map.of(JvmFlagsExtension.PROPERTY_MEMORY_LIMIT, "2Gi")))
+        .hasValue(2L * 1024 * 1024 * 1024);
+    assertThatThrownBy(
+            () ->
+                JvmFlagsExtension.getMemoryLimit(
+                    Map.of(JvmFlagsExtension.PROPERTY_MEMORY_LIMIT, "lots")))
+        .isInstanceOf(JibPluginExtensionException.class)
+        .hasMessage("Invalid memoryLimit 'lots', expecting a size such as 1g or 1Gi");
+  }
+
+  @Test
+  void testTrainingTimeoutInSeconds() throws JibPluginExtensionException {
+    assertThat(getTrainingTimeout(Map.of(PROPERTY_TRAINING_TIMEOUT, "15")))
+        .isEqualTo(Duration.ofSeconds(15));
+    assertThat(getTrainingTimeout(Map.of())).isEqualTo(DEFAULT_TRAINING_TIMEOUT);
+  }
+
+  @Test
+  void testTrainingArgsSplitOnWhitespace() {
+    assertThat(getTrainingArgs(Map.of(PROPERTY_TRAINING_ARGS, "--a=1  --b")))
+        .containsExactly("--a=1", "--b");
+    assertThat(getTrainingArgs(Map.of())).isEmpty();
+  }
+
+  @Test
+  @EnabledForJreRange(min = JRE.JAVA_19)
+  void testExtendContainerBuildPlanWithStaticCds(@TempDir Path tempDir)
+      throws JibPluginExtensionException, IOException {
+    when(mavenProject.getBuild().getDirectory()).thenReturn(tempDir.toString());
+
+    ContainerBuildPlan originalPlan = TrainingApp.buildPlan(tempDir);
+    ContainerBuildPlan modifiedPlan =
+        extension.extendContainerBuildPlan(
+            originalPlan, Map.of(PROPERTY_CDS_MODE, "static"), Optional.empty(), mavenData, logger);
+
+    assertThat(modifiedPlan.getLayers())
+        .extracting(LayerObject::getName)
+        .endsWith(JvmFlagsLayerPlan.LAYER_JVM_FLAGS, AppCdsLayerPlan.LAYER_APP_CDS);
+    assertThat(
+            tempDir
+                .resolve(JvmFlagsLayerPlan.CACHE_DIRECTORY_NAME)
+                .resolve(JvmFlagsLayerPlan.JIB_JVM_FLAGS_FILE))
+        .content()
+        .contains("-XX:SharedArchiveFile=/app/" + AppCdsLayerPlan.APP_CDS_ARCHIVE);
+  }
+
+  @Test
+  void testCdsArchiveWithEmptyProperties() throws JibPluginExtensionException {
+    assertThat(getCdsArchive(Map.of())).hasToString(DEFAULT_CDS_ARCHIVE);
+  }
+
+  @Test
+  void testExtendContainerBuildPlanWithAutoCds(@TempDir Path tempDir)
+      throws JibPluginExtensionException {
+    when(mavenProject.getBuild().getDirectory()).thenReturn(tempDir.toString());
+
+    extension.extendContainerBuildPlan(
+        ContainerBuildPlan.builder().build(),
+        Map.of(PROPERTY_CDS_MODE, "auto", PROPERTY_CDS_ARCHIVE, "/var/cds/app.jsa"),
+        Optional.empty(),
+        mavenData,
+        logger);
+
+    assertThat(
+            tempDir
+                .resolve(JvmFlagsLayerPlan.CACHE_DIRECTORY_NAME)
+                .resolve(JvmFlagsLayerPlan.JIB_JVM_FLAGS_FILE))
+        .content()
+        .contains("-XX:+AutoCreateSharedArchive", "-XX:SharedArchiveFile=/var/cds/app.jsa");
+    verify(logger, never()).log(eq(WARN), anyString());
+  }
+
+  @Test
+  void testExtendContainerBuildPlanWithAutoCdsInsideAppRoot(@TempDir Path tempDir)
+      throws JibPluginExtensionException {
+    when(mavenProject.getBuild().getDirectory()).thenReturn(tempDir.toString());
+
+    extension.extendContainerBuildPlan(
+        ContainerBuildPlan.builder().build(),
+        Map.of(PROPERTY_CDS_MODE, "auto", PROPERTY_CDS_ARCHIVE, "/app/cds/app.jsa"),
+        Optional.empty(),
+        mavenData,
+        logger);
+
+    verify(logger).log(eq(WARN), contains("/app/cds/app.jsa"));
+  }
+
+  @Test
+  void testProfileWithEmptyProperties() throws JibPluginExtensionException {
+    assertThat(getProfile(Map.of())).isEmpty();
+  }
+
+  @Test
+  void testProfileIgnoresCase() throws JibPluginExtensionException {
+    assertThat(getProfile(Map.of(PROPERTY_PROFILE, "Footprint")))
+        .hasValue(JvmFlagsProfile.FOOTPRINT);
+  }
+
+  @Test
+  void testLauncherWithEmptyProperties() {
+    assertThat(isLauncher(Map.of())).isSameAs(DEFAULT_LAUNCHER);
+  }
+
+  @Test
+  void testExtendContainerBuildPlanWithLauncher(@TempDir Path tempDir)
+      throws JibPluginExtensionException {
+    when(mavenProject.getBuild().getDirectory()).thenReturn(tempDir.toString());
+
+    ContainerBuildPlan modifiedPlan =
+        extension.extendContainerBuildPlan(
+            ContainerBuildPlan.builder().build(),
+            Map.of(PROPERTY_LAUNCHER, "true"),
+            Optional.empty(),
+            mavenData,
+            logger);
+
+    assertThat(modifiedPlan.getLayers())
+        .extracting(LayerObject::getName)
+        .containsExactly(JvmFlagsLayerPlan.LAYER_JVM_FLAGS, LauncherLayerPlan.LAYER_LAUNCHER);
+  }
+
+  @Test
+  void testExtendContainerBuildPlanWithLaunchFile(@TempDir Path tempDir)
+      throws JibPluginExtensionException, IOException {
+    when(mavenProject.getBuild().getDirectory()).thenReturn(tempDir.toString());
+
+    extension.extendContainerBuildPlan(
+        TrainingApp.buildPlan(tempDir),
+        Map.of(PROPERTY_LAUNCH_FILE, "true"),
+        Optional.empty(),
+        mavenData,
+        logger);
+
+    assertThat(
+            tempDir
+                .resolve(JvmFlagsLayerPlan.CACHE_DIRECTORY_NAME)
+                .resolve(JvmFlagsLayerPlan.JIB_LAUNCH_FILE))
+        .hasContent("-cp\n/app/libs/*\n" + TrainingApp.class.getName() + "\n");
+  }
+
+  @Test
+  void testExtendContainerBuildPlanWithClasspathOrder(@TempDir Path tempDir)
+      throws JibPluginExtensionException, IOException {
+    when(mavenProject.getBuild().getDirectory()).thenReturn(tempDir.toString());
+
+    extension.extendContainerBuildPlan(
+        TrainingApp.buildPlan(tempDir),
+        Map.of(JvmFlagsExtension.PROPERTY_CLASSPATH_ORDER, "true", PROPERTY_LAUNCH_FILE, "true"),
+        Optional.empty(),
+        mavenData,
+        logger);
+
+    var cacheDir = tempDir.resolve(JvmFlagsLayerPlan.CACHE_DIRECTORY_NAME);
+    assertThat(cacheDir.resolve(ClasspathOrder.ORDERED_CLASSPATH_FILE))
+        .hasContent("/app/libs/training-app.jar");
+    assertThat(cacheDir.resolve(JvmFlagsLayerPlan.JIB_LAUNCH_FILE))
+        .hasContent("-cp\n/app/libs/training-app.jar\n" + TrainingApp.class.getName() + "\n");
+    assertThat(cacheDir.resolve(ClasspathOrder.OUTPUT_DIRECTORY)).isDirectory();
+    assertThat(
+            Files.readString(
+                cacheDir
+                    .resolve(ClasspathOrder.OUTPUT_DIRECTORY)
+                    .resolve(StartupBenchmark.REPORT_TABLE)))
+        .containsSubsequence("original", "ordered");
+  }
+
+  @Test
+  void testExtendContainerBuildPlanWithJit(@TempDir Path tempDir)
+      throws JibPluginExtensionException, IOException {
+    when(mavenProject.getBuild().getDirectory()).thenReturn(tempDir.toString());
+
+    extension.extendContainerBuildPlan(
+        TrainingApp.buildPlan(tempDir),
+        Map.of(JvmFlagsExtension.PROPERTY_JIT, "true"),
+        Optional.empty(),
+        mavenData,
+        logger);
+
+    var cacheDir = tempDir.resolve(JvmFlagsLayerPlan.CACHE_DIRECTORY_NAME);
+    assertThat(Files.readString(cacheDir.resolve(JvmFlagsLayerPlan.JIB_JVM_FLAGS_FILE)))
+        .contains("-XX:ReservedCodeCacheSize=", "-XX:CompileCommandFile=/app/jib-compile-commands");
+    assertThat(Files.readString(cacheDir.resolve(JitTuner.COMPILE_COMMAND_FILE))).contains("quiet");
+  }
+
+  @Test
+  void testValidationJavaHomeFallsBackToTrainingJavaHome() {
+    assertThat(getValidationJavaHome(Map.of())).isEmpty();
+    assertThat(getValidationJavaHome(Map.of(PROPERTY_TRAINING_JAVA_HOME, "/jdk")))
+        .hasValue(Path.of("/jdk"));
+    assertThat(
+            getValidationJavaHome(
+                Map.of(PROPERTY_TRAINING_JAVA_HOME, "/jdk", PROPERTY_VALIDATION_JAVA_HOME, "/jre")))
+        .hasValue(Path.of("/jre"));
+  }
+
+  @Test
+  void testExtendContainerBuildPlanFailsOnInvalidFlags(@TempDir Path tempDir) {
+    when(mavenProject.getBuild().getDirectory()).thenReturn(tempDir.toString());
+    mockJvmFlags("-Xms2g", "-Xmx1g", "-XX:+UseNoSuchOption");
+
+    assertThatThrownBy(
+            () ->
+                extension.extendContainerBuildPlan(
+                    ContainerBuildPlan.builder().build(),
+                    Map.of(PROPERTY_VALIDATE, "true"),
+                    Optional.empty(),
+                    mavenData,
+                    logger))
+        .isInstanceOf(JibPluginExtensionException.class)
+        .hasMessageContaining("'-Xms2g' is larger than '-Xmx1g'")
+        .hasMessageContaining("'-XX:+UseNoSuchOption' is not a known option");
+  }
+
+  @Test
+  void testExtendContainerBuildPlanValidatesFlagSets(@TempDir Path tempDir) {
+    when(mavenProject.getBuild().getDirectory()).thenReturn(tempDir.toString());
+    mockJvmFlags("-Xmx1g");
+    var config = new JvmFlagsExtensionConfig();
+    config.getFlagSets().add(flagSet("batch", "-Xms2g"));
+
+    assertThatThrownBy(
+            () ->
+                extension.extendContainerBuildPlan(
+                    ContainerBuildPlan.builder().build(),
+                    Map.of(PROPERTY_VALIDATE, "true"),
+                    Optional.of(config),
+                    mavenData,
+                    logger))
+        .isInstanceOf(JibPluginExtensionException.class)
+        .hasMessageContaining("'batch' '-Xms2g' is larger than '-Xmx1g'")
+        .hasMessageNotContaining("'default'");
+  }
+
+  @Test
+  void testExtendContainerBuildPlanNormalizesFlags(@TempDir Path tempDir)
+      throws JibPluginExtensionException {
+    when(mavenProject.getBuild().getDirectory()).thenReturn(tempDir.toString());
+    mockJvmFlags("-Xmx1g", "-XX:+UseZGC", "-Xmx2g");
+
+    extension.extendContainerBuildPlan(
+        ContainerBuildPlan.builder().build(),
+        Map.of(PROPERTY_VALIDATE, "true"),
+        Optional.empty(),
+        mavenData,
+        logger);
+
+    assertThat(
+            tempDir
+                .resolve(JvmFlagsLayerPlan.CACHE_DIRECTORY_NAME)
+                .resolve(JvmFlagsLayerPlan.JIB_JVM_FLAGS_FILE))
+        .hasContent("-XX:+UseZGC -Xmx2g");
+    verify(logger).log(WARN, "Conflicting JVM Flags, '-Xmx1g' is overridden by '-Xmx2g'");
+  }
+
+  @Test
+  void testExtendContainerBuildPlanKeepsFlagsWithoutValidation(@TempDir Path tempDir)
+      throws JibPluginExtensionException {
+    when(mavenProject.getBuild().getDirectory()).thenReturn(tempDir.toString());
+    mockJvmFlags("-Xmx1g", "--add-opens", "java.base/java.lang=ALL-UNNAMED", "-Xmx2g");
+
+    extension.extendContainerBuildPlan(
+        ContainerBuildPlan.builder().build(), Map.of(), Optional.empty(), mavenData, logger);
+
+    assertThat(
+            tempDir
+                .resolve(JvmFlagsLayerPlan.CACHE_DIRECTORY_NAME)
+                .resolve(JvmFlagsLayerPlan.JIB_JVM_FLAGS_FILE))
+        .hasContent("-Xmx1g --add-opens java.base/java.lang=ALL-UNNAMED -Xmx2g");
+  }
+
+  @Test
+  void testExtendContainerBuildPlanRegeneratesBaseline(@TempDir Path tempDir)
+      throws JibPluginExtensionException, IOException {
+    when(mavenProject.getBuild().getDirectory()).thenReturn(tempDir.toString());
+    mockJvmFlags("-Xmx1g", "-XX:+UseG1GC");
+    var baseline = tempDir.resolve("jvm-flags.baseline");
+
+    extension.extendContainerBuildPlan(
+        ContainerBuildPlan.builder().build(),
+        Map.of(
+            JvmFlagsExtension.PROPERTY_BASELINE,
+            baseline.toString(),
+            JvmFlagsExtension.PROPERTY_BASELINE_REGENERATE,
+            "true"),
+        Optional.empty(),
+        mavenData,
+        logger);
+
+    assertThat(JvmFlagsBaseline.read(baseline)).containsExactly("-Xmx1g", "-XX:+UseG1GC");
+    verify(logger).log(LIFECYCLE, "Regenerated JVM Flags baseline " + baseline);
+  }
+
+  @Test
+  void testExtendContainerBuildPlanFailsOnBaselineChange(@TempDir Path tempDir) throws IOException {
+    when(mavenProject.getBuild().getDirectory()).thenReturn(tempDir.toString());
+    mockJvmFlags("-Xmx2g", "-XX:+UseG1GC", "-Duser.timezone=UTC");
+    var baseline = tempDir.resolve("jvm-flags.baseline");
+    JvmFlagsBaseline.write(baseline, List.of("-XX:+UseG1GC", "-Xmx1024m"));
+
+    assertThatThrownBy(
+            () ->
+                extension.extendContainerBuildPlan(
+                    ContainerBuildPlan.builder().build(),
+                    Map.of(
+                        JvmFlagsExtension.PROPERTY_BASELINE,
+                        baseline.toString(),
+                        JvmFlagsExtension.PROPERTY_BASELINE_POLICY,
+                        "fail"),
+                    Optional.empty(),
+                    mavenData,
+                    logger))
+        .isInstanceOf(JibPluginExtensionException.class)
+        .hasMessageContaining("HEAP '-Xmx1024m' changed to '-Xmx2g'")
+        .hasMessageNotContaining("timezone");
+    verify(logger)
+        .log(LIFECYCLE, "JVM Flags differ from baseline, OTHER '-Duser.timezone=UTC' added");
+  }
+
+  @Test
+  void testExtendContainerBuildPlanWarnsOnBaselineChange(@TempDir Path tempDir)
+      throws JibPluginExtensionException, IOException {
+    when(mavenProject.getBuild().getDirectory()).thenReturn(tempDir.toString());
+    mockJvmFlags("-Xmx1g", "-XX:+UseZGC");
+    var baseline = tempDir.resolve("jvm-flags.baseline");
+    JvmFlagsBaseline.write(baseline, List.of("-Xmx1g", "-XX:+UseG1GC"));
+
+    extension.extendContainerBuildPlan(
+        ContainerBuildPlan.builder().build(),
+        Map.of(JvmFlagsExtension.PROPERTY_BASELINE, baseline.toString()),
+        Optional.empty(),
+        mavenData,
+        logger);
+
+    verify(logger)
+        .log(WARN, "JVM Flags differ from baseline, GC '-XX:+UseG1GC' changed to '-XX:+UseZGC'");
+  }
+
+  @Test
+  void testExtendContainerBuildPlanFailsOverMemoryBudget(@TempDir Path tempDir) {
+    when(mavenProject.getBuild().getDirectory()).thenReturn(tempDir.toString());
+    mockJvmFlags("-Xmx900m");
+
+    assertThatThrownBy(
+            () ->
+                extension.extendContainerBuildPlan(
+                    ContainerBuildPlan.builder().build(),
+                    Map.of(
+                        JvmFlagsExtension.PROPERTY_MEMORY_LIMIT, "1Gi",
+                        JvmFlagsExtension.PROPERTY_MEMORY_BUDGET_POLICY, "fail"),
+                    Optional.empty(),
+                    mavenData,
+                    logger))
+        .isInstanceOf(JibPluginExtensionException.class)
+        .hasMessageContaining("'default' estimated");
+    assertThat(
+            tempDir.resolve(JvmFlagsLayerPlan.CACHE_DIRECTORY_NAME).resolve(MemoryBudget.ESTIMATE))
+        .content()
+        .contains("\"containerLimitBytes\": 1073741824", "\"source\": \"-Xmx\"");
+  }
+
+  @Test
+  void testExtendContainerBuildPlanWithKubernetesManifests(@TempDir Path tempDir)
+      throws JibPluginExtensionException, IOException {
+    when(mavenProject.getBuild().getDirectory()).thenReturn(tempDir.toString());
+    mockJvmFlags("-XX:+UseG1GC");
+    var manifest =
+        Files.writeString(
+            tempDir.resolve("deployment.yaml"),
+            "kind: Deployment\nspec:\n  template:\n    spec:\n      containers:\n"
+                + "        - name: app\n          resources:\n"
+                + "            limits: {cpu: 2, memory: 1Gi}\n");
+
+    extension.extendContainerBuildPlan(
+        ContainerBuildPlan.builder().build(),
+        Map.of(
+            PROPERTY_KUBERNETES_MANIFESTS,
+            manifest.toString(),
+            PROPERTY_KUBERNETES_CONTAINER,
+            "app"),
+        Optional.empty(),
+        mavenData,
+        logger);
+
+    var cacheDir = tempDir.resolve(JvmFlagsLayerPlan.CACHE_DIRECTORY_NAME);
+    assertThat(cacheDir.resolve(JvmFlagsLayerPlan.JIB_JVM_FLAGS_FILE))
+        .hasContent(
+            "-XX:MaxRAMPercentage=65 -XX:ActiveProcessorCount=2 -XX:ParallelGCThreads=2"
+                + " -XX:ConcGCThreads=1 -XX:+UseG1GC");
+    assertThat(cacheDir.resolve(MemoryBudget.ESTIMATE))
+        .content()
+        .contains("\"containerLimitBytes\": 1073741824");
+  }
+
+  @Test
+  void testApplyDependencyRules() {
+    var artifacts =
+        List.of(
+            DependencyRulesTest.artifact("io.netty", "netty-buffer"),
+            DependencyRulesTest.artifact("com.example", "in-house-cache"));
+
+    var report = new BuildReport("tw.com.softleader:api");
+    report.attribute(BuildReport.SOURCE_POM, List.of("-Xmx1g"));
+
+    assertThat(
+            FlagSourcesPhase.applyDependencyRules(
+                artifacts, List.of("-Xmx1g"), Set.of(), report, logger))
+        .containsExactly(
+            "-Dcom.example.cache.offHeap=true",
+            "-XX:MaxDirectMemorySize=1g",
+            "-Dio.netty.tryReflectionSetAccessible=true",
+            "--add-opens=java.base/java.nio=ALL-UNNAMED",
+            "--add-opens=java.base/jdk.internal.misc=ALL-UNNAMED",
+            "-Xmx1g");
+    verify(logger)
+        .log(eq(LIFECYCLE), contains("Dependency rule 'in-house' applied [-Dcom.example"));
+    assertThat(report.getSource("-XX:MaxDirectMemorySize=1g")).isEqualTo("rule in-house");
+    assertThat(report.getSource("-Dio.netty.tryReflectionSetAccessible=true"))
+        .isEqualTo("rule netty");
+    assertThat(report.getSource("-Xmx1g")).isEqualTo(BuildReport.SOURCE_POM);
+
+    assertThat(
+            FlagSourcesPhase.applyDependencyRules(
+                artifacts,
+                List.of("-XX:MaxDirectMemorySize=2g"),
+                Set.of("netty"),
+                new BuildReport("tw.com.softleader:api"),
+                logger))
+        .containsExactly("-Dcom.example.cache.offHeap=true", "-XX:MaxDirectMemorySize=2g");
+    verify(logger).log(LIFECYCLE, "Skipping dependency rule 'netty'");
+  }
+
+  @Test
+  void testDependencyRulesSkip() {
+    assertThat(
+            getDependencyRulesSkip(Map.of(PROPERTY_DEPENDENCY_RULES_SKIP, "netty, kafka-client")))
+        .containsExactlyInAnyOrder("netty", "kafka-client");
+    assertThat(getDependencyRulesSkip(Map.of())).isEmpty();
+  }
+
+  @Test
+  void testExtendContainerBuildPlanAddsLabels(@TempDir Path tempDir)
+      throws JibPluginExtensionException {
+    when(mavenProject.getBuild().getDirectory()).thenReturn(tempDir.toString());
+    mockJvmFlags("-Xmx1g", "-XX:+UseG1GC");
+
+    var plan =
+        extension.extendContainerBuildPlan(
+            ContainerBuildPlan.builder().addLabel("maintainer", "team").build(),
+            Map.of(PROPERTY_PROFILE, "throughput"),
+            Optional.empty(),
+            mavenData,
+            logger);
+
+    assertThat(plan.getLabels())
+        .containsEntry("maintainer", "team")
+        .containsEntry(ImageLabels.LABEL_PREFIX + "heap", "1g")
+        .containsEntry(ImageLabels.LABEL_PREFIX + "profile", "throughput")
+        .containsEntry(ImageLabels.LABEL_PREFIX + "layers", JvmFlagsLayerPlan.LAYER_JVM_FLAGS);
+
+    var unlabeled =
+        extension.extendContainerBuildPlan(
+            ContainerBuildPlan.builder().build(),
+            Map.of(JvmFlagsExtension.PROPERTY_LABELS, "false"),
+            Optional.empty(),
+            mavenData,
+            logger);
+    assertThat(unlabeled.getLabels()).isEmpty();
+  }
+
+  @Test
+  void testTargetJdk() throws JibPluginExtensionException {
+    assertThat(
+            JvmFlagsExtension.getTargetJdk(
+                Map.of(JvmFlagsExtension.PROPERTY_TARGET_JDK, "17"), mavenProject, logger))
+        .hasValue(17);
+
+    Plugin jibPlugin = mock(Plugin.class);
+    when(mavenProject.getPlugin(JIB_MAVEN_PLUGIN_ID)).thenReturn(jibPlugin);
+    Xpp3Dom configurationDom = new Xpp3Dom("configuration");
+    Xpp3Dom fromDom = new Xpp3Dom("from");
+    Xpp3Dom imageDom = new Xpp3Dom("image");
+    imageDom.setValue("eclipse-temurin:21-jre");
+    fromDom.addChild(imageDom);
+    configurationDom.addChild(fromDom);
+    when(jibPlugin.getConfiguration()).thenReturn(configurationDom);
+    assertThat(JvmFlagsExtension.getTargetJdk(Map.of(), mavenProject, logger)).hasValue(21);
+    assertThat(
+            JvmFlagsExtension.getTargetJdk(
+                Map.of(JvmFlagsExtension.PROPERTY_TARGET_JDK, "25"), mavenProject, logger))
+        .hasValue(25);
+  }
+
+  @Test
+  void testExtendContainerBuildPlanTranslatesForTargetJdk(@TempDir Path tempDir)
+      throws JibPluginExtensionException {
+    when(mavenProject.getBuild().getDirectory()).thenReturn(tempDir.toString());
+    mockJvmFlags("-XX:+UseConcMarkSweepGC", "-XX:+UseBiasedLocking", "-Xmx1g");
+
+    extension.extendContainerBuildPlan(
+        ContainerBuildPlan.builder().build(),
+        Map.of(JvmFlagsExtension.PROPERTY_TARGET_JDK, "21"),
+        Optional.empty(),
+        mavenData,
+        logger);
+
+    assertThat(
+            tempDir
+                .resolve(JvmFlagsLayerPlan.CACHE_DIRECTORY_NAME)
+                .resolve(JvmFlagsLayerPlan.JIB_JVM_FLAGS_FILE))
+        .hasContent("-XX:+UseG1GC -Xmx1g");
+    verify(logger)
+        .log(
+            WARN,
+            "JVM Flag '-XX:+UseBiasedLocking' dropped for JDK 21, biased locking is obsolete since"
+                + " JDK 18");
+  }
+
+  private void mockJvmFlags(String... jvmFlags) {
+    Plugin jibPlugin = mock(Plugin.class);
+    when(mavenProject.getPlugin(JIB_MAVEN_PLUGIN_ID)).thenReturn(jibPlugin);
+    Xpp3Dom configurationDom = new Xpp3Dom("configuration");
+    Xpp3Dom containerDom = new Xpp3Dom("container");
+    Xpp3Dom jvmFlagsDom = new Xpp3Dom("jvmFlags");
+    for (String jvmFlag : jvmFlags) {
+      Xpp3Dom flag = new Xpp3Dom("jvmFlag");
+      flag.setValue(jvmFlag);
+      jvmFlagsDom.addChild(flag);
+    }
+    containerDom.addChild(jvmFlagsDom);
+    configurationDom.addChild(containerDom);
+    when(jibPlugin.getConfiguration()).thenReturn(configurationDom);
+  }
+
+  @Test
+  void testFlagSetsOverrideJvmFlags() throws JibPluginExtensionException {
+    var config = new JvmFlagsExtensionConfig();
+    config.getFlagSets().add(flagSet("api", "-XX:+UseZGC"));
+    config.getFlagSets().add(flagSet("worker", "-XX:+UseParallelGC", "-Xmx2g"));
+
+    var flagSets =
+        VariantsPhase.getFlagSets(Optional.of(config), List.of("-Xmx1g", "-XX:+UseG1GC"));
+
+    assertThat(flagSets)
+        .containsExactly(
+            entry("api", List.of("-Xmx1g", "-XX:+UseZGC")),
+            entry("worker", List.of("-XX:+UseParallelGC", "-Xmx2g")));
+  }
+
+  @Test
+  void testFlagSetsRejectInvalidConfig() {
+    var config = new JvmFlagsExtensionConfig();
+    config.getFlagSets().add(flagSet("api/v1"));
+    assertThatThrownBy(() -> VariantsPhase.getFlagSets(Optional.of(config), List.of()))
+        .hasMessageContaining("api/v1");
+
+    config.getFlagSets().clear();
+    config.getFlagSets().add(flagSet("api"));
+    config.getFlagSets().add(flagSet("api"));
+    assertThatThrownBy(() -> VariantsPhase.getFlagSets(Optional.of(config), List.of()))
+        .hasMessageContaining("twice");
+
+    config.getFlagSets().remove(1);
+    config.setDefaultFlagSet("worker");
+    assertThatThrownBy(() -> VariantsPhase.getFlagSets(Optional.of(config), List.of()))
+        .hasMessageContaining("'worker' is not configured");
+  }
+
+  @Test
+  void testArchitectureVariants() throws JibPluginExtensionException {
+    var config = new JvmFlagsExtensionConfig();
+    config.getArchitectures().add(architecture("arm64", "-XX:+UseParallelGC"));
+    config.getArchitectures().add(architecture("ppc64le", "-Xss2m"));
+
+    var variants =
+        VariantsPhase.getArchitectureVariants(
+            Optional.of(config),
+            List.of("-Xmx1g", "-XX:+UseG1GC"),
+            Map.of("worker", List.of("-Xmx2g")),
+            Set.of("amd64", "arm64"),
+            logger);
+
+    assertThat(variants)
+        .containsExactly(
+            entry("arm64", List.of("-Xmx1g", "-XX:+UseParallelGC")),
+            entry("worker.arm64", List.of("-Xmx2g", "-XX:+UseParallelGC")));
+    verify(logger)
+        .log(
+            WARN,
+            "Skipping JVM Flags of architecture 'ppc64le', the image is built for [amd64, arm64]");
+  }
+
+  @Test
+  void testArchitectureVariantsRejectFlagSetName() {
+    var config = new JvmFlagsExtensionConfig();
+    config.getArchitectures().add(architecture("arm64"));
+
+    assertThatThrownBy(
+            () ->
+                VariantsPhase.getArchitectureVariants(
+                    Optional.of(config),
+                    List.of(),
+                    Map.of("arm64", List.of()),
+                    Set.of("arm64"),
+                    logger))
+        .hasMessageContaining("rename the flag set");
+  }
+
+  @Test
+  void testExtendContainerBuildPlanWithDefaultFlagSet(@TempDir Path tempDir)
+      throws JibPluginExtensionException {
+    when(mavenProject.getBuild().getDirectory()).thenReturn(tempDir.toString());
+    mockJvmFlags("-Xmx1g");
+    var config = new JvmFlagsExtensionConfig();
+    config.getFlagSets().add(flagSet("api", "-XX:+UseZGC"));
+    config.getFlagSets().add(flagSet("worker", "-Xmx2g"));
+    config.setDefaultFlagSet("api");
+
+    ContainerBuildPlan modifiedPlan =
+        extension.extendContainerBuildPlan(
+            ContainerBuildPlan.builder().build(), Map.of(), Optional.of(config), mavenData, logger);
+
+    var cache = tempDir.resolve(JvmFlagsLayerPlan.CACHE_DIRECTORY_NAME);
+    assertThat(cache.resolve("jib-jvm-flags-file")).hasContent("-Xmx1g -XX:+UseZGC");
+    assertThat(cache.resolve("jib-jvm-flags-file.api")).hasContent("-Xmx1g -XX:+UseZGC");
+    assertThat(cache.resolve("jib-jvm-flags-file.worker")).hasContent("-Xmx2g");
+    assertThat(((FileEntriesLayer) modifiedPlan.getLayers().get(0)).getEntries()).hasSize(3);
+  }
+
+  @Test
+  void testGetProjectIdOfSharedBuildDirectory() {
+    var session = mock(MavenSession.class);
+    var other = mock(MavenProject.class);
+    var otherBuild = mock(Build.class);
+    when(mavenData.getMavenSession()).thenReturn(session);
+    when(session.getProjects()).thenReturn(List.of(mavenProject, other));
+    when(other.getBuild()).thenReturn(otherBuild);
+    when(build.getDirectory()).thenReturn("/work/target");
+    when(otherBuild.getDirectory()).thenReturn("/work/other/target");
+    when(mavenProject.getGroupId()).thenReturn("tw.com.softleader");
+    when(mavenProject.getArtifactId()).thenReturn("api");
+
+    assertThat(getProjectId(mavenData)).isNull();
+
+    when(otherBuild.getDirectory()).thenReturn("/work/target");
+    assertThat(getProjectId(mavenData)).isEqualTo("tw.com.softleader_api");
+  }
+
+  @Test
+  void testExtendContainerBuildPlanWritesReports(@TempDir Path tempDir)
+      throws JibPluginExtensionException, IOException {
+    var session = mock(MavenSession.class);
+    var root = mock(MavenProject.class);
+    var rootBuild = mock(Build.class);
+    var other = mock(MavenProject.class);
+    var otherBuild = mock(Build.class);
+    when(mavenData.getMavenSession()).thenReturn(session);
+    when(session.getProjects()).thenReturn(List.of(root, mavenProject, other));
+    when(session.getTopLevelProject()).thenReturn(root);
+    when(root.getBuild()).thenReturn(rootBuild);
+    when(rootBuild.getDirectory()).thenReturn(tempDir.resolve("target").toString());
+    when(other.getBuild()).thenReturn(otherBuild);
+    when(otherBuild.getDirectory()).thenReturn(tempDir.resolve("other/target").toString());
+    when(mavenProject.getBuild().getDirectory())
+        .thenReturn(tempDir.resolve("api/target").toString());
+    when(mavenProject.getGroupId()).thenReturn("tw.com.softleader");
+    when(mavenProject.getArtifactId()).thenReturn("api");
+    mockJvmFlags("-Xmx1g");
+    var stale =
+        tempDir
+            .resolve("other/target")
+            .resolve(JvmFlagsLayerPlan.CACHE_DIRECTORY_NAME)
+            .resolve(BuildReport.REPORT_FILE);
+    Files.createDirectories(stale.getParent());
+    Files.writeString(stale, "{\"module\": \"tw.com.softleader:other\", \"gc\": \"G1GC\"}");
+
+    extension.extendContainerBuildPlan(
+        ContainerBuildPlan.builder().build(),
+        Map.of(PROPERTY_PROFILE, "latency"),
+        Optional.empty(),
+        mavenData,
+        logger);
+
+    var report =
+        tempDir
+            .resolve("api/target")
+            .resolve(JvmFlagsLayerPlan.CACHE_DIRECTORY_NAME)
+            .resolve(BuildReport.REPORT_FILE);
+    assertThat(report)
+        .content()
+        .contains(
+            "\"module\": \"tw.com.softleader:api\"",
+            "\"source\": \"pom\"",
+            "\"source\": \"profile latency\"",
+            "\"name\": \"jvm flags\"",
+            "\"phasesMillis\"");
+    var matrix =
+        tempDir
+            .resolve("target")
+            .resolve(JvmFlagsLayerPlan.CACHE_DIRECTORY_NAME)
+            .resolve(BuildReport.MATRIX_FILE);
+    assertThat(matrix)
+        .content()
+        .contains("\"tw.com.softleader:api\"", "\"1g\"")
+        .doesNotContain("tw.com.softleader:other");
+  }
+
+  @Test
+  void testExtendContainerBuildPlanLeavesMatrixToLastModule(@TempDir Path tempDir)
+      throws JibPluginExtensionException {
+    var session = mock(MavenSession.class);
+    var other = mock(MavenProject.class);
+    when(mavenData.getMavenSession()).thenReturn(session);
+    when(session.getProjects()).thenReturn(List.of(mavenProject, other));
+    when(session.getTopLevelProject()).thenReturn(mavenProject);
+    when(other.getPlugin(JvmFlagsExtension.JIB_MAVEN_PLUGIN_ID)).thenReturn(new Plugin());
+    when(mavenProject.getBuild().getDirectory()).thenReturn(tempDir.toString());
+    mockJvmFlags("-Xmx1g");
+
+    extension.extendContainerBuildPlan(
+        ContainerBuildPlan.builder().build(), Map.of(), Optional.empty(), mavenData, logger);
+
+    assertThat(
+            tempDir
+                .resolve(JvmFlagsLayerPlan.CACHE_DIRECTORY_NAME)
+                .resolve(BuildReport.REPORT_FILE))
+        .exists();
+    assertThat(
+            tempDir
+                .resolve(JvmFlagsLayerPlan.CACHE_DIRECTORY_NAME)
+                .resolve(BuildReport.MATRIX_FILE))
+        .doesNotExist();
+  }
+
+  @Test
+  void testExtendContainerBuildPlanWithWarmup(@TempDir Path tempDir)
+      throws JibPluginExtensionException {
+    when(mavenProject.getBuild().getDirectory()).thenReturn(tempDir.toString());
+    mockJvmFlags("-Xmx1g");
+    var config = new JvmFlagsExtensionConfig();
+    config.setWarmup(new Warmup());
+    config.getWarmup().getEntryPoints().add("com.example.Warmup#run");
+    config.getWarmup().setIterations(500);
+
+    var modifiedPlan =
+        extension.extendContainerBuildPlan(
+            ContainerBuildPlan.builder().build(), Map.of(), Optional.of(config), mavenData, logger);
+
+    var cache = tempDir.resolve(JvmFlagsLayerPlan.CACHE_DIRECTORY_NAME);
+    assertThat(cache.resolve(JvmFlagsLayerPlan.JIB_JVM_FLAGS_FILE))
+        .hasContent(
+            "-Xmx1g -javaagent:/app/agents/jib-warmup-agent.jar=entryPoint=com.example.Warmup#run;"
+                + "iterations=500;timeout=30");
+    assertThat(modifiedPlan.getLayers())
+        .extracting(LayerObject::getName)
+        .contains(WarmupLayerPlan.LAYER_WARMUP);
+    assertThat(cache.resolve(WarmupLayerPlan.WARMUP_AGENT_JAR)).isNotEmptyFile();
+  }
+
+  @Test
+  void testExtendContainerBuildPlanWithWarmupBeforeJdk11(@TempDir Path tempDir) {
+    when(mavenProject.getBuild().getDirectory()).thenReturn(tempDir.toString());
+    var config = new JvmFlagsExtensionConfig();
+    config.setWarmup(new Warmup());
+    config.getWarmup().getEntryPoints().add("com.example.Warmup#run");
+
+    assertThatThrownBy(
+            () ->
+                extension.extendContainerBuildPlan(
+                    ContainerBuildPlan.builder().build(),
+                    Map.of(JvmFlagsExtension.PROPERTY_TARGET_JDK, "8"),
+                    Optional.of(config),
+                    mavenData,
+                    logger))
+        .isInstanceOf(JibPluginExtensionException.class)
+        .hasMessageContaining("Warm-up requires JDK 11 or later");
+  }
+
+  @Test
+  void testExtendContainerBuildPlanWithObservability(@TempDir Path tempDir)
+      throws JibPluginExtensionException {
+    when(mavenProject.getBuild().getDirectory()).thenReturn(tempDir.toString());
+    mockJvmFlags("-Xmx1g");
+
+    ContainerBuildPlan modifiedPlan =
+        extension.extendContainerBuildPlan(
+            ContainerBuildPlan.builder().build(),
+            Map.of(PROPERTY_OBSERVABILITY, "true", PROPERTY_JFR_MAX_AGE, "2h"),
+            Optional.empty(),
+            mavenData,
+            logger);
+
+    var cache = tempDir.resolve(JvmFlagsLayerPlan.CACHE_DIRECTORY_NAME);
+    assertThat(cache.resolve(JvmFlagsLayerPlan.JIB_JVM_FLAGS_FILE))
+        .content()
+        .contains("settings=/app/jib-observability.jfc,maxage=2h", "-Xlog:gc*", "-Xmx1g");
+    assertThat(((FileEntriesLayer) modifiedPlan.getLayers().get(0)).getEntries())
+        .extracting(entry -> entry.getExtractionPath().toString())
+        .containsExactly("/app/jib-jvm-flags-file", "/app/jib-observability.jfc");
+  }
+
+  @Test
+  void testExtendContainerBuildPlanWithOwnRecording(@TempDir Path tempDir)
+      throws JibPluginExtensionException {
+    when(mavenProject.getBuild().getDirectory()).thenReturn(tempDir.toString());
+    mockJvmFlags("-XX:StartFlightRecording=settings=profile");
+
+    ContainerBuildPlan modifiedPlan =
+        extension.extendContainerBuildPlan(
+            ContainerBuildPlan.builder().build(),
+            Map.of(PROPERTY_OBSERVABILITY, "true"),
+            Optional.empty(),
+            mavenData,
+            logger);
+
+    assertThat(
+            tempDir
+                .resolve(JvmFlagsLayerPlan.CACHE_DIRECTORY_NAME)
+                .resolve(JvmFlagsLayerPlan.JIB_JVM_FLAGS_FILE))
+        .content()
+        .contains("-XX:StartFlightRecording=settings=profile")
+        .doesNotContain("jib-observability.jfc");
+    assertThat(((FileEntriesLayer) modifiedPlan.getLayers().get(0)).getEntries()).hasSize(1);
+  }
+
+  @Test
+  void testExtendContainerBuildPlanWithAgent(@TempDir Path tempDir)
+      throws JibPluginExtensionException, IOException {
+    when(mavenProject.getBuild().getDirectory()).thenReturn(tempDir.toString());
+    when(mavenProject.getBasedir()).thenReturn(tempDir.toFile());
+    Files.writeString(tempDir.resolve("agent.jar"), "jar");
+    mockJvmFlags("-Xmx1g");
+    var agent = new Agent();
+    agent.setFile("agent.jar");
+    var config = new JvmFlagsExtensionConfig();
+    config.getAgents().add(agent);
+
+    ContainerBuildPlan modifiedPlan =
+        extension.extendContainerBuildPlan(
+            ContainerBuildPlan.builder().build(), Map.of(), Optional.of(config), mavenData, logger);
+
+    assertThat(
+            tempDir
+                .resolve(JvmFlagsLayerPlan.CACHE_DIRECTORY_NAME)
+                .resolve(JvmFlagsLayerPlan.JIB_JVM_FLAGS_FILE))
+        .hasContent("-Xmx1g -javaagent:/app/agents/agent.jar");
+    assertThat(layerNames(modifiedPlan)).containsExactly("jvm flags", "jvm agents");
+  }
+
+  @Test
+  void testPlaceLayers() throws JibPluginExtensionException {
+    var plan =
+        ContainerBuildPlan.builder()
+            .addLayer(layer("dependencies", "/app/libs/a.jar"))
+            .addLayer(layer("resources", "/app/resources/application.yml"))
+            .addLayer(layer("classes", "/app/classes/App.class"))
+            .build();
+    var added =
+        List.of(
+            layer(JvmFlagsLayerPlan.LAYER_JVM_FLAGS, "/app/jib-jvm-flags-file"),
+            layer(AppCdsLayerPlan.LAYER_APP_CDS, "/app/jib-app-cds.jsa"));
+
+    assertThat(layerNames(ImagePhase.placeLayers(plan, added, Map.of(), logger)))
+        .containsExactly("dependencies", "resources", "classes", "jvm flags", "app cds");
+    assertThat(
+            layerNames(
+                ImagePhase.placeLayers(
+                    plan, added, Map.of(PROPERTY_LAYER_POSITION, "first"), logger)))
+        .containsExactly("jvm flags", "app cds", "dependencies", "resources", "classes");
+    assertThat(
+            layerNames(
+                ImagePhase.placeLayers(plan, added, Map.of(PROPERTY_LAYER_POSITION, "1"), logger)))
+        .containsExactly("dependencies", "jvm flags", "app cds", "resources", "classes");
+    assertThat(
+            layerNames(
+                ImagePhase.placeLayers(
+                    plan, added, Map.of(PROPERTY_LAYER_POSITION, "before:classes"), logger)))
+        .containsExactly("dependencies", "resources", "jvm flags", "app cds", "classes");
+    assertThat(
+            layerNames(
+                ImagePhase.placeLayers(
+                    plan, added, Map.of(PROPERTY_LAYER_POSITION, "after:dependencies"), logger)))
+        .containsExactly("dependencies", "jvm flags", "app cds", "resources", "classes");
+  }
+
+  @Test
+  void testPlaceLayersPutsRuntimeFirst() throws JibPluginExtensionException {
+    var plan =
+        ContainerBuildPlan.builder()
+            .addLayer(layer("dependencies", "/app/libs/a.jar"))
+            .addLayer(layer("classes", "/app/classes/App.class"))
+            .build();
+    var added =
+        List.of(
+            layer(JvmFlagsLayerPlan.LAYER_JVM_FLAGS, "/app/jib-jvm-flags-file"),
+            layer(RuntimeLayerPlan.LAYER_RUNTIME, "/app/jre/bin/java"));
+
+    assertThat(layerNames(ImagePhase.placeLayers(plan, added, Map.of(), logger)))
+        .containsExactly("java runtime", "dependencies", "classes", "jvm flags");
+  }
+
+  @Test
+  void testUseRuntime() {
+    var runtime =
+        new RuntimeLayerPlan.Runtime(
+            layer(RuntimeLayerPlan.LAYER_RUNTIME, "/app/jre/bin/java"),
+            List.of("java.base"),
+            AbsoluteUnixPath.get("/app/jre"));
+    var plan =
+        ContainerBuildPlan.builder()
+            .setEntrypoint(List.of("java", "-cp", "@/app/jib-classpath-file", "App"))
+            .build();
+
+    var used = ImagePhase.useRuntime(plan, runtime, logger);
+
+    assertThat(used.getEnvironment()).containsEntry("JAVA_HOME", "/app/jre");
+    assertThat(used.getEntrypoint())
+        .containsExactly("/app/jre/bin/java", "-cp", "@/app/jib-classpath-file", "App");
+
+    var launcher = plan.toBuilder().setEntrypoint(List.of("/app/jib-launcher")).build();
+    assertThat(ImagePhase.useRuntime(launcher, runtime, logger).getEntrypoint())
+        .containsExactly("/app/jib-launcher");
+  }
+
+  @Test
+  void testRuntimeModules() {
+    assertThat(getRuntimeModules(Map.of(PROPERTY_RUNTIME_MODULES, "jdk.crypto.ec, jdk.zipfs\n")))
+        .containsExactly("jdk.crypto.ec", "jdk.zipfs");
+    assertThat(getRuntimeModules(Map.of())).isEmpty();
+    assertThat(getRuntimeJavaHome(Map.of(PROPERTY_TRAINING_JAVA_HOME, "/jdk")))
+        .hasValue(Path.of("/jdk"));
+    assertThat(
+            getRuntimeJavaHome(
+                Map.of(PROPERTY_TRAINING_JAVA_HOME, "/jdk", PROPERTY_RUNTIME_JAVA_HOME, "/jlink")))
+        .hasValue(Path.of("/jlink"));
+  }
+
+  @Test
+  void testPlaceLayersMergedIntoLayer() throws JibPluginExtensionException {
+    var plan =
+        ContainerBuildPlan.builder()
+            .addLayer(layer("dependencies", "/app/libs/a.jar"))
+            .addLayer(layer("resources", "/app/resources/application.yml", "/app/jib-launcher"))
+            .build();
+    var added =
+        List.of(
+            layer(JvmFlagsLayerPlan.LAYER_JVM_FLAGS, "/app/jib-jvm-flags-file"),
+            layer(LauncherLayerPlan.LAYER_LAUNCHER, "/app/jib-launcher"),
+            layer(AppCdsLayerPlan.LAYER_APP_CDS, "/app/jib-app-cds.jsa"));
+
+    var placed =
+        ImagePhase.placeLayers(
+            plan,
+            added,
+            Map.of(PROPERTY_MERGE_INTO_LAYER, "resources", PROPERTY_LAYER_POSITION, "first"),
+            logger);
+
+    assertThat(layerNames(placed)).containsExactly("app cds", "dependencies", "resources");
+    assertThat(((FileEntriesLayer) placed.getLayers().get(2)).getEntries())
+        .extracting(entry -> entry.getExtractionPath().toString())
+        .containsExactly(
+            "/app/resources/application.yml", "/app/jib-jvm-flags-file", "/app/jib-launcher");
+  }
+
+  @Test
+  void testPlaceLayersWithUnknownLayer() {
+    var plan = ContainerBuildPlan.builder().addLayer(layer("classes", "/app/App.class")).build();
+    var added = List.of(layer(JvmFlagsLayerPlan.LAYER_JVM_FLAGS, "/app/jib-jvm-flags-file"));
+
+    assertThatThrownBy(
+            () ->
+                ImagePhase.placeLayers(
+                    plan, added, Map.of(PROPERTY_MERGE_INTO_LAYER, "resources"), logger))
+        .hasMessageContaining("'resources'")
+        .hasMessageContaining("[classes]");
+    assertThatThrownBy(
+            () ->
+                ImagePhase.placeLayers(
+                    plan, added, Map.of(PROPERTY_LAYER_POSITION, "after:libs"), logger))
+        .hasMessageContaining("'libs'");
+    assertThatThrownBy(
+            () ->
+                ImagePhase.placeLayers(
+                    plan, added, Map.of(PROPERTY_LAYER_POSITION, "middle"), logger))
+        .hasMessageContaining("Invalid layerPosition 'middle'");
+  }
+
+  private static FileEntriesLayer layer(String name, String... paths) {
+    var layer = FileEntriesLayer.builder().setName(name);
+    for (var path : paths) {
+      layer.addEntry(Path.of(path), AbsoluteUnixPath.get(path));
+    }
+    return layer.build();
+  }
+
+  private static List<String> layerNames(ContainerBuildPlan plan) {
+    return plan.getLayers().stream().map(LayerObject::getName).collect(Collectors.toList());
+  }
+
+  private static ArchitectureFlags architecture(String name, String... jvmFlags) {
+    var architecture = new ArchitectureFlags();
+    architecture.setName(name);
+    architecture.setJvmFlags(List.of(jvmFlags));
+    return architecture;
+  }
+
+  private static FlagSet flagSet(String name, String... jvmFlags) {
+    var flagSet = new FlagSet();
+    flagSet.setName(name);
+    flagSet.setJvmFlags(List.of(jvmFlags));
+    return flagSet;
+  }
 }
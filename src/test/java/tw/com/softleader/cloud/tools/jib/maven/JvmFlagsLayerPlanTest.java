@@ -20,15 +20,21 @@
  */
 package tw.com.softleader.cloud.tools.jib.maven;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import com.google.cloud.tools.jib.api.buildplan.AbsoluteUnixPath;
 import com.google.cloud.tools.jib.api.buildplan.FileEntriesLayer;
 import com.google.cloud.tools.jib.plugins.extension.ExtensionLogger;
+import com.google.common.hash.Hashing;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
@@ -62,6 +68,50 @@ class JvmFlagsLayerPlanTest {
         .exists();
   }
 
+  @Test
+  void testCreateLayerWithOrderedClasspath(@TempDir Path tempDir) throws IOException {
+    JvmFlagsLayerPlan plan =
+        JvmFlagsLayerPlan.builder()
+            .buildDir(tempDir)
+            .jvmFlag("-Xmx512m")
+            .orderedClasspathElement("/app/libs/hot.jar")
+            .orderedClasspathElement("/app/libs/cold.jar")
+            .logger(logger)
+            .build();
+
+    FileEntriesLayer layer = plan.create(AbsoluteUnixPath.get("/app"));
+
+    assertThat(layer.getEntries())
+        .anySatisfy(
+            entry -> {
+              assertThat(entry.getExtractionPath())
+                  .isEqualTo(AbsoluteUnixPath.get("/app/" + ClasspathOrder.ORDERED_CLASSPATH_FILE));
+              assertThat(entry.getSourceFile()).hasContent("/app/libs/hot.jar:/app/libs/cold.jar");
+            });
+  }
+
+  @Test
+  void testCreateWithCompileCommands(@TempDir Path tempDir) throws IOException {
+    JvmFlagsLayerPlan plan =
+        JvmFlagsLayerPlan.builder()
+            .buildDir(tempDir)
+            .jvmFlag("-Xmx512m")
+            .compileCommand("quiet")
+            .compileCommand("inline com.example.App::run")
+            .logger(logger)
+            .build();
+
+    FileEntriesLayer layer = plan.create(AbsoluteUnixPath.get("/app"));
+
+    assertThat(layer.getEntries())
+        .anySatisfy(
+            entry -> {
+              assertThat(entry.getExtractionPath())
+                  .isEqualTo(AbsoluteUnixPath.get("/app/" + JitTuner.COMPILE_COMMAND_FILE));
+              assertThat(entry.getSourceFile()).hasContent("quiet\ninline com.example.App::run");
+            });
+  }
+
   @Test
   void testWriteFileConservativelyCreatesFile(@TempDir Path tempDir) throws IOException {
     Path file = tempDir.resolve("test-file");
@@ -85,4 +135,169 @@ class JvmFlagsLayerPlanTest {
 
     assertThat(file).exists().content().isNotEqualTo(content);
   }
+
+  @Test
+  void testCreateLayerWithLaunchFile(@TempDir Path tempDir) throws IOException {
+    JvmFlagsLayerPlan plan =
+        JvmFlagsLayerPlan.builder()
+            .buildDir(tempDir)
+            .jvmFlag("-Xmx512m")
+            .jvmFlag("-Dgreeting=hello world")
+            .classpathElement("/app/resources")
+            .classpathElement("/app/libs/*")
+            .mainClass("com.example.Main")
+            .logger(logger)
+            .build();
+
+    FileEntriesLayer layer = plan.create(AbsoluteUnixPath.get("/app"));
+
+    assertThat(layer.getEntries())
+        .extracting(entry -> entry.getExtractionPath().toString())
+        .containsExactly("/app/jib-jvm-flags-file", "/app/jib-launch-file");
+    assertThat(
+            tempDir
+                .resolve(JvmFlagsLayerPlan.CACHE_DIRECTORY_NAME)
+                .resolve(JvmFlagsLayerPlan.JIB_LAUNCH_FILE))
+        .hasContent(
+            "-Xmx512m\n\"-Dgreeting=hello world\"\n-cp\n/app/resources:/app/libs/*\ncom.example.Main\n");
+  }
+
+  @Test
+  void testCreateLayerKeepsRepeatedSeparateValues(@TempDir Path tempDir) throws IOException {
+    var jvmFlags =
+        List.of(
+            "--add-opens",
+            "java.base/java.lang=ALL-UNNAMED",
+            "--add-opens",
+            "java.base/java.util=ALL-UNNAMED");
+    JvmFlagsLayerPlan plan =
+        JvmFlagsLayerPlan.builder()
+            .buildDir(tempDir)
+            .jvmFlags(jvmFlags)
+            .mainClass("com.example.Main")
+            .logger(logger)
+            .build();
+
+    plan.create(AbsoluteUnixPath.get("/app"));
+
+    var cacheDir = tempDir.resolve(JvmFlagsLayerPlan.CACHE_DIRECTORY_NAME);
+    assertThat(cacheDir.resolve(JvmFlagsLayerPlan.JIB_JVM_FLAGS_FILE))
+        .hasContent(String.join(" ", jvmFlags));
+    assertThat(cacheDir.resolve(JvmFlagsLayerPlan.JIB_LAUNCH_FILE))
+        .hasContent(String.join("\n", jvmFlags) + "\ncom.example.Main\n");
+  }
+
+  @Test
+  void testCreateLayerWithVariants(@TempDir Path tempDir) throws IOException {
+    JvmFlagsLayerPlan plan =
+        JvmFlagsLayerPlan.builder()
+            .buildDir(tempDir)
+            .jvmFlag("-Xmx512m")
+            .variant("api", List.of("-Xmx512m", "-XX:+UseZGC"))
+            .variant("worker", List.of("-Xmx2g"))
+            .logger(logger)
+            .build();
+
+    FileEntriesLayer layer = plan.create(AbsoluteUnixPath.get("/app"));
+
+    assertThat(layer.getEntries())
+        .extracting(entry -> entry.getExtractionPath().toString())
+        .containsExactly(
+            "/app/jib-jvm-flags-file",
+            "/app/jib-jvm-flags-file.api",
+            "/app/jib-jvm-flags-file.worker");
+    var cache = tempDir.resolve(JvmFlagsLayerPlan.CACHE_DIRECTORY_NAME);
+    assertThat(cache.resolve("jib-jvm-flags-file.api")).hasContent("-Xmx512m -XX:+UseZGC");
+    assertThat(cache.resolve("jib-jvm-flags-file.worker")).hasContent("-Xmx2g");
+  }
+
+  @Test
+  void testCreateLayersInParallel(@TempDir Path tempDir) throws Exception {
+    var executor = Executors.newFixedThreadPool(16);
+    try {
+      var tasks = new ArrayList<Callable<FileEntriesLayer>>();
+      for (int i = 0; i < 400; i++) {
+        var module = "module-" + (i % 20);
+        tasks.add(
+            () ->
+                JvmFlagsLayerPlan.builder()
+                    .buildDir(tempDir)
+                    .projectId(module)
+                    .jvmFlag("-Dmodule=" + module)
+                    .build()
+                    .create(AbsoluteUnixPath.get("/app")));
+      }
+      for (var future : executor.invokeAll(tasks)) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    var cache = tempDir.resolve(JvmFlagsLayerPlan.CACHE_DIRECTORY_NAME);
+    for (int i = 0; i < 20; i++) {
+      var module = cache.resolve("module-" + i);
+      assertThat(module.resolve(JvmFlagsLayerPlan.JIB_JVM_FLAGS_FILE))
+          .hasContent("-Dmodule=module-" + i);
+      assertThat(module).isDirectoryNotContaining("glob:**.tmp");
+    }
+  }
+
+  @Test
+  void testCreateLayersWithConflictingWriters(@TempDir Path tempDir) throws Exception {
+    var payloads = new ArrayList<String>();
+    for (int i = 0; i < 20; i++) {
+      payloads.add("-Dwriter=" + i + " -Dpadding=" + String.valueOf(i % 10).repeat(64 * 1024));
+    }
+    var executor = Executors.newFixedThreadPool(16);
+    try {
+      var tasks = new ArrayList<Callable<FileEntriesLayer>>();
+      for (int i = 0; i < 400; i++) {
+        var flags = payloads.get(i % payloads.size()).split(" ");
+        tasks.add(
+            () ->
+                JvmFlagsLayerPlan.builder()
+                    .buildDir(tempDir)
+                    .jvmFlags(List.of(flags))
+                    .build()
+                    .create(AbsoluteUnixPath.get("/app")));
+      }
+      for (var future : executor.invokeAll(tasks)) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    var cache = tempDir.resolve(JvmFlagsLayerPlan.CACHE_DIRECTORY_NAME);
+    var content = Files.readString(cache.resolve(JvmFlagsLayerPlan.JIB_JVM_FLAGS_FILE));
+    assertThat(payloads).contains(content);
+    assertThat(cache.resolve(JvmFlagsLayerPlan.JIB_JVM_FLAGS_FILE + CacheFiles.DIGEST_SUFFIX))
+        .hasContent(Hashing.sha256().hashString(content, UTF_8).toString());
+    assertThat(cache).isDirectoryNotContaining("glob:**.tmp");
+  }
+
+  @Test
+  void testCreateLayerWithReferencedJfrSettings(@TempDir Path tempDir) throws IOException {
+    var appRoot = AbsoluteUnixPath.get("/app");
+    var plan =
+        JvmFlagsLayerPlan.builder()
+            .buildDir(tempDir)
+            .jvmFlag("-Xmx512m")
+            .variant("observed", ObservabilityPreset.builder().build().getJvmFlags(appRoot))
+            .build();
+
+    var layer = plan.create(appRoot);
+
+    assertThat(layer.getEntries())
+        .extracting(entry -> entry.getExtractionPath().toString())
+        .containsExactly(
+            "/app/jib-jvm-flags-file",
+            "/app/jib-jvm-flags-file.observed",
+            "/app/" + ObservabilityPreset.JFR_SETTINGS);
+    assertThat(layer.getEntries().get(2).getSourceFile()).content().contains("<configuration");
+
+    var withoutReference = plan.toBuilder().clearVariants().build().create(appRoot).getEntries();
+    assertThat(withoutReference).hasSize(1);
+  }
 }
@@ -0,0 +1,83 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.OptionalInt;
+import org.junit.jupiter.api.Test;
+
+class JvmFlagsProfileTest {
+
+  @Test
+  void testApplyWithoutExplicitFlags() {
+    assertThat(JvmFlagsProfile.THROUGHPUT.apply(List.of()))
+        .containsExactlyElementsOf(JvmFlagsProfile.THROUGHPUT.getJvmFlags());
+  }
+
+  @Test
+  void testExplicitFlagsWin() {
+    assertThat(
+            JvmFlagsProfile.LATENCY.apply(
+                List.of("-XX:+UseG1GC", "-XX:MaxRAMPercentage=60", "-Dapp=x")))
+        .containsExactly(
+            "-XX:+AlwaysPreTouch",
+            "-XX:+UseStringDeduplication",
+            "-XX:+UseG1GC",
+            "-XX:MaxRAMPercentage=60",
+            "-Dapp=x");
+  }
+
+  @Test
+  void testExplicitBooleanFlagWins() {
+    assertThat(JvmFlagsProfile.LATENCY.apply(List.of("-XX:-AlwaysPreTouch")))
+        .contains("-XX:-AlwaysPreTouch")
+        .doesNotContain("-XX:+AlwaysPreTouch");
+  }
+
+  @Test
+  void testLatencyOnOlderJdks() {
+    assertThat(JvmFlagsProfile.LATENCY.getJvmFlags(OptionalInt.of(8)))
+        .containsExactly(
+            "-XX:+UseG1GC",
+            "-XX:+AlwaysPreTouch",
+            "-XX:MaxRAMPercentage=75",
+            "-XX:+UseStringDeduplication");
+    assertThat(JvmFlagsProfile.LATENCY.getJvmFlags(OptionalInt.of(11)))
+        .containsExactly(
+            "-XX:+UnlockExperimentalVMOptions",
+            "-XX:+UseZGC",
+            "-XX:+AlwaysPreTouch",
+            "-XX:MaxRAMPercentage=75");
+    assertThat(JvmFlagsProfile.LATENCY.getJvmFlags(OptionalInt.of(17)))
+        .containsExactly("-XX:+UseZGC", "-XX:+AlwaysPreTouch", "-XX:MaxRAMPercentage=75");
+    assertThat(JvmFlagsProfile.LATENCY.getJvmFlags(OptionalInt.of(21)))
+        .containsExactlyElementsOf(JvmFlagsProfile.LATENCY.getJvmFlags());
+    assertThat(JvmFlagsProfile.THROUGHPUT.getJvmFlags(OptionalInt.of(11)))
+        .containsExactlyElementsOf(JvmFlagsProfile.THROUGHPUT.getJvmFlags());
+  }
+
+  @Test
+  void testBatchStopsAtC1() {
+    assertThat(JvmFlagsProfile.BATCH.getJvmFlags()).contains("-XX:TieredStopAtLevel=1");
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.cloud.tools.jib.api.buildplan.AbsoluteUnixPath;
+import com.google.cloud.tools.jib.plugins.extension.ExtensionLogger;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+class JvmFlagsRecommenderTest {
+
+  private static final long MB = JvmFlagsRecommender.MB;
+
+  @Mock private ExtensionLogger logger;
+
+  @BeforeEach
+  void setUp() {
+    MockitoAnnotations.openMocks(this);
+  }
+
+  @Test
+  void testRecommendSmallHeap() {
+    var report = JvmFlagsRecommender.recommend(observed(40 * MB, 100 * MB, 30 * MB, 20));
+
+    assertThat(report.getJvmFlags())
+        .containsExactly(
+            "-Xmx256m",
+            "-XX:+UseSerialGC",
+            "-Xmn112m",
+            "-XX:MetaspaceSize=32m",
+            "-XX:MaxMetaspaceSize=128m");
+    assertThat(report.getNotes()).isEmpty();
+  }
+
+  @Test
+  void testRecommendYoungGenerationWithinHalfOfHeap() {
+    var report = JvmFlagsRecommender.recommend(observed(100 * MB, 2000 * MB, 0, 20));
+
+    assertThat(report.getJvmFlags()).containsExactly("-Xmx320m", "-XX:+UseSerialGC", "-Xmn160m");
+  }
+
+  @Test
+  void testRecommendG1() {
+    var report = JvmFlagsRecommender.recommend(observed(400 * MB, 300 * MB, 0, 150));
+
+    assertThat(report.getJvmFlags()).containsExactly("-Xmx1216m", "-XX:+UseG1GC");
+    assertThat(report.getNotes()).anyMatch(note -> note.contains("UseG1GC"));
+  }
+
+  @Test
+  void testRecommendZgcForLongPausesOnLargeHeaps() {
+    var report = JvmFlagsRecommender.recommend(observed(1024 * MB, 300 * MB, 0, 350));
+
+    assertThat(report.getJvmFlags()).containsExactly("-Xmx3072m", "-XX:+UseZGC");
+    assertThat(report.getRecommendations().get(1).getReason()).contains("350 ms");
+  }
+
+  @Test
+  void testNoGcDuringTraining() {
+    var report = JvmFlagsRecommender.recommend(observed(0, 0, 200 * MB, 0));
+
+    assertThat(report.getJvmFlags())
+        .containsExactly("-XX:MetaspaceSize=208m", "-XX:MaxMetaspaceSize=448m");
+    assertThat(report.getNotes()).anyMatch(note -> note.contains("No GC"));
+  }
+
+  @Test
+  void testRecommendFromTrainingRun(@TempDir Path tempDir) throws IOException {
+    var dir =
+        CacheFiles.directory(tempDir, null).resolve(JvmFlagsRecommender.RECOMMENDATION_DIRECTORY);
+    var recommender =
+        JvmFlagsRecommender.builder()
+            .logger(logger)
+            .buildDir(tempDir)
+            .jvmFlag("-Xmx128m")
+            .jvmFlag("-XX:+UseSerialGC")
+            .trainingArg("allocate")
+            .workload(
+                "until grep -q allocated '"
+                    + dir.resolve(JvmFlagsRecommender.TRAINING_LOG)
+                    + "'; do sleep 0.1; done")
+            .trainingTimeout(Duration.ofSeconds(30))
+            .build();
+
+    var report =
+        recommender.recommend(TrainingApp.buildPlan(tempDir), AbsoluteUnixPath.get("/app"));
+
+    assertThat(report.getObserved().getGcCount()).isPositive();
+    assertThat(report.getObserved().getLiveSetBytes()).isGreaterThan(32 * MB);
+    assertThat(report.getObserved().getMetaspaceUsedBytes()).isPositive();
+    assertThat(report.getObserved().getCollectors()).contains("Serial");
+    assertThat(report.getJvmFlags())
+        .contains("-XX:+UseSerialGC")
+        .anyMatch(f -> f.startsWith("-Xmx"));
+    assertThat(dir.resolve(JvmFlagsRecommender.RECORDING)).isNotEmptyFile();
+    assertThat(dir.resolve(JvmFlagsRecommender.GC_LOG)).isNotEmptyFile();
+    assertThat(Files.readString(dir.resolve(JvmFlagsRecommender.REPORT)))
+        .contains("\"recommendations\"", "\"liveSetBytes\"", "-XX:+UseSerialGC");
+  }
+
+  private static JvmFlagsRecommender.Observed observed(
+      long liveSet, long allocationRate, long metaspace, long maxPauseMillis) {
+    return new JvmFlagsRecommender.Observed(
+        Duration.ofSeconds(10),
+        liveSet > 0 ? 5 : 0,
+        Duration.ofMillis(maxPauseMillis),
+        Duration.ofMillis(maxPauseMillis * 3),
+        liveSet,
+        allocationRate,
+        metaspace,
+        "Test/Test");
+  }
+}
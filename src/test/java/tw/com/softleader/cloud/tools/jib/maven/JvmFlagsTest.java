@@ -0,0 +1,102 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.google.cloud.tools.jib.plugins.extension.JibPluginExtensionException;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class JvmFlagsTest {
+
+  @Test
+  void testNormalizeLastWins() {
+    var normalized = JvmFlags.normalize(List.of("-Xmx1g", "-Dapp=a", "-Xmx2g", "-Dapp=a"));
+
+    assertThat(normalized.getJvmFlags()).containsExactly("-Xmx2g", "-Dapp=a");
+    assertThat(normalized.getConflicts()).containsExactly("'-Xmx1g' is overridden by '-Xmx2g'");
+  }
+
+  @Test
+  void testNormalizeGcSelectors() {
+    assertThat(JvmFlags.normalize(List.of("-XX:+UseG1GC", "-XX:+UseZGC")).getConflicts())
+        .hasSize(1);
+    var normalized = JvmFlags.normalize(List.of("-XX:+UseZGC", "-XX:-UseG1GC"));
+    assertThat(normalized.getJvmFlags()).containsExactly("-XX:+UseZGC");
+    assertThat(normalized.getConflicts()).isEmpty();
+    normalized = JvmFlags.normalize(List.of("-XX:-UseG1GC", "-XX:+UseZGC"));
+    assertThat(normalized.getJvmFlags()).containsExactly("-XX:+UseZGC");
+    assertThat(normalized.getConflicts()).isEmpty();
+    normalized = JvmFlags.normalize(List.of("-XX:+UseG1GC", "-XX:+UseZGC", "-XX:-UseZGC"));
+    assertThat(normalized.getJvmFlags()).containsExactly("-XX:+UseG1GC");
+    assertThat(normalized.getConflicts())
+        .containsExactly("'-XX:+UseZGC' is overridden by '-XX:-UseZGC'");
+  }
+
+  @Test
+  void testNormalizeKeepsRepeatableFlags() {
+    assertThat(JvmFlags.normalize(List.of("-Xlog:gc", "-Xlog:safepoint", " ", "-ea")).getJvmFlags())
+        .containsExactly("-Xlog:gc", "-Xlog:safepoint", "-ea");
+  }
+
+  @Test
+  void testNormalizeKeepsSeparateValues() {
+    var flags = List.of("--add-opens", "java.base/java.lang=ALL-UNNAMED", "--add-opens", "a/b=c");
+    assertThat(JvmFlags.normalize(flags).getJvmFlags()).containsExactlyElementsOf(flags);
+    assertThat(
+            JvmFlags.merge(
+                List.of("--add-opens", "a/b=c", "-Xmx1g"),
+                List.of("--add-opens", "d/e=f", "-Xmx2g")))
+        .containsExactly("--add-opens", "a/b=c", "--add-opens", "d/e=f", "-Xmx2g");
+  }
+
+  @Test
+  void testContradictions() throws JibPluginExtensionException {
+    assertThat(JvmFlags.contradictions(List.of("-Xms2g", "-Xmx1g")))
+        .containsExactly("'-Xms2g' is larger than '-Xmx1g'");
+    assertThat(
+            JvmFlags.contradictions(
+                List.of("-XX:InitialRAMPercentage=80", "-XX:MaxRAMPercentage=50")))
+        .hasSize(1);
+    assertThat(JvmFlags.contradictions(List.of("-XX:+UseZGC", "-XX:G1HeapRegionSize=4m")))
+        .containsExactly("'-XX:G1HeapRegionSize=4m' has no effect with '-XX:+UseZGC'");
+    assertThat(JvmFlags.contradictions(List.of("-XX:+UseG1GC", "-XX:G1HeapRegionSize=4m")))
+        .isEmpty();
+  }
+
+  @Test
+  void testInvalidPercentage() {
+    assertThatThrownBy(
+            () ->
+                JvmFlags.contradictions(
+                    List.of("-XX:InitialRAMPercentage=80", "-XX:MaxRAMPercentage=lots")))
+        .isInstanceOf(JibPluginExtensionException.class)
+        .hasMessage(
+            "Invalid '-XX:MaxRAMPercentage=lots', expecting a percentage between 0 and 100");
+    assertThatThrownBy(
+            () ->
+                JvmFlags.contradictions(
+                    List.of("-XX:InitialRAMPercentage=NaN", "-XX:MaxRAMPercentage=50")))
+        .hasMessageContaining("'-XX:InitialRAMPercentage=NaN'");
+  }
+}
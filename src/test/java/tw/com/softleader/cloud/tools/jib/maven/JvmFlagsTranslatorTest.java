@@ -0,0 +1,100 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class JvmFlagsTranslatorTest {
+
+  @Test
+  void testTranslateRemovedFlags() {
+    var translated =
+        JvmFlagsTranslator.translate(
+            List.of(
+                "-XX:+UseConcMarkSweepGC",
+                "-XX:CMSInitiatingOccupancyFraction=70",
+                "-XX:+UseCMSInitiatingOccupancyOnly",
+                "-XX:+UseBiasedLocking",
+                "-XX:MaxPermSize=256m",
+                "-XX:MaxRAMFraction=2",
+                "-Xloggc:/tmp/gc.log",
+                "-XX:+PrintGCDateStamps",
+                "-Xmx1g"),
+            21);
+
+    assertThat(translated.getJvmFlags())
+        .containsExactly(
+            "-XX:+UseG1GC",
+            "-XX:MaxMetaspaceSize=256m",
+            "-XX:MaxRAMPercentage=50",
+            "-Xlog:gc:file=/tmp/gc.log",
+            "-Xmx1g");
+    assertThat(translated.getChanges())
+        .hasSize(8)
+        .contains(
+            "'-XX:+UseConcMarkSweepGC' translated to '-XX:+UseG1GC' for JDK 21, CMS was removed in"
+                + " JDK 14, G1 is its successor",
+            "'-XX:+UseBiasedLocking' dropped for JDK 21, biased locking is obsolete since JDK 18");
+  }
+
+  @Test
+  void testBiasedLockingKeptBeforeObsolete() {
+    assertThat(JvmFlagsTranslator.translate(List.of("-XX:-UseBiasedLocking"), 17).getJvmFlags())
+        .containsExactly("-XX:-UseBiasedLocking");
+    assertThat(JvmFlagsTranslator.translate(List.of("-XX:-UseBiasedLocking"), 21).getJvmFlags())
+        .isEmpty();
+  }
+
+  @Test
+  void testVersionGatedFlags() {
+    var flags = List.of("-XX:+UseZGC", "-XX:+ZGenerational", "-XX:+AutoCreateSharedArchive");
+
+    assertThat(JvmFlagsTranslator.translate(flags, 17).getJvmFlags())
+        .containsExactly("-XX:+UseZGC");
+    assertThat(JvmFlagsTranslator.translate(flags, 21).getJvmFlags()).isEqualTo(flags);
+    assertThat(JvmFlagsTranslator.translate(flags, 25).getJvmFlags())
+        .containsExactly("-XX:+UseZGC", "-XX:+AutoCreateSharedArchive");
+  }
+
+  @Test
+  void testTranslationNormalizesDuplicates() {
+    var translated =
+        JvmFlagsTranslator.translate(List.of("-XX:+UseConcMarkSweepGC", "-XX:+UseG1GC"), 21);
+
+    assertThat(translated.getJvmFlags()).containsExactly("-XX:+UseG1GC");
+  }
+
+  @Test
+  void testDetectJdk() {
+    assertThat(JvmFlagsTranslator.detectJdk("eclipse-temurin:21-jre")).hasValue(21);
+    assertThat(JvmFlagsTranslator.detectJdk("eclipse-temurin:17.0.9_9-jre-alpine")).hasValue(17);
+    assertThat(JvmFlagsTranslator.detectJdk("registry:5000/ibm-semeru-runtimes:open-25-jre"))
+        .hasValue(25);
+    assertThat(JvmFlagsTranslator.detectJdk("gcr.io/distroless/java17-debian12:nonroot"))
+        .hasValue(17);
+    assertThat(JvmFlagsTranslator.detectJdk("amazoncorretto:21@sha256:abc")).hasValue(21);
+    assertThat(JvmFlagsTranslator.detectJdk("ubuntu:22.04")).isEmpty();
+    assertThat(JvmFlagsTranslator.detectJdk("my-base:latest")).isEmpty();
+  }
+}
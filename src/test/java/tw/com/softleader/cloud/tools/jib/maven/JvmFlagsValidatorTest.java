@@ -0,0 +1,75 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.cloud.tools.jib.plugins.extension.JibPluginExtensionException;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class JvmFlagsValidatorTest {
+
+  private static final String PRINT_FLAGS_FINAL =
+      "[Global flags]\n"
+          + "   double MaxRAMPercentage                         = 25.000000"
+          + "                                 {product} {default}\n"
+          + "     bool UseG1GC                                  = true"
+          + "                                      {product} {ergonomic}\n"
+          + "     bool PrintInlining                            = false"
+          + "                                     {diagnostic} {default}\n"
+          + "openjdk version \"17.0.9\" 2023-10-17\n";
+
+  @Test
+  void testParsePrintFlagsFinal() {
+    var options = JvmFlagsValidator.parsePrintFlagsFinal(PRINT_FLAGS_FINAL);
+
+    assertThat(options)
+        .containsOnlyKeys("MaxRAMPercentage", "UseG1GC", "PrintInlining")
+        .containsEntry("PrintInlining", new JvmFlagsValidator.Option("bool", "diagnostic"));
+  }
+
+  @Test
+  void testCheckOptions() {
+    Map<String, JvmFlagsValidator.Option> options =
+        JvmFlagsValidator.parsePrintFlagsFinal(PRINT_FLAGS_FINAL);
+
+    assertThat(JvmFlagsValidator.checkOptions(List.of("-XX:+UseG1GC", "-Xmx1g"), options))
+        .isEmpty();
+    assertThat(JvmFlagsValidator.checkOptions(List.of("-XX:+UseBiasedLocking"), options))
+        .containsExactly("'-XX:+UseBiasedLocking' is not a known option of the JDK");
+    assertThat(JvmFlagsValidator.checkOptions(List.of("-XX:+MaxRAMPercentage"), options))
+        .hasSize(1);
+    assertThat(JvmFlagsValidator.checkOptions(List.of("-XX:+PrintInlining"), options))
+        .containsExactly("'-XX:+PrintInlining' requires -XX:+UnlockDiagnosticVMOptions before it");
+  }
+
+  @Test
+  void testValidateAgainstRunningJdk() throws IOException, JibPluginExtensionException {
+    var validator = JvmFlagsValidator.builder().build();
+
+    assertThat(validator.validate(List.of("-Xmx256m", "-XX:+UseSerialGC"))).isEmpty();
+    assertThat(validator.validate(List.of("-XX:+UseSerialGC", "-XX:+UseNoSuchOption")))
+        .containsExactly("'-XX:+UseNoSuchOption' is not a known option of the JDK");
+  }
+}
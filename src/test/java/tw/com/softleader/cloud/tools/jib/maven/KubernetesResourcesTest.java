@@ -0,0 +1,159 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class KubernetesResourcesTest {
+
+  private static final String DEPLOYMENT =
+      String.join(
+          "\n",
+          "apiVersion: v1",
+          "kind: Service",
+          "metadata:",
+          "  name: app",
+          "---",
+          "apiVersion: apps/v1",
+          "kind: Deployment",
+          "spec:",
+          "  template:",
+          "    spec:",
+          "      initContainers:",
+          "        - name: migrate",
+          "          resources:",
+          "            limits:",
+          "              memory: 64Mi",
+          "      containers:",
+          "        - name: app",
+          "          resources:",
+          "            requests:",
+          "              cpu: 1500m",
+          "              memory: 1Gi",
+          "            limits:",
+          "              memory: 1536Mi",
+          "        - name: sidecar",
+          "          resources:",
+          "            limits:",
+          "              cpu: 100m",
+          "              memory: 128Mi");
+
+  @Test
+  void testReadContainerFromDirectory(@TempDir Path tempDir) throws IOException {
+    Files.createDirectories(tempDir.resolve("base"));
+    Files.writeString(tempDir.resolve("base").resolve("deployment.yaml"), DEPLOYMENT);
+    Files.writeString(tempDir.resolve("README.md"), "not a manifest: [");
+
+    var resources =
+        KubernetesResources.builder().manifests(tempDir).container("app").build().read();
+
+    assertThat(resources.getMemoryLimit()).isEqualTo(1536L * 1024 * 1024);
+    assertThat(resources.getMemoryRequest()).isEqualTo(1024L * 1024 * 1024);
+    assertThat(resources.getCpuLimit()).isNull();
+    assertThat(resources.getCpuRequest()).isEqualTo(1500);
+    assertThat(resources.getCpus()).isEqualTo(2);
+  }
+
+  @Test
+  void testReadRequiresContainerNameForSeveralContainers(@TempDir Path tempDir) throws IOException {
+    var manifest = Files.writeString(tempDir.resolve("app.yml"), DEPLOYMENT);
+
+    assertThatThrownBy(() -> KubernetesResources.builder().manifests(manifest).build().read())
+        .isInstanceOf(IOException.class)
+        .hasMessageContaining("[app, sidecar]");
+    assertThatThrownBy(
+            () -> KubernetesResources.builder().manifests(manifest).container("web").build().read())
+        .isInstanceOf(IOException.class)
+        .hasMessageContaining("No container 'web'");
+  }
+
+  @Test
+  void testReadSingleContainerWithoutName(@TempDir Path tempDir) throws IOException {
+    var manifest =
+        Files.writeString(
+            tempDir.resolve("pod.yaml"),
+            "kind: Pod\nspec:\n  containers:\n    - name: web\n      resources:\n"
+                + "        limits: {cpu: 2, memory: 512M}\n");
+
+    var resources = KubernetesResources.builder().manifests(manifest).build().read();
+
+    assertThat(resources.getCpuLimit()).isEqualTo(2000);
+    assertThat(resources.getMemoryLimit()).isEqualTo(512_000_000L);
+  }
+
+  @Test
+  void testParseQuantities() {
+    assertThat(KubernetesResources.parseMemory("128974848")).isEqualTo(128974848L);
+    assertThat(KubernetesResources.parseMemory("129e6")).isEqualTo(129_000_000L);
+    assertThat(KubernetesResources.parseMemory("123Mi")).isEqualTo(123L * 1024 * 1024);
+    assertThat(KubernetesResources.parseMemory("1.5Gi")).isEqualTo(1536L * 1024 * 1024);
+    assertThat(KubernetesResources.parseMemory(null)).isNull();
+    assertThat(KubernetesResources.parseCpu("250m")).isEqualTo(250);
+    assertThat(KubernetesResources.parseCpu(0.5)).isEqualTo(500);
+    assertThat(KubernetesResources.parseCpu(4)).isEqualTo(4000);
+    assertThatThrownBy(() -> KubernetesResources.parseMemory("1 GB"))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void testJvmFlagsFromLimits() {
+    var resources = new KubernetesResources.Resources(4L * 1024 * 1024 * 1024, null, 3000L, 1000L);
+
+    assertThat(resources.getJvmFlags(List.of()))
+        .containsExactly(
+            "-XX:MaxRAMPercentage=75",
+            "-XX:ActiveProcessorCount=3",
+            "-XX:ParallelGCThreads=3",
+            "-XX:ConcGCThreads=1");
+  }
+
+  @Test
+  void testJvmFlagsFromRequests() {
+    var resources = new KubernetesResources.Resources(null, 512L * 1024 * 1024, null, 8000L);
+
+    assertThat(resources.getJvmFlags(List.of()))
+        .containsExactly(
+            "-XX:MaxRAM=512m",
+            "-XX:MaxRAMPercentage=50",
+            "-XX:ActiveProcessorCount=8",
+            "-XX:ParallelGCThreads=8",
+            "-XX:ConcGCThreads=2");
+  }
+
+  @Test
+  void testJvmFlagsKeepConfiguredSettings() {
+    var resources = new KubernetesResources.Resources(1024L * 1024 * 1024, null, 2000L, null);
+
+    assertThat(resources.getJvmFlags(List.of("-Xmx700m", "-XX:+UseSerialGC")))
+        .containsExactly("-XX:ActiveProcessorCount=2");
+    assertThat(resources.getJvmFlags(List.of("-XX:ActiveProcessorCount=4")))
+        .containsExactly(
+            "-XX:MaxRAMPercentage=65", "-XX:ParallelGCThreads=2", "-XX:ConcGCThreads=1");
+  }
+}
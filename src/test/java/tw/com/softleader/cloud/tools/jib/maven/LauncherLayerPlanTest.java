@@ -0,0 +1,234 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.condition.OS.LINUX;
+import static org.junit.jupiter.api.condition.OS.MAC;
+
+import com.google.cloud.tools.jib.api.buildplan.AbsoluteUnixPath;
+import com.google.cloud.tools.jib.api.buildplan.FilePermissions;
+import com.google.cloud.tools.jib.plugins.extension.ExtensionLogger;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+class LauncherLayerPlanTest {
+
+  private static final AbsoluteUnixPath APP_ROOT = AbsoluteUnixPath.get("/app");
+
+  @Mock private ExtensionLogger logger;
+
+  @BeforeEach
+  void setUp() {
+    MockitoAnnotations.openMocks(this);
+  }
+
+  @Test
+  void testCreateExecutableLayer(@TempDir Path tempDir) throws IOException {
+    var layer =
+        LauncherLayerPlan.builder().logger(logger).buildDir(tempDir).build().create(APP_ROOT);
+
+    assertThat(layer.getName()).isEqualTo(LauncherLayerPlan.LAYER_LAUNCHER);
+    assertThat(layer.getEntries()).hasSize(1);
+    var entry = layer.getEntries().get(0);
+    assertThat(entry.getExtractionPath())
+        .isEqualTo(APP_ROOT.resolve(LauncherLayerPlan.JIB_LAUNCHER));
+    assertThat(entry.getPermissions()).isEqualTo(FilePermissions.fromOctalString("755"));
+    assertThat(entry.getSourceFile()).content().startsWith("#!/bin/sh");
+  }
+
+  @Test
+  void testRenderSkipsSettingsOfStaticFlags() throws IOException {
+    var script =
+        LauncherLayerPlan.builder()
+            .jvmFlag("-Xmx1g")
+            .jvmFlag("-XX:+UseZGC")
+            .jvmFlagsFilename("my-flags")
+            .build()
+            .render(APP_ROOT);
+
+    assertThat(script)
+        .contains("flags_file=\"$app_root/my-flags\"")
+        .contains("compute_heap=false")
+        .contains("compute_cpu=true")
+        .contains("compute_gc=false")
+        .contains("compute_large_pages=true")
+        .doesNotContainPattern("@[A-Z_]+@");
+  }
+
+  @Test
+  void testRenderOrderedClasspathFile() throws IOException {
+    var script =
+        LauncherLayerPlan.builder()
+            .classpathFilename(ClasspathOrder.ORDERED_CLASSPATH_FILE)
+            .build()
+            .render(APP_ROOT);
+
+    assertThat(script)
+        .contains("classpath_file=\"$app_root/" + ClasspathOrder.ORDERED_CLASSPATH_FILE + "\"")
+        .doesNotContainPattern("@[A-Z_]+@");
+  }
+
+  @Test
+  @EnabledOnOs({LINUX, MAC})
+  void testSmallContainer(@TempDir Path tempDir) throws Exception {
+    var sysRoot = fakeSys(tempDir, "536870912", "50000 100000", "0", "always madvise [never]");
+
+    assertThat(launch(tempDir, sysRoot))
+        .isEqualTo(
+            "java -XX:MaxRAMPercentage=50 -XX:ActiveProcessorCount=1 -XX:+UseSerialGC"
+                + " @/app/jib-jvm-flags-file -cp @/app/jib-classpath-file"
+                + " @/app/jib-main-class-file --server.port=8080");
+  }
+
+  @Test
+  @EnabledOnOs({LINUX, MAC})
+  void testFlagWithSpaceStaysOneArgument(@TempDir Path tempDir) throws Exception {
+    var sysRoot = fakeSys(tempDir, "536870912", "50000 100000", "0", "always madvise [never]");
+    var flagsFile =
+        JvmFlagsLayerPlan.builder()
+            .buildDir(tempDir)
+            .argFile(true)
+            .jvmFlag("-Dgreeting=hello world")
+            .jvmFlag("-Xss1m")
+            .build()
+            .create(APP_ROOT)
+            .getEntries()
+            .get(0)
+            .getSourceFile();
+
+    assertThat(launch(tempDir, sysRoot)).contains(" @/app/jib-jvm-flags-file ");
+
+    // the JVM reads the flags file of the launch command as an @argfile
+    var java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+    var process =
+        new ProcessBuilder(java, "@" + flagsFile, "-XshowSettings:properties", "-version")
+            .redirectErrorStream(true)
+            .start();
+    var output = new String(process.getInputStream().readAllBytes(), UTF_8);
+    process.waitFor();
+    assertThat(output).contains("greeting = hello world");
+  }
+
+  @Test
+  @EnabledOnOs({LINUX, MAC})
+  void testLargeContainerWithTransparentHugePages(@TempDir Path tempDir) throws Exception {
+    var sysRoot = fakeSys(tempDir, "8589934592", "400000 100000", "0", "always [madvise] never");
+
+    assertThat(launch(tempDir, sysRoot))
+        .startsWith(
+            "java -XX:MaxRAMPercentage=75 -XX:ActiveProcessorCount=4 -XX:+UseG1GC"
+                + " -XX:+UseTransparentHugePages @/app/jib-jvm-flags-file");
+  }
+
+  @Test
+  @EnabledOnOs({LINUX, MAC})
+  void testUnlimitedContainerWithHugePages(@TempDir Path tempDir) throws Exception {
+    var sysRoot = fakeSys(tempDir, "max", "max 100000", "128", "always [madvise] never");
+
+    assertThat(launch(tempDir, sysRoot))
+        .startsWith("java -XX:+UseG1GC -XX:+UseLargePages @/app/jib-jvm-flags-file");
+  }
+
+  @Test
+  @EnabledOnOs({LINUX, MAC})
+  void testFlagSetSelection(@TempDir Path tempDir) throws Exception {
+    var sysRoot = fakeSys(tempDir, "8589934592", "400000 100000", "0", "always madvise [never]");
+    var plan =
+        LauncherLayerPlan.builder()
+            .buildDir(tempDir)
+            .flagSet("worker", List.of("-XX:+UseParallelGC", "-Xmx6g"))
+            .build();
+
+    assertThat(launch(plan, sysRoot, Map.of("JIB_FLAG_SET", "worker")))
+        .startsWith("java -XX:ActiveProcessorCount=4 @/app/jib-jvm-flags-file.worker");
+    assertThat(launch(plan, sysRoot, Map.of("JIB_FLAG_SET", "api")))
+        .isEqualTo("jib-launcher: unknown flag set 'api'");
+  }
+
+  @Test
+  @EnabledOnOs({LINUX, MAC})
+  void testArchitectureSelection(@TempDir Path tempDir) throws Exception {
+    var sysRoot = fakeSys(tempDir, "8589934592", "400000 100000", "0", "always madvise [never]");
+    var plan =
+        LauncherLayerPlan.builder()
+            .buildDir(tempDir)
+            .flagSet("worker", List.of("-Xmx6g"))
+            .architectureVariant("arm64", List.of("-XX:+UseParallelGC"))
+            .architectureVariant("worker.arm64", List.of("-Xmx6g", "-XX:+UseParallelGC"))
+            .build();
+
+    assertThat(launch(plan, sysRoot, Map.of("JIB_ARCH", "arm64")))
+        .startsWith(
+            "java -XX:MaxRAMPercentage=75 -XX:ActiveProcessorCount=4"
+                + " @/app/jib-jvm-flags-file.arm64");
+    assertThat(launch(plan, sysRoot, Map.of("JIB_ARCH", "arm64", "JIB_FLAG_SET", "worker")))
+        .startsWith("java -XX:ActiveProcessorCount=4 @/app/jib-jvm-flags-file.worker.arm64");
+    assertThat(launch(plan, sysRoot, Map.of("JIB_ARCH", "amd64")))
+        .startsWith("java -XX:MaxRAMPercentage=75 -XX:ActiveProcessorCount=4 -XX:+UseG1GC");
+  }
+
+  private Path fakeSys(
+      Path tempDir, String memoryMax, String cpuMax, String hugePages, String transparent)
+      throws IOException {
+    var sys = tempDir.resolve("root/sys");
+    var cgroup = Files.createDirectories(sys.resolve("fs/cgroup"));
+    Files.writeString(cgroup.resolve("memory.max"), memoryMax + "\n");
+    Files.writeString(cgroup.resolve("cpu.max"), cpuMax + "\n");
+    var mm = sys.resolve("kernel/mm");
+    Files.createDirectories(mm.resolve("hugepages/hugepages-2048kB"));
+    Files.writeString(mm.resolve("hugepages/hugepages-2048kB/nr_hugepages"), hugePages + "\n");
+    Files.createDirectories(mm.resolve("transparent_hugepage"));
+    Files.writeString(mm.resolve("transparent_hugepage/enabled"), transparent + "\n");
+    return sys.getParent();
+  }
+
+  private String launch(Path tempDir, Path sysRoot) throws Exception {
+    return launch(LauncherLayerPlan.builder().buildDir(tempDir).build(), sysRoot, Map.of());
+  }
+
+  private String launch(LauncherLayerPlan plan, Path sysRoot, Map<String, String> env)
+      throws Exception {
+    var layer = plan.create(APP_ROOT);
+    var process =
+        new ProcessBuilder(
+                "sh", layer.getEntries().get(0).getSourceFile().toString(), "--server.port=8080")
+            .redirectErrorStream(true);
+    process.environment().put("JIB_LAUNCHER_SYS_ROOT", sysRoot.toString());
+    process.environment().put("JIB_LAUNCHER_DRY_RUN", "true");
+    process.environment().remove("JAVA_HOME");
+    process.environment().putAll(env);
+    var started = process.start();
+    var output = new String(started.getInputStream().readAllBytes(), UTF_8).trim();
+    started.waitFor();
+    return output;
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+import com.google.cloud.tools.jib.plugins.extension.JibPluginExtensionException;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class MemoryBudgetTest {
+
+  private static final long MB = MemoryBudget.MB;
+  private static final long GB = MemoryBudget.GB;
+
+  @Test
+  void testEstimateExplicitFlags() throws JibPluginExtensionException {
+    var budget = MemoryBudget.builder().containerLimit(2 * GB).threads(100).build();
+
+    var estimate =
+        budget.estimate(
+            List.of(
+                "-Xmx1g",
+                "-XX:MaxMetaspaceSize=128m",
+                "-XX:ReservedCodeCacheSize=64m",
+                "-Xss512k",
+                "-XX:MaxDirectMemorySize=128m",
+                "-XX:+UseParallelGC"));
+
+    assertThat(estimate.getItems())
+        .extracting(MemoryBudget.Item::getBytes)
+        .containsExactly(
+            GB, 128 * MB, 64 * MB, 25 * MB, 128 * MB, GB * 2 / 100, MemoryBudget.JVM_INTERNALS);
+    assertThat(estimate.getTotalBytes())
+        .isEqualTo(GB + 128 * MB + 64 * MB + 25 * MB + 128 * MB + GB * 2 / 100 + 64 * MB);
+    assertThat(estimate.getUncounted()).isEmpty();
+    assertThat(estimate.getWarnings()).isEmpty();
+  }
+
+  @Test
+  void testEstimateDefaultsFromContainerLimit() throws JibPluginExtensionException {
+    var budget = MemoryBudget.builder().containerLimit(GB).build();
+
+    var estimate = budget.estimate(List.of("-XX:MaxRAMPercentage=75"));
+
+    assertThat(estimate.getItems())
+        .extracting(MemoryBudget.Item::getName, MemoryBudget.Item::getBytes)
+        .containsExactly(
+            tuple("heap", 768 * MB),
+            tuple("metaspace", MemoryBudget.DEFAULT_METASPACE),
+            tuple("code cache", MemoryBudget.DEFAULT_CODE_CACHE),
+            tuple("thread stacks", 200 * MemoryBudget.COMMITTED_THREAD_STACK),
+            tuple("gc", 768 * MB * 4 / 100),
+            tuple("jvm internals", MemoryBudget.JVM_INTERNALS));
+    assertThat(estimate.getUncounted())
+        .extracting(MemoryBudget.Item::getName, MemoryBudget.Item::getBytes)
+        .containsExactly(tuple("direct memory", 768 * MB));
+    assertThat(estimate.getSummary()).endsWith("; not counted: direct memory up to 768 MiB");
+    assertThat(estimate.getWarnings()).singleElement().asString().contains("container limit");
+  }
+
+  @Test
+  void testLatencyProfileFitsLargerContainers() throws JibPluginExtensionException {
+    var flags = JvmFlagsProfile.LATENCY.getJvmFlags();
+
+    assertThat(MemoryBudget.builder().containerLimit(4 * GB).build().estimate(flags).getWarnings())
+        .isEmpty();
+    assertThat(MemoryBudget.builder().containerLimit(16 * GB).build().estimate(flags).getWarnings())
+        .isEmpty();
+  }
+
+  @Test
+  void testThreadStackSizeInKilobytes() throws JibPluginExtensionException {
+    var budget = MemoryBudget.builder().containerLimit(GB).threads(10).build();
+
+    var estimate = budget.estimate(List.of("-Xmx256m", "-XX:ThreadStackSize=256"));
+
+    assertThat(estimate.getItems().get(3).getBytes()).isEqualTo(10 * 256 * 1024);
+    estimate = budget.estimate(List.of("-Xmx256m", "-XX:ThreadStackSize=128"));
+    assertThat(estimate.getItems().get(3).getBytes()).isEqualTo(10 * 128 * 1024);
+  }
+
+  @Test
+  void testWithinPercentage() throws JibPluginExtensionException {
+    var estimate =
+        MemoryBudget.builder()
+            .containerLimit(GB)
+            .maxPercentage(100)
+            .threads(0)
+            .build()
+            .estimate(List.of("-Xmx256m", "-XX:MaxDirectMemorySize=64m"));
+
+    assertThat(estimate.getPercentage()).isLessThan(100);
+    assertThat(estimate.getWarnings()).isEmpty();
+  }
+
+  @Test
+  void testHeapJustAboveCompressedOops() throws JibPluginExtensionException {
+    var budget = MemoryBudget.builder().containerLimit(128 * GB).build();
+
+    assertThat(budget.estimate(List.of("-Xmx36g")).getWarnings())
+        .singleElement()
+        .asString()
+        .contains("compressed oops");
+    assertThat(budget.estimate(List.of("-Xmx31g")).getWarnings()).isEmpty();
+    assertThat(budget.estimate(List.of("-Xmx36g", "-XX:-UseCompressedOops")).getWarnings())
+        .isEmpty();
+  }
+
+  @Test
+  void testInvalidMaxRamPercentage() {
+    var budget = MemoryBudget.builder().containerLimit(GB).build();
+
+    assertThatThrownBy(() -> budget.estimate(List.of("-XX:MaxRAMPercentage=75%")))
+        .isInstanceOf(JibPluginExtensionException.class)
+        .hasMessage("Invalid '-XX:MaxRAMPercentage=75%', expecting a percentage between 0 and 100");
+  }
+}
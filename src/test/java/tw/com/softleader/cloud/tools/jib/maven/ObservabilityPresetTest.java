@@ -0,0 +1,72 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.cloud.tools.jib.api.buildplan.AbsoluteUnixPath;
+import java.io.InputStreamReader;
+import jdk.jfr.Configuration;
+import org.junit.jupiter.api.Test;
+
+class ObservabilityPresetTest {
+
+  @Test
+  void testDefaultJvmFlags() {
+    assertThat(ObservabilityPreset.builder().build().getJvmFlags(AbsoluteUnixPath.get("/app")))
+        .containsExactly(
+            "-XX:StartFlightRecording=name=jib,settings=/app/jib-observability.jfc,maxage=6h,"
+                + "maxsize=250m,dumponexit=true,filename=/tmp/jib-recording.jfr",
+            "-Xlog:gc*,safepoint:file=/tmp/jib-gc.log:time,uptime,level,tags:filecount=5,filesize=20m");
+  }
+
+  @Test
+  void testCustomJvmFlags() {
+    var preset =
+        ObservabilityPreset.builder()
+            .jfrMaxAge("1h")
+            .jfrMaxSize("50m")
+            .jfrDumpPath(AbsoluteUnixPath.get("/dumps/app.jfr"))
+            .gcLogPath(AbsoluteUnixPath.get("/logs/gc.log"))
+            .gcLogFileCount(2)
+            .gcLogFileSize("5m")
+            .build();
+
+    assertThat(preset.getJvmFlags(AbsoluteUnixPath.get("/srv")))
+        .containsExactly(
+            "-XX:StartFlightRecording=name=jib,settings=/srv/jib-observability.jfc,maxage=1h,"
+                + "maxsize=50m,dumponexit=true,filename=/dumps/app.jfr",
+            "-Xlog:gc*,safepoint:file=/logs/gc.log:time,uptime,level,tags:filecount=2,filesize=5m");
+  }
+
+  @Test
+  void testJfrSettingsAreValid() throws Exception {
+    try (var settings =
+        ObservabilityPreset.class.getResourceAsStream(ObservabilityPreset.JFR_SETTINGS)) {
+      var configuration = Configuration.create(new InputStreamReader(settings, UTF_8));
+
+      assertThat(configuration.getSettings())
+          .containsEntry("jdk.GarbageCollection#enabled", "true")
+          .containsEntry("jdk.ExecutionSample#period", "40 ms");
+    }
+  }
+}
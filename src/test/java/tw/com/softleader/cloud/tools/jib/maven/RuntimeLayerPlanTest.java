@@ -0,0 +1,137 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.condition.OS.LINUX;
+
+import com.google.cloud.tools.jib.api.buildplan.AbsoluteUnixPath;
+import com.google.cloud.tools.jib.api.buildplan.FilePermissions;
+import com.google.cloud.tools.jib.api.buildplan.Platform;
+import com.google.cloud.tools.jib.plugins.extension.ExtensionLogger;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+class RuntimeLayerPlanTest {
+
+  @Mock private ExtensionLogger logger;
+
+  @BeforeEach
+  void setUp() {
+    MockitoAnnotations.openMocks(this);
+  }
+
+  @Test
+  void testJvmFlags() {
+    assertThat(RuntimeLayerPlan.getJvmFlags(List.of("java.base", "java.logging")))
+        .containsExactly(
+            "--add-modules=java.base,java.logging", "--limit-modules=java.base,java.logging");
+  }
+
+  @Test
+  void testFlagModules() {
+    assertThat(
+            RuntimeLayerPlan.getFlagModules(
+                List.of(
+                    "-Xmx1g",
+                    "-javaagent:/app/agents/otel.jar",
+                    "-XX:StartFlightRecording=disk=true",
+                    "-Dcom.sun.management.jmxremote.port=9010")))
+        .containsExactly("java.instrument", "jdk.jfr", "jdk.management.agent");
+    assertThat(RuntimeLayerPlan.getFlagModules(List.of("-Xmx1g"))).isEmpty();
+  }
+
+  @Test
+  void testFeatureVersion(@TempDir Path tempDir) throws IOException {
+    Files.writeString(tempDir.resolve("release"), "IMPLEMENTOR=\"x\"\nJAVA_VERSION=\"21.0.2\"\n");
+    assertThat(RuntimeLayerPlan.getFeatureVersion(tempDir)).isEqualTo(21);
+
+    Files.writeString(tempDir.resolve("release"), "JAVA_VERSION=\"1.8.0_402\"\n");
+    assertThat(RuntimeLayerPlan.getFeatureVersion(tempDir)).isEqualTo(8);
+  }
+
+  @Test
+  @EnabledOnOs(LINUX)
+  void testCreateLayerWithRuntime(@TempDir Path tempDir) throws IOException {
+    var buildPlan =
+        TrainingApp.buildPlan(tempDir).toBuilder()
+            .setPlatforms(Set.of(new Platform(RuntimeLayerPlan.getHostArchitecture(), "linux")))
+            .build();
+    var plan =
+        RuntimeLayerPlan.builder()
+            .logger(logger)
+            .buildDir(tempDir)
+            .additionalModule("java.logging")
+            .jvmFlag("-XX:StartFlightRecording")
+            .build();
+
+    var runtime = plan.create(buildPlan, AbsoluteUnixPath.get("/app"));
+
+    assertThat(runtime.getModules()).containsExactly("java.base", "java.logging", "jdk.jfr");
+    assertThat(runtime.getPath()).isEqualTo(AbsoluteUnixPath.get("/app/jre"));
+    assertThat(runtime.getLayer().getName()).isEqualTo(RuntimeLayerPlan.LAYER_RUNTIME);
+    assertThat(runtime.getLayer().getEntries())
+        .anySatisfy(
+            entry -> {
+              assertThat(entry.getExtractionPath()).isEqualTo(runtime.getJava());
+              assertThat(entry.getPermissions()).isEqualTo(FilePermissions.fromOctalString("755"));
+            })
+        .noneSatisfy(
+            entry -> assertThat(entry.getExtractionPath().toString()).contains("/include/"));
+
+    var modulesFile =
+        tempDir
+            .resolve(JvmFlagsLayerPlan.CACHE_DIRECTORY_NAME)
+            .resolve(RuntimeLayerPlan.OUTPUT_DIRECTORY)
+            .resolve(RuntimeLayerPlan.MODULES_FILE);
+    var linked = Files.getLastModifiedTime(modulesFile);
+    plan.create(buildPlan, AbsoluteUnixPath.get("/app"));
+    assertThat(Files.getLastModifiedTime(modulesFile)).isEqualTo(linked);
+  }
+
+  @Test
+  void testCreateFailsForOtherPlatforms(@TempDir Path tempDir) throws IOException {
+    var buildPlan =
+        TrainingApp.buildPlan(tempDir).toBuilder()
+            .setPlatforms(Set.of(new Platform("amd64", "linux"), new Platform("arm64", "linux")))
+            .build();
+
+    assertThatThrownBy(
+            () ->
+                RuntimeLayerPlan.builder()
+                    .logger(logger)
+                    .buildDir(tempDir)
+                    .build()
+                    .create(buildPlan, AbsoluteUnixPath.get("/app")))
+        .isInstanceOf(IOException.class)
+        .hasMessageContaining("can not run on image platforms");
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.google.cloud.tools.jib.plugins.extension.ExtensionLogger;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+class StartupBenchmarkTest {
+
+  @Mock private ExtensionLogger logger;
+
+  @BeforeEach
+  void setUp() {
+    MockitoAnnotations.openMocks(this);
+  }
+
+  @Test
+  void testRunUntilReadyLogLine(@TempDir Path tempDir) throws IOException {
+    TrainingApp.buildPlan(tempDir);
+    var benchmark =
+        StartupBenchmark.builder()
+            .logger(logger)
+            .workingDirectory(tempDir)
+            .classpath(tempDir.resolve("training-app.jar").toString())
+            .mainClass(TrainingApp.class.getName())
+            .arg("sleep")
+            .candidate("default", List.of())
+            .candidate("serial", List.of("-XX:+UseSerialGC"))
+            .iterations(2)
+            .readyLogLine(Pattern.compile("^started sleep"))
+            .timeout(Duration.ofSeconds(30))
+            .outputDir(tempDir.resolve("benchmark"))
+            .build();
+
+    var results = benchmark.run();
+
+    assertThat(results).containsOnlyKeys("default", "serial");
+    assertThat(results.get("serial"))
+        .hasSize(2)
+        .allSatisfy(
+            sample -> {
+              assertThat(sample.getTimeToMainMillis()).isNotNegative();
+              assertThat(sample.getTimeToReadyMillis())
+                  .isGreaterThanOrEqualTo(sample.getTimeToMainMillis());
+              assertThat(sample.getGcCount()).isNotNegative();
+            });
+    assertThat(tempDir.resolve("benchmark").resolve(StartupBenchmark.REPORT_JSON))
+        .content()
+        .contains("\"name\": \"serial\"", "\"-XX:+UseSerialGC\"", "\"timeToReadyMillis\"");
+    assertThat(tempDir.resolve("benchmark").resolve(StartupBenchmark.REPORT_TABLE))
+        .content()
+        .startsWith("Flag set")
+        .contains("serial");
+  }
+
+  @Test
+  void testRunUntilExit(@TempDir Path tempDir) throws IOException {
+    TrainingApp.buildPlan(tempDir);
+    var benchmark =
+        StartupBenchmark.builder()
+            .workingDirectory(tempDir)
+            .classpath(tempDir.resolve("training-app.jar").toString())
+            .mainClass(TrainingApp.class.getName())
+            .candidate("default", List.of())
+            .iterations(1)
+            .outputDir(tempDir)
+            .build();
+
+    var sample = benchmark.run().get("default").get(0);
+
+    assertThat(sample.getExitCode()).isZero();
+    assertThat(sample.getTimeToMainMillis()).isNotNegative();
+    assertThat(sample.getTimeToReadyMillis()).isEqualTo(-1);
+  }
+
+  @Test
+  void testToTable() {
+    var samples =
+        List.of(
+            new StartupBenchmark.Sample(0, 100, 900, 204800, 2, 10),
+            new StartupBenchmark.Sample(0, 120, -1, 102400, 4, 30),
+            new StartupBenchmark.Sample(0, 300, 700, -1, 3, 20));
+
+    assertThat(StartupBenchmark.toTable(Map.of("g1", samples)))
+        .isEqualTo(
+            "Flag set  Runs  Time to main (ms)  Time to ready (ms)  Peak RSS (MiB)  GC count  GC time (ms)\n"
+                + "g1           3                120                 800             150         3            20\n");
+  }
+}
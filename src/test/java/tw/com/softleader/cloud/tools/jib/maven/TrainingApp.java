@@ -0,0 +1,106 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import com.google.cloud.tools.jib.api.buildplan.AbsoluteUnixPath;
+import com.google.cloud.tools.jib.api.buildplan.ContainerBuildPlan;
+import com.google.cloud.tools.jib.api.buildplan.FileEntriesLayer;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/** A tiny app used as the subject of training runs in tests. */
+public class TrainingApp {
+
+  public static void main(String[] args) throws Exception {
+    var greeting = String.join(" ", args);
+    System.out.println("started " + greeting);
+    if (args.length > 0 && "sleep".equals(args[0])) {
+      Thread.sleep(60_000);
+    }
+    if (args.length > 0 && "allocate".equals(args[0])) {
+      allocate();
+    }
+  }
+
+  /** Warm-up entry point, hashing enough to get compiled */
+  public static int warmUp() {
+    var hash = 0;
+    for (int i = 0; i < 1_000; i++) {
+      hash = 31 * hash + Integer.toString(i).hashCode();
+    }
+    return hash;
+  }
+
+  /** Keep a live set of about 32 MB while churning through short-lived garbage */
+  private static void allocate() {
+    var live = new byte[32][];
+    for (int i = 0; i < live.length; i++) {
+      live[i] = new byte[1024 * 1024];
+    }
+    long sum = 0;
+    for (int i = 0; i < 2_000; i++) {
+      var garbage = new byte[256 * 1024];
+      sum += garbage.length + live[i % live.length].length;
+    }
+    System.out.println("allocated " + sum);
+  }
+
+  /**
+   * Create a build plan shaped like the one Jib produces, with this class packaged as the only jar
+   * of the app.
+   */
+  static ContainerBuildPlan buildPlan(Path dir) throws IOException {
+    return Fixture.buildPlan(dir);
+  }
+
+  /** Kept apart so that the app links without Jib on its classpath */
+  private static class Fixture {
+
+    static ContainerBuildPlan buildPlan(Path dir) throws IOException {
+      var jar = dir.resolve("training-app.jar");
+      try (var out = new JarOutputStream(Files.newOutputStream(jar));
+          var in = TrainingApp.class.getResourceAsStream("TrainingApp.class")) {
+        out.putNextEntry(new JarEntry(TrainingApp.class.getName().replace('.', '/') + ".class"));
+        in.transferTo(out);
+        out.closeEntry();
+      }
+      var classpathFile = Files.writeString(dir.resolve("jib-classpath-file"), "/app/libs/*");
+      var mainClassFile =
+          Files.writeString(dir.resolve("jib-main-class-file"), TrainingApp.class.getName());
+      return ContainerBuildPlan.builder()
+          .addLayer(
+              FileEntriesLayer.builder()
+                  .setName("dependencies")
+                  .addEntry(jar, AbsoluteUnixPath.get("/app/libs/training-app.jar"))
+                  .build())
+          .addLayer(
+              FileEntriesLayer.builder()
+                  .setName("jvm arg files")
+                  .addEntry(classpathFile, AbsoluteUnixPath.get("/app/jib-classpath-file"))
+                  .addEntry(mainClassFile, AbsoluteUnixPath.get("/app/jib-main-class-file"))
+                  .build())
+          .build();
+    }
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class WarmupAgentTest {
+
+  private static int staticCalls;
+  private static int instanceCalls;
+
+  private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+  @BeforeEach
+  void setUp() {
+    staticCalls = 0;
+    instanceCalls = 0;
+  }
+
+  static void warmUpStatic() {
+    staticCalls++;
+  }
+
+  void warmUpInstance() {
+    instanceCalls++;
+  }
+
+  static void fail() {
+    throw new IllegalStateException("not ready");
+  }
+
+  @Test
+  void testWarmUpIterations() {
+    var completed =
+        WarmupAgent.warmUp(
+            List.of(
+                WarmupAgentTest.class.getName() + "#warmUpStatic",
+                WarmupAgentTest.class.getName() + "#warmUpInstance"),
+            100,
+            30_000,
+            new PrintStream(output, true));
+
+    assertThat(completed).isEqualTo(100);
+    assertThat(staticCalls).isEqualTo(100);
+    assertThat(instanceCalls).isEqualTo(100);
+    assertThat(output.toString())
+        .startsWith("[jib-warmup] Warmed up 2 entry points with 100 iterations in ")
+        .contains("methods compiled");
+  }
+
+  @Test
+  void testWarmUpTimeout() {
+    var completed =
+        WarmupAgent.warmUp(
+            List.of(WarmupAgentTest.class.getName() + "#warmUpStatic"),
+            Integer.MAX_VALUE,
+            50,
+            new PrintStream(output, true));
+
+    assertThat(completed).isPositive().isLessThan(Integer.MAX_VALUE);
+  }
+
+  @Test
+  void testSkipAndDropFailingEntryPoints() {
+    var completed =
+        WarmupAgent.warmUp(
+            List.of(
+                "com.example.Missing#run",
+                "no-method",
+                WarmupAgentTest.class.getName() + "#fail",
+                WarmupAgentTest.class.getName() + "#warmUpStatic"),
+            10,
+            30_000,
+            new PrintStream(output, true));
+
+    assertThat(completed).isEqualTo(10);
+    assertThat(staticCalls).isEqualTo(10);
+    assertThat(output.toString())
+        .contains(
+            "Skipping entry point 'com.example.Missing#run'",
+            "Skipping entry point 'no-method'",
+            "it failed: java.lang.IllegalStateException: not ready",
+            "Warmed up 1 entry points");
+  }
+
+  @Test
+  void testCompiledMethods() {
+    assertThat(WarmupAgent.getCompiledMethods()).isPositive();
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright © 2024 SoftLeader
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package tw.com.softleader.cloud.tools.jib.maven;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.google.cloud.tools.jib.api.buildplan.AbsoluteUnixPath;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarInputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class WarmupLayerPlanTest {
+
+  @Test
+  void testCreateAgentJar() throws IOException {
+    var bytes = WarmupLayerPlan.createAgentJar();
+
+    assertThat(WarmupLayerPlan.createAgentJar()).isEqualTo(bytes);
+    try (var jar = new JarInputStream(new ByteArrayInputStream(bytes))) {
+      assertThat(jar.getManifest().getMainAttributes().getValue("Premain-Class"))
+          .isEqualTo(WarmupAgent.class.getName());
+      var entries = new ArrayList<String>();
+      for (var entry = jar.getNextJarEntry(); entry != null; entry = jar.getNextJarEntry()) {
+        entries.add(entry.getName());
+      }
+      assertThat(entries)
+          .containsExactly("tw/com/softleader/cloud/tools/jib/maven/WarmupAgent.class");
+    }
+  }
+
+  @Test
+  void testGetJvmFlag() throws IOException {
+    var plan =
+        WarmupLayerPlan.builder().warmup(warmup("com.example.A#run", "com.example.B#run")).build();
+
+    assertThat(plan.getJvmFlag(AbsoluteUnixPath.get("/app")))
+        .isEqualTo(
+            "-javaagent:/app/agents/jib-warmup-agent.jar=entryPoint=com.example.A#run;"
+                + "entryPoint=com.example.B#run;iterations=10000;timeout=30");
+  }
+
+  @Test
+  void testInvalidEntryPoint() {
+    var plan = WarmupLayerPlan.builder().warmup(warmup("com.example.A.run")).build();
+
+    assertThatThrownBy(() -> plan.getJvmFlag(AbsoluteUnixPath.get("/app")))
+        .isInstanceOf(IOException.class)
+        .hasMessageContaining("[com.example.A.run]");
+  }
+
+  @Test
+  void testWarmUpBeforeMain(@TempDir Path tempDir) throws Exception {
+    var plan =
+        WarmupLayerPlan.builder()
+            .buildDir(tempDir)
+            .warmup(warmup(TrainingApp.class.getName() + "#warmUp"))
+            .build();
+    var layer = plan.create(AbsoluteUnixPath.get("/app"));
+    var jar = layer.getEntries().get(0).getSourceFile();
+    assertThat(layer.getName()).isEqualTo(WarmupLayerPlan.LAYER_WARMUP);
+    assertThat(layer.getEntries().get(0).getExtractionPath())
+        .isEqualTo(AbsoluteUnixPath.get("/app/agents/jib-warmup-agent.jar"));
+
+    var flag =
+        plan.getJvmFlag(AbsoluteUnixPath.get("/app"))
+            .replace("/app/agents/jib-warmup-agent.jar", jar.toString());
+    var log = tempDir.resolve("app.log");
+    var process =
+        new ProcessBuilder(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                flag,
+                "-cp",
+                System.getProperty("java.class.path"),
+                TrainingApp.class.getName())
+            .redirectErrorStream(true)
+            .redirectOutput(log.toFile())
+            .start();
+    assertThat(process.waitFor(60, TimeUnit.SECONDS)).isTrue();
+
+    var lines = Files.readAllLines(log);
+    assertThat(lines).anyMatch(line -> line.startsWith("[jib-warmup] Warmed up 1 entry points"));
+    assertThat(lines.indexOf("started "))
+        .isGreaterThan(
+            lines.indexOf(
+                lines.stream().filter(line -> line.startsWith("[jib-warmup]")).findFirst().get()));
+  }
+
+  private static Warmup warmup(String... entryPoints) {
+    var warmup = new Warmup();
+    warmup.setEntryPoints(List.of(entryPoints));
+    return warmup;
+  }
+}